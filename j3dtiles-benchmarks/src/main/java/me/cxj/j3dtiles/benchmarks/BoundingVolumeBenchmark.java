@@ -0,0 +1,174 @@
+package me.cxj.j3dtiles.benchmarks;
+
+import me.cxj.j3dtiles.utils.BoundingVolumeUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static me.cxj.j3dtiles.utils.BoundingVolumeUtils.*;
+
+/**
+ * A selection pass over the boxes of tiles with a transform: each box is transformed to world, its distance to the
+ * camera decides its visibility, and its bounds are added to the bounds of the tileset. The volumes are either packed in
+ * flat arrays, copied from the floats of the tiles into scratch arrays, or allocated at each step as the consumers of
+ * the floats used to do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoundingVolumeBenchmark {
+
+    /**
+     * The number of tiles.
+     */
+    @Param({"1000", "100000"})
+    private int tilesLength;
+
+    private float[][] tileBoxes;
+    private float[][] tileTransforms;
+    private double[] boxes;
+    private double[] transforms;
+    private double[] worldBoxes;
+    private double[] flatBoxes;
+    private final double[] scratch = new double[BOX_SIZE * 2 + MATRIX_SIZE];
+    private final double[] union = new double[BOUNDS_SIZE];
+    private final double[] camera = {500, 500, 50};
+    private final double threshold = 200;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+        tileBoxes = new float[tilesLength][];
+        tileTransforms = new float[tilesLength][];
+        boxes = new double[tilesLength * BOX_SIZE];
+        transforms = new double[tilesLength * MATRIX_SIZE];
+        worldBoxes = new double[tilesLength * BOX_SIZE];
+        flatBoxes = new double[tilesLength * BOX_SIZE];
+        for (int i = 0; i < tilesLength; ++i) {
+            float size = random.nextFloat() * 50;
+            tileBoxes[i] = new float[] {random.nextFloat() * 100, random.nextFloat() * 100, random.nextFloat() * 10,
+                    size, 0, 0, 0, size, 0, 0, 0, size / 10};
+            float angle = random.nextFloat() * 6.28f;
+            float cos = (float) Math.cos(angle);
+            float sin = (float) Math.sin(angle);
+            tileTransforms[i] = new float[] {cos, sin, 0, 0, -sin, cos, 0, 0, 0, 0, 1, 0,
+                    random.nextFloat() * 1000, random.nextFloat() * 1000, 0, 1};
+            copy(tileBoxes[i], boxes, i * BOX_SIZE);
+            copy(tileTransforms[i], transforms, i * MATRIX_SIZE);
+            transformBox(transforms, i * MATRIX_SIZE, boxes, i * BOX_SIZE, worldBoxes, i * BOX_SIZE);
+            System.arraycopy(worldBoxes, i * BOX_SIZE, flatBoxes, i * BOX_SIZE, BOX_SIZE - 3);
+        }
+    }
+
+    @Benchmark
+    public double selectPacked() {
+        double[] scratch = this.scratch;
+        int visible = 0;
+        resetUnion();
+        for (int i = 0; i < tilesLength; ++i) {
+            transformBox(transforms, i * MATRIX_SIZE, boxes, i * BOX_SIZE, scratch, 0);
+            if (distanceToBox(scratch, 0, camera[0], camera[1], camera[2]) < threshold) {
+                ++visible;
+            }
+            boxToBounds(scratch, 0, scratch, BOX_SIZE);
+            unionBounds(union, 0, scratch, BOX_SIZE, union, 0);
+        }
+        return visible + union[3];
+    }
+
+    @Benchmark
+    public double selectScratch() {
+        double[] scratch = this.scratch;
+        int matrix = BOX_SIZE * 2;
+        int visible = 0;
+        resetUnion();
+        for (int i = 0; i < tilesLength; ++i) {
+            copy(tileBoxes[i], scratch, BOX_SIZE);
+            copy(tileTransforms[i], scratch, matrix);
+            transformBox(scratch, matrix, scratch, BOX_SIZE, scratch, 0);
+            if (distanceToBox(scratch, 0, camera[0], camera[1], camera[2]) < threshold) {
+                ++visible;
+            }
+            boxToBounds(scratch, 0, scratch, BOX_SIZE);
+            unionBounds(union, 0, scratch, BOX_SIZE, union, 0);
+        }
+        return visible + union[3];
+    }
+
+    @Benchmark
+    public double selectAllocating() {
+        int visible = 0;
+        double[] union = null;
+        for (int i = 0; i < tilesLength; ++i) {
+            double[] world = Allocating.transformBox(Allocating.toDoubles(tileTransforms[i]), Allocating.toDoubles(tileBoxes[i]));
+            if (distanceToBox(world, 0, camera[0], camera[1], camera[2]) < threshold) {
+                ++visible;
+            }
+            double[] bounds = Allocating.boxToBounds(world);
+            union = union == null ? bounds : Allocating.unionBounds(union, bounds);
+        }
+        return visible + union[3];
+    }
+
+    @Benchmark
+    public double distanceToBoxes() {
+        return sumDistances(worldBoxes);
+    }
+
+    /**
+     * The boxes with a zero third half axis, measured along the normal of the 2 others.
+     */
+    @Benchmark
+    public double distanceToFlatBoxes() {
+        return sumDistances(flatBoxes);
+    }
+
+    private double sumDistances(double[] boxes) {
+        double sum = 0;
+        for (int i = 0; i < tilesLength; ++i) {
+            sum += distanceToBox(boxes, i * BOX_SIZE, camera[0], camera[1], camera[2]);
+        }
+        return sum;
+    }
+
+    private void resetUnion() {
+        for (int i = 0; i < 3; ++i) {
+            union[i] = Double.POSITIVE_INFINITY;
+            union[i + 3] = Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    /**
+     * The same math with a new array for each result.
+     */
+    private static final class Allocating {
+
+        private static double[] toDoubles(float[] floats) {
+            double[] doubles = new double[floats.length];
+            BoundingVolumeUtils.copy(floats, doubles, 0);
+            return doubles;
+        }
+
+        private static double[] transformBox(double[] m, double[] box) {
+            double[] out = new double[BOX_SIZE];
+            BoundingVolumeUtils.transformBox(m, 0, box, 0, out, 0);
+            return out;
+        }
+
+        private static double[] boxToBounds(double[] box) {
+            double[] out = new double[BOUNDS_SIZE];
+            BoundingVolumeUtils.boxToBounds(box, 0, out, 0);
+            return out;
+        }
+
+        private static double[] unionBounds(double[] a, double[] b) {
+            double[] out = new double[BOUNDS_SIZE];
+            BoundingVolumeUtils.unionBounds(a, 0, b, 0, out, 0);
+            return out;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package me.cxj.j3dtiles.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import me.cxj.j3dtiles.utils.JacksonJsonParser;
+import me.cxj.j3dtiles.utils.JsonParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The streaming {@link JacksonJsonParser} against a parser binding the json to untyped maps with an {@link ObjectMapper},
+ * on a batch table json.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonParserBenchmark {
+
+    /**
+     * The usual way to implement {@link JsonParser}, through the untyped data binding.
+     */
+    static class ObjectMapperJsonParser implements JsonParser {
+
+        private final ObjectMapper mapper = new ObjectMapper();
+
+        @Override
+        public Object parse(String json) {
+            try {
+                return mapper.readValue(json, Object.class);
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+
+        @Override
+        public Map<String, Object> parseObject(String json) {
+            try {
+                return mapper.readValue(json, new TypeReference<Map<String, Object>>() {});
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+
+        @Override
+        public List<Object> parseArray(String json) {
+            try {
+                return mapper.readValue(json, new TypeReference<List<Object>>() {});
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+
+        @Override
+        public String toJsonString(Object obj) {
+            try {
+                return mapper.writeValueAsString(obj);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+    }
+
+    /**
+     * The batch length of the batch table.
+     */
+    @Param({"16", "1024", "65536"})
+    private int batchLength;
+
+    private final JsonParser streaming = JacksonJsonParser.getInstance();
+    private final JsonParser binding = new ObjectMapperJsonParser();
+    private String json;
+    private Map<String, Object> table;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+        String[] kinds = {"IfcWall", "IfcSlab", "IfcDoor", "IfcWindow", "IfcBeam"};
+        List<Object> names = new ArrayList<>(batchLength);
+        List<Object> kindColumn = new ArrayList<>(batchLength);
+        List<Object> heights = new ArrayList<>(batchLength);
+        List<Object> ids = new ArrayList<>(batchLength);
+        for (int i = 0; i < batchLength; ++i) {
+            names.add("element-" + i);
+            kindColumn.add(kinds[random.nextInt(kinds.length)]);
+            heights.add(random.nextDouble() * 100);
+            ids.add(random.nextInt(1 << 20));
+        }
+        Map<String, Object> binary = new LinkedHashMap<>();
+        binary.put("byteOffset", 0);
+        binary.put("componentType", "FLOAT");
+        binary.put("type", "VEC3");
+        Map<String, Object> tree = new LinkedHashMap<>();
+        tree.put("name", names);
+        tree.put("kind", kindColumn);
+        tree.put("height", heights);
+        tree.put("id", ids);
+        tree.put("center", binary);
+        json = streaming.toJsonString(tree);
+        table = streaming.parseObject(json);
+    }
+
+    @Benchmark
+    public Map<String, Object> parseStreaming() {
+        return streaming.parseObject(json);
+    }
+
+    @Benchmark
+    public Map<String, Object> parseBinding() {
+        return binding.parseObject(json);
+    }
+
+    @Benchmark
+    public String writeStreaming() {
+        return streaming.toJsonString(table);
+    }
+
+    @Benchmark
+    public String writeBinding() {
+        return binding.toJsonString(table);
+    }
+}
@@ -0,0 +1,99 @@
+package me.cxj.j3dtiles.benchmarks;
+
+import me.cxj.j3dtiles.utils.StreamUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The bulk column codecs of {@link StreamUtils} against the element by element loops they replaced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamUtilsBenchmark {
+
+    /**
+     * The number of elements of the column.
+     */
+    @Param({"64", "4096", "262144"})
+    private int length;
+
+    private byte[] bytes;
+    private ByteBuffer direct;
+    private float[] floats;
+    private float[] out;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+        floats = new float[length];
+        for (int i = 0; i < length; ++i) {
+            floats[i] = random.nextFloat() * 1000 - 500;
+        }
+        bytes = new byte[length * 4];
+        StreamUtils.floatArrayCopyToByteArrayLE(bytes, 0, floats);
+        direct = ByteBuffer.allocateDirect(bytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        direct.put(bytes).clear();
+        out = new float[length];
+    }
+
+    @Benchmark
+    public float[] decodeFloatsBulk() {
+        return StreamUtils.bytes2FloatArrayLE(bytes, 0, length);
+    }
+
+    @Benchmark
+    public float[] decodeFloatsScalar() {
+        float[] result = new float[length];
+        for (int i = 0; i < length; ++i) {
+            result[i] = StreamUtils.bytes2FloatLE(bytes, i * 4);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public float[] decodeFloatsFromDirectBuffer() {
+        StreamUtils.buffer2FloatArrayLE(direct, 0, out, 0, length);
+        return out;
+    }
+
+    @Benchmark
+    public int[] decodeUnsignedShortsBulk() {
+        return StreamUtils.bytes2UnsignedShortArrayLE(bytes, 0, length);
+    }
+
+    @Benchmark
+    public int[] decodeUnsignedShortsScalar() {
+        int[] result = new int[length];
+        for (int i = 0; i < length; ++i) {
+            result[i] = StreamUtils.bytes2UnsignedShortLE(bytes, i * 2);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public byte[] encodeFloatsBulk() {
+        StreamUtils.floatArrayCopyToByteArrayLE(bytes, 0, floats);
+        return bytes;
+    }
+
+    @Benchmark
+    public byte[] encodeFloatsScalar() {
+        for (int i = 0; i < length; ++i) {
+            int bits = Float.floatToRawIntBits(floats[i]);
+            int offset = i * 4;
+            bytes[offset] = (byte) bits;
+            bytes[offset + 1] = (byte) (bits >>> 8);
+            bytes[offset + 2] = (byte) (bits >>> 16);
+            bytes[offset + 3] = (byte) (bits >>> 24);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,156 @@
+package me.cxj.j3dtiles.benchmarks;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import me.cxj.j3dtiles.impl.v1.*;
+import me.cxj.j3dtiles.model.v1.TilesetReader;
+import me.cxj.j3dtiles.model.v1.TilesetVisitor;
+import me.cxj.j3dtiles.model.v1.TilesetWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The streaming {@link TilesetReader} and {@link TilesetWriter} against the data binding of an {@link ObjectMapper},
+ * on a tileset.json of an octree. The throughput is the length of the json divided by the time of an operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TilesetBenchmark {
+
+    /**
+     * Counts the visited tiles.
+     */
+    static class CountingVisitor implements TilesetVisitor {
+
+        int count;
+
+        @Override
+        public boolean enterTile(Tile tile, int depth) {
+            ++count;
+            return true;
+        }
+    }
+
+    /**
+     * The number of tiles of the tileset.
+     */
+    @Param({"1000", "100000"})
+    private int tilesLength;
+
+    private final TilesetReader reader = new TilesetReader();
+    private final ObjectMapper mapper = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    private byte[] json;
+    private Tileset tileset;
+    private ByteArrayOutputStream os;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(0);
+        tileset = new Tileset();
+        Asset asset = new Asset();
+        asset.setVersion("1.0");
+        tileset.setAsset(asset);
+        tileset.setGeometricError(500f);
+        tileset.setRoot(createTree(random));
+        os = new ByteArrayOutputStream();
+        try (TilesetWriter writer = new TilesetWriter(os)) {
+            writer.write(tileset);
+        }
+        json = os.toByteArray();
+    }
+
+    /**
+     * An octree filled breadth first, so that all the levels but the last one are complete.
+     */
+    private Tile createTree(Random random) {
+        Tile root = createTile(random, 0, 0);
+        Deque<Tile> parents = new ArrayDeque<>();
+        Deque<Integer> depths = new ArrayDeque<>();
+        parents.add(root);
+        depths.add(0);
+        int count = 1;
+        while (count < tilesLength) {
+            Tile parent = parents.poll();
+            int depth = depths.poll() + 1;
+            for (int i = 0; i < 8 && count < tilesLength; ++i, ++count) {
+                Tile child = createTile(random, depth, count);
+                parent.addChildren(child);
+                parents.add(child);
+                depths.add(depth);
+            }
+        }
+        return root;
+    }
+
+    private static Tile createTile(Random random, int depth, int index) {
+        float size = 1000f / (1 << depth);
+        BoundingVolume boundingVolume = new BoundingVolume();
+        boundingVolume.setBox(new float[] {
+                random.nextFloat() * 1000, random.nextFloat() * 1000, random.nextFloat() * 100,
+                size, 0, 0, 0, size, 0, 0, 0, size / 10});
+        Tile tile = new Tile();
+        tile.setBoundingVolume(boundingVolume);
+        tile.setGeometricError(size / 10);
+        tile.setRefine("REPLACE");
+        TileContent content = new TileContent();
+        content.setUri("tiles/" + depth + "/" + index + ".b3dm");
+        tile.setContent(content);
+        return tile;
+    }
+
+    @Benchmark
+    public Tileset readStreaming() throws IOException {
+        return reader.read(new ByteArrayInputStream(json));
+    }
+
+    @Benchmark
+    public int visitStreaming() throws IOException {
+        CountingVisitor visitor = new CountingVisitor();
+        reader.visit(new ByteArrayInputStream(json), visitor);
+        return visitor.count;
+    }
+
+    @Benchmark
+    public Tileset readBinding() throws IOException {
+        return mapper.readValue(json, Tileset.class);
+    }
+
+    @Benchmark
+    public int writeStreaming() throws IOException {
+        os.reset();
+        try (TilesetWriter writer = new TilesetWriter(os)) {
+            writer.write(tileset);
+        }
+        return os.size();
+    }
+
+    @Benchmark
+    public int writeBinding() throws IOException {
+        os.reset();
+        mapper.writeValue(os, tileset);
+        return os.size();
+    }
+
+    @Benchmark
+    public int copyStreaming() throws IOException {
+        os.reset();
+        try (TilesetWriter writer = new TilesetWriter(os)) {
+            reader.visit(new ByteArrayInputStream(json), writer);
+        }
+        return os.size();
+    }
+}
@@ -45,9 +45,11 @@ import de.javagl.jgltf.model.io.v2.GltfAssetV2;
  * of the given URI, and loaded automatically. The respective data may
  * then be obtained with {@link GltfAsset#getReferenceData(String)}.<br>
  * <br>
- * The {@link #readWithoutReferences(URI)} and 
- * {@link #readWithoutReferences(InputStream)} methods allow reading an
- * asset from a URI or an input stream, <i>without</i> resolving external 
+ * The {@link #readWithoutReferences(URI)}, 
+ * {@link #readWithoutReferences(InputStream)} and
+ * {@link #readWithoutReferences(ByteBuffer)} methods allow reading an
+ * asset from a URI, an input stream or a byte buffer, <i>without</i> 
+ * resolving external 
  * references. This is mainly intended for binary- or embedded glTF assets
  * that do not have external references, or for cases where the external
  * references should be resolved manually.<br>
@@ -155,6 +157,41 @@ public final class GltfAssetReader
         throws IOException
     {
         RawGltfData rawGltfData = RawGltfDataReader.read(inputStream);
+        return readWithoutReferences(rawGltfData);
+    }
+    
+    /**
+     * Read the glTF asset from the given byte buffer, between its current
+     * position and its limit. The data of the buffer will not be copied,
+     * so the binary data of the resulting {@link GltfAsset} will refer to 
+     * the given buffer. This allows reading binary glTF data from a 
+     * memory-mapped file without copying it to the heap. The position 
+     * and limit of the given buffer will not be modified.<br>
+     * <br>
+     * In contrast to the {@link #read(URI)} method, this method will
+     * not resolve any external references.
+     * 
+     * @param byteBuffer The byte buffer
+     * @return The {@link GltfAsset}
+     * @throws IOException If an IO error occurred
+     */
+    public GltfAsset readWithoutReferences(ByteBuffer byteBuffer) 
+        throws IOException
+    {
+        RawGltfData rawGltfData = RawGltfDataReader.read(byteBuffer);
+        return readWithoutReferences(rawGltfData);
+    }
+    
+    /**
+     * Read the glTF asset from the given {@link RawGltfData}
+     * 
+     * @param rawGltfData The {@link RawGltfData}
+     * @return The {@link GltfAsset}
+     * @throws IOException If an IO error occurred
+     */
+    private GltfAsset readWithoutReferences(RawGltfData rawGltfData) 
+        throws IOException
+    {
         ByteBuffer jsonData = rawGltfData.getJsonData();
         try (InputStream jsonInputStream =
             Buffers.createByteBufferInputStream(jsonData))
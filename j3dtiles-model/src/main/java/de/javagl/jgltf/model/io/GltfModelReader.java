@@ -29,6 +29,7 @@ package de.javagl.jgltf.model.io;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.util.function.Consumer;
 
 import de.javagl.jgltf.model.GltfModel;
@@ -126,6 +127,30 @@ public final class GltfModelReader
         return createModel(gltfAsset);
     }
     
+    /**
+     * Read the {@link GltfModel} from the given byte buffer, between its
+     * current position and its limit. The data will not be copied, so 
+     * the buffers of the resulting model will refer to the given buffer.
+     * This method will not resolve any references that are contained in
+     * the {@link GltfAsset}.<br>
+     * <br>
+     * This is mainly intended for binary glTF assets that are embedded 
+     * in a memory-mapped file.
+     * 
+     * @param byteBuffer The byte buffer to read from
+     * @return The {@link GltfModel}
+     * @throws IOException If an IO error occurs
+     */
+    public GltfModel readWithoutReferences(ByteBuffer byteBuffer) 
+        throws IOException
+    {
+        GltfAssetReader gltfAssetReader = new GltfAssetReader();
+        gltfAssetReader.setJsonErrorConsumer(jsonErrorConsumer);
+        GltfAsset gltfAsset = 
+            gltfAssetReader.readWithoutReferences(byteBuffer);
+        return createModel(gltfAsset);
+    }
+    
     /**
      * Creates a {@link GltfModel} instance from the given {@link GltfAsset}
      * 
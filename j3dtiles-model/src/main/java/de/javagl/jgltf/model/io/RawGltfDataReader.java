@@ -102,6 +102,43 @@ class RawGltfDataReader
         return new RawGltfData(jsonData, null);
     }
     
+    /**
+     * Read the raw glTF data from the given byte buffer, between its
+     * current position and its limit. In contrast to 
+     * {@link #read(InputStream)}, the data will not be copied: The 
+     * JSON data and the binary data of the returned {@link RawGltfData}
+     * will be slices of the given buffer. The position and limit of 
+     * the given buffer will not be modified.
+     * 
+     * @param byteBuffer The byte buffer
+     * @return The {@link RawGltfData}
+     * @throws IOException If an IO error occurs
+     */
+    public static RawGltfData read(ByteBuffer byteBuffer) throws IOException
+    {
+        ByteBuffer data = 
+            Buffers.createSlice(byteBuffer).order(ByteOrder.LITTLE_ENDIAN);
+        if (data.capacity() >= 8)
+        {
+            int magic = data.getInt(0);
+            if (magic == MAGIC_BINARY_GLTF_HEADER)
+            {
+                int version = data.getInt(4);
+                if (version == BINARY_GLTF_VERSION_1)
+                {
+                    return RawBinaryGltfDataReaderV1.readBinaryGltf(data);
+                }
+                if (version == BINARY_GLTF_VERSION_2)
+                {
+                    return RawBinaryGltfDataReaderV2.readBinaryGltf(data);
+                }
+                throw new IOException(
+                    "Unknown binary glTF version: " + version);
+            }
+        }
+        return new RawGltfData(data, null);
+    }
+    
     /**
      * Private constructor to prevent instantiation
      */
@@ -28,6 +28,7 @@ package de.javagl.jgltf.model.io.v2;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -40,6 +41,7 @@ import de.javagl.jgltf.impl.v2.BufferView;
 import de.javagl.jgltf.impl.v2.GlTF;
 import de.javagl.jgltf.impl.v2.Image;
 import de.javagl.jgltf.model.BufferModel;
+import de.javagl.jgltf.model.BufferViewModel;
 import de.javagl.jgltf.model.GltfModel;
 import de.javagl.jgltf.model.ImageModel;
 import de.javagl.jgltf.model.Optionals;
@@ -51,6 +53,11 @@ import de.javagl.jgltf.model.v2.GltfModelV2;
  * A class for creating a binary {@link GltfAssetV2} from a 
  * {@link GltfModelV2}.<br>
  * <br>
+ * When a {@link MeshoptCompression} is given, the selected buffer views 
+ * are written with the <code>EXT_meshopt_compression</code> extension:
+ * The binary glTF buffer contains their encoded data, and they refer 
+ * to a second buffer without data, which is the fallback buffer of the
+ * extension.
  */
 final class BinaryAssetCreatorV2
 {
@@ -60,12 +67,28 @@ final class BinaryAssetCreatorV2
     private static final Logger logger =
         Logger.getLogger(BinaryAssetCreatorV2.class.getName());
     
+    /**
+     * The compression of the buffer views, or <code>null</code>
+     */
+    private final MeshoptCompression compression;
+    
     /**
      * Creates a new asset creator
      */
     BinaryAssetCreatorV2()
     {
-        // Default constructor
+        this(null);
+    }
+    
+    /**
+     * Creates a new asset creator
+     * 
+     * @param compression The {@link MeshoptCompression}. May be 
+     * <code>null</code>, then no buffer view is compressed.
+     */
+    BinaryAssetCreatorV2(MeshoptCompression compression)
+    {
+        this.compression = compression;
     }
     
     /**
@@ -79,16 +102,47 @@ final class BinaryAssetCreatorV2
      */
     GltfAssetV2 create(GltfModelV2 gltfModel)
     {
-        GlTF inputGltf = gltfModel.getGltf();
-        GlTF outputGltf = GltfUtilsV2.copy(inputGltf);
+        GlTF outputGltf = createBinaryGltf(gltfModel);
         
         // Create the new byte buffer for the data of the "binary_glTF" Buffer
-        int binaryGltfBufferSize = 
-            computeBinaryGltfBufferSize(gltfModel);
+        // and place the data from buffers and images into it
+        List<ByteBuffer> binaryDatas = createBinaryDatas(gltfModel);
+        int binaryGltfBufferSize = computeSize(binaryDatas);
         ByteBuffer binaryGltfByteBuffer = 
             Buffers.create(binaryGltfBufferSize);
-
+        for (ByteBuffer binaryData : binaryDatas)
+        {
+            binaryGltfByteBuffer.put(binaryData.slice());
+        }
+        binaryGltfByteBuffer.position(0);
+        return new GltfAssetV2(outputGltf, binaryGltfByteBuffer);
+    }
+    
+    /**
+     * Create the {@link GlTF} of a binary {@link GltfAssetV2} for the given
+     * {@link GltfModelV2}, without creating the binary data itself. The
+     * buffer views of the returned {@link GlTF} refer to the single 
+     * "binary_glTF" buffer, which is the concatenation of the 
+     * {@link #createBinaryDatas(GltfModelV2) binary datas} of the model,
+     * or to the fallback buffer of the compressed buffer views.
+     * 
+     * @param gltfModel The {@link GltfModelV2}
+     * @return The {@link GlTF}
+     */
+    GlTF createBinaryGltf(GltfModelV2 gltfModel)
+    {
+        Map<BufferViewModel, MeshoptCompression.Encoded> encodedDatas = 
+            encode(gltfModel);
+        if (!encodedDatas.isEmpty())
+        {
+            return createCompressedBinaryGltf(gltfModel, encodedDatas);
+        }
+        GlTF inputGltf = gltfModel.getGltf();
+        GlTF outputGltf = GltfUtilsV2.copy(inputGltf);
+        
         // Create the binary Buffer, 
+        int binaryGltfBufferSize = 
+            computeBinaryGltfBufferSize(gltfModel);
         Buffer binaryGltfBuffer = new Buffer();
         binaryGltfBuffer.setByteLength(binaryGltfBufferSize);
         outputGltf.setBuffers(Collections.singletonList(binaryGltfBuffer));
@@ -96,22 +150,21 @@ final class BinaryAssetCreatorV2
         // Create a defensive copy of the original image list
         List<Image> oldImages = copy(outputGltf.getImages());
 
-        // Place the data from buffers and images into the new binary glTF 
-        // buffer. The mappings from IDs to offsets inside the resulting 
-        // buffer will be used to compute the offsets for the buffer views
+        // The data from buffers and images will be placed into the new 
+        // binary glTF buffer. The mappings from IDs to offsets inside the 
+        // resulting buffer will be used to compute the offsets for the 
+        // buffer views
         List<ByteBuffer> bufferDatas = 
             gltfModel.getBufferModels().stream()
             .map(BufferModel::getBufferData)
             .collect(Collectors.toList());
-        Map<Integer, Integer> bufferOffsets = concatBuffers(
-            bufferDatas, binaryGltfByteBuffer);
+        Map<Integer, Integer> bufferOffsets = computeOffsets(bufferDatas, 0);
         List<ByteBuffer> imageDatas = 
             gltfModel.getImageModels().stream()
             .map(ImageModel::getImageData)
             .collect(Collectors.toList());
-        Map<Integer, Integer> imageOffsets = concatBuffers(
-            imageDatas, binaryGltfByteBuffer);
-        binaryGltfByteBuffer.position(0);
+        Map<Integer, Integer> imageOffsets = computeOffsets(
+            imageDatas, computeSize(bufferDatas));
 
         // For all existing BufferViews, create new ones that are updated to 
         // refer to the new binary glTF buffer, with the appropriate offset
@@ -123,6 +176,7 @@ final class BinaryAssetCreatorV2
         {
             BufferView oldBufferView = oldBufferViews.get(i);
             BufferView newBufferView = GltfUtilsV2.copy(oldBufferView);
+            removeMeshoptCompression(newBufferView);
 
             newBufferView.setBuffer(0);
             Integer oldBufferIndex = oldBufferView.getBuffer();
@@ -183,7 +237,306 @@ final class BinaryAssetCreatorV2
         {
             outputGltf.setBufferViews(newBufferViews);
         }
-        return new GltfAssetV2(outputGltf, binaryGltfByteBuffer);
+        
+        // The data of compressed buffer views has been decoded when
+        // the model was read, and is written uncompressed
+        removeExtension(outputGltf, MeshoptCodec.EXTENSION_NAME);
+        return outputGltf;
+    }
+    
+    /**
+     * Create the {@link GlTF} of a binary {@link GltfAssetV2} for the given
+     * {@link GltfModelV2}, where the given buffer views are compressed.
+     * The data of all buffer views is placed into the binary glTF buffer,
+     * aligned to 4 bytes, followed by the data of the images. For the
+     * compressed buffer views, this is the encoded data, and the buffer 
+     * views refer to the fallback buffer.
+     * 
+     * @param gltfModel The {@link GltfModelV2}
+     * @param encodedDatas The encoded data of the compressed buffer views
+     * @return The {@link GlTF}
+     */
+    private static GlTF createCompressedBinaryGltf(GltfModelV2 gltfModel, 
+        Map<BufferViewModel, MeshoptCompression.Encoded> encodedDatas)
+    {
+        GlTF inputGltf = gltfModel.getGltf();
+        GlTF outputGltf = GltfUtilsV2.copy(inputGltf);
+        
+        int offsets[] = computeCompressedOffsets(gltfModel, encodedDatas);
+        Buffer binaryGltfBuffer = new Buffer();
+        binaryGltfBuffer.setByteLength(offsets[offsets.length - 1]);
+        
+        List<Image> oldImages = copy(outputGltf.getImages());
+        List<BufferView> oldBufferViews = 
+            copy(outputGltf.getBufferViews());
+        List<BufferViewModel> bufferViewModels = 
+            gltfModel.getBufferViewModels();
+        List<BufferView> newBufferViews = 
+            new ArrayList<BufferView>();
+        int fallbackByteLength = 0;
+        for (int i = 0; i < oldBufferViews.size(); i++)
+        {
+            BufferView oldBufferView = oldBufferViews.get(i);
+            BufferView newBufferView = GltfUtilsV2.copy(oldBufferView);
+            removeMeshoptCompression(newBufferView);
+            
+            BufferViewModel bufferViewModel = bufferViewModels.get(i);
+            MeshoptCompression.Encoded encoded = 
+                encodedDatas.get(bufferViewModel);
+            if (encoded == null)
+            {
+                newBufferView.setBuffer(0);
+                newBufferView.setByteOffset(offsets[i]);
+            }
+            else
+            {
+                int byteLength = bufferViewModel.getByteLength();
+                fallbackByteLength = align(fallbackByteLength);
+                newBufferView.setBuffer(1);
+                newBufferView.setByteOffset(fallbackByteLength);
+                fallbackByteLength += byteLength;
+                
+                Map<String, Object> extension = 
+                    new LinkedHashMap<String, Object>();
+                extension.put("buffer", 0);
+                extension.put("byteOffset", offsets[i]);
+                extension.put("byteLength", encoded.data.length);
+                extension.put("byteStride", encoded.byteStride);
+                extension.put("count", byteLength / encoded.byteStride);
+                extension.put("mode", encoded.mode.name());
+                newBufferView.addExtensions(
+                    MeshoptCodec.EXTENSION_NAME, extension);
+            }
+            newBufferViews.add(newBufferView);
+        }
+        
+        List<Image> newImages = new ArrayList<Image>();
+        for (int i = 0; i < oldImages.size(); i++)
+        {
+            Image oldImage = oldImages.get(i);
+            Image newImage = GltfUtilsV2.copy(oldImage);
+
+            ImageModel imageModel = gltfModel.getImageModels().get(i);
+            ByteBuffer imageData = imageModel.getImageData();
+            BufferView imageBufferView = new BufferView();
+            imageBufferView.setBuffer(0);
+            imageBufferView.setByteOffset(offsets[oldBufferViews.size() + i]);
+            imageBufferView.setByteLength(imageData.capacity());
+
+            newImage.setBufferView(newBufferViews.size());
+            newImage.setUri(null);
+            
+            String imageMimeTypeString =
+                MimeTypes.guessImageMimeTypeString(
+                    oldImage.getUri(), imageData);
+            if (imageMimeTypeString == null)
+            {
+                logger.warning("Could not detect MIME type of image");
+            }
+            else
+            {
+                newImage.setMimeType(imageMimeTypeString);
+            }
+            
+            newBufferViews.add(imageBufferView);
+            newImages.add(newImage);
+        }
+        
+        // The fallback buffer has no data, so the extension is required
+        Buffer fallbackBuffer = new Buffer();
+        fallbackBuffer.setByteLength(fallbackByteLength);
+        fallbackBuffer.addExtensions(MeshoptCodec.EXTENSION_NAME, 
+            Collections.singletonMap("fallback", true));
+        outputGltf.setBuffers(Arrays.asList(binaryGltfBuffer, fallbackBuffer));
+        if (inputGltf.getImages() != null)
+        {
+            outputGltf.setImages(newImages);
+        }
+        outputGltf.setBufferViews(newBufferViews);
+        removeExtension(outputGltf, MeshoptCodec.EXTENSION_NAME);
+        outputGltf.addExtensionsUsed(MeshoptCodec.EXTENSION_NAME);
+        outputGltf.addExtensionsRequired(MeshoptCodec.EXTENSION_NAME);
+        return outputGltf;
+    }
+    
+    /**
+     * Encode the buffer views of the given model that are selected by
+     * the compression. Buffer views whose encoded data is not smaller 
+     * than their data are omitted.
+     * 
+     * @param gltfModel The {@link GltfModelV2}
+     * @return The encoded data of the buffer views that are compressed
+     */
+    private Map<BufferViewModel, MeshoptCompression.Encoded> encode(
+        GltfModelV2 gltfModel)
+    {
+        if (compression == null)
+        {
+            return Collections.emptyMap();
+        }
+        Map<BufferViewModel, MeshoptCompression.Encoded> encodedDatas = 
+            compression.encode(gltfModel.getBufferViewModels());
+        encodedDatas.entrySet().removeIf(entry -> 
+            entry.getValue().data.length >= entry.getKey().getByteLength());
+        return encodedDatas;
+    }
+    
+    /**
+     * Compute the offsets of the buffer view data and the image data 
+     * of the given model in the binary glTF buffer, when the given
+     * buffer views are compressed. The last element of the returned
+     * array is the size of the binary glTF buffer.
+     * 
+     * @param gltfModel The {@link GltfModelV2}
+     * @param encodedDatas The encoded data of the compressed buffer views
+     * @return The offsets
+     */
+    private static int[] computeCompressedOffsets(GltfModelV2 gltfModel, 
+        Map<BufferViewModel, MeshoptCompression.Encoded> encodedDatas)
+    {
+        List<BufferViewModel> bufferViewModels = 
+            gltfModel.getBufferViewModels();
+        List<ImageModel> imageModels = gltfModel.getImageModels();
+        int offsets[] = 
+            new int[bufferViewModels.size() + imageModels.size() + 1];
+        int offset = 0;
+        for (int i = 0; i < bufferViewModels.size(); i++)
+        {
+            BufferViewModel bufferViewModel = bufferViewModels.get(i);
+            MeshoptCompression.Encoded encoded = 
+                encodedDatas.get(bufferViewModel);
+            offset = align(offset);
+            offsets[i] = offset;
+            offset += encoded != null ? 
+                encoded.data.length : bufferViewModel.getByteLength();
+        }
+        for (int i = 0; i < imageModels.size(); i++)
+        {
+            offset = align(offset);
+            offsets[bufferViewModels.size() + i] = offset;
+            offset += imageModels.get(i).getImageData().capacity();
+        }
+        offsets[offsets.length - 1] = offset;
+        return offsets;
+    }
+    
+    /**
+     * Align the given offset to 4 bytes
+     * 
+     * @param offset The offset
+     * @return The aligned offset
+     */
+    private static int align(int offset)
+    {
+        return (offset + 3) & ~3;
+    }
+    
+    /**
+     * Remove the <code>EXT_meshopt_compression</code> extension object
+     * from the given buffer view, if it is present
+     * 
+     * @param bufferView The {@link BufferView}
+     */
+    private static void removeMeshoptCompression(BufferView bufferView)
+    {
+        Map<String, Object> extensions = bufferView.getExtensions();
+        if (extensions != null 
+            && extensions.containsKey(MeshoptCodec.EXTENSION_NAME))
+        {
+            bufferView.removeExtensions(MeshoptCodec.EXTENSION_NAME);
+        }
+    }
+    
+    /**
+     * Remove the given extension from the used and required extensions
+     * of the given glTF, if it is present
+     * 
+     * @param gltf The {@link GlTF}
+     * @param extensionName The extension name
+     */
+    private static void removeExtension(GlTF gltf, String extensionName)
+    {
+        List<String> extensionsUsed = gltf.getExtensionsUsed();
+        if (extensionsUsed != null && extensionsUsed.contains(extensionName))
+        {
+            gltf.removeExtensionsUsed(extensionName);
+        }
+        List<String> extensionsRequired = gltf.getExtensionsRequired();
+        if (extensionsRequired != null 
+            && extensionsRequired.contains(extensionName))
+        {
+            gltf.removeExtensionsRequired(extensionName);
+        }
+    }
+    
+    /**
+     * Returns the data that make up the binary glTF buffer of the given
+     * model, in the order in which they are placed into it. These are 
+     * the {@link #getBinaryDatas(GltfModelV2) binary datas} of the model,
+     * or, when buffer views are compressed, the data of all buffer views
+     * and images, with the padding between them.
+     * 
+     * @param gltfModel The {@link GltfModelV2}
+     * @return The binary datas
+     */
+    List<ByteBuffer> createBinaryDatas(GltfModelV2 gltfModel)
+    {
+        Map<BufferViewModel, MeshoptCompression.Encoded> encodedDatas = 
+            encode(gltfModel);
+        if (encodedDatas.isEmpty())
+        {
+            return getBinaryDatas(gltfModel);
+        }
+        int offsets[] = computeCompressedOffsets(gltfModel, encodedDatas);
+        List<ByteBuffer> datas = new ArrayList<ByteBuffer>();
+        for (BufferViewModel bufferViewModel : 
+            gltfModel.getBufferViewModels())
+        {
+            MeshoptCompression.Encoded encoded = 
+                encodedDatas.get(bufferViewModel);
+            datas.add(encoded != null ? 
+                ByteBuffer.wrap(encoded.data) : 
+                bufferViewModel.getBufferViewData());
+        }
+        for (ImageModel imageModel : gltfModel.getImageModels())
+        {
+            datas.add(imageModel.getImageData());
+        }
+        List<ByteBuffer> binaryDatas = new ArrayList<ByteBuffer>();
+        int offset = 0;
+        for (int i = 0; i < datas.size(); i++)
+        {
+            int padding = offsets[i] - offset;
+            if (padding > 0)
+            {
+                binaryDatas.add(ByteBuffer.allocate(padding));
+            }
+            binaryDatas.add(datas.get(i));
+            offset = offsets[i] + datas.get(i).capacity();
+        }
+        return binaryDatas;
+    }
+    
+    /**
+     * Returns the data of all buffers, followed by the data of all images
+     * of the given model. This is the order in which they are placed 
+     * into the "binary_glTF" buffer.
+     * 
+     * @param gltfModel The {@link GltfModelV2}
+     * @return The binary datas
+     */
+    static List<ByteBuffer> getBinaryDatas(GltfModelV2 gltfModel)
+    {
+        List<ByteBuffer> binaryDatas = new ArrayList<ByteBuffer>();
+        for (BufferModel bufferModel : gltfModel.getBufferModels())
+        {
+            binaryDatas.add(bufferModel.getBufferData());
+        }
+        for (ImageModel imageModel : gltfModel.getImageModels())
+        {
+            binaryDatas.add(imageModel.getImageData());
+        }
+        return binaryDatas;
     }
 
 
@@ -212,27 +565,42 @@ final class BinaryAssetCreatorV2
     }
 
     /**
-     * Put the contents of all byte buffers of the given list into the given 
-     * target buffer. This method assumes that the target buffer has a 
-     * sufficient capacity to hold all buffers.
+     * Compute the offsets that the given buffers will have when they are
+     * placed one after another into a target buffer, starting at the 
+     * given offset.
      * 
      * @param buffers The buffers
-     * @param targetBuffer The target buffer
+     * @param startOffset The offset of the first buffer
      * @return A mapping from each key to the offset inside the target buffer
      */
-    private static Map<Integer, Integer> concatBuffers(
-        List<? extends ByteBuffer> buffers, ByteBuffer targetBuffer)
+    private static Map<Integer, Integer> computeOffsets(
+        List<? extends ByteBuffer> buffers, int startOffset)
     {
         Map<Integer, Integer> offsets = new LinkedHashMap<Integer, Integer>();
+        int offset = startOffset;
         for (int i = 0; i < buffers.size(); i++)
         {
-            ByteBuffer oldByteBuffer = buffers.get(i);
-            int offset = targetBuffer.position();
             offsets.put(i, offset);
-            targetBuffer.put(oldByteBuffer.slice());
+            offset += buffers.get(i).capacity();
         }
         return offsets;
     }
+    
+    /**
+     * Compute the total size of the given buffers
+     * 
+     * @param buffers The buffers
+     * @return The size
+     */
+    private static int computeSize(List<? extends ByteBuffer> buffers)
+    {
+        int size = 0;
+        for (ByteBuffer buffer : buffers)
+        {
+            size += buffer.capacity();
+        }
+        return size;
+    }
 
 
     /**
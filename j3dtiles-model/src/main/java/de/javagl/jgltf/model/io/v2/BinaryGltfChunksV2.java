@@ -0,0 +1,240 @@
+/*
+ * www.javagl.de - JglTF
+ *
+ * Copyright 2015-2016 Marco Hutter - http://www.javagl.de
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.jgltf.model.io.v2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.javagl.jgltf.impl.v2.GlTF;
+import de.javagl.jgltf.model.io.GltfWriter;
+import de.javagl.jgltf.model.v2.GltfModelV2;
+
+/**
+ * The chunks of a binary glTF 2.0 asset, prepared so that they can be 
+ * written with a single gathering write.<br>
+ * <br>
+ * In contrast to {@link GltfModelWriterV2#writeBinary}, the buffer and
+ * image data of the model are not concatenated into a new buffer. Only 
+ * the header and the JSON chunk are created, and the data of the model 
+ * is referred to by slices. The resulting bytes are the same as the ones
+ * that are written by {@link GltfModelWriterV2#writeBinary}, except for
+ * the optional padding of the JSON chunk that may be used to align the 
+ * total length of the asset.
+ */
+public final class BinaryGltfChunksV2
+{
+    /**
+     * The magic binary glTF header.
+     * This is an integer corresponding to the ASCII string <code>"glTF"</code>
+     */
+    private static final int MAGIC_BINARY_GLTF_HEADER = 0x46546C67;
+    
+    /**
+     * The binary glTF version that is written by this class
+     */
+    private static final int BINARY_GLTF_VERSION = 2;
+
+    /**
+     * The chunk type constant for JSON chunks
+     */
+    private static final int CHUNK_TYPE_JSON = 0x4E4F534A;
+    
+    /**
+     * The chunk type constant for BIN chunks
+     */
+    private static final int CHUNK_TYPE_BIN = 0x004E4942;
+    
+    /**
+     * The buffers that make up the asset, in the order in which they
+     * have to be written
+     */
+    private final List<ByteBuffer> buffers;
+    
+    /**
+     * The total length of the asset
+     */
+    private final int byteLength;
+    
+    /**
+     * Creates a new instance
+     * 
+     * @param buffers The buffers
+     * @param byteLength The total length
+     */
+    private BinaryGltfChunksV2(List<ByteBuffer> buffers, int byteLength)
+    {
+        this.buffers = buffers;
+        this.byteLength = byteLength;
+    }
+    
+    /**
+     * Create the chunks of the binary glTF asset for the given model. 
+     * The JSON chunk will be padded with spaces so that the total length
+     * of the asset is a multiple of the given alignment.
+     * 
+     * @param gltfModel The {@link GltfModelV2}
+     * @param alignment The alignment of the total length. This must be
+     * a positive multiple of 4.
+     * @return The {@link BinaryGltfChunksV2}
+     * @throws IOException If the JSON data can not be created
+     * @throws IllegalArgumentException If the alignment is not a positive
+     * multiple of 4
+     */
+    public static BinaryGltfChunksV2 create(
+        GltfModelV2 gltfModel, int alignment) throws IOException
+    {
+        return create(gltfModel, alignment, null);
+    }
+    
+    /**
+     * Create the chunks of the binary glTF asset for the given model, 
+     * where the buffer views that are selected by the given 
+     * {@link MeshoptCompression} are compressed. The JSON chunk will be 
+     * padded with spaces so that the total length of the asset is a 
+     * multiple of the given alignment.
+     * 
+     * @param gltfModel The {@link GltfModelV2}
+     * @param alignment The alignment of the total length. This must be
+     * a positive multiple of 4.
+     * @param compression The {@link MeshoptCompression}. May be 
+     * <code>null</code>.
+     * @return The {@link BinaryGltfChunksV2}
+     * @throws IOException If the JSON data can not be created
+     * @throws IllegalArgumentException If the alignment is not a positive
+     * multiple of 4
+     */
+    public static BinaryGltfChunksV2 create(GltfModelV2 gltfModel, 
+        int alignment, MeshoptCompression compression) throws IOException
+    {
+        if (alignment <= 0 || alignment % 4 != 0)
+        {
+            throw new IllegalArgumentException(
+                "The alignment must be a positive multiple of 4, but is " 
+                + alignment);
+        }
+        BinaryAssetCreatorV2 assetCreator = 
+            new BinaryAssetCreatorV2(compression);
+        GlTF gltf = assetCreator.createBinaryGltf(gltfModel);
+        byte jsonData[];
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream())
+        {
+            GltfWriter gltfWriter = new GltfWriter();
+            gltfWriter.write(gltf, baos);
+            jsonData = baos.toByteArray();
+        }
+        List<ByteBuffer> binaryDatas = 
+            assetCreator.createBinaryDatas(gltfModel);
+        int binaryLength = 0;
+        for (ByteBuffer binaryData : binaryDatas)
+        {
+            binaryLength += binaryData.capacity();
+        }
+        int binaryPadding = computePadding(binaryLength, 4);
+        int jsonPadding = computePadding(jsonData.length, 4);
+        int length = 12 + 8 + jsonData.length + jsonPadding 
+            + 8 + binaryLength + binaryPadding;
+        int alignmentPadding = computePadding(length, alignment);
+        jsonPadding += alignmentPadding;
+        length += alignmentPadding;
+        
+        // The header, the JSON chunk and the header of the BIN chunk
+        ByteBuffer head = ByteBuffer.allocate(
+            12 + 8 + jsonData.length + jsonPadding + 8);
+        head.order(ByteOrder.LITTLE_ENDIAN);
+        head.putInt(MAGIC_BINARY_GLTF_HEADER);
+        head.putInt(BINARY_GLTF_VERSION);
+        head.putInt(length);
+        head.putInt(jsonData.length + jsonPadding);
+        head.putInt(CHUNK_TYPE_JSON);
+        head.put(jsonData);
+        for (int i = 0; i < jsonPadding; i++)
+        {
+            head.put((byte)' ');
+        }
+        head.putInt(binaryLength + binaryPadding);
+        head.putInt(CHUNK_TYPE_BIN);
+        head.flip();
+        
+        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+        buffers.add(head);
+        for (ByteBuffer binaryData : binaryDatas)
+        {
+            buffers.add(binaryData.slice());
+        }
+        if (binaryPadding > 0)
+        {
+            buffers.add(ByteBuffer.allocate(binaryPadding));
+        }
+        return new BinaryGltfChunksV2(buffers, length);
+    }
+    
+    /**
+     * Compute the number of bytes that have to be added to the given
+     * length to make it a multiple of the given alignment
+     * 
+     * @param length The length
+     * @param alignment The alignment
+     * @return The padding
+     */
+    private static int computePadding(int length, int alignment)
+    {
+        int remainder = length % alignment;
+        return remainder == 0 ? 0 : alignment - remainder;
+    }
+    
+    /**
+     * Returns the total length of the binary glTF asset, in bytes
+     * 
+     * @return The length
+     */
+    public int getByteLength()
+    {
+        return byteLength;
+    }
+    
+    /**
+     * Returns the buffers that make up the binary glTF asset, in the order
+     * in which they have to be written. The returned buffers are new 
+     * views on the data, so that this method may be called multiple times 
+     * to write the same asset more than once.
+     * 
+     * @return The buffers
+     */
+    public ByteBuffer[] getBuffers()
+    {
+        ByteBuffer result[] = new ByteBuffer[buffers.size()];
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = buffers.get(i).duplicate();
+        }
+        return result;
+    }
+}
@@ -84,7 +84,28 @@ public final class GltfModelWriterV2
     public void writeBinary(GltfModelV2 gltfModel, OutputStream outputStream) 
         throws IOException
     {
-        BinaryAssetCreatorV2 assetCreator = new BinaryAssetCreatorV2();
+        writeBinary(gltfModel, null, outputStream);
+    }
+    
+    /**
+     * Write the given {@link GltfModelV2} as a binary glTF asset to the
+     * given output stream, where the buffer views that are selected by 
+     * the given {@link MeshoptCompression} are compressed with the
+     * <code>EXT_meshopt_compression</code> extension. The caller is 
+     * responsible for closing the given stream.
+     * 
+     * @param gltfModel The {@link GltfModelV2}
+     * @param compression The {@link MeshoptCompression}. May be 
+     * <code>null</code>.
+     * @param outputStream The output stream
+     * @throws IOException If an IO error occurs
+     */
+    public void writeBinary(GltfModelV2 gltfModel, 
+        MeshoptCompression compression, OutputStream outputStream) 
+        throws IOException
+    {
+        BinaryAssetCreatorV2 assetCreator = 
+            new BinaryAssetCreatorV2(compression);
         GltfAssetV2 gltfAsset = assetCreator.create(gltfModel);
         GltfAssetWriterV2 gltfAssetWriter = new GltfAssetWriterV2();
         gltfAssetWriter.writeBinary(gltfAsset, outputStream);
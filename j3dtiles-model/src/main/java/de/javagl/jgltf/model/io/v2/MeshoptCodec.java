@@ -0,0 +1,1702 @@
+/*
+ * www.javagl.de - JglTF
+ *
+ * Copyright 2015-2016 Marco Hutter - http://www.javagl.de
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.jgltf.model.io.v2;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * The codecs of the <code>EXT_meshopt_compression</code> extension.<br>
+ * <br>
+ * The buffer view data is encoded with the bitstream version 0 of the
+ * attribute codec, and the version 1 of the triangle and index codecs, 
+ * which are the versions that are required by the extension. All 
+ * versions and filters that are defined by the extension can be decoded.
+ * The filters are only applied when decoding: The encoder always uses 
+ * the <code>NONE</code> filter, so that the encoding is lossless.
+ */
+public final class MeshoptCodec
+{
+    /**
+     * The name of the extension
+     */
+    public static final String EXTENSION_NAME = "EXT_meshopt_compression";
+    
+    /**
+     * The compression modes of a buffer view
+     */
+    public enum Mode
+    {
+        /**
+         * Vertex attributes, with a stride that is a multiple of 4
+         */
+        ATTRIBUTES,
+        
+        /**
+         * Triangle list indices, with 2 or 4 bytes per index
+         */
+        TRIANGLES,
+        
+        /**
+         * Any other index sequence, with 2 or 4 bytes per index
+         */
+        INDICES
+    }
+    
+    /**
+     * The filters that may be applied to attributes after decoding
+     */
+    public enum Filter
+    {
+        /**
+         * No filter
+         */
+        NONE,
+        
+        /**
+         * Octahedral encoding of unit vectors
+         */
+        OCTAHEDRAL,
+        
+        /**
+         * Encoding of unit quaternions with 3 components
+         */
+        QUATERNION,
+        
+        /**
+         * Floating point values with a shared exponent
+         */
+        EXPONENTIAL
+    }
+    
+    /**
+     * The header byte of an attribute stream, without the version
+     */
+    private static final int VERTEX_HEADER = 0xA0;
+    
+    /**
+     * The header byte of a triangle stream, without the version
+     */
+    private static final int INDEX_HEADER = 0xE0;
+    
+    /**
+     * The header byte of an index sequence stream, without the version
+     */
+    private static final int SEQUENCE_HEADER = 0xD0;
+    
+    /**
+     * The number of bytes that are encoded together in an attribute stream
+     */
+    private static final int BYTE_GROUP_SIZE = 16;
+    
+    /**
+     * The number of bytes that a group may read at most, including the 
+     * variable length part
+     */
+    private static final int BYTE_GROUP_DECODE_LIMIT = 24;
+    
+    /**
+     * The maximum number of bytes of an attribute block
+     */
+    private static final int VERTEX_BLOCK_SIZE_BYTES = 8192;
+    
+    /**
+     * The maximum number of elements of an attribute block
+     */
+    private static final int VERTEX_BLOCK_MAX_SIZE = 256;
+    
+    /**
+     * The minimum size of the tail of an attribute stream
+     */
+    private static final int TAIL_MIN_SIZE = 32;
+    
+    /**
+     * The table of the auxiliary triangle codes that is written into 
+     * every triangle stream. It is the table of the reference encoder, 
+     * which has been derived from the code frequencies of typical meshes.
+     */
+    private static final int CODE_AUX_TABLE[] = 
+    {
+        0x00, 0x76, 0x87, 0x56, 0x67, 0x78, 0xa9, 0x86, 
+        0x65, 0x89, 0x68, 0x98, 0x01, 0x69, 0x00, 0x00
+    };
+    
+    /**
+     * The orders of the vertices of a rotated triangle
+     */
+    private static final int TRIANGLE_INDEX_ORDER[][] = 
+    {
+        { 0, 1, 2 },
+        { 1, 2, 0 },
+        { 2, 0, 1 }
+    };
+    
+    /**
+     * Encode the given buffer view data with the given mode.
+     * 
+     * @param data The data. The range from its position to its limit is 
+     * encoded. It must contain <code>count * byteStride</code> bytes. 
+     * Index data is read in little endian order.
+     * @param count The number of elements
+     * @param byteStride The size of one element. For the index modes, 
+     * this is the size of an index.
+     * @param mode The {@link Mode}
+     * @return The encoded data
+     * @throws IllegalArgumentException If the arguments are not valid
+     * for the mode
+     */
+    public static byte[] encode(
+        ByteBuffer data, int count, int byteStride, Mode mode)
+    {
+        validate(count, byteStride, mode);
+        if (data.remaining() != count * byteStride)
+        {
+            throw new IllegalArgumentException(
+                "Expected " + count * byteStride + " bytes, but found " 
+                + data.remaining());
+        }
+        switch (mode)
+        {
+            case ATTRIBUTES:
+            {
+                byte bytes[] = new byte[data.remaining()];
+                data.duplicate().get(bytes);
+                return encodeVertexBuffer(bytes, count, byteStride);
+            }
+            case TRIANGLES:
+                return encodeIndexBuffer(
+                    readIndices(data, count, byteStride));
+            case INDICES:
+                return encodeIndexSequence(
+                    readIndices(data, count, byteStride));
+            default:
+                throw new IllegalArgumentException("Invalid mode: " + mode);
+        }
+    }
+    
+    /**
+     * Decode the given data that was encoded with the given mode, and 
+     * apply the given filter.
+     * 
+     * @param source The encoded data, from its position to its limit
+     * @param count The number of elements
+     * @param byteStride The size of one element
+     * @param mode The {@link Mode}
+     * @param filter The {@link Filter}. May be <code>null</code>, which
+     * is equivalent to {@link Filter#NONE}
+     * @return The decoded data, with <code>count * byteStride</code> bytes
+     * @throws IllegalArgumentException If the arguments are not valid
+     * for the mode, or the data can not be decoded
+     */
+    public static byte[] decode(ByteBuffer source, int count, int byteStride,
+        Mode mode, Filter filter)
+    {
+        validate(count, byteStride, mode);
+        byte bytes[] = new byte[source.remaining()];
+        source.duplicate().get(bytes);
+        byte target[];
+        switch (mode)
+        {
+            case ATTRIBUTES:
+                target = decodeVertexBuffer(bytes, count, byteStride);
+                break;
+            case TRIANGLES:
+                target = writeIndices(
+                    decodeIndexBuffer(bytes, count), byteStride);
+                break;
+            case INDICES:
+                target = writeIndices(
+                    decodeIndexSequence(bytes, count), byteStride);
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid mode: " + mode);
+        }
+        if (filter != null && filter != Filter.NONE)
+        {
+            if (mode != Mode.ATTRIBUTES)
+            {
+                throw new IllegalArgumentException(
+                    "The filter " + filter + " requires the mode " 
+                    + Mode.ATTRIBUTES + ", but the mode is " + mode);
+            }
+            applyFilter(target, count, byteStride, filter);
+        }
+        return target;
+    }
+    
+    /**
+     * Make sure that the given arguments are valid for the given mode
+     * 
+     * @param count The number of elements
+     * @param byteStride The size of one element
+     * @param mode The mode
+     * @throws IllegalArgumentException If the arguments are not valid
+     */
+    static void validate(int count, int byteStride, Mode mode)
+    {
+        if (count < 0)
+        {
+            throw new IllegalArgumentException(
+                "The count may not be negative, but is " + count);
+        }
+        if (mode == Mode.ATTRIBUTES)
+        {
+            if (byteStride <= 0 || byteStride > 256 || byteStride % 4 != 0)
+            {
+                throw new IllegalArgumentException(
+                    "The byte stride of attributes must be a multiple of 4 " 
+                    + "that is not larger than 256, but is " + byteStride);
+            }
+        }
+        else
+        {
+            if (byteStride != 2 && byteStride != 4)
+            {
+                throw new IllegalArgumentException(
+                    "The byte stride of indices must be 2 or 4, but is " 
+                    + byteStride);
+            }
+            if (mode == Mode.TRIANGLES && count % 3 != 0)
+            {
+                throw new IllegalArgumentException(
+                    "The number of triangle indices must be a multiple " 
+                    + "of 3, but is " + count);
+            }
+        }
+    }
+    
+    /**
+     * Read the little endian indices from the given data
+     * 
+     * @param data The data
+     * @param count The number of indices
+     * @param indexSize The size of one index, 2 or 4
+     * @return The indices
+     */
+    private static int[] readIndices(ByteBuffer data, int count, int indexSize)
+    {
+        ByteBuffer buffer = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int indices[] = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            indices[i] = indexSize == 2 ? 
+                buffer.getShort(i * 2) & 0xFFFF : buffer.getInt(i * 4);
+        }
+        return indices;
+    }
+    
+    /**
+     * Write the given indices in little endian order
+     * 
+     * @param indices The indices
+     * @param indexSize The size of one index, 2 or 4
+     * @return The bytes
+     */
+    private static byte[] writeIndices(int indices[], int indexSize)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(indices.length * indexSize);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        for (int index : indices)
+        {
+            if (indexSize == 2)
+            {
+                buffer.putShort((short)index);
+            }
+            else
+            {
+                buffer.putInt(index);
+            }
+        }
+        return buffer.array();
+    }
+    
+    
+    //=========================================================================
+    // Attributes
+    
+    /**
+     * Encode the given attribute data
+     * 
+     * @param data The data
+     * @param count The number of elements
+     * @param byteStride The size of one element
+     * @return The encoded data
+     */
+    static byte[] encodeVertexBuffer(byte data[], int count, int byteStride)
+    {
+        Output output = new Output(data.length + data.length / 8 + 64);
+        output.put(VERTEX_HEADER);
+        
+        byte firstVertex[] = new byte[byteStride];
+        if (count > 0)
+        {
+            System.arraycopy(data, 0, firstVertex, 0, byteStride);
+        }
+        byte lastVertex[] = firstVertex.clone();
+        int blockSize = getVertexBlockSize(byteStride);
+        byte buffer[] = new byte[VERTEX_BLOCK_MAX_SIZE];
+        for (int offset = 0; offset < count; offset += blockSize)
+        {
+            int blockCount = Math.min(blockSize, count - offset);
+            encodeVertexBlock(output, data, offset, blockCount, byteStride, 
+                lastVertex, buffer);
+        }
+        
+        // The tail stores the first element as the baseline of the
+        // first block, and has a minimum size so that the decoder may
+        // read whole groups without checking each byte
+        int tailSize = Math.max(byteStride, TAIL_MIN_SIZE);
+        output.putZeros(tailSize - byteStride);
+        output.put(firstVertex, 0, byteStride);
+        return output.toByteArray();
+    }
+    
+    /**
+     * Returns the number of elements of one attribute block
+     * 
+     * @param byteStride The size of one element
+     * @return The block size
+     */
+    private static int getVertexBlockSize(int byteStride)
+    {
+        int result = VERTEX_BLOCK_SIZE_BYTES / byteStride;
+        result &= ~(BYTE_GROUP_SIZE - 1);
+        return Math.min(result, VERTEX_BLOCK_MAX_SIZE);
+    }
+    
+    /**
+     * Encode one block of attributes. Each byte of the elements is encoded
+     * separately, as the zigzag encoded deltas to the same byte of the 
+     * previous element.
+     * 
+     * @param output The output
+     * @param data The data
+     * @param offset The index of the first element of the block
+     * @param count The number of elements in the block
+     * @param byteStride The size of one element
+     * @param lastVertex The last element of the previous block, which 
+     * will be updated to the last element of this block
+     * @param buffer A buffer for the deltas
+     */
+    private static void encodeVertexBlock(Output output, byte data[], 
+        int offset, int count, int byteStride, byte lastVertex[], 
+        byte buffer[])
+    {
+        int alignedCount = 
+            (count + BYTE_GROUP_SIZE - 1) & ~(BYTE_GROUP_SIZE - 1);
+        for (int k = 0; k < byteStride; k++)
+        {
+            int p = lastVertex[k];
+            int index = offset * byteStride + k;
+            for (int i = 0; i < count; i++)
+            {
+                int v = data[index];
+                buffer[i] = (byte)zigzag8(v - p);
+                p = v;
+                index += byteStride;
+            }
+            Arrays.fill(buffer, count, alignedCount, (byte)0);
+            encodeBytes(output, buffer, alignedCount);
+        }
+        System.arraycopy(data, (offset + count - 1) * byteStride, 
+            lastVertex, 0, byteStride);
+    }
+    
+    /**
+     * Encode the given bytes, in groups of {@link #BYTE_GROUP_SIZE} bytes.
+     * The groups are preceded by a header that stores 2 bits per group,
+     * for the number of bits that are used for each byte of the group.
+     * 
+     * @param output The output
+     * @param buffer The bytes
+     * @param size The number of bytes, a multiple of the group size
+     */
+    private static void encodeBytes(Output output, byte buffer[], int size)
+    {
+        int groupCount = size / BYTE_GROUP_SIZE;
+        int headerSize = (groupCount + 3) / 4;
+        int headerOffset = output.size();
+        output.putZeros(headerSize);
+        for (int g = 0; g < groupCount; g++)
+        {
+            int offset = g * BYTE_GROUP_SIZE;
+            int bestBits = 8;
+            int bestSize = BYTE_GROUP_SIZE;
+            for (int bits = 1; bits < 8; bits *= 2)
+            {
+                int groupSize = measureBytesGroup(buffer, offset, bits);
+                if (groupSize < bestSize)
+                {
+                    bestBits = bits;
+                    bestSize = groupSize;
+                }
+            }
+            int bitsLog2 = 
+                bestBits == 1 ? 0 : bestBits == 2 ? 1 : bestBits == 4 ? 2 : 3;
+            output.or(headerOffset + g / 4, bitsLog2 << ((g % 4) * 2));
+            encodeBytesGroup(output, buffer, offset, bestBits);
+        }
+    }
+    
+    /**
+     * Compute the size of the encoding of one group with the given bits.
+     * One bit stands for a group that consists only of zeros.
+     * 
+     * @param buffer The bytes
+     * @param offset The offset of the group
+     * @param bits The bits
+     * @return The size
+     */
+    private static int measureBytesGroup(byte buffer[], int offset, int bits)
+    {
+        if (bits == 1)
+        {
+            for (int i = 0; i < BYTE_GROUP_SIZE; i++)
+            {
+                if (buffer[offset + i] != 0)
+                {
+                    return Integer.MAX_VALUE;
+                }
+            }
+            return 0;
+        }
+        int result = BYTE_GROUP_SIZE * bits / 8;
+        int sentinel = (1 << bits) - 1;
+        for (int i = 0; i < BYTE_GROUP_SIZE; i++)
+        {
+            if ((buffer[offset + i] & 0xFF) >= sentinel)
+            {
+                result++;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Encode one group with the given bits. Values that do not fit into
+     * the bits are stored as the sentinel value (all bits set), and 
+     * appended as full bytes after the packed values.
+     * 
+     * @param output The output
+     * @param buffer The bytes
+     * @param offset The offset of the group
+     * @param bits The bits
+     */
+    private static void encodeBytesGroup(
+        Output output, byte buffer[], int offset, int bits)
+    {
+        if (bits == 1)
+        {
+            return;
+        }
+        if (bits == 8)
+        {
+            output.put(buffer, offset, BYTE_GROUP_SIZE);
+            return;
+        }
+        int valuesPerByte = 8 / bits;
+        int sentinel = (1 << bits) - 1;
+        for (int i = 0; i < BYTE_GROUP_SIZE; i += valuesPerByte)
+        {
+            int b = 0;
+            for (int k = 0; k < valuesPerByte; k++)
+            {
+                int v = buffer[offset + i + k] & 0xFF;
+                b = (b << bits) | Math.min(v, sentinel);
+            }
+            output.put(b);
+        }
+        for (int i = 0; i < BYTE_GROUP_SIZE; i++)
+        {
+            int v = buffer[offset + i] & 0xFF;
+            if (v >= sentinel)
+            {
+                output.put(v);
+            }
+        }
+    }
+    
+    /**
+     * Decode the given attribute data
+     * 
+     * @param source The encoded data
+     * @param count The number of elements
+     * @param byteStride The size of one element
+     * @return The decoded data
+     * @throws IllegalArgumentException If the data can not be decoded
+     */
+    static byte[] decodeVertexBuffer(byte source[], int count, int byteStride)
+    {
+        int tailSize = Math.max(byteStride, TAIL_MIN_SIZE);
+        if (source.length < 1 + tailSize)
+        {
+            throw new IllegalArgumentException(
+                "The attribute data is too short: " + source.length);
+        }
+        if ((source[0] & 0xF0) != VERTEX_HEADER)
+        {
+            throw new IllegalArgumentException(
+                "Invalid attribute data header: " + (source[0] & 0xFF));
+        }
+        int version = source[0] & 0x0F;
+        if (version > 0)
+        {
+            throw new IllegalArgumentException(
+                "Unsupported attribute data version: " + version);
+        }
+        byte target[] = new byte[count * byteStride];
+        byte lastVertex[] = Arrays.copyOfRange(
+            source, source.length - byteStride, source.length);
+        int blockSize = getVertexBlockSize(byteStride);
+        byte buffer[] = new byte[VERTEX_BLOCK_MAX_SIZE];
+        int position = 1;
+        for (int offset = 0; offset < count; offset += blockSize)
+        {
+            int blockCount = Math.min(blockSize, count - offset);
+            position = decodeVertexBlock(source, position, target, offset, 
+                blockCount, byteStride, lastVertex, buffer);
+        }
+        if (source.length - position != tailSize)
+        {
+            throw new IllegalArgumentException(
+                "Unexpected length of the attribute data: " + source.length);
+        }
+        return target;
+    }
+    
+    /**
+     * Decode one block of attributes
+     * 
+     * @param source The encoded data
+     * @param position The position of the block in the encoded data
+     * @param target The decoded data
+     * @param offset The index of the first element of the block
+     * @param count The number of elements in the block
+     * @param byteStride The size of one element
+     * @param lastVertex The last element of the previous block, which 
+     * will be updated to the last element of this block
+     * @param buffer A buffer for the deltas
+     * @return The position after the block
+     */
+    private static int decodeVertexBlock(byte source[], int position, 
+        byte target[], int offset, int count, int byteStride, 
+        byte lastVertex[], byte buffer[])
+    {
+        int alignedCount = 
+            (count + BYTE_GROUP_SIZE - 1) & ~(BYTE_GROUP_SIZE - 1);
+        for (int k = 0; k < byteStride; k++)
+        {
+            position = decodeBytes(source, position, buffer, alignedCount);
+            int p = lastVertex[k];
+            int index = offset * byteStride + k;
+            for (int i = 0; i < count; i++)
+            {
+                p += unzigzag8(buffer[i] & 0xFF);
+                target[index] = (byte)p;
+                index += byteStride;
+            }
+        }
+        System.arraycopy(target, (offset + count - 1) * byteStride, 
+            lastVertex, 0, byteStride);
+        return position;
+    }
+    
+    /**
+     * Decode the given number of bytes
+     * 
+     * @param source The encoded data
+     * @param position The position of the header of the groups
+     * @param buffer The decoded bytes
+     * @param size The number of bytes, a multiple of the group size
+     * @return The position after the groups
+     */
+    private static int decodeBytes(
+        byte source[], int position, byte buffer[], int size)
+    {
+        int groupCount = size / BYTE_GROUP_SIZE;
+        int headerSize = (groupCount + 3) / 4;
+        if (source.length - position < headerSize)
+        {
+            throw new IllegalArgumentException(
+                "Unexpected end of the attribute data");
+        }
+        int headerOffset = position;
+        position += headerSize;
+        for (int g = 0; g < groupCount; g++)
+        {
+            if (source.length - position < BYTE_GROUP_DECODE_LIMIT)
+            {
+                throw new IllegalArgumentException(
+                    "Unexpected end of the attribute data");
+            }
+            int bitsLog2 = (source[headerOffset + g / 4] >> ((g % 4) * 2)) & 3;
+            position = decodeBytesGroup(
+                source, position, buffer, g * BYTE_GROUP_SIZE, bitsLog2);
+        }
+        return position;
+    }
+    
+    /**
+     * Decode one group
+     * 
+     * @param source The encoded data
+     * @param position The position of the group
+     * @param buffer The decoded bytes
+     * @param offset The offset of the group in the decoded bytes
+     * @param bitsLog2 The logarithm of the bits of the group, where 0
+     * stands for a group that consists only of zeros
+     * @return The position after the group
+     */
+    private static int decodeBytesGroup(byte source[], int position, 
+        byte buffer[], int offset, int bitsLog2)
+    {
+        switch (bitsLog2)
+        {
+            case 0:
+                Arrays.fill(buffer, offset, offset + BYTE_GROUP_SIZE, (byte)0);
+                return position;
+                
+            case 3:
+                System.arraycopy(
+                    source, position, buffer, offset, BYTE_GROUP_SIZE);
+                return position + BYTE_GROUP_SIZE;
+                
+            default:
+            {
+                int bits = 1 << bitsLog2;
+                int valuesPerByte = 8 / bits;
+                int sentinel = (1 << bits) - 1;
+                int extra = position + BYTE_GROUP_SIZE / valuesPerByte;
+                int index = offset;
+                for (int i = 0; i < BYTE_GROUP_SIZE / valuesPerByte; i++)
+                {
+                    int b = source[position + i] & 0xFF;
+                    for (int k = 0; k < valuesPerByte; k++)
+                    {
+                        int v = (b >> (8 - bits)) & sentinel;
+                        b <<= bits;
+                        buffer[index++] = 
+                            v == sentinel ? source[extra++] : (byte)v;
+                    }
+                }
+                return extra;
+            }
+        }
+    }
+    
+    /**
+     * Zigzag encode the given byte delta
+     * 
+     * @param delta The delta
+     * @return The encoded delta
+     */
+    private static int zigzag8(int delta)
+    {
+        int b = (byte)delta;
+        return ((b >> 7) ^ (b << 1)) & 0xFF;
+    }
+    
+    /**
+     * Zigzag decode the given byte
+     * 
+     * @param v The byte
+     * @return The delta
+     */
+    private static int unzigzag8(int v)
+    {
+        return (-(v & 1)) ^ (v >>> 1);
+    }
+    
+    
+    //=========================================================================
+    // Triangles
+    
+    /**
+     * Encode the given triangle list indices. The triangles are encoded 
+     * as codes that refer to a FIFO of recent edges and a FIFO of recent 
+     * vertices, so that the indices of meshes that have been optimized for
+     * the vertex cache take about one byte per triangle.
+     * 
+     * @param indices The indices
+     * @return The encoded data
+     */
+    static byte[] encodeIndexBuffer(int indices[])
+    {
+        int triangleCount = indices.length / 3;
+        Output code = new Output(triangleCount);
+        Output data = new Output(triangleCount + 16);
+        
+        int edgeFifo0[] = new int[16];
+        int edgeFifo1[] = new int[16];
+        int vertexFifo[] = new int[16];
+        Arrays.fill(edgeFifo0, -1);
+        Arrays.fill(edgeFifo1, -1);
+        Arrays.fill(vertexFifo, -1);
+        int edgeOffset = 0;
+        int vertexOffset = 0;
+        int next = 0;
+        int last = 0;
+        int fecMax = 13;
+        
+        for (int i = 0; i < indices.length; i += 3)
+        {
+            int fer = getEdgeFifo(edgeFifo0, edgeFifo1, 
+                indices[i], indices[i + 1], indices[i + 2], edgeOffset);
+            if (fer >= 0 && (fer >> 2) < 15)
+            {
+                // The triangle shares an edge with a recent triangle
+                int order[] = TRIANGLE_INDEX_ORDER[fer & 3];
+                int a = indices[i + order[0]];
+                int b = indices[i + order[1]];
+                int c = indices[i + order[2]];
+                
+                int fe = fer >> 2;
+                int fc = getVertexFifo(vertexFifo, c, vertexOffset);
+                int fec;
+                if (fc >= 1 && fc < fecMax)
+                {
+                    fec = fc;
+                }
+                else if (c == next)
+                {
+                    next++;
+                    fec = 0;
+                }
+                else
+                {
+                    fec = 15;
+                    if (c + 1 == last)
+                    {
+                        fec = 13;
+                        last = c;
+                    }
+                    if (c == last + 1)
+                    {
+                        fec = 14;
+                        last = c;
+                    }
+                }
+                code.put((fe << 4) | fec);
+                if (fec == 15)
+                {
+                    encodeIndex(data, c, last);
+                    last = c;
+                }
+                if (fec == 0 || fec >= fecMax)
+                {
+                    vertexFifo[vertexOffset] = c;
+                    vertexOffset = (vertexOffset + 1) & 15;
+                }
+                edgeOffset = pushEdgeFifo(
+                    edgeFifo0, edgeFifo1, c, b, edgeOffset);
+                edgeOffset = pushEdgeFifo(
+                    edgeFifo0, edgeFifo1, a, c, edgeOffset);
+            }
+            else
+            {
+                int rotation = rotateTriangle(
+                    indices[i + 1], indices[i + 2], next);
+                int order[] = TRIANGLE_INDEX_ORDER[rotation];
+                int a = indices[i + order[0]];
+                int b = indices[i + order[1]];
+                int c = indices[i + order[2]];
+                
+                // A triangle 0, 1, 2 after other vertices is encoded as
+                // a restart, which resets the vertex FIFO
+                boolean reset = false;
+                if (a == 0 && b == 1 && c == 2 && next > 0)
+                {
+                    reset = true;
+                    next = 0;
+                    Arrays.fill(vertexFifo, -1);
+                }
+                
+                int fb = getVertexFifo(vertexFifo, b, vertexOffset);
+                int fc = getVertexFifo(vertexFifo, c, vertexOffset);
+                int fea;
+                if (a == next)
+                {
+                    next++;
+                    fea = 0;
+                }
+                else
+                {
+                    fea = 15;
+                }
+                int feb;
+                if (fb >= 0 && fb < 14)
+                {
+                    feb = fb + 1;
+                }
+                else if (b == next)
+                {
+                    next++;
+                    feb = 0;
+                }
+                else
+                {
+                    feb = 15;
+                }
+                int fec;
+                if (fc >= 0 && fc < 14)
+                {
+                    fec = fc + 1;
+                }
+                else if (c == next)
+                {
+                    next++;
+                    fec = 0;
+                }
+                else
+                {
+                    fec = 15;
+                }
+                
+                int codeAux = (feb << 4) | fec;
+                int tableIndex = getCodeAuxIndex(codeAux);
+                if (fea == 0 && tableIndex >= 0 && !reset)
+                {
+                    code.put(0xF0 | tableIndex);
+                }
+                else
+                {
+                    code.put(0xFE + (fea == 15 ? 1 : 0));
+                    data.put(codeAux);
+                }
+                if (fea == 15)
+                {
+                    encodeIndex(data, a, last);
+                    last = a;
+                }
+                if (feb == 15)
+                {
+                    encodeIndex(data, b, last);
+                    last = b;
+                }
+                if (fec == 15)
+                {
+                    encodeIndex(data, c, last);
+                    last = c;
+                }
+                if (fea == 0 || fea == 15)
+                {
+                    vertexFifo[vertexOffset] = a;
+                    vertexOffset = (vertexOffset + 1) & 15;
+                }
+                if (feb == 0 || feb == 15)
+                {
+                    vertexFifo[vertexOffset] = b;
+                    vertexOffset = (vertexOffset + 1) & 15;
+                }
+                if (fec == 0 || fec == 15)
+                {
+                    vertexFifo[vertexOffset] = c;
+                    vertexOffset = (vertexOffset + 1) & 15;
+                }
+                edgeOffset = pushEdgeFifo(
+                    edgeFifo0, edgeFifo1, b, a, edgeOffset);
+                edgeOffset = pushEdgeFifo(
+                    edgeFifo0, edgeFifo1, c, b, edgeOffset);
+                edgeOffset = pushEdgeFifo(
+                    edgeFifo0, edgeFifo1, a, c, edgeOffset);
+            }
+        }
+        
+        // The table is used by the decoder, and serves as the padding 
+        // that allows the decoder to read one triangle without checks
+        for (int entry : CODE_AUX_TABLE)
+        {
+            data.put(entry);
+        }
+        Output output = new Output(1 + code.size() + data.size());
+        output.put(INDEX_HEADER | 1);
+        output.put(code.data, 0, code.size());
+        output.put(data.data, 0, data.size());
+        return output.toByteArray();
+    }
+    
+    /**
+     * Returns the rotation of a triangle that puts the next vertex first
+     * 
+     * @param b The second index
+     * @param c The third index
+     * @param next The next vertex
+     * @return The rotation
+     */
+    private static int rotateTriangle(int b, int c, int next)
+    {
+        if (b == next)
+        {
+            return 1;
+        }
+        if (c == next)
+        {
+            return 2;
+        }
+        return 0;
+    }
+    
+    /**
+     * Returns the index of the given code in the auxiliary code table
+     * 
+     * @param codeAux The code
+     * @return The index, or -1
+     */
+    private static int getCodeAuxIndex(int codeAux)
+    {
+        for (int i = 0; i < CODE_AUX_TABLE.length; i++)
+        {
+            if (CODE_AUX_TABLE[i] == codeAux)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Find an edge of the given triangle in the edge FIFO
+     * 
+     * @param fifo0 The first vertices of the edges
+     * @param fifo1 The second vertices of the edges
+     * @param a The first index
+     * @param b The second index
+     * @param c The third index
+     * @param offset The offset of the FIFO
+     * @return The age of the edge shifted by 2 bits, combined with the 
+     * rotation of the triangle, or -1 if no edge was found
+     */
+    private static int getEdgeFifo(int fifo0[], int fifo1[], 
+        int a, int b, int c, int offset)
+    {
+        for (int i = 0; i < 16; i++)
+        {
+            int index = (offset - 1 - i) & 15;
+            int e0 = fifo0[index];
+            int e1 = fifo1[index];
+            if (e0 == a && e1 == b)
+            {
+                return (i << 2) | 0;
+            }
+            if (e0 == b && e1 == c)
+            {
+                return (i << 2) | 1;
+            }
+            if (e0 == c && e1 == a)
+            {
+                return (i << 2) | 2;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Find the given vertex in the vertex FIFO
+     * 
+     * @param fifo The FIFO
+     * @param v The vertex
+     * @param offset The offset of the FIFO
+     * @return The age of the vertex, or -1 if it was not found
+     */
+    private static int getVertexFifo(int fifo[], int v, int offset)
+    {
+        for (int i = 0; i < 16; i++)
+        {
+            if (fifo[(offset - 1 - i) & 15] == v)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Push the given edge into the edge FIFO
+     * 
+     * @param fifo0 The first vertices of the edges
+     * @param fifo1 The second vertices of the edges
+     * @param a The first vertex
+     * @param b The second vertex
+     * @param offset The offset of the FIFO
+     * @return The new offset
+     */
+    private static int pushEdgeFifo(
+        int fifo0[], int fifo1[], int a, int b, int offset)
+    {
+        fifo0[offset] = a;
+        fifo1[offset] = b;
+        return (offset + 1) & 15;
+    }
+    
+    /**
+     * Decode the given triangle list indices
+     * 
+     * @param source The encoded data
+     * @param count The number of indices
+     * @return The indices
+     * @throws IllegalArgumentException If the data can not be decoded
+     */
+    static int[] decodeIndexBuffer(byte source[], int count)
+    {
+        int triangleCount = count / 3;
+        if (source.length < 1 + triangleCount + 16)
+        {
+            throw new IllegalArgumentException(
+                "The index data is too short: " + source.length);
+        }
+        if ((source[0] & 0xF0) != INDEX_HEADER)
+        {
+            throw new IllegalArgumentException(
+                "Invalid index data header: " + (source[0] & 0xFF));
+        }
+        int version = source[0] & 0x0F;
+        if (version > 1)
+        {
+            throw new IllegalArgumentException(
+                "Unsupported index data version: " + version);
+        }
+        int indices[] = new int[count];
+        int edgeFifo0[] = new int[16];
+        int edgeFifo1[] = new int[16];
+        int vertexFifo[] = new int[16];
+        Arrays.fill(edgeFifo0, -1);
+        Arrays.fill(edgeFifo1, -1);
+        Arrays.fill(vertexFifo, -1);
+        int edgeOffset = 0;
+        int vertexOffset = 0;
+        int next = 0;
+        int last[] = { 0 };
+        int fecMax = version >= 1 ? 13 : 15;
+        
+        int codePosition = 1;
+        int data[] = { 1 + triangleCount };
+        int dataSafeEnd = source.length - 16;
+        int codeAuxTable = dataSafeEnd;
+        
+        for (int i = 0; i < count; i += 3)
+        {
+            // Each triangle reads at most 16 bytes of data, which
+            // are guaranteed to be available due to the table
+            if (data[0] > dataSafeEnd)
+            {
+                throw new IllegalArgumentException(
+                    "Unexpected end of the index data");
+            }
+            int codeTri = source[codePosition++] & 0xFF;
+            if (codeTri < 0xF0)
+            {
+                int fe = codeTri >> 4;
+                int edgeIndex = (edgeOffset - 1 - fe) & 15;
+                int a = edgeFifo0[edgeIndex];
+                int b = edgeFifo1[edgeIndex];
+                int fec = codeTri & 15;
+                int c;
+                if (fec < fecMax)
+                {
+                    if (fec == 0)
+                    {
+                        c = next++;
+                        vertexFifo[vertexOffset] = c;
+                        vertexOffset = (vertexOffset + 1) & 15;
+                    }
+                    else
+                    {
+                        c = vertexFifo[(vertexOffset - 1 - fec) & 15];
+                    }
+                }
+                else
+                {
+                    if (fec != 15)
+                    {
+                        // 13 and 14 are -1 and +1 relative to the last
+                        c = last[0] + (fec - (fec ^ 3));
+                    }
+                    else
+                    {
+                        c = decodeIndex(source, data, last[0]);
+                    }
+                    last[0] = c;
+                    vertexFifo[vertexOffset] = c;
+                    vertexOffset = (vertexOffset + 1) & 15;
+                }
+                indices[i] = a;
+                indices[i + 1] = b;
+                indices[i + 2] = c;
+                edgeOffset = pushEdgeFifo(
+                    edgeFifo0, edgeFifo1, c, b, edgeOffset);
+                edgeOffset = pushEdgeFifo(
+                    edgeFifo0, edgeFifo1, a, c, edgeOffset);
+            }
+            else
+            {
+                int codeAux;
+                int fea;
+                if (codeTri < 0xFE)
+                {
+                    codeAux = source[codeAuxTable + (codeTri & 15)] & 0xFF;
+                    fea = 0;
+                }
+                else
+                {
+                    codeAux = source[data[0]++] & 0xFF;
+                    fea = codeTri == 0xFE ? 0 : 15;
+                    if (codeAux == 0)
+                    {
+                        next = 0;
+                    }
+                }
+                int feb = codeAux >> 4;
+                int fec = codeAux & 15;
+                
+                // The next vertices are assigned in order before the 
+                // free indices are decoded, as in the encoder
+                int a = fea == 0 ? next++ : 0;
+                int b = feb == 0 ? next++ : 
+                    vertexFifo[(vertexOffset - feb) & 15];
+                int c = fec == 0 ? next++ : 
+                    vertexFifo[(vertexOffset - fec) & 15];
+                if (fea == 15)
+                {
+                    a = decodeIndex(source, data, last[0]);
+                    last[0] = a;
+                }
+                if (feb == 15)
+                {
+                    b = decodeIndex(source, data, last[0]);
+                    last[0] = b;
+                }
+                if (fec == 15)
+                {
+                    c = decodeIndex(source, data, last[0]);
+                    last[0] = c;
+                }
+                indices[i] = a;
+                indices[i + 1] = b;
+                indices[i + 2] = c;
+                vertexFifo[vertexOffset] = a;
+                vertexOffset = (vertexOffset + 1) & 15;
+                if (feb == 0 || feb == 15)
+                {
+                    vertexFifo[vertexOffset] = b;
+                    vertexOffset = (vertexOffset + 1) & 15;
+                }
+                if (fec == 0 || fec == 15)
+                {
+                    vertexFifo[vertexOffset] = c;
+                    vertexOffset = (vertexOffset + 1) & 15;
+                }
+                edgeOffset = pushEdgeFifo(
+                    edgeFifo0, edgeFifo1, b, a, edgeOffset);
+                edgeOffset = pushEdgeFifo(
+                    edgeFifo0, edgeFifo1, c, b, edgeOffset);
+                edgeOffset = pushEdgeFifo(
+                    edgeFifo0, edgeFifo1, a, c, edgeOffset);
+            }
+        }
+        if (data[0] != dataSafeEnd)
+        {
+            throw new IllegalArgumentException(
+                "Unexpected length of the index data: " + source.length);
+        }
+        return indices;
+    }
+    
+    
+    //=========================================================================
+    // Index sequences
+    
+    /**
+     * Encode the given index sequence. Each index is stored as the 
+     * delta to one of two baselines, so that interleaved sequences 
+     * like line lists compress well.
+     * 
+     * @param indices The indices
+     * @return The encoded data
+     * @throws IllegalArgumentException If the difference of two indices
+     * is not smaller than 2^30
+     */
+    static byte[] encodeIndexSequence(int indices[])
+    {
+        Output output = new Output(1 + indices.length + 4);
+        output.put(SEQUENCE_HEADER | 1);
+        int last[] = new int[2];
+        int current = 0;
+        for (int index : indices)
+        {
+            // Switch the baseline when the delta does not fit into a byte
+            int cd = index - last[current];
+            if (Math.abs(cd) >= 30)
+            {
+                current ^= 1;
+            }
+            int d = index - last[current];
+            if (d >= (1 << 30) || d < -(1 << 30))
+            {
+                // The zigzag encoded delta and the baseline bit have
+                // to fit into 32 bits
+                throw new IllegalArgumentException(
+                    "The delta between the indices " + last[current] 
+                    + " and " + index + " is too large");
+            }
+            int v = (d << 1) ^ (d >> 31);
+            encodeVByte(output, (v << 1) | current);
+            last[current] = index;
+        }
+        output.putZeros(4);
+        return output.toByteArray();
+    }
+    
+    /**
+     * Decode the given index sequence
+     * 
+     * @param source The encoded data
+     * @param count The number of indices
+     * @return The indices
+     * @throws IllegalArgumentException If the data can not be decoded
+     */
+    static int[] decodeIndexSequence(byte source[], int count)
+    {
+        if (source.length < 1 + count + 4)
+        {
+            throw new IllegalArgumentException(
+                "The index data is too short: " + source.length);
+        }
+        if ((source[0] & 0xF0) != SEQUENCE_HEADER)
+        {
+            throw new IllegalArgumentException(
+                "Invalid index sequence header: " + (source[0] & 0xFF));
+        }
+        int version = source[0] & 0x0F;
+        if (version > 1)
+        {
+            throw new IllegalArgumentException(
+                "Unsupported index sequence version: " + version);
+        }
+        int indices[] = new int[count];
+        int position[] = { 1 };
+        int dataSafeEnd = source.length - 4;
+        int last[] = new int[2];
+        for (int i = 0; i < count; i++)
+        {
+            if (position[0] >= dataSafeEnd)
+            {
+                throw new IllegalArgumentException(
+                    "Unexpected end of the index sequence");
+            }
+            int v = decodeVByte(source, position);
+            int current = v & 1;
+            v >>>= 1;
+            int d = (v >>> 1) ^ -(v & 1);
+            int index = last[current] + d;
+            last[current] = index;
+            indices[i] = index;
+        }
+        if (position[0] != dataSafeEnd)
+        {
+            throw new IllegalArgumentException(
+                "Unexpected length of the index sequence: " + source.length);
+        }
+        return indices;
+    }
+    
+    /**
+     * Encode the given index as a zigzag encoded delta to the last index
+     * 
+     * @param output The output
+     * @param index The index
+     * @param last The last index
+     */
+    private static void encodeIndex(Output output, int index, int last)
+    {
+        int d = index - last;
+        encodeVByte(output, (d << 1) ^ (d >> 31));
+    }
+    
+    /**
+     * Decode an index that was encoded as a delta to the last index
+     * 
+     * @param source The encoded data
+     * @param position The position, which will be advanced
+     * @param last The last index
+     * @return The index
+     */
+    private static int decodeIndex(byte source[], int position[], int last)
+    {
+        int v = decodeVByte(source, position);
+        int d = (v >>> 1) ^ -(v & 1);
+        return last + d;
+    }
+    
+    /**
+     * Encode the given unsigned value with 7 bits per byte
+     * 
+     * @param output The output
+     * @param v The value
+     */
+    private static void encodeVByte(Output output, int v)
+    {
+        do
+        {
+            int more = Integer.compareUnsigned(v, 127) > 0 ? 128 : 0;
+            output.put((v & 127) | more);
+            v >>>= 7;
+        }
+        while (v != 0);
+    }
+    
+    /**
+     * Decode an unsigned value with 7 bits per byte, of at most 5 bytes
+     * 
+     * @param source The encoded data
+     * @param position The position, which will be advanced
+     * @return The value
+     */
+    private static int decodeVByte(byte source[], int position[])
+    {
+        int lead = source[position[0]++] & 0xFF;
+        if (lead < 128)
+        {
+            return lead;
+        }
+        int result = lead & 127;
+        int shift = 7;
+        for (int i = 0; i < 4; i++)
+        {
+            int group = source[position[0]++] & 0xFF;
+            result |= (group & 127) << shift;
+            shift += 7;
+            if (group < 128)
+            {
+                break;
+            }
+        }
+        return result;
+    }
+    
+    
+    //=========================================================================
+    // Filters
+    
+    /**
+     * Apply the given filter to the decoded attributes
+     * 
+     * @param data The decoded attributes
+     * @param count The number of elements
+     * @param byteStride The size of one element
+     * @param filter The filter
+     * @throws IllegalArgumentException If the stride is not valid for
+     * the filter
+     */
+    private static void applyFilter(
+        byte data[], int count, int byteStride, Filter filter)
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        switch (filter)
+        {
+            case OCTAHEDRAL:
+                if (byteStride == 4)
+                {
+                    decodeFilterOct8(data, count);
+                }
+                else if (byteStride == 8)
+                {
+                    decodeFilterOct16(buffer, count);
+                }
+                else
+                {
+                    throw new IllegalArgumentException(
+                        "The byte stride of the octahedral filter must be " 
+                        + "4 or 8, but is " + byteStride);
+                }
+                break;
+                
+            case QUATERNION:
+                if (byteStride != 8)
+                {
+                    throw new IllegalArgumentException(
+                        "The byte stride of the quaternion filter must be " 
+                        + "8, but is " + byteStride);
+                }
+                decodeFilterQuat(buffer, count);
+                break;
+                
+            case EXPONENTIAL:
+                decodeFilterExp(buffer, count * byteStride / 4);
+                break;
+                
+            default:
+                break;
+        }
+    }
+    
+    /**
+     * Decode octahedral unit vectors with 8 bit components
+     * 
+     * @param data The data
+     * @param count The number of vectors
+     */
+    private static void decodeFilterOct8(byte data[], int count)
+    {
+        float components[] = new float[3];
+        for (int i = 0; i < count; i++)
+        {
+            decodeOct(data[i * 4], data[i * 4 + 1], data[i * 4 + 2], 
+                127.0f, components);
+            data[i * 4] = (byte)round(components[0]);
+            data[i * 4 + 1] = (byte)round(components[1]);
+            data[i * 4 + 2] = (byte)round(components[2]);
+        }
+    }
+    
+    /**
+     * Decode octahedral unit vectors with 16 bit components
+     * 
+     * @param buffer The data
+     * @param count The number of vectors
+     */
+    private static void decodeFilterOct16(ByteBuffer buffer, int count)
+    {
+        float components[] = new float[3];
+        for (int i = 0; i < count; i++)
+        {
+            int offset = i * 8;
+            decodeOct(buffer.getShort(offset), buffer.getShort(offset + 2), 
+                buffer.getShort(offset + 4), 32767.0f, components);
+            buffer.putShort(offset, (short)round(components[0]));
+            buffer.putShort(offset + 2, (short)round(components[1]));
+            buffer.putShort(offset + 4, (short)round(components[2]));
+        }
+    }
+    
+    /**
+     * Decode one octahedral unit vector. The third component stores the
+     * value that represents 1.0.
+     * 
+     * @param ix The first component
+     * @param iy The second component
+     * @param iz The third component
+     * @param max The maximum value of a component
+     * @param result The scaled components of the unit vector
+     */
+    private static void decodeOct(
+        int ix, int iy, int iz, float max, float result[])
+    {
+        float x = ix;
+        float y = iy;
+        float z = iz - Math.abs(x) - Math.abs(y);
+        float t = z >= 0.0f ? 0.0f : z;
+        x += x >= 0.0f ? t : -t;
+        y += y >= 0.0f ? t : -t;
+        float l = (float)Math.sqrt(x * x + y * y + z * z);
+        float s = max / l;
+        result[0] = x * s;
+        result[1] = y * s;
+        result[2] = z * s;
+    }
+    
+    /**
+     * Decode unit quaternions with 16 bit components. The fourth 
+     * component stores the index of the largest component in its low
+     * bits, and the scale of the other ones.
+     * 
+     * @param buffer The data
+     * @param count The number of quaternions
+     */
+    private static void decodeFilterQuat(ByteBuffer buffer, int count)
+    {
+        float scale = (float)(1.0 / Math.sqrt(2.0));
+        for (int i = 0; i < count; i++)
+        {
+            int offset = i * 8;
+            int w4 = buffer.getShort(offset + 6);
+            int sf = w4 | 3;
+            float ss = scale / sf;
+            float x = buffer.getShort(offset) * ss;
+            float y = buffer.getShort(offset + 2) * ss;
+            float z = buffer.getShort(offset + 4) * ss;
+            float ww = 1.0f - x * x - y * y - z * z;
+            float w = (float)Math.sqrt(ww >= 0.0f ? ww : 0.0f);
+            int qc = w4 & 3;
+            buffer.putShort(offset + ((qc + 1) & 3) * 2, 
+                (short)round(x * 32767.0f));
+            buffer.putShort(offset + ((qc + 2) & 3) * 2, 
+                (short)round(y * 32767.0f));
+            buffer.putShort(offset + ((qc + 3) & 3) * 2, 
+                (short)round(z * 32767.0f));
+            buffer.putShort(offset + (qc & 3) * 2, 
+                (short)round(w * 32767.0f));
+        }
+    }
+    
+    /**
+     * Decode floating point values that are stored as a 24 bit mantissa
+     * and an 8 bit exponent
+     * 
+     * @param buffer The data
+     * @param count The number of values
+     */
+    private static void decodeFilterExp(ByteBuffer buffer, int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            int v = buffer.getInt(i * 4);
+            int m = (v << 8) >> 8;
+            int e = v >> 24;
+            float f = Float.intBitsToFloat((e + 127) << 23) * m;
+            buffer.putInt(i * 4, Float.floatToRawIntBits(f));
+        }
+    }
+    
+    /**
+     * Round the given value to the nearest integer, away from zero
+     * 
+     * @param v The value
+     * @return The rounded value
+     */
+    private static int round(float v)
+    {
+        return (int)(v + (v >= 0.0f ? 0.5f : -0.5f));
+    }
+    
+    
+    /**
+     * A growable byte array
+     */
+    private static final class Output
+    {
+        /**
+         * The data
+         */
+        private byte data[];
+        
+        /**
+         * The number of bytes
+         */
+        private int size;
+        
+        /**
+         * Creates a new output
+         * 
+         * @param capacity The initial capacity
+         */
+        Output(int capacity)
+        {
+            this.data = new byte[Math.max(capacity, 16)];
+        }
+        
+        /**
+         * Returns the number of bytes
+         * 
+         * @return The size
+         */
+        int size()
+        {
+            return size;
+        }
+        
+        /**
+         * Make sure that the given number of bytes can be appended
+         * 
+         * @param length The number of bytes
+         */
+        private void ensure(int length)
+        {
+            if (size + length > data.length)
+            {
+                data = Arrays.copyOf(
+                    data, Math.max(size + length, data.length * 2));
+            }
+        }
+        
+        /**
+         * Append the given byte
+         * 
+         * @param b The byte
+         */
+        void put(int b)
+        {
+            ensure(1);
+            data[size++] = (byte)b;
+        }
+        
+        /**
+         * Append the given bytes
+         * 
+         * @param bytes The bytes
+         * @param offset The offset of the bytes
+         * @param length The number of bytes
+         */
+        void put(byte bytes[], int offset, int length)
+        {
+            ensure(length);
+            System.arraycopy(bytes, offset, data, size, length);
+            size += length;
+        }
+        
+        /**
+         * Append the given number of zeros
+         * 
+         * @param length The number of zeros
+         */
+        void putZeros(int length)
+        {
+            ensure(length);
+            size += length;
+        }
+        
+        /**
+         * Combine the byte at the given index with the given bits
+         * 
+         * @param index The index
+         * @param bits The bits
+         */
+        void or(int index, int bits)
+        {
+            data[index] |= bits;
+        }
+        
+        /**
+         * Returns a copy of the bytes
+         * 
+         * @return The bytes
+         */
+        byte[] toByteArray()
+        {
+            return Arrays.copyOf(data, size);
+        }
+    }
+    
+    /**
+     * Private constructor to prevent instantiation
+     */
+    private MeshoptCodec()
+    {
+        // Private constructor to prevent instantiation
+    }
+}
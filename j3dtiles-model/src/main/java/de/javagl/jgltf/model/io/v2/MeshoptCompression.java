@@ -0,0 +1,556 @@
+/*
+ * www.javagl.de - JglTF
+ *
+ * Copyright 2015-2016 Marco Hutter - http://www.javagl.de
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package de.javagl.jgltf.model.io.v2;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import de.javagl.jgltf.impl.v2.Accessor;
+import de.javagl.jgltf.impl.v2.GlTF;
+import de.javagl.jgltf.impl.v2.Mesh;
+import de.javagl.jgltf.impl.v2.MeshPrimitive;
+import de.javagl.jgltf.model.AccessorModel;
+import de.javagl.jgltf.model.BufferViewModel;
+import de.javagl.jgltf.model.GltfConstants;
+import de.javagl.jgltf.model.Optionals;
+import de.javagl.jgltf.model.v2.GltfModelV2;
+
+/**
+ * The buffer views of a {@link GltfModelV2} that should be written with 
+ * the <code>EXT_meshopt_compression</code> extension, when the model is 
+ * written as a binary glTF.<br>
+ * <br>
+ * Buffer views are selected individually with a {@link MeshoptCodec.Mode}
+ * and a stride, or all vertex and index buffer views of the meshes are 
+ * selected with {@link #selectAll(GltfModelV2)}. The selected buffer 
+ * views are encoded in parallel when an executor is set, and the encoded
+ * data is cached, so that computing the size of a tile and writing it
+ * encode each buffer view only once. {@link #clearCache()} has to be 
+ * called when the data of a selected buffer view was modified.<br>
+ * <br>
+ * A buffer view whose encoded data would not be smaller than the data
+ * itself is written uncompressed.
+ */
+public final class MeshoptCompression
+{
+    /**
+     * The mode and stride of a selected buffer view
+     */
+    private static class Selection
+    {
+        /**
+         * The mode
+         */
+        final MeshoptCodec.Mode mode;
+        
+        /**
+         * The stride
+         */
+        final int byteStride;
+        
+        /**
+         * Creates a new selection
+         * 
+         * @param mode The mode
+         * @param byteStride The stride
+         */
+        Selection(MeshoptCodec.Mode mode, int byteStride)
+        {
+            this.mode = mode;
+            this.byteStride = byteStride;
+        }
+    }
+    
+    /**
+     * The encoded data of a selected buffer view, with the mode and 
+     * stride that it was encoded with
+     */
+    static final class Encoded extends Selection
+    {
+        /**
+         * The encoded data
+         */
+        final byte data[];
+        
+        /**
+         * Creates a new instance
+         * 
+         * @param selection The selection
+         * @param data The encoded data
+         */
+        Encoded(Selection selection, byte data[])
+        {
+            super(selection.mode, selection.byteStride);
+            this.data = data;
+        }
+    }
+    
+    /**
+     * The selected buffer views
+     */
+    private final Map<BufferViewModel, Selection> selections;
+    
+    /**
+     * The cached encoded data of the selected buffer views
+     */
+    private final Map<BufferViewModel, Encoded> encodedDatas;
+    
+    /**
+     * The executor that encodes the buffer views
+     */
+    private ExecutorService executor;
+    
+    /**
+     * Creates a new instance that does not select any buffer view
+     */
+    public MeshoptCompression()
+    {
+        this.selections = new LinkedHashMap<BufferViewModel, Selection>();
+        this.encodedDatas = new LinkedHashMap<BufferViewModel, Encoded>();
+    }
+    
+    /**
+     * Select the given buffer view for the compression.
+     * 
+     * @param bufferViewModel The {@link BufferViewModel}
+     * @param mode The {@link MeshoptCodec.Mode}
+     * @param byteStride The size of one element. For the index modes, 
+     * this is the size of one index.
+     * @throws IllegalArgumentException If the length of the buffer view
+     * is not a multiple of the stride, or the stride is not valid for 
+     * the mode
+     */
+    public synchronized void select(BufferViewModel bufferViewModel, 
+        MeshoptCodec.Mode mode, int byteStride)
+    {
+        int byteLength = bufferViewModel.getByteLength();
+        if (byteStride <= 0 || byteLength % byteStride != 0)
+        {
+            throw new IllegalArgumentException(
+                "The byte length " + byteLength + " of the buffer view " 
+                + "is not a multiple of the byte stride " + byteStride);
+        }
+        MeshoptCodec.validate(byteLength / byteStride, byteStride, mode);
+        selections.put(bufferViewModel, new Selection(mode, byteStride));
+        encodedDatas.remove(bufferViewModel);
+    }
+    
+    /**
+     * Remove the given buffer view from the selection
+     * 
+     * @param bufferViewModel The {@link BufferViewModel}
+     */
+    public synchronized void deselect(BufferViewModel bufferViewModel)
+    {
+        selections.remove(bufferViewModel);
+        encodedDatas.remove(bufferViewModel);
+    }
+    
+    /**
+     * Returns whether the given buffer view is selected
+     * 
+     * @param bufferViewModel The {@link BufferViewModel}
+     * @return Whether the buffer view is selected
+     */
+    public synchronized boolean isSelected(BufferViewModel bufferViewModel)
+    {
+        return selections.containsKey(bufferViewModel);
+    }
+    
+    /**
+     * Returns the mode of the given buffer view
+     * 
+     * @param bufferViewModel The {@link BufferViewModel}
+     * @return The mode, or <code>null</code> if the buffer view is not 
+     * selected
+     */
+    public synchronized MeshoptCodec.Mode getMode(
+        BufferViewModel bufferViewModel)
+    {
+        Selection selection = selections.get(bufferViewModel);
+        return selection == null ? null : selection.mode;
+    }
+    
+    /**
+     * Returns the stride of the given buffer view
+     * 
+     * @param bufferViewModel The {@link BufferViewModel}
+     * @return The stride, or <code>null</code> if the buffer view is not 
+     * selected
+     */
+    public synchronized Integer getByteStride(BufferViewModel bufferViewModel)
+    {
+        Selection selection = selections.get(bufferViewModel);
+        return selection == null ? null : selection.byteStride;
+    }
+    
+    /**
+     * Select all buffer views of the given model that are used for the
+     * indices or the attributes of mesh primitives.<br>
+     * <br>
+     * Index buffer views use the {@link MeshoptCodec.Mode#TRIANGLES} mode
+     * when they are only used by triangle lists, and the 
+     * {@link MeshoptCodec.Mode#INDICES} mode otherwise. Attribute buffer
+     * views use their stride, or the size of their elements, when it is 
+     * a multiple of 4. Buffer views that are used in incompatible ways,
+     * or with other strides, are not selected.
+     * 
+     * @param gltfModel The {@link GltfModelV2}
+     */
+    public void selectAll(GltfModelV2 gltfModel)
+    {
+        GlTF gltf = gltfModel.getGltf();
+        List<Accessor> accessors = Optionals.of(gltf.getAccessors());
+        Map<BufferViewModel, Selection> candidates = 
+            new LinkedHashMap<BufferViewModel, Selection>();
+        Set<BufferViewModel> conflicts = new HashSet<BufferViewModel>();
+        for (Mesh mesh : Optionals.of(gltf.getMeshes()))
+        {
+            for (MeshPrimitive primitive : Optionals.of(mesh.getPrimitives()))
+            {
+                Integer indices = primitive.getIndices();
+                if (indices != null)
+                {
+                    int mode = Optionals.of(
+                        primitive.getMode(), primitive.defaultMode());
+                    addIndicesCandidate(gltfModel, accessors, indices, 
+                        mode == GltfConstants.GL_TRIANGLES, 
+                        candidates, conflicts);
+                }
+                List<Map<String, Integer>> attributeMaps = 
+                    new ArrayList<Map<String, Integer>>();
+                attributeMaps.add(Optionals.of(primitive.getAttributes()));
+                attributeMaps.addAll(Optionals.of(primitive.getTargets()));
+                for (Map<String, Integer> attributes : attributeMaps)
+                {
+                    for (Integer attribute : attributes.values())
+                    {
+                        addAttributeCandidate(gltfModel, accessors, 
+                            attribute, candidates, conflicts);
+                    }
+                }
+            }
+        }
+        for (Map.Entry<BufferViewModel, Selection> entry : 
+            candidates.entrySet())
+        {
+            BufferViewModel bufferViewModel = entry.getKey();
+            if (!conflicts.contains(bufferViewModel))
+            {
+                Selection selection = entry.getValue();
+                select(bufferViewModel, selection.mode, selection.byteStride);
+            }
+        }
+    }
+    
+    /**
+     * Add the candidate selection for the buffer view of the given index
+     * accessor
+     * 
+     * @param gltfModel The model
+     * @param accessors The accessors
+     * @param accessorIndex The index of the accessor
+     * @param triangles Whether the indices are a triangle list
+     * @param candidates The candidates
+     * @param conflicts The buffer views that can not be selected
+     */
+    private static void addIndicesCandidate(GltfModelV2 gltfModel, 
+        List<Accessor> accessors, int accessorIndex, boolean triangles,
+        Map<BufferViewModel, Selection> candidates, 
+        Set<BufferViewModel> conflicts)
+    {
+        Integer bufferViewIndex = accessors.get(accessorIndex).getBufferView();
+        if (bufferViewIndex == null)
+        {
+            return;
+        }
+        BufferViewModel bufferViewModel = 
+            gltfModel.getBufferViewModels().get(bufferViewIndex);
+        AccessorModel accessorModel = 
+            gltfModel.getAccessorModels().get(accessorIndex);
+        int indexSize = accessorModel.getComponentSizeInBytes();
+        int byteLength = bufferViewModel.getByteLength();
+        if (indexSize != 2 && indexSize != 4 || byteLength % indexSize != 0)
+        {
+            conflicts.add(bufferViewModel);
+            return;
+        }
+        // Triangles may be rotated by the codec, so they have to start
+        // at a multiple of 3 indices
+        int count = byteLength / indexSize;
+        triangles &= count % 3 == 0 
+            && accessorModel.getByteOffset() % (3 * indexSize) == 0;
+        MeshoptCodec.Mode mode = triangles ? 
+            MeshoptCodec.Mode.TRIANGLES : MeshoptCodec.Mode.INDICES;
+        Selection old = candidates.get(bufferViewModel);
+        if (old == null)
+        {
+            candidates.put(bufferViewModel, new Selection(mode, indexSize));
+        }
+        else if (old.mode == MeshoptCodec.Mode.ATTRIBUTES 
+            || old.byteStride != indexSize)
+        {
+            conflicts.add(bufferViewModel);
+        }
+        else if (old.mode != mode)
+        {
+            candidates.put(bufferViewModel, 
+                new Selection(MeshoptCodec.Mode.INDICES, indexSize));
+        }
+    }
+    
+    /**
+     * Add the candidate selection for the buffer view of the given 
+     * attribute accessor
+     * 
+     * @param gltfModel The model
+     * @param accessors The accessors
+     * @param accessorIndex The index of the accessor
+     * @param candidates The candidates
+     * @param conflicts The buffer views that can not be selected
+     */
+    private static void addAttributeCandidate(GltfModelV2 gltfModel, 
+        List<Accessor> accessors, int accessorIndex, 
+        Map<BufferViewModel, Selection> candidates, 
+        Set<BufferViewModel> conflicts)
+    {
+        Integer bufferViewIndex = accessors.get(accessorIndex).getBufferView();
+        if (bufferViewIndex == null)
+        {
+            return;
+        }
+        BufferViewModel bufferViewModel = 
+            gltfModel.getBufferViewModels().get(bufferViewIndex);
+        AccessorModel accessorModel = 
+            gltfModel.getAccessorModels().get(accessorIndex);
+        Integer byteStride = bufferViewModel.getByteStride();
+        int stride = byteStride != null ? 
+            byteStride : accessorModel.getElementSizeInBytes();
+        int byteLength = bufferViewModel.getByteLength();
+        if (stride % 4 != 0 || stride > 256 || byteLength % stride != 0)
+        {
+            conflicts.add(bufferViewModel);
+            return;
+        }
+        Selection old = candidates.get(bufferViewModel);
+        if (old == null)
+        {
+            candidates.put(bufferViewModel, 
+                new Selection(MeshoptCodec.Mode.ATTRIBUTES, stride));
+        }
+        else if (old.mode != MeshoptCodec.Mode.ATTRIBUTES)
+        {
+            conflicts.add(bufferViewModel);
+        }
+        else if (old.byteStride != stride)
+        {
+            // Tightly packed accessors of different sizes are encoded
+            // as elements of 4 bytes
+            candidates.put(bufferViewModel, 
+                new Selection(MeshoptCodec.Mode.ATTRIBUTES, 4));
+        }
+    }
+    
+    /**
+     * Remove the cached encoded data of all buffer views
+     */
+    public synchronized void clearCache()
+    {
+        encodedDatas.clear();
+    }
+    
+    /**
+     * Returns the executor that encodes the buffer views
+     * 
+     * @return The executor, or <code>null</code>
+     */
+    public ExecutorService getExecutor()
+    {
+        return executor;
+    }
+    
+    /**
+     * Set the executor that encodes the buffer views. When it is 
+     * <code>null</code>, the buffer views are encoded on the calling
+     * thread.
+     * 
+     * @param executor The executor
+     */
+    public void setExecutor(ExecutorService executor)
+    {
+        this.executor = executor;
+    }
+    
+    /**
+     * Encode the selected ones of the given buffer views. Buffer views 
+     * whose encoded data is cached are not encoded again.
+     * 
+     * @param bufferViewModels The {@link BufferViewModel} instances
+     * @return The mapping from the selected buffer views to their 
+     * encoded data
+     */
+    Map<BufferViewModel, Encoded> encode(
+        List<? extends BufferViewModel> bufferViewModels)
+    {
+        Map<BufferViewModel, Encoded> result = 
+            new LinkedHashMap<BufferViewModel, Encoded>();
+        Map<BufferViewModel, Selection> pending = 
+            new LinkedHashMap<BufferViewModel, Selection>();
+        synchronized (this)
+        {
+            for (BufferViewModel bufferViewModel : bufferViewModels)
+            {
+                Selection selection = selections.get(bufferViewModel);
+                if (selection == null)
+                {
+                    continue;
+                }
+                Encoded encoded = encodedDatas.get(bufferViewModel);
+                if (encoded != null)
+                {
+                    result.put(bufferViewModel, encoded);
+                }
+                else
+                {
+                    pending.put(bufferViewModel, selection);
+                }
+            }
+        }
+        if (pending.isEmpty())
+        {
+            return result;
+        }
+        Map<BufferViewModel, Encoded> encoded = encode(pending);
+        synchronized (this)
+        {
+            for (Map.Entry<BufferViewModel, Encoded> entry : 
+                encoded.entrySet())
+            {
+                // The selection may have changed in the meantime
+                BufferViewModel bufferViewModel = entry.getKey();
+                if (selections.get(bufferViewModel) == 
+                    pending.get(bufferViewModel))
+                {
+                    encodedDatas.put(bufferViewModel, entry.getValue());
+                }
+            }
+        }
+        result.putAll(encoded);
+        return result;
+    }
+    
+    /**
+     * Encode the given buffer views, on the executor if there is one
+     * 
+     * @param pending The buffer views and their selections
+     * @return The encoded data
+     */
+    private Map<BufferViewModel, Encoded> encode(
+        Map<BufferViewModel, Selection> pending)
+    {
+        Map<BufferViewModel, Encoded> result = 
+            new LinkedHashMap<BufferViewModel, Encoded>();
+        ExecutorService currentExecutor = executor;
+        if (currentExecutor == null || pending.size() == 1)
+        {
+            for (Map.Entry<BufferViewModel, Selection> entry : 
+                pending.entrySet())
+            {
+                BufferViewModel bufferViewModel = entry.getKey();
+                result.put(bufferViewModel, encode(
+                    bufferViewModel.getBufferViewData(), entry.getValue()));
+            }
+            return result;
+        }
+        Map<BufferViewModel, Future<Encoded>> futures = 
+            new LinkedHashMap<BufferViewModel, Future<Encoded>>();
+        try
+        {
+            for (Map.Entry<BufferViewModel, Selection> entry : 
+                pending.entrySet())
+            {
+                // The slice is created on this thread, because creating
+                // it modifies the position and limit of the buffer data
+                BufferViewModel bufferViewModel = entry.getKey();
+                ByteBuffer data = bufferViewModel.getBufferViewData();
+                Selection selection = entry.getValue();
+                futures.put(bufferViewModel, currentExecutor.submit(
+                    () -> encode(data, selection)));
+            }
+            for (Map.Entry<BufferViewModel, Future<Encoded>> entry : 
+                futures.entrySet())
+            {
+                result.put(entry.getKey(), entry.getValue().get());
+            }
+            return result;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                "Interrupted while encoding the buffer views", e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        finally
+        {
+            for (Future<Encoded> future : futures.values())
+            {
+                future.cancel(true);
+            }
+        }
+    }
+    
+    /**
+     * Encode the given buffer view data
+     * 
+     * @param data The buffer view data
+     * @param selection The selection
+     * @return The encoded data
+     */
+    private static Encoded encode(ByteBuffer data, Selection selection)
+    {
+        int count = data.remaining() / selection.byteStride;
+        return new Encoded(selection, MeshoptCodec.encode(
+            data, count, selection.byteStride, selection.mode));
+    }
+}
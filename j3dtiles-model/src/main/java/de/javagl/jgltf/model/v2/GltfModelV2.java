@@ -101,6 +101,7 @@ import de.javagl.jgltf.model.impl.DefaultSkinModel;
 import de.javagl.jgltf.model.impl.DefaultTextureModel;
 import de.javagl.jgltf.model.io.Buffers;
 import de.javagl.jgltf.model.io.v2.GltfAssetV2;
+import de.javagl.jgltf.model.io.v2.MeshoptCodec;
 import de.javagl.jgltf.model.v2.gl.Materials;
 
 /**
@@ -248,6 +249,7 @@ public final class GltfModelV2 implements GltfModel
 
         initBufferModels();
         initBufferViewModels();
+        decodeCompressedBufferViews();
         
         initAccessorModels();
         initAnimationModels();
@@ -800,6 +802,13 @@ public final class GltfModelV2 implements GltfModel
             {
                 bufferModel.setBufferData(binaryData);
             }
+            else if (isMeshoptFallback(buffer))
+            {
+                // The data of the fallback buffer is created by
+                // decoding the compressed buffer views
+                bufferModel.setBufferData(
+                    Buffers.create(buffer.getByteLength()));
+            }
             else
             {
                 String uri = buffer.getUri();
@@ -830,6 +839,98 @@ public final class GltfModelV2 implements GltfModel
     }
     
 
+    /**
+     * Returns whether the given {@link Buffer} is the fallback buffer of
+     * buffer views that are compressed with the 
+     * <code>EXT_meshopt_compression</code> extension
+     * 
+     * @param buffer The {@link Buffer}
+     * @return Whether the buffer is a fallback buffer
+     */
+    private static boolean isMeshoptFallback(Buffer buffer)
+    {
+        Object extension = Optionals.get(
+            MeshoptCodec.EXTENSION_NAME, buffer.getExtensions());
+        return extension instanceof Map 
+            && Boolean.TRUE.equals(((Map<?, ?>)extension).get("fallback"));
+    }
+    
+    /**
+     * Decode the data of the buffer views that are compressed with the
+     * <code>EXT_meshopt_compression</code> extension, and place it into
+     * the data of the buffer that they refer to.
+     */
+    private void decodeCompressedBufferViews()
+    {
+        List<BufferView> bufferViews = Optionals.of(gltf.getBufferViews());
+        for (int i = 0; i < bufferViews.size(); i++)
+        {
+            BufferView bufferView = bufferViews.get(i);
+            Object extension = Optionals.get(
+                MeshoptCodec.EXTENSION_NAME, bufferView.getExtensions());
+            if (!(extension instanceof Map))
+            {
+                continue;
+            }
+            Map<?, ?> compression = (Map<?, ?>)extension;
+            int bufferIndex = getInt(compression, "buffer", null);
+            int byteOffset = getInt(compression, "byteOffset", 0);
+            int byteLength = getInt(compression, "byteLength", null);
+            int byteStride = getInt(compression, "byteStride", null);
+            int count = getInt(compression, "count", null);
+            MeshoptCodec.Mode mode = MeshoptCodec.Mode.valueOf(
+                String.valueOf(compression.get("mode")));
+            Object filterName = compression.get("filter");
+            MeshoptCodec.Filter filter = filterName == null ? 
+                MeshoptCodec.Filter.NONE : 
+                MeshoptCodec.Filter.valueOf(String.valueOf(filterName));
+            
+            ByteBuffer source = Buffers.createSlice(
+                bufferModels.get(bufferIndex).getBufferData(), 
+                byteOffset, byteLength);
+            byte decoded[] = MeshoptCodec.decode(
+                source, count, byteStride, mode, filter);
+            ByteBuffer target = bufferViewModels.get(i).getBufferViewData();
+            if (decoded.length != target.capacity())
+            {
+                throw new IllegalArgumentException(
+                    "The compressed buffer view " + i + " contains " 
+                    + decoded.length + " bytes, but its byte length is " 
+                    + target.capacity());
+            }
+            target.put(decoded);
+        }
+    }
+    
+    /**
+     * Returns the integer value of the given property of the given
+     * extension object
+     * 
+     * @param extension The extension object
+     * @param property The property
+     * @param defaultValue The default value. If it is <code>null</code>,
+     * then the property is required.
+     * @return The value
+     * @throws IllegalArgumentException If a required property is missing
+     */
+    private static int getInt(
+        Map<?, ?> extension, String property, Integer defaultValue)
+    {
+        Object value = extension.get(property);
+        if (value instanceof Number)
+        {
+            return ((Number)value).intValue();
+        }
+        if (value == null && defaultValue != null)
+        {
+            return defaultValue;
+        }
+        throw new IllegalArgumentException("Invalid value of the property " 
+            + property + " of the " + MeshoptCodec.EXTENSION_NAME 
+            + " extension: " + value);
+    }
+    
+
     /**
      * Initialize the {@link MeshModel} instances
      */
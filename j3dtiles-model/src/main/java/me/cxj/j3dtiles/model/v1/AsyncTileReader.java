@@ -0,0 +1,207 @@
+package me.cxj.j3dtiles.model.v1;
+
+import me.cxj.j3dtiles.utils.JsonParser;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads tiles without blocking the caller. The bytes are read by {@link AsynchronousFileChannel}, so no thread waits
+ * for the disk, and the tiles are decoded on the given executor. At most maxConcurrency tiles are read or decoded at
+ * the same time, the other requests wait in a queue without holding a thread or a buffer.
+ * Cancelling a returned future removes a queued request, or closes the file of a request being read.
+ */
+public class AsyncTileReader {
+
+    private final JsonParser parser;
+    private final Executor executor;
+    private final int maxConcurrency;
+    private final Queue<Request> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger running = new AtomicInteger();
+
+    public AsyncTileReader(JsonParser parser, Executor executor, int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Invalid max concurrency: " + maxConcurrency + ".");
+        }
+        this.parser = parser;
+        this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    private static class Request {
+
+        private final Path path;
+        private final long position;
+        private final long length;
+        private final CompletableFuture<TileModel> future = new CompletableFuture<>();
+        private AsynchronousFileChannel channel;
+        private ByteBuffer buffer;
+
+        private Request(Path path, long position, long length) {
+            this.path = path;
+            this.position = position;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Read the whole file as a tile.
+     */
+    public CompletableFuture<TileModel> read(Path path) {
+        return submit(new Request(path, 0, -1));
+    }
+
+    /**
+     * Read the tile of length bytes at the position of the file, e.g. an inner tile of a cmpt.
+     */
+    public CompletableFuture<TileModel> read(Path path, long position, int length) {
+        if (position < 0 || length < 12) {
+            throw new IllegalArgumentException("Invalid tile range: " + length + " bytes at " + position + ".");
+        }
+        return submit(new Request(path, position, length));
+    }
+
+    /**
+     * Read the tile of the index entry. The path of the entry is resolved against the root.
+     */
+    public CompletableFuture<TileModel> read(Path root, TileIndexEntry entry) {
+        return read(root.resolve(entry.getPath()), entry.getOffset(), entry.getByteLength());
+    }
+
+    /**
+     * @return the number of requests waiting for a slot.
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * @return the number of requests being read or decoded.
+     */
+    public int getRunningCount() {
+        return running.get();
+    }
+
+    private CompletableFuture<TileModel> submit(Request request) {
+        pending.add(request);
+        drain();
+        return request.future;
+    }
+
+    private void drain() {
+        while (true) {
+            int count = running.get();
+            if (count >= maxConcurrency) {
+                return;
+            }
+            if (!running.compareAndSet(count, count + 1)) {
+                continue;
+            }
+            Request request = pending.poll();
+            if (request == null) {
+                running.decrementAndGet();
+                if (pending.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            // Cancelled and failed requests give their slot back in the loop, so a long queue of them does not recurse.
+            if (request.future.isDone() || !start(request)) {
+                close(request);
+                running.decrementAndGet();
+            }
+        }
+    }
+
+    private static void close(Request request) {
+        if (request.channel != null) {
+            try {
+                request.channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+        request.buffer = null;
+    }
+
+    private void finish(Request request) {
+        close(request);
+        running.decrementAndGet();
+        drain();
+    }
+
+    private boolean start(Request request) {
+        try {
+            request.channel = AsynchronousFileChannel.open(request.path, StandardOpenOption.READ);
+            long length = request.length >= 0 ? request.length : request.channel.size() - request.position;
+            if (length > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too big tile: " + length + " bytes. A tile can not be larger than 2GB.");
+            }
+            request.buffer = ByteBuffer.allocate((int) length);
+        } catch (IOException | RuntimeException e) {
+            request.future.completeExceptionally(e);
+            return false;
+        }
+        // A cancellation from now on closes the file, which fails the pending read.
+        request.future.whenComplete((tile, error) -> finish(request));
+        readNext(request);
+        return true;
+    }
+
+    private void readNext(Request request) {
+        ByteBuffer buffer = request.buffer;
+        if (request.future.isDone() || buffer == null) {
+            return;
+        }
+        try {
+            request.channel.read(buffer, request.position + buffer.position(), request, new CompletionHandler<Integer, Request>() {
+
+                @Override
+                public void completed(Integer result, Request request) {
+                    if (result < 0) {
+                        request.future.completeExceptionally(new EOFException("Unexpected end of file " + request.path + " at " + (request.position + buffer.position()) + "."));
+                    } else if (buffer.hasRemaining()) {
+                        readNext(request);
+                    } else {
+                        decode(request, buffer);
+                    }
+                }
+
+                @Override
+                public void failed(Throwable exc, Request request) {
+                    request.future.completeExceptionally(exc);
+                }
+            });
+        } catch (RuntimeException e) {
+            request.future.completeExceptionally(e);
+        }
+    }
+
+    private void decode(Request request, ByteBuffer buffer) {
+        buffer.flip();
+        try {
+            executor.execute(() -> {
+                if (request.future.isDone()) {
+                    return;
+                }
+                try {
+                    request.future.complete(MappedTile.wrap(buffer).read(parser));
+                } catch (IOException | RuntimeException e) {
+                    request.future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            request.future.completeExceptionally(e);
+        }
+    }
+}
@@ -3,10 +3,17 @@ package me.cxj.j3dtiles.model.v1;
 import de.javagl.jgltf.model.GltfModel;
 import de.javagl.jgltf.model.io.GltfModelReader;
 import de.javagl.jgltf.model.io.GltfModelWriter;
+import de.javagl.jgltf.model.io.v2.BinaryGltfChunksV2;
+import de.javagl.jgltf.model.io.v2.MeshoptCompression;
+import me.cxj.j3dtiles.utils.BufferArena;
 import me.cxj.j3dtiles.utils.CommonUtils;
+import me.cxj.j3dtiles.utils.IOUtils;
 import me.cxj.j3dtiles.utils.JsonParser;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * Created by vipcxj on 2018/10/30.
@@ -17,6 +24,26 @@ public class B3dm implements TileModel {
     private B3dmFeatureTable featureTable;
     private BatchTable batchTable;
     private GltfModel gltf;
+    /**
+     * The buffer views of the gltf to compress with EXT_meshopt_compression when the tile is written, may be null.
+     */
+    private MeshoptCompression gltfCompression;
+
+    private B3dm() {
+    }
+
+    /**
+     * A new tile, the batch length of the batch table should be the one of the feature table.
+     */
+    public B3dm(B3dmFeatureTable featureTable, BatchTable batchTable, GltfModel gltf) {
+        if (featureTable.getBatchLength() != batchTable.getBatchLength()) {
+            throw new IllegalArgumentException("Mismatched batch length: " + featureTable.getBatchLength() + " in the feature table but " + batchTable.getBatchLength() + " in the batch table.");
+        }
+        this.header = new B3dmHeader();
+        this.featureTable = featureTable;
+        this.batchTable = batchTable;
+        this.gltf = gltf;
+    }
 
     public static B3dm read(InputStream is, JsonParser parser, boolean hasReadMagic, boolean hasReadVersion) throws IOException {
         DataInputStream dataInputStream = new DataInputStream(is);
@@ -28,24 +55,76 @@ public class B3dm implements TileModel {
         return instance;
     }
 
+    public static B3dm read(MappedTile tile, JsonParser parser) throws IOException {
+        if (!(tile.getHeader() instanceof B3dmHeader)) {
+            throw new IllegalArgumentException("Not a b3dm tile.");
+        }
+        B3dm instance = new B3dm();
+        instance.header = (B3dmHeader) tile.getHeader();
+        try (InputStream is = tile.openTableStream()) {
+            instance.featureTable = B3dmFeatureTable.read(is, instance.header, parser);
+        }
+        instance.batchTable = BatchTable.read(tile.getBatchTableJSONString(), tile.getBatchTableBinary(), parser, instance.featureTable.getBatchLength());
+        instance.gltf = tile.readGltf();
+        return instance;
+    }
+
     @Override
-    @SuppressWarnings("Duplicates")
     public void write(OutputStream os, JsonParser parser) throws IOException {
+        write(Channels.newChannel(os), parser);
+    }
+
+    @Override
+    public void write(WritableByteChannel channel, JsonParser parser) throws IOException {
+        IOUtils.writeFully(channel, createBuffers(parser));
+    }
+
+    @Override
+    public ByteBuffer[] createBuffers(JsonParser parser) throws IOException {
+        return createBuffers(parser, null);
+    }
+
+    @Override
+    @SuppressWarnings("Duplicates")
+    public ByteBuffer[] createBuffers(JsonParser parser, BufferArena arena) throws IOException {
         byte[] featureTableBuffer = featureTable.createBuffer(header, parser);
-        byte[] batchTableBuffer = batchTable.createBuffer(header, parser, featureTable.getBatchLength());
-        byte[] gltfBuffer = CommonUtils.getPadGltf(gltf, 8);
-        header.setByteLength(getHeader().getHeaderLength() + featureTableBuffer.length + batchTableBuffer.length + gltfBuffer.length);
-        header.write(os);
-        os.write(featureTableBuffer);
-        os.write(batchTableBuffer);
-        os.write(gltfBuffer);
+        ByteBuffer batchTableBuffer = batchTable.createBuffer(header, parser, featureTable.getBatchLength(), arena);
+        BinaryGltfChunksV2 gltfChunks = CommonUtils.getPadGltfChunks(gltf, 8, gltfCompression);
+        header.setByteLength(getHeader().getHeaderLength() + featureTableBuffer.length + batchTableBuffer.remaining() + gltfChunks.getByteLength());
+        ByteBuffer[] gltfBuffers = gltfChunks.getBuffers();
+        ByteBuffer[] buffers = new ByteBuffer[3 + gltfBuffers.length];
+        buffers[0] = header.toBuffer();
+        buffers[1] = ByteBuffer.wrap(featureTableBuffer);
+        buffers[2] = batchTableBuffer;
+        System.arraycopy(gltfBuffers, 0, buffers, 3, gltfBuffers.length);
+        return buffers;
     }
 
     public long calcSize(JsonParser parser) {
         return header.getHeaderLength()
                 + featureTable.calcSize(header, parser)
                 + batchTable.calcSize(header, parser, featureTable.getBatchLength())
-                + CommonUtils.calcGltfSize(gltf, 8);
+                + CommonUtils.calcGltfSize(gltf, 8, gltfCompression);
+    }
+
+    public B3dmFeatureTable getFeatureTable() {
+        return featureTable;
+    }
+
+    public BatchTable getBatchTable() {
+        return batchTable;
+    }
+
+    public GltfModel getGltf() {
+        return gltf;
+    }
+
+    public MeshoptCompression getGltfCompression() {
+        return gltfCompression;
+    }
+
+    public void setGltfCompression(MeshoptCompression gltfCompression) {
+        this.gltfCompression = gltfCompression;
     }
 
     @Override
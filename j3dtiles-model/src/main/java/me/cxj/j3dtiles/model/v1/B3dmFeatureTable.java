@@ -65,15 +65,29 @@ public class B3dmFeatureTable {
     }
 
     public long calcSize(B3dmHeader header, JsonParser parser) {
-        byte[] bytes = parser.toJsonString(createData()).getBytes(StandardCharsets.UTF_8);
-        return bytes.length + CommonUtils.calcPadding(header.getHeaderLength() + bytes.length, 8);
+        int length = CommonUtils.utf8Length(parser.toJsonString(createData()));
+        return length + CommonUtils.calcPadding(header.getHeaderLength() + length, 8);
     }
 
     public int getBatchLength() {
         return BATCH_LENGTH;
     }
 
+    public void setBatchLength(int batchLength) {
+        if (batchLength < 0) {
+            throw new IllegalArgumentException("Invalid batch length: " + batchLength + ".");
+        }
+        BATCH_LENGTH = batchLength;
+    }
+
     public float[] getRtcCenter() {
         return RTC_CENTER;
     }
+
+    public void setRtcCenter(float[] rtcCenter) {
+        if (rtcCenter != null && rtcCenter.length != 3) {
+            throw new IllegalArgumentException("Invalid RTC_CENTER, it should be a vec3.");
+        }
+        RTC_CENTER = rtcCenter;
+    }
 }
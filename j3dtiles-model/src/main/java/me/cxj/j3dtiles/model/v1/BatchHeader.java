@@ -8,6 +8,10 @@ public abstract class BatchHeader extends Header {
     private int batchTableJSONByteLength;
     private int batchTableBinaryByteLength;
 
+    public abstract int getFeatureTableJSONByteLength();
+
+    public abstract int getFeatureTableBinaryByteLength();
+
     public int getBatchTableJSONByteLength() {
         return batchTableJSONByteLength;
     }
@@ -1,25 +1,63 @@
 package me.cxj.j3dtiles.model.v1;
 
 import me.cxj.j3dtiles.impl.v1.BinaryBodyReference;
+import me.cxj.j3dtiles.impl.v1.ComponentType;
 import me.cxj.j3dtiles.utils.*;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
  * Created by vipcxj on 2018/10/30.
+ *
+ * The binary properties are not decoded when reading. The binary body is kept as is and the values are decoded
+ * on demand, either cell by cell with the typed getters, or as a whole column.
+ * The json string properties with repeated values are kept dictionary encoded, see {@link #getStringColumn(String)}.
  */
 public class BatchTable {
 
+    /**
+     * All properties in order. The binary properties map to null until they are decoded by {@link #getColumn(String)}.
+     */
     private Map<String, List<?>> data;
     private Map<String, BinaryBodyReference> references;
+    private ByteBuffer binary;
+    private int batchLength;
+    /**
+     * The extensions other than {@link BatchTableHierarchy#EXTENSION_NAME}, kept as is.
+     */
+    private Map<String, Object> extensions;
+    private Object extras;
+    private BatchTableHierarchy hierarchy;
+
+    private BatchTable() {
+    }
+
+    /**
+     * An empty table of batchLength features, to be filled by {@link #setColumn(String, List)}.
+     */
+    public BatchTable(int batchLength) {
+        if (batchLength < 0) {
+            throw new IllegalArgumentException("Invalid batch length: " + batchLength + ".");
+        }
+        this.data = new LinkedHashMap<>();
+        this.references = new LinkedHashMap<>();
+        this.binary = ByteBuffer.allocate(0).order(ByteOrder.LITTLE_ENDIAN);
+        this.batchLength = batchLength;
+    }
+
+    private static boolean isReserved(String property) {
+        return "extensions".equals(property) || "extras".equals(property);
+    }
 
     private static Map<String, BinaryBodyReference> collectReferences(Map<String, Object> jsonHeader) {
         Map<String, BinaryBodyReference> references = new LinkedHashMap<>();
         for (Map.Entry<String, Object> entry : jsonHeader.entrySet()) {
-            if (entry.getValue() instanceof Map) {
+            if (!isReserved(entry.getKey()) && entry.getValue() instanceof Map) {
                 references.put(entry.getKey(), FeatureUtils.toReference(entry.getValue()));
             }
         }
@@ -28,25 +66,58 @@ public class BatchTable {
 
     public static BatchTable read(InputStream is, BatchHeader header, JsonParser parser, int batchLength) throws IOException {
         LittleEndianDataInputStream dis = new LittleEndianDataInputStream(is);
-        BatchTable table = new BatchTable();
         byte[] jsonByteBuff = new byte[header.getBatchTableJSONByteLength()];
         dis.readFully(jsonByteBuff);
-        Object jsonHeaderObject = parser.parse(new String(jsonByteBuff, "UTF-8"));
+        byte[] binaryByteBuff = new byte[header.getBatchTableBinaryByteLength()];
+        dis.readFully(binaryByteBuff);
+        return read(new String(jsonByteBuff, StandardCharsets.UTF_8), ByteBuffer.wrap(binaryByteBuff), parser, batchLength);
+    }
+
+    /**
+     * The binary body is referred to, not copied, so it must not be modified as long as the table is in use.
+     * With a {@link JacksonJsonParser}, the repeated string columns are dictionary encoded while the json is parsed.
+     */
+    public static BatchTable read(String json, ByteBuffer binary, JsonParser parser, int batchLength) {
+        BatchTable table = new BatchTable();
+        Object jsonHeaderObject = parser instanceof JacksonJsonParser ? ((JacksonJsonParser) parser).parseObjectWithStringColumns(json) : parser.parse(json);
         if (!(jsonHeaderObject instanceof Map)) {
             throw new IllegalArgumentException("The json parser must parse the object to a map. And the batch table json header must be an object.");
         }
         //noinspection unchecked
         Map<String, Object> jsonHeader = (Map<String, Object>) jsonHeaderObject;
-        byte[] binaryByteBuff = new byte[header.getBatchTableBinaryByteLength()];
-        dis.readFully(binaryByteBuff);
+        table.binary = binary.slice().order(ByteOrder.LITTLE_ENDIAN);
+        table.batchLength = batchLength;
         table.references = collectReferences(jsonHeader);
         table.data = new LinkedHashMap<>();
+        table.extras = jsonHeader.get("extras");
+        Object extensions = jsonHeader.get("extensions");
+        if (extensions != null) {
+            if (!(extensions instanceof Map)) {
+                throw new IllegalArgumentException("Invalid batch table extensions: " + extensions + ".");
+            }
+            //noinspection unchecked
+            table.extensions = new LinkedHashMap<>((Map<String, Object>) extensions);
+            Object hierarchy = table.extensions.remove(BatchTableHierarchy.EXTENSION_NAME);
+            if (hierarchy instanceof Map) {
+                //noinspection unchecked
+                table.hierarchy = BatchTableHierarchy.read((Map<String, Object>) hierarchy, table.binary);
+            } else if (hierarchy != null) {
+                throw new IllegalArgumentException("Invalid " + BatchTableHierarchy.EXTENSION_NAME + ": " + hierarchy + ".");
+            }
+        }
         for (Map.Entry<String, Object> entry : jsonHeader.entrySet()) {
+            if (isReserved(entry.getKey())) {
+                continue;
+            }
             BinaryBodyReference reference = table.references.get(entry.getKey());
             if (reference != null) {
-                table.data.put(entry.getKey(), FeatureUtils.getBatchTableValues(reference, binaryByteBuff, entry.getKey(), batchLength));
+                long end = reference.getByteOffset() + (long) batchLength * reference.getType().getSize() * reference.getComponentType().getSize();
+                if (reference.getByteOffset() < 0 || end > table.binary.capacity()) {
+                    throw new IllegalArgumentException("The batch table property " + entry.getKey() + " is out of the binary body.");
+                }
+                table.data.put(entry.getKey(), null);
             } else if (entry.getValue() instanceof List) {
-                table.data.put(entry.getKey(), (List) entry.getValue());
+                table.data.put(entry.getKey(), StringColumn.encodeIfRepeated((List<?>) entry.getValue()));
             } else {
                 throw new IllegalArgumentException("Invalid batch table property: " + entry + ".");
             }
@@ -54,35 +125,49 @@ public class BatchTable {
         return table;
     }
 
+    /**
+     * @param batchLength the batch length of the feature table, it must be the one of this table.
+     */
     public byte[] createBuffer(BatchHeader header, JsonParser parser, int batchLength) throws IOException {
+        return createBuffer(header, parser, batchLength, null).array();
+    }
+
+    /**
+     * @param batchLength the batch length of the feature table, it must be the one of this table.
+     * @param arena where the buffers come from, or null. The returned buffer should be given back to the arena once written.
+     */
+    public ByteBuffer createBuffer(BatchHeader header, JsonParser parser, int batchLength, BufferArena arena) throws IOException {
+        checkBatchLength(batchLength);
         Map<String, Object> outJsonHeader = new HashMap<>();
-        try (BinaryBodyHelper helper = new BinaryBodyHelper(outJsonHeader)){
+        try (BinaryBodyHelper helper = new BinaryBodyHelper(outJsonHeader, arena)){
             for (Map.Entry<String, List<?>> entry : data.entrySet()) {
                 BinaryBodyReference reference = references.get(entry.getKey());
                 if (reference == null) {
                     outJsonHeader.put(entry.getKey(), entry.getValue());
                 } else {
-                    helper.writeData(entry.getKey(), entry.getValue(), reference.getComponentType(), reference.getType(), false, true);
+                    helper.writeRawData(entry.getKey(), getRawColumn(reference), reference.getComponentType(), reference.getType(), false, true);
                 }
             }
+            Map<String, Object> outExtensions = createExtensions();
+            if (hierarchy != null) {
+                outExtensions.put(BatchTableHierarchy.EXTENSION_NAME, hierarchy.write(helper));
+            }
+            putExtensions(outJsonHeader, outExtensions);
             helper.finished();
             String jsonHeader = parser.toJsonString(outJsonHeader);
             byte[] jsonHeaderBytes = jsonHeader.getBytes(StandardCharsets.UTF_8);
-            int jsonSize = jsonHeaderBytes.length;
-            int jsonPadding = CommonUtils.calcPadding(jsonSize, 8);
-            byte[] binaryBody = helper.toByteArray();
-            int buffSize = jsonSize + jsonPadding + binaryBody.length;
-            byte[] out = new byte[buffSize];
-            System.arraycopy(jsonHeaderBytes, 0, out, 0, jsonSize);
-            Arrays.fill(out, jsonSize, jsonSize + jsonPadding, (byte) 0x20);
-            System.arraycopy(binaryBody, 0, out, jsonSize + jsonPadding, binaryBody.length);
-            header.setBatchTableJSONByteLength(jsonSize + jsonPadding);
-            header.setBatchTableBinaryByteLength(binaryBody.length);
-            return out;
+            int jsonLength = jsonHeaderBytes.length + CommonUtils.calcPadding(jsonHeaderBytes.length, 8);
+            header.setBatchTableJSONByteLength(jsonLength);
+            header.setBatchTableBinaryByteLength(helper.getSize());
+            return helper.createTable(jsonHeaderBytes, jsonLength);
         }
     }
 
+    /**
+     * @param batchLength the batch length of the feature table, it must be the one of this table.
+     */
     public int calcSize(BatchHeader header, JsonParser parser, int batchLength) {
+        checkBatchLength(batchLength);
         Map<String, Object> outJsonHeader = new HashMap<>();
         BinaryBodySizeHelper helper = new BinaryBodySizeHelper(outJsonHeader);
         for (Map.Entry<String, List<?>> entry : data.entrySet()) {
@@ -90,14 +175,238 @@ public class BatchTable {
             if (reference == null) {
                 outJsonHeader.put(entry.getKey(), entry.getValue());
             } else {
-                helper.addProperty(entry.getKey(), entry.getValue(), reference.getComponentType(), reference.getType(), false);
+                helper.addProperty(entry.getKey(), batchLength, reference.getComponentType(), reference.getType(), false);
             }
         }
+        Map<String, Object> outExtensions = createExtensions();
+        if (hierarchy != null) {
+            outExtensions.put(BatchTableHierarchy.EXTENSION_NAME, hierarchy.calcSize(helper));
+        }
+        putExtensions(outJsonHeader, outExtensions);
         helper.finished();
         return helper.calcHeaderSize(0, parser) + helper.getSize();
     }
 
+    private void checkBatchLength(int batchLength) {
+        if (batchLength != this.batchLength) {
+            throw new IllegalArgumentException("Mismatched batch length: " + batchLength + " in the feature table but " + this.batchLength + " in the batch table.");
+        }
+    }
+
+    private Map<String, Object> createExtensions() {
+        return extensions != null ? new LinkedHashMap<>(extensions) : new LinkedHashMap<>();
+    }
+
+    private void putExtensions(Map<String, Object> outJsonHeader, Map<String, Object> outExtensions) {
+        if (!outExtensions.isEmpty()) {
+            outJsonHeader.put("extensions", outExtensions);
+        }
+        if (extras != null) {
+            outJsonHeader.put("extras", extras);
+        }
+    }
+
+    private ByteBuffer getRawColumn(BinaryBodyReference reference) {
+        ByteBuffer buffer = binary.duplicate();
+        buffer.position(reference.getByteOffset());
+        buffer.limit(reference.getByteOffset() + batchLength * reference.getType().getSize() * reference.getComponentType().getSize());
+        return buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private BinaryBodyReference getBinaryReference(String property) {
+        if (!data.containsKey(property)) {
+            throw new IllegalArgumentException("No such property: " + property + ".");
+        }
+        return references.get(property);
+    }
+
+    private BinaryBodyReference getScalarReference(String property) {
+        BinaryBodyReference reference = getBinaryReference(property);
+        if (reference != null && reference.getType().getSize() != 1) {
+            throw new IllegalArgumentException("The property " + property + " is not a scalar but a " + reference.getType() + ".");
+        }
+        return reference;
+    }
+
+    private void checkBatchId(int batchId) {
+        if (batchId < 0 || batchId >= batchLength) {
+            throw new IndexOutOfBoundsException("Invalid batch id: " + batchId + ", the batch length is " + batchLength + ".");
+        }
+    }
+
+    private int getPosition(BinaryBodyReference reference, int batchId) {
+        checkBatchId(batchId);
+        return reference.getByteOffset() + batchId * reference.getComponentType().getSize();
+    }
+
+    /**
+     * Set a property stored in the json header, with a value per feature. Repeated strings are dictionary encoded.
+     */
+    public void setColumn(String property, List<?> values) {
+        if (isReserved(property)) {
+            throw new IllegalArgumentException("Invalid property name: " + property + ", it is reserved.");
+        }
+        if (values.size() != batchLength) {
+            throw new IllegalArgumentException("Invalid length of the property " + property + ": " + values.size() + ", it should be the batch length " + batchLength + ".");
+        }
+        references.remove(property);
+        data.put(property, StringColumn.encodeIfRepeated(values));
+    }
+
+    public Set<String> getPropertyNames() {
+        return Collections.unmodifiableSet(data.keySet());
+    }
+
+    public boolean hasProperty(String property) {
+        return data.containsKey(property);
+    }
+
+    /**
+     * @return the binary body reference of the property, or null if the property is stored in the json header.
+     */
+    public BinaryBodyReference getReference(String property) {
+        return references.get(property);
+    }
+
+    /**
+     * Decode the whole column of the property. The result is cached and read only.
+     */
+    public List<?> getColumn(String property) {
+        BinaryBodyReference reference = getBinaryReference(property);
+        if (reference == null || data.get(property) != null) {
+            return data.get(property);
+        }
+        List<Object> values = new ArrayList<>(batchLength);
+        for (int i = 0; i < batchLength; ++i) {
+            values.add(FeatureUtils.getBatchTableValue(reference, binary, i));
+        }
+        List<?> column = Collections.unmodifiableList(values);
+        data.put(property, column);
+        return column;
+    }
+
+    /**
+     * @return the dictionary encoded column of the json string property, or null if the property is not dictionary encoded.
+     */
+    public StringColumn getStringColumn(String property) {
+        if (!data.containsKey(property)) {
+            throw new IllegalArgumentException("No such property: " + property + ".");
+        }
+        List<?> values = data.get(property);
+        return values != null ? StringColumn.fromList(values) : null;
+    }
+
+    /**
+     * A property missing from the table is looked up in the batch table hierarchy, if any.
+     */
     public Object getProperty(String property, int batchId) {
-        return data.get(property).get(batchId);
+        if (hierarchy != null && !data.containsKey(property)) {
+            checkBatchId(batchId);
+            return hierarchy.getProperty(batchId, property);
+        }
+        BinaryBodyReference reference = getBinaryReference(property);
+        if (reference == null) {
+            return data.get(property).get(batchId);
+        }
+        checkBatchId(batchId);
+        return FeatureUtils.getBatchTableValue(reference, binary, batchId);
+    }
+
+    public int getInt(String property, int batchId) {
+        return (int) getLong(property, batchId);
+    }
+
+    public long getLong(String property, int batchId) {
+        BinaryBodyReference reference = getScalarReference(property);
+        if (reference == null) {
+            return TypeUtils.toLong(data.get(property).get(batchId));
+        }
+        return FeatureUtils.getComponentAsLong(binary, reference.getComponentType(), getPosition(reference, batchId));
+    }
+
+    public float getFloat(String property, int batchId) {
+        return (float) getDouble(property, batchId);
+    }
+
+    public double getDouble(String property, int batchId) {
+        BinaryBodyReference reference = getScalarReference(property);
+        if (reference == null) {
+            return TypeUtils.toDouble(data.get(property).get(batchId));
+        }
+        return FeatureUtils.getComponentAsDouble(binary, reference.getComponentType(), getPosition(reference, batchId));
+    }
+
+    /**
+     * Decode the property as doubles. The components of a vector property are flattened,
+     * so the result has batchLength * component count elements.
+     */
+    public double[] getDoubleColumn(String property) {
+        BinaryBodyReference reference = getBinaryReference(property);
+        if (reference == null) {
+            List<?> values = data.get(property);
+            double[] out = new double[values.size()];
+            for (int i = 0; i < out.length; ++i) {
+                out[i] = TypeUtils.toDouble(values.get(i));
+            }
+            return out;
+        }
+        ComponentType componentType = reference.getComponentType();
+        int width = componentType.getSize();
+        double[] out = new double[batchLength * reference.getType().getSize()];
+        int position = reference.getByteOffset();
+        for (int i = 0; i < out.length; ++i, position += width) {
+            out[i] = FeatureUtils.getComponentAsDouble(binary, componentType, position);
+        }
+        return out;
+    }
+
+    /**
+     * Same as {@link #getDoubleColumn(String)}, but as floats.
+     */
+    public float[] getFloatColumn(String property) {
+        BinaryBodyReference reference = getBinaryReference(property);
+        if (reference != null && reference.getComponentType() == ComponentType.FLOAT) {
+            float[] out = new float[batchLength * reference.getType().getSize()];
+            ByteBuffer buffer = getRawColumn(reference);
+            buffer.asFloatBuffer().get(out);
+            return out;
+        }
+        double[] values = getDoubleColumn(property);
+        float[] out = new float[values.length];
+        for (int i = 0; i < out.length; ++i) {
+            out[i] = (float) values[i];
+        }
+        return out;
+    }
+
+    /**
+     * @return the 3DTILES_batch_table_hierarchy extension, or null.
+     */
+    public BatchTableHierarchy getHierarchy() {
+        return hierarchy;
+    }
+
+    public void setHierarchy(BatchTableHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+    }
+
+    public Map<String, Object> getExtensions() {
+        return extensions;
+    }
+
+    public void setExtensions(Map<String, Object> extensions) {
+        this.extensions = extensions;
+    }
+
+    public Object getExtras() {
+        return extras;
+    }
+
+    public void setExtras(Object extras) {
+        this.extras = extras;
+    }
+
+    public int getBatchLength() {
+        return batchLength;
     }
 }
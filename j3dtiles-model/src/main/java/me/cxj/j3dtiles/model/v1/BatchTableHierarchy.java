@@ -0,0 +1,645 @@
+package me.cxj.j3dtiles.model.v1;
+
+import me.cxj.j3dtiles.impl.v1.BinaryBodyReference;
+import me.cxj.j3dtiles.impl.v1.ComponentType;
+import me.cxj.j3dtiles.utils.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+
+/**
+ * The 3DTILES_batch_table_hierarchy extension of a batch table. The class ids, the parents and the index of each
+ * instance among the instances of its class are kept in flat int arrays. The parents of an instance are
+ * parentIds[parentOffsets[i]] to parentIds[parentOffsets[i + 1]], a root has no parent.
+ * A property name is resolved once to the instance properties of each class, so walking up to the ancestors only
+ * indexes arrays. The first batchLength instances are the features of the tile, so an instance id of a feature is its batch id.
+ */
+public class BatchTableHierarchy {
+
+    public static final String EXTENSION_NAME = "3DTILES_batch_table_hierarchy";
+
+    private static class HierarchyClass {
+
+        private final String name;
+        private int length;
+        /**
+         * The instance properties. A value is either a list of length values, or a reference to the binary body.
+         */
+        private final Map<String, Object> instances = new LinkedHashMap<>();
+
+        private HierarchyClass(String name) {
+            this.name = name;
+        }
+    }
+
+    private final List<HierarchyClass> classes = new ArrayList<>();
+    private final IntColumn classIds = new IntColumn(1);
+    private final IntColumn classIndices = new IntColumn(1);
+    private final IntColumn parentOffsets = new IntColumn(1);
+    private final IntColumn parentIds = new IntColumn(1);
+    private boolean multipleParents;
+    private ByteBuffer binary;
+    /**
+     * The resolved properties, the values of a property are indexed by the class ids.
+     */
+    private final Map<String, Object[]> resolved = new HashMap<>();
+    /**
+     * The scratch of the traversal of the ancestors. The current instance and the steps taken with single parents, the
+     * stack of the parents to visit and the generation of the traversal where each instance was last visited with multiple parents.
+     */
+    private int current;
+    private int steps;
+    private int[] stack = new int[16];
+    private int stackSize;
+    private int[] visited = new int[0];
+    private int generation;
+
+    public BatchTableHierarchy() {
+        parentOffsets.add(0);
+    }
+
+    /**
+     * @param binary the little endian binary body of the batch table, the binary instance properties refer to it.
+     */
+    public static BatchTableHierarchy read(Map<String, Object> json, ByteBuffer binary) {
+        BatchTableHierarchy hierarchy = new BatchTableHierarchy();
+        hierarchy.binary = binary;
+        Object objClasses = json.get("classes");
+        if (!(objClasses instanceof List)) {
+            throw new IllegalArgumentException("Invalid " + EXTENSION_NAME + ", classes is required and must be an array.");
+        }
+        for (Object objClass : (List<?>) objClasses) {
+            if (!(objClass instanceof Map)) {
+                throw new IllegalArgumentException("Invalid class of " + EXTENSION_NAME + ": " + objClass + ".");
+            }
+            Map<?, ?> mapClass = (Map<?, ?>) objClass;
+            Object name = mapClass.get("name");
+            Object length = mapClass.get("length");
+            Object instances = mapClass.get("instances");
+            if (name == null || length == null || !(instances instanceof Map)) {
+                throw new IllegalArgumentException("Invalid class of " + EXTENSION_NAME + ", name, length and instances are required.");
+            }
+            HierarchyClass hierarchyClass = new HierarchyClass(name.toString());
+            hierarchyClass.length = TypeUtils.toInteger(length);
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) instances).entrySet()) {
+                String property = entry.getKey().toString();
+                Object value = entry.getValue();
+                if (value instanceof List) {
+                    if (((List) value).size() != hierarchyClass.length) {
+                        throw new IllegalArgumentException("The instance property " + property + " of the class " + hierarchyClass.name + " should have " + hierarchyClass.length + " values.");
+                    }
+                    hierarchyClass.instances.put(property, StringColumn.encodeIfRepeated((List<?>) value));
+                } else {
+                    BinaryBodyReference reference = FeatureUtils.toReference(value);
+                    long end = reference.getByteOffset() + (long) hierarchyClass.length * reference.getType().getSize() * reference.getComponentType().getSize();
+                    if (reference.getByteOffset() < 0 || end > binary.capacity()) {
+                        throw new IllegalArgumentException("The instance property " + property + " of the class " + hierarchyClass.name + " is out of the binary body.");
+                    }
+                    hierarchyClass.instances.put(property, reference);
+                }
+            }
+            hierarchy.classes.add(hierarchyClass);
+        }
+        Object objInstancesLength = json.get("instancesLength");
+        if (objInstancesLength == null) {
+            throw new IllegalArgumentException("Invalid " + EXTENSION_NAME + ", instancesLength is required.");
+        }
+        int instancesLength = TypeUtils.toInteger(objInstancesLength);
+        int[] classIds = readIndices(json.get("classIds"), "classIds", instancesLength, binary);
+        if (classIds == null) {
+            throw new IllegalArgumentException("Invalid " + EXTENSION_NAME + ", classIds is required.");
+        }
+        int[] parentCounts = readIndices(json.get("parentCounts"), "parentCounts", instancesLength, binary);
+        int parentIdsLength = instancesLength;
+        if (parentCounts != null) {
+            long sum = 0;
+            for (int count : parentCounts) {
+                sum += count & 0xFFFFFFFFL;
+            }
+            if (sum > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Invalid parentCounts of " + EXTENSION_NAME + ", too many parents.");
+            }
+            parentIdsLength = (int) sum;
+        }
+        int[] parentIds = readIndices(json.get("parentIds"), "parentIds", parentIdsLength, binary);
+        int[] classLengths = new int[hierarchy.classes.size()];
+        int parentOffset = 0;
+        for (int i = 0; i < instancesLength; ++i) {
+            int classId = classIds[i];
+            if (classId < 0 || classId >= classLengths.length) {
+                throw new IllegalArgumentException("Invalid class id of the instance " + i + ": " + (classId & 0xFFFFFFFFL) + ".");
+            }
+            hierarchy.classIds.add(classId);
+            hierarchy.classIndices.add(classLengths[classId]++);
+            int count = parentCounts != null ? parentCounts[i] : 1;
+            for (int j = 0; j < count && parentIds != null; ++j) {
+                int parentId = parentIds[parentOffset++];
+                if (parentId < 0 || parentId >= instancesLength) {
+                    throw new IllegalArgumentException("Invalid parent id of the instance " + i + ": " + (parentId & 0xFFFFFFFFL) + ".");
+                }
+                // A root is its own parent.
+                if (parentId != i) {
+                    hierarchy.parentIds.add(parentId);
+                }
+            }
+            hierarchy.endInstance();
+        }
+        for (int i = 0; i < classLengths.length; ++i) {
+            if (classLengths[i] != hierarchy.classes.get(i).length) {
+                throw new IllegalArgumentException("The class " + hierarchy.classes.get(i).name + " has " + classLengths[i] + " instances, but its length is " + hierarchy.classes.get(i).length + ".");
+            }
+        }
+        return hierarchy;
+    }
+
+    private static int[] readIndices(Object value, String property, int length, ByteBuffer binary) {
+        if (value == null) {
+            return null;
+        }
+        int[] out = new int[length];
+        if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            if (list.size() != length) {
+                throw new IllegalArgumentException("The " + property + " of " + EXTENSION_NAME + " should have " + length + " values, but " + list.size() + " in fact.");
+            }
+            for (int i = 0; i < length; ++i) {
+                out[i] = TypeUtils.toUnsignedInteger(list.get(i));
+            }
+            return out;
+        }
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("Invalid " + property + " of " + EXTENSION_NAME + ", it must be an array or a binary body reference.");
+        }
+        Map<?, ?> reference = (Map<?, ?>) value;
+        Object objByteOffset = reference.get("byteOffset");
+        if (objByteOffset == null) {
+            throw new IllegalArgumentException("Invalid " + property + " of " + EXTENSION_NAME + ", no byteOffset found.");
+        }
+        int offset = TypeUtils.toInteger(objByteOffset);
+        Object objComponentType = reference.get("componentType");
+        ComponentType componentType = objComponentType != null ? ComponentType.valueOf(objComponentType.toString()) : ComponentType.UNSIGNED_SHORT;
+        if (componentType != ComponentType.UNSIGNED_BYTE && componentType != ComponentType.UNSIGNED_SHORT && componentType != ComponentType.UNSIGNED_INT) {
+            throw new IllegalArgumentException("Valid component types of the " + property + " of " + EXTENSION_NAME + " are uint8, uint16 (default), and uint32.");
+        }
+        if (offset < 0 || (long) offset + (long) length * componentType.getSize() > binary.capacity()) {
+            throw new IllegalArgumentException("The " + property + " of " + EXTENSION_NAME + " is out of the binary body.");
+        }
+        for (int i = 0; i < length; ++i) {
+            out[i] = (int) FeatureUtils.getComponentAsLong(binary, componentType, offset + i * componentType.getSize());
+        }
+        return out;
+    }
+
+    private void endInstance() {
+        int instance = parentOffsets.size() - 1;
+        int count = parentIds.size() - parentOffsets.getComponent(instance, 0);
+        if (count > 1) {
+            multipleParents = true;
+        }
+        parentOffsets.add(parentIds.size());
+    }
+
+    /**
+     * @return the class id.
+     */
+    public int addClass(String name) {
+        classes.add(new HierarchyClass(name));
+        resolved.clear();
+        return classes.size() - 1;
+    }
+
+    /**
+     * Add an instance of the class. A property the class does not have yet is added to the class, and is null for
+     * the previous instances. The properties the instance does not have are null.
+     * @param parentIds the parents of the instance, none for a root.
+     * @return the instance id.
+     */
+    public int addInstance(int classId, Map<String, ?> properties, int... parentIds) {
+        HierarchyClass hierarchyClass = getHierarchyClass(classId);
+        materialize(hierarchyClass);
+        for (String property : properties.keySet()) {
+            if (!hierarchyClass.instances.containsKey(property)) {
+                hierarchyClass.instances.put(property, new ArrayList<>(Collections.nCopies(hierarchyClass.length, null)));
+                resolved.remove(property);
+            }
+        }
+        for (Map.Entry<String, Object> entry : hierarchyClass.instances.entrySet()) {
+            //noinspection unchecked
+            ((List<Object>) entry.getValue()).add(properties.get(entry.getKey()));
+        }
+        for (int parentId : parentIds) {
+            if (parentId < 0) {
+                throw new IllegalArgumentException("Invalid parent id: " + parentId + ".");
+            }
+        }
+        classIds.add(classId);
+        classIndices.add(hierarchyClass.length++);
+        this.parentIds.addAll(parentIds, 0, parentIds.length);
+        endInstance();
+        return classIds.size() - 1;
+    }
+
+    /**
+     * Decode the binary instance properties of the class, so instances can be added to it.
+     */
+    private void materialize(HierarchyClass hierarchyClass) {
+        for (Map.Entry<String, Object> entry : hierarchyClass.instances.entrySet()) {
+            if (entry.getValue() instanceof BinaryBodyReference) {
+                BinaryBodyReference reference = (BinaryBodyReference) entry.getValue();
+                List<Object> values = new ArrayList<>(hierarchyClass.length);
+                for (int i = 0; i < hierarchyClass.length; ++i) {
+                    values.add(FeatureUtils.getBatchTableValue(reference, binary, i));
+                }
+                entry.setValue(values);
+                resolved.remove(entry.getKey());
+            } else if (!(entry.getValue() instanceof ArrayList) && StringColumn.fromList((List<?>) entry.getValue()) == null) {
+                entry.setValue(new ArrayList<>((List<?>) entry.getValue()));
+                resolved.remove(entry.getKey());
+            }
+        }
+    }
+
+    private HierarchyClass getHierarchyClass(int classId) {
+        if (classId < 0 || classId >= classes.size()) {
+            throw new IndexOutOfBoundsException("Invalid class id: " + classId + ", there are " + classes.size() + " classes.");
+        }
+        return classes.get(classId);
+    }
+
+    private void checkInstance(int instanceId) {
+        if (instanceId < 0 || instanceId >= classIds.size()) {
+            throw new IndexOutOfBoundsException("Invalid instance id: " + instanceId + ", the instances length is " + classIds.size() + ".");
+        }
+    }
+
+    public int getInstancesLength() {
+        return classIds.size();
+    }
+
+    public int getClassesLength() {
+        return classes.size();
+    }
+
+    public String getClassName(int classId) {
+        return getHierarchyClass(classId).name;
+    }
+
+    public int getClassLength(int classId) {
+        return getHierarchyClass(classId).length;
+    }
+
+    public Set<String> getClassPropertyNames(int classId) {
+        return Collections.unmodifiableSet(getHierarchyClass(classId).instances.keySet());
+    }
+
+    public int getClassId(int instanceId) {
+        checkInstance(instanceId);
+        return classIds.array()[instanceId];
+    }
+
+    /**
+     * @return the index of the instance among the instances of its class.
+     */
+    public int getClassIndex(int instanceId) {
+        checkInstance(instanceId);
+        return classIndices.array()[instanceId];
+    }
+
+    public int getParentCount(int instanceId) {
+        checkInstance(instanceId);
+        int[] offsets = parentOffsets.array();
+        return offsets[instanceId + 1] - offsets[instanceId];
+    }
+
+    public int getParentId(int instanceId, int index) {
+        int count = getParentCount(instanceId);
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Invalid parent index: " + index + ", the instance " + instanceId + " has " + count + " parents.");
+        }
+        return parentIds.array()[parentOffsets.array()[instanceId] + index];
+    }
+
+    public int[] getParentIds(int instanceId) {
+        int count = getParentCount(instanceId);
+        int[] out = new int[count];
+        System.arraycopy(parentIds.array(), parentOffsets.array()[instanceId], out, 0, count);
+        return out;
+    }
+
+    private Object[] resolve(String property) {
+        Object[] values = resolved.get(property);
+        if (values == null) {
+            values = new Object[classes.size()];
+            for (int i = 0; i < values.length; ++i) {
+                values[i] = classes.get(i).instances.get(property);
+            }
+            resolved.put(property, values);
+        }
+        return values;
+    }
+
+    /**
+     * Start a traversal of the instance then its ancestors, continued by {@link #next()}. With multiple parents, the
+     * ancestors are visited depth first from the last parent, like the reference implementation of the extension, and
+     * an ancestor shared by several parents is visited once. The traversal keeps its state in the scratch of the
+     * hierarchy, so a lookup allocates nothing, and the hierarchy can not be read by several threads at once.
+     * @return the instance.
+     */
+    private int first(int instanceId) {
+        checkInstance(instanceId);
+        current = instanceId;
+        steps = 0;
+        if (multipleParents) {
+            int length = classIds.size();
+            if (visited.length < length) {
+                visited = new int[Math.max(length, visited.length * 2)];
+                generation = 0;
+            }
+            // An instance is visited in this traversal if it is stamped with its generation, so visited is never cleared.
+            if (++generation == 0) {
+                Arrays.fill(visited, 0);
+                generation = 1;
+            }
+            stackSize = 0;
+            visited[instanceId] = generation;
+            pushParents(instanceId);
+        }
+        return instanceId;
+    }
+
+    /**
+     * @return the next ancestor of the traversal, or -1 if there is none.
+     */
+    private int next() {
+        if (!multipleParents) {
+            int[] offsets = parentOffsets.array();
+            if (offsets[current + 1] == offsets[current]) {
+                return -1;
+            }
+            if (++steps > classIds.size()) {
+                throw new IllegalStateException("The hierarchy of " + EXTENSION_NAME + " has a cycle.");
+            }
+            current = parentIds.array()[offsets[current]];
+            checkParent(current);
+            return current;
+        }
+        while (stackSize > 0) {
+            int instanceId = stack[--stackSize];
+            if (visited[instanceId] != generation) {
+                visited[instanceId] = generation;
+                pushParents(instanceId);
+                return instanceId;
+            }
+        }
+        return -1;
+    }
+
+    private void pushParents(int instanceId) {
+        int[] offsets = parentOffsets.array();
+        int[] parents = parentIds.array();
+        for (int i = offsets[instanceId]; i < offsets[instanceId + 1]; ++i) {
+            checkParent(parents[i]);
+            if (stackSize == stack.length) {
+                stack = Arrays.copyOf(stack, stackSize * 2);
+            }
+            stack[stackSize++] = parents[i];
+        }
+    }
+
+    /**
+     * @return the instance or its nearest ancestor whose class has a column, or -1.
+     */
+    private int find(int instanceId, Object[] columns) {
+        int[] ids = classIds.array();
+        for (int id = first(instanceId); id != -1; id = next()) {
+            if (columns[ids[id]] != null) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    private void checkParent(int parentId) {
+        if (parentId >= classIds.size()) {
+            throw new IllegalStateException("Invalid parent id: " + parentId + ", the instances length is " + classIds.size() + ".");
+        }
+    }
+
+    private Object getValue(Object column, int classIndex) {
+        if (column instanceof BinaryBodyReference) {
+            return FeatureUtils.getBatchTableValue((BinaryBodyReference) column, binary, classIndex);
+        }
+        return ((List<?>) column).get(classIndex);
+    }
+
+    /**
+     * @return true if the instance or one of its ancestors has the property.
+     */
+    public boolean hasProperty(int instanceId, String property) {
+        return find(instanceId, resolve(property)) != -1;
+    }
+
+    /**
+     * @return the property of the instance, or of its nearest ancestor having it. Null if none has it.
+     */
+    public Object getProperty(int instanceId, String property) {
+        Object[] columns = resolve(property);
+        int[] ids = classIds.array();
+        int found = find(instanceId, columns);
+        return found != -1 ? getValue(columns[ids[found]], classIndices.array()[found]) : null;
+    }
+
+    /**
+     * Set the property on the instance or its nearest ancestor having it.
+     * @return false if none has the property.
+     */
+    public boolean setProperty(int instanceId, String property, Object value) {
+        Object[] columns = resolve(property);
+        int found = find(instanceId, columns);
+        if (found == -1) {
+            return false;
+        }
+        HierarchyClass hierarchyClass = classes.get(classIds.array()[found]);
+        materialize(hierarchyClass);
+        //noinspection unchecked
+        ((List<Object>) hierarchyClass.instances.get(property)).set(classIndices.array()[found], value);
+        return true;
+    }
+
+    /**
+     * @return the properties of the instance and its ancestors.
+     */
+    public Set<String> getPropertyNames(int instanceId) {
+        Set<String> names = new LinkedHashSet<>();
+        int[] ids = classIds.array();
+        for (int id = first(instanceId); id != -1; id = next()) {
+            names.addAll(classes.get(ids[id]).instances.keySet());
+        }
+        return names;
+    }
+
+    public String getExactClassName(int instanceId) {
+        return classes.get(getClassId(instanceId)).name;
+    }
+
+    public boolean isExactClass(int instanceId, String className) {
+        return getExactClassName(instanceId).equals(className);
+    }
+
+    /**
+     * @return true if the instance or one of its ancestors is of the class.
+     */
+    public boolean isClass(int instanceId, String className) {
+        int[] ids = classIds.array();
+        for (int id = first(instanceId); id != -1; id = next()) {
+            if (classes.get(ids[id]).name.equals(className)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ComponentType getIndexComponentType(int[] data, int length) {
+        long max = 0;
+        for (int i = 0; i < length; ++i) {
+            max = Math.max(max, data[i] & 0xFFFFFFFFL);
+        }
+        if (max > 0xFFFF) {
+            return ComponentType.UNSIGNED_INT;
+        } else if (max > 0xFF) {
+            return ComponentType.UNSIGNED_SHORT;
+        } else {
+            return ComponentType.UNSIGNED_BYTE;
+        }
+    }
+
+    private static ByteBuffer encodeIndices(int[] data, int length, ComponentType componentType) {
+        ByteBuffer buffer = ByteBuffer.allocate(length * componentType.getSize()).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < length; ++i) {
+            switch (componentType) {
+                case UNSIGNED_BYTE:
+                    buffer.put((byte) data[i]);
+                    break;
+                case UNSIGNED_SHORT:
+                    buffer.putShort((short) data[i]);
+                    break;
+                default:
+                    buffer.putInt(data[i]);
+                    break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * The parents as written, parentCounts is null if no instance has more than one parent.
+     * Then each instance has exactly one parent, and a root is its own parent.
+     * @return [parentCounts, parentIds]
+     */
+    private int[][] getWrittenParents() {
+        int length = classIds.size();
+        int[] offsets = parentOffsets.array();
+        if (multipleParents) {
+            int[] counts = new int[length];
+            for (int i = 0; i < length; ++i) {
+                counts[i] = offsets[i + 1] - offsets[i];
+            }
+            return new int[][] {counts, Arrays.copyOf(parentIds.array(), parentIds.size())};
+        }
+        int[] parents = new int[length];
+        for (int i = 0; i < length; ++i) {
+            parents[i] = offsets[i + 1] != offsets[i] ? parentIds.array()[offsets[i]] : i;
+        }
+        return new int[][] {null, parents};
+    }
+
+    private void validate() {
+        for (int i = 0; i < parentIds.size(); ++i) {
+            checkParent(parentIds.array()[i]);
+        }
+    }
+
+    private Map<String, Object> createClassJson(HierarchyClass hierarchyClass, Map<String, Object> instances) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("name", hierarchyClass.name);
+        json.put("length", hierarchyClass.length);
+        json.put("instances", instances);
+        return json;
+    }
+
+    private ByteBuffer getRawColumn(BinaryBodyReference reference, int length) {
+        ByteBuffer buffer = binary.duplicate();
+        buffer.position(reference.getByteOffset());
+        buffer.limit(reference.getByteOffset() + length * reference.getType().getSize() * reference.getComponentType().getSize());
+        return buffer.slice();
+    }
+
+    /**
+     * Write the index arrays and the binary instance properties to the binary body.
+     * @return the json of the extension.
+     */
+    public Map<String, Object> write(BinaryBodyHelper helper) throws IOException {
+        validate();
+        Map<String, Object> json = new LinkedHashMap<>();
+        List<Object> classesJson = new ArrayList<>();
+        for (HierarchyClass hierarchyClass : classes) {
+            Map<String, Object> instances = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> entry : hierarchyClass.instances.entrySet()) {
+                if (entry.getValue() instanceof BinaryBodyReference) {
+                    BinaryBodyReference reference = (BinaryBodyReference) entry.getValue();
+                    helper.writeRawData(instances, entry.getKey(), getRawColumn(reference, hierarchyClass.length), reference.getComponentType(), reference.getType());
+                } else {
+                    instances.put(entry.getKey(), entry.getValue());
+                }
+            }
+            classesJson.add(createClassJson(hierarchyClass, instances));
+        }
+        json.put("classes", classesJson);
+        int length = classIds.size();
+        json.put("instancesLength", length);
+        ComponentType componentType = getIndexComponentType(classIds.array(), length);
+        helper.writeRawData(json, "classIds", encodeIndices(classIds.array(), length, componentType), componentType, null);
+        int[][] parents = getWrittenParents();
+        if (parents[0] != null) {
+            componentType = getIndexComponentType(parents[0], length);
+            helper.writeRawData(json, "parentCounts", encodeIndices(parents[0], length, componentType), componentType, null);
+        }
+        componentType = getIndexComponentType(parents[1], parents[1].length);
+        helper.writeRawData(json, "parentIds", encodeIndices(parents[1], parents[1].length, componentType), componentType, null);
+        return json;
+    }
+
+    /**
+     * Same as {@link #write(BinaryBodyHelper)}, but only the room of the binary body is counted.
+     */
+    public Map<String, Object> calcSize(BinaryBodySizeHelper helper) {
+        validate();
+        Map<String, Object> json = new LinkedHashMap<>();
+        List<Object> classesJson = new ArrayList<>();
+        for (HierarchyClass hierarchyClass : classes) {
+            Map<String, Object> instances = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> entry : hierarchyClass.instances.entrySet()) {
+                if (entry.getValue() instanceof BinaryBodyReference) {
+                    BinaryBodyReference reference = (BinaryBodyReference) entry.getValue();
+                    helper.addProperty(instances, entry.getKey(), hierarchyClass.length, reference.getComponentType(), reference.getType());
+                } else {
+                    instances.put(entry.getKey(), entry.getValue());
+                }
+            }
+            classesJson.add(createClassJson(hierarchyClass, instances));
+        }
+        json.put("classes", classesJson);
+        int length = classIds.size();
+        json.put("instancesLength", length);
+        helper.addProperty(json, "classIds", length, getIndexComponentType(classIds.array(), length), null);
+        int[][] parents = getWrittenParents();
+        if (parents[0] != null) {
+            helper.addProperty(json, "parentCounts", length, getIndexComponentType(parents[0], length), null);
+        }
+        helper.addProperty(json, "parentIds", parents[1].length, getIndexComponentType(parents[1], parents[1].length), null);
+        return json;
+    }
+}
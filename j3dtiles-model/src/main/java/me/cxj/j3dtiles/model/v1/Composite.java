@@ -1,16 +1,22 @@
 package me.cxj.j3dtiles.model.v1;
 
+import me.cxj.j3dtiles.utils.BufferArena;
+import me.cxj.j3dtiles.utils.IOUtils;
 import me.cxj.j3dtiles.utils.JsonParser;
 import me.cxj.j3dtiles.utils.LittleEndianDataInputStream;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Created by vipcxj on 2018/11/14.
@@ -61,7 +67,7 @@ public class Composite implements TileModel {
             } else if (Arrays.equals(magic, I3dmHeader.magic)) {
                 model = I3dm.read(is, parser, true, false);
             } else if (Arrays.equals(magic, PointCloudHeader.magic)) {
-                model = I3dm.read(is, parser, true, false);
+                model = PointCloud.read(is, parser, true, false);
             } else if (Arrays.equals(magic, CompositeHeader.magic)) {
                 model = read(is, parser, true, false);
             } else {
@@ -72,13 +78,138 @@ public class Composite implements TileModel {
         return instance;
     }
 
+    static Composite create(CompositeHeader header, List<TileModel> tiles) {
+        Composite instance = new Composite();
+        instance.header = header;
+        instance.tiles = tiles;
+        return instance;
+    }
+
+    public static Composite read(MappedTile tile, JsonParser parser) throws IOException {
+        if (!(tile.getHeader() instanceof CompositeHeader)) {
+            throw new IllegalArgumentException("Not a cmpt tile.");
+        }
+        Composite instance = new Composite();
+        instance.header = (CompositeHeader) tile.getHeader();
+        instance.tiles = new ArrayList<>();
+        for (MappedTile innerTile : tile.getInnerTiles()) {
+            instance.tiles.add(innerTile.read(parser));
+        }
+        return instance;
+    }
+
     @Override
     public void write(OutputStream os, JsonParser parser) throws IOException {
-        long size = calcSize(parser);
-        header.setByteLength((int) size);
+        write(Channels.newChannel(os), parser);
+    }
+
+    @Override
+    public void write(WritableByteChannel channel, JsonParser parser) throws IOException {
+        IOUtils.writeFully(channel, createBuffers(parser));
+    }
+
+    /**
+     * Same as {@link #write(WritableByteChannel, JsonParser)}, but the inner tiles are serialized concurrently
+     * by the executor. The output is the same. The parser must be thread safe.
+     */
+    public void write(WritableByteChannel channel, JsonParser parser, ExecutorService executor) throws IOException {
+        IOUtils.writeFully(channel, createBuffers(parser, executor));
+    }
+
+    @Override
+    public ByteBuffer[] createBuffers(JsonParser parser) throws IOException {
+        return createBuffers(parser, (BufferArena) null);
+    }
+
+    @Override
+    public ByteBuffer[] createBuffers(JsonParser parser, BufferArena arena) throws IOException {
+        List<ByteBuffer[]> tileBuffers = new ArrayList<>(tiles.size());
         for (TileModel tile : tiles) {
-            tile.write(os, parser);
+            tileBuffers.add(tile.createBuffers(parser, arena));
         }
+        return createBuffers(tileBuffers);
+    }
+
+    /**
+     * Serialize each inner tile into its own buffers on the executor, then put them together in order.
+     * The inner tiles of the nested cmpts are submitted too, and a tile added more than once anywhere in the tree
+     * is serialized once, so no tile is ever serialized by two threads. The cmpts are put together by the caller.
+     * The parser must be thread safe.
+     */
+    public ByteBuffer[] createBuffers(JsonParser parser, ExecutorService executor) throws IOException {
+        Map<TileModel, Future<ByteBuffer[]>> futures = new IdentityHashMap<>();
+        submit(parser, executor, futures);
+        try {
+            return assemble(futures, new IdentityHashMap<>());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while serializing the inner tiles.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            for (Future<ByteBuffer[]> future : futures.values()) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private void submit(JsonParser parser, ExecutorService executor, Map<TileModel, Future<ByteBuffer[]>> futures) {
+        for (TileModel tile : tiles) {
+            if (tile instanceof Composite) {
+                ((Composite) tile).submit(parser, executor, futures);
+            } else if (!futures.containsKey(tile)) {
+                futures.put(tile, executor.submit(() -> tile.createBuffers(parser)));
+            }
+        }
+    }
+
+    private ByteBuffer[] assemble(Map<TileModel, Future<ByteBuffer[]>> futures, Map<Composite, ByteBuffer[]> composites) throws InterruptedException, ExecutionException {
+        List<ByteBuffer[]> tileBuffers = new ArrayList<>(tiles.size());
+        for (TileModel tile : tiles) {
+            ByteBuffer[] buffers;
+            if (tile instanceof Composite) {
+                Composite composite = (Composite) tile;
+                buffers = composites.get(composite);
+                if (buffers == null) {
+                    buffers = composite.assemble(futures, composites);
+                    composites.put(composite, buffers);
+                }
+            } else {
+                buffers = futures.get(tile).get();
+            }
+            ByteBuffer[] views = new ByteBuffer[buffers.length];
+            for (int i = 0; i < buffers.length; ++i) {
+                views[i] = buffers[i].duplicate();
+            }
+            tileBuffers.add(views);
+        }
+        return createBuffers(tileBuffers);
+    }
+
+    private ByteBuffer[] createBuffers(List<ByteBuffer[]> tileBuffers) {
+        List<ByteBuffer> buffers = new ArrayList<>();
+        buffers.add(null);
+        long size = header.getHeaderLength();
+        for (ByteBuffer[] tileBuffer : tileBuffers) {
+            for (ByteBuffer buffer : tileBuffer) {
+                size += buffer.remaining();
+                buffers.add(buffer);
+            }
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too big composite tile: " + size + ".");
+        }
+        header.setByteLength((int) size);
+        header.setTilesLength(tiles.size());
+        buffers.set(0, header.toBuffer());
+        return buffers.toArray(new ByteBuffer[0]);
     }
 
     public long calcSize(JsonParser parser) {
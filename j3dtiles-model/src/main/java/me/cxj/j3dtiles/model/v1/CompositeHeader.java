@@ -6,6 +6,8 @@ import me.cxj.j3dtiles.utils.LittleEndianDataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 
 /**
@@ -65,6 +67,30 @@ public class CompositeHeader extends Header {
         return header;
     }
 
+    public static CompositeHeader read(ByteBuffer buffer, boolean hasReadMagic, boolean hasReadVersion) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        CompositeHeader header = new CompositeHeader();
+        if (hasReadVersion && !hasReadMagic) {
+            throw new IllegalArgumentException("It is impossible to read version without reading magic.");
+        }
+        if (!hasReadMagic) {
+            byte[] magic = new byte[4];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, header.getMagic())) {
+                throw new IllegalArgumentException("Invalid buffer. Not a valid cmpt buffer. The magic is wrong. Expect cmpt but " + new String(magic) + ".");
+            }
+        }
+        if (!hasReadVersion) {
+            int version = buffer.getInt();
+            if (version != header.getVersion()) {
+                throw new IllegalArgumentException("Invalid buffer. Not a valid cmpt buffer. Mismatch version. Expect 1 but " + version + ".");
+            }
+        }
+        header.setByteLength(buffer.getInt());
+        header.setTilesLength(buffer.getInt());
+        return header;
+    }
+
     public void write(OutputStream os) throws IOException {
         LittleEndianDataOutputStream dos = new LittleEndianDataOutputStream(os);
         dos.write(magic);
@@ -72,4 +98,13 @@ public class CompositeHeader extends Header {
         dos.writeInt(getByteLength());
         dos.writeInt(getTilesLength());
     }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(magic);
+        buffer.putInt(getVersion());
+        buffer.putInt(getByteLength());
+        buffer.putInt(getTilesLength());
+    }
 }
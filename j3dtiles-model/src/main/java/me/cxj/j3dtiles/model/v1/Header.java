@@ -1,16 +1,73 @@
 package me.cxj.j3dtiles.model.v1;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 /**
  * Created by vipcxj on 2018/11/14.
  */
 public abstract class Header {
 
+    /**
+     * The largest header length of all the tile formats.
+     */
+    public static final int MAX_HEADER_LENGTH = 32;
+
     private int byteLength;
 
+    /**
+     * Read the header of any tile format, dispatching on the magic.
+     */
+    public static Header read(ByteBuffer buffer) {
+        byte[] magic = new byte[4];
+        buffer.get(magic);
+        if (Arrays.equals(magic, B3dmHeader.magic)) {
+            return B3dmHeader.read(buffer, true, false);
+        } else if (Arrays.equals(magic, I3dmHeader.magic)) {
+            return I3dmHeader.read(buffer, true, false);
+        } else if (Arrays.equals(magic, PointCloudHeader.magic)) {
+            return PointCloudHeader.read(buffer, true, false);
+        } else if (Arrays.equals(magic, CompositeHeader.magic)) {
+            return CompositeHeader.read(buffer, true, false);
+        } else {
+            throw new IllegalArgumentException("unrecognized magic: " + new String(magic, StandardCharsets.UTF_8) + ".");
+        }
+    }
+
+    /**
+     * The header length of the tile format of the magic at the position of the buffer, without reading further.
+     * The position of the buffer is not modified.
+     */
+    public static int getHeaderLength(ByteBuffer buffer) {
+        byte[] magic = new byte[4];
+        buffer.duplicate().get(magic);
+        if (Arrays.equals(magic, B3dmHeader.magic)) {
+            return new B3dmHeader().getHeaderLength();
+        } else if (Arrays.equals(magic, I3dmHeader.magic)) {
+            return new I3dmHeader().getHeaderLength();
+        } else if (Arrays.equals(magic, PointCloudHeader.magic)) {
+            return new PointCloudHeader().getHeaderLength();
+        } else if (Arrays.equals(magic, CompositeHeader.magic)) {
+            return new CompositeHeader().getHeaderLength();
+        } else {
+            throw new IllegalArgumentException("unrecognized magic: " + new String(magic, StandardCharsets.UTF_8) + ".");
+        }
+    }
+
     public abstract byte[] getMagic();
 
     public abstract int getHeaderLength();
 
+    public abstract void write(ByteBuffer buffer);
+
+    public ByteBuffer toBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(getHeaderLength());
+        write(buffer);
+        buffer.flip();
+        return buffer;
+    }
+
     public int getVersion() {
         return 1;
     }
@@ -3,13 +3,20 @@ package me.cxj.j3dtiles.model.v1;
 import de.javagl.jgltf.model.GltfModel;
 import de.javagl.jgltf.model.io.GltfModelReader;
 import de.javagl.jgltf.model.io.GltfModelWriter;
+import de.javagl.jgltf.model.io.v2.BinaryGltfChunksV2;
+import de.javagl.jgltf.model.io.v2.MeshoptCompression;
+import me.cxj.j3dtiles.utils.BufferArena;
 import me.cxj.j3dtiles.utils.CommonUtils;
+import me.cxj.j3dtiles.utils.IOUtils;
 import me.cxj.j3dtiles.utils.JsonParser;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 
 /**
@@ -22,6 +29,10 @@ public class I3dm implements TileModel {
     private BatchTable batchTable;
     private String gltfUri;
     private GltfModel gltfModel;
+    /**
+     * The buffer views of the gltf to compress with EXT_meshopt_compression when the tile is written, may be null.
+     */
+    private MeshoptCompression gltfCompression;
 
     public static I3dm read(InputStream is, JsonParser parser, boolean hasReadMagic, boolean hasReadVersion) throws IOException {
         I3dm instance = new I3dm();
@@ -45,28 +56,66 @@ public class I3dm implements TileModel {
         return instance;
     }
 
+    public static I3dm read(MappedTile tile, JsonParser parser) throws IOException {
+        if (!(tile.getHeader() instanceof I3dmHeader)) {
+            throw new IllegalArgumentException("Not a i3dm tile.");
+        }
+        I3dm instance = new I3dm();
+        instance.header = (I3dmHeader) tile.getHeader();
+        try (InputStream is = tile.openTableStream()) {
+            instance.featureTable = I3dmFeatureTable.read(is, instance.header, parser);
+        }
+        instance.batchTable = BatchTable.read(tile.getBatchTableJSONString(), tile.getBatchTableBinary(), parser, instance.featureTable.getInstancesLength());
+        if (instance.header.getGltfFormat() == 0) {
+            instance.gltfUri = tile.getGltfUri();
+        } else if (instance.header.getGltfFormat() == 1) {
+            instance.gltfModel = tile.readGltf();
+        } else {
+            throw new IllegalArgumentException("Invalid gltfFormat value: " + instance.header.getGltfFormat() + ".");
+        }
+        return instance;
+    }
+
     @Override
-    @SuppressWarnings("Duplicates")
     public void write(OutputStream os, JsonParser parser) throws IOException {
-        byte[] featureTableBuffer = featureTable.createBuffer(header, parser);
-        byte[] batchTableBuffer = batchTable.createBuffer(header, parser, featureTable.getInstancesLength());
+        write(Channels.newChannel(os), parser);
+    }
+
+    @Override
+    public void write(WritableByteChannel channel, JsonParser parser) throws IOException {
+        IOUtils.writeFully(channel, createBuffers(parser));
+    }
+
+    @Override
+    @SuppressWarnings("Duplicates")
+    public ByteBuffer[] createBuffers(JsonParser parser) throws IOException {
+        return createBuffers(parser, null);
+    }
+
+    @Override
+    public ByteBuffer[] createBuffers(JsonParser parser, BufferArena arena) throws IOException {
+        ByteBuffer featureTableBuffer = featureTable.createBuffer(header, parser, arena);
+        ByteBuffer batchTableBuffer = batchTable.createBuffer(header, parser, featureTable.getInstancesLength(), arena);
+        ByteBuffer[] gltfBuffers;
+        int gltfLength;
         if (header.getGltfFormat() == 0) {
             byte[] gltfBuffer = CommonUtils.createPaddingBytes(gltfUri.getBytes(StandardCharsets.UTF_8), 8, (byte) 0x20);
-            header.setByteLength(header.getHeaderLength() + featureTableBuffer.length + batchTableBuffer.length + gltfBuffer.length);
-            header.write(os);
-            os.write(featureTableBuffer);
-            os.write(batchTableBuffer);
-            os.write(gltfBuffer);
+            gltfBuffers = new ByteBuffer[] { ByteBuffer.wrap(gltfBuffer) };
+            gltfLength = gltfBuffer.length;
         } else if (header.getGltfFormat() == 1) {
-            byte[] gltfBuffer = CommonUtils.getPadGltf(gltfModel, 8);
-            header.setByteLength(header.getHeaderLength() + featureTableBuffer.length + batchTableBuffer.length + gltfBuffer.length);
-            header.write(os);
-            os.write(featureTableBuffer);
-            os.write(batchTableBuffer);
-            os.write(gltfBuffer);
+            BinaryGltfChunksV2 gltfChunks = CommonUtils.getPadGltfChunks(gltfModel, 8, gltfCompression);
+            gltfBuffers = gltfChunks.getBuffers();
+            gltfLength = gltfChunks.getByteLength();
         } else {
             throw new IllegalArgumentException("Invalid gltfFormat value: " + header.getGltfFormat() + ".");
         }
+        header.setByteLength(header.getHeaderLength() + featureTableBuffer.remaining() + batchTableBuffer.remaining() + gltfLength);
+        ByteBuffer[] buffers = new ByteBuffer[3 + gltfBuffers.length];
+        buffers[0] = header.toBuffer();
+        buffers[1] = featureTableBuffer;
+        buffers[2] = batchTableBuffer;
+        System.arraycopy(gltfBuffers, 0, buffers, 3, gltfBuffers.length);
+        return buffers;
     }
 
     public long calcSize(JsonParser parser) {
@@ -75,7 +124,7 @@ public class I3dm implements TileModel {
             gltfSize = gltfUri.getBytes(StandardCharsets.UTF_8).length;
             gltfSize += CommonUtils.calcPadding(gltfSize, 8);
         } else if (header.getGltfFormat() == 1) {
-            gltfSize = CommonUtils.calcGltfSize(gltfModel, 8);
+            gltfSize = CommonUtils.calcGltfSize(gltfModel, 8, gltfCompression);
         } else {
             throw new IllegalArgumentException("Invalid gltfFormat value: " + header.getGltfFormat() + ".");
         }
@@ -85,6 +134,18 @@ public class I3dm implements TileModel {
                 + gltfSize;
     }
 
+    public GltfModel getGltfModel() {
+        return gltfModel;
+    }
+
+    public MeshoptCompression getGltfCompression() {
+        return gltfCompression;
+    }
+
+    public void setGltfCompression(MeshoptCompression gltfCompression) {
+        this.gltfCompression = gltfCompression;
+    }
+
     @Override
     public I3dmHeader getHeader() {
         return header;
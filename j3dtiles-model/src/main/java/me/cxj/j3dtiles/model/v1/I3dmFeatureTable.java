@@ -1,18 +1,16 @@
 package me.cxj.j3dtiles.model.v1;
 
 import me.cxj.j3dtiles.impl.v1.ComponentType;
-import me.cxj.j3dtiles.impl.v1.ContainerType;
 import me.cxj.j3dtiles.utils.*;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
-import static me.cxj.j3dtiles.utils.CommonUtils.checkListElements;
 import static me.cxj.j3dtiles.utils.CommonUtils.mismatchedLength;
 
 /**
@@ -26,55 +24,55 @@ public class I3dmFeatureTable {
      * float32[3],
      * Required, unless POSITION_QUANTIZED is defined.
      */
-    private List<float[]> POSITION;
+    private FloatColumn POSITION;
     /**
      * A 3-component array of numbers containing x, y, and z in quantized Cartesian coordinates for the position of the instance.
      * uint16[3],
      * Required, unless POSITION is defined.
      */
-    private List<int[]> POSITION_QUANTIZED;
+    private ShortColumn POSITION_QUANTIZED;
     /**
      * A unit vector defining the up direction for the orientation of the instance.
      * 	float32[3],
      * 	Not Required, unless NORMAL_RIGHT is defined.
      */
-    private List<float[]> NORMAL_UP;
+    private FloatColumn NORMAL_UP;
     /**
      * A unit vector defining the right direction for the orientation of the instance. Must be orthogonal to up.
      * float32[3],
      * Not Required, unless NORMAL_UP is defined.
      */
-    private List<float[]> NORMAL_RIGHT;
+    private FloatColumn NORMAL_RIGHT;
     /**
      * An oct-encoded unit vector with 32-bits of precision defining the up direction for the orientation of the instance.
      * uint16[2],
      * Not Required, unless NORMAL_RIGHT_OCT32P is defined.
      */
-    private List<int[]> NORMAL_UP_OCT32P;
+    private ShortColumn NORMAL_UP_OCT32P;
     /**
      * An oct-encoded unit vector with 32-bits of precision defining the right direction for the orientation of the instance. Must be orthogonal to up.
      * uint16[2],
      * Not Required, unless NORMAL_UP_OCT32P is defined.
      */
-    private List<int[]> NORMAL_RIGHT_OCT32P;
+    private ShortColumn NORMAL_RIGHT_OCT32P;
     /**
      * A number defining a scale to apply to all axes of the instance.
      * float32,
      * Not Required
      */
-    private List<Float> SCALE;
+    private FloatColumn SCALE;
     /**
      * A 3-component array of numbers defining the scale to apply to the x, y, and z axes of the instance.
      * float32[3],
      * Not Required
      */
-    private List<float[]> SCALE_NON_UNIFORM;
+    private FloatColumn SCALE_NON_UNIFORM;
     /**
      * The batchId of the instance that can be used to retrieve metadata from the Batch Table.
      * uint8, uint16 (default), or uint32,
      * Not Required
      */
-    private List<Long> BATCH_ID;
+    private BatchIdColumn BATCH_ID;
 
     //Global semantics
     /**
@@ -117,13 +115,11 @@ public class I3dmFeatureTable {
             if (POSITION.size() != INSTANCES_LENGTH) {
                 mismatchedLength("POSITION");
             }
-            checkListElements("POSITION", POSITION, 3);
         }
         if (POSITION_QUANTIZED != null) {
             if (POSITION_QUANTIZED.size() != INSTANCES_LENGTH) {
                 mismatchedLength("POSITION_QUANTIZED");
             }
-            checkListElements("POSITION_QUANTIZED", POSITION_QUANTIZED, 3);
             if (QUANTIZED_VOLUME_OFFSET == null) {
                 throw new IllegalArgumentException("QUANTIZED_VOLUME_OFFSET is needed when POSITION_QUANTIZED is defined.");
             }
@@ -144,11 +140,9 @@ public class I3dmFeatureTable {
             if (NORMAL_UP.size() != INSTANCES_LENGTH) {
                 mismatchedLength("NORMAL_UP");
             }
-            checkListElements("NORMAL_UP", NORMAL_UP, 3);
             if (NORMAL_RIGHT.size() != INSTANCES_LENGTH) {
                 mismatchedLength("NORMAL_RIGHT");
             }
-            checkListElements("NORMAL_RIGHT", NORMAL_RIGHT, 3);
         }
         if ((NORMAL_UP_OCT32P != null && NORMAL_RIGHT_OCT32P == null) || (NORMAL_UP_OCT32P == null && NORMAL_RIGHT_OCT32P != null)) {
             throw new IllegalArgumentException("NORMAL_UP_OCT32P and NORMAL_RIGHT_OCT32P are depend on each other.");
@@ -157,29 +151,24 @@ public class I3dmFeatureTable {
             if (NORMAL_UP_OCT32P.size() != INSTANCES_LENGTH) {
                 mismatchedLength("NORMAL_UP_OCT32P");
             }
-            checkListElements("NORMAL_UP_OCT32P", NORMAL_UP_OCT32P, 2);
             if (NORMAL_RIGHT_OCT32P.size() != INSTANCES_LENGTH) {
                 mismatchedLength("NORMAL_RIGHT_OCT32P");
             }
-            checkListElements("NORMAL_RIGHT_OCT32P", NORMAL_RIGHT_OCT32P, 2);
         }
         if (SCALE != null) {
             if (SCALE.size() != INSTANCES_LENGTH) {
                 mismatchedLength("SCALE");
             }
-            checkListElements("SCALE", SCALE, 1);
         }
         if (SCALE_NON_UNIFORM != null) {
             if (SCALE_NON_UNIFORM.size() != INSTANCES_LENGTH) {
                 mismatchedLength("SCALE_NON_UNIFORM");
             }
-            checkListElements("SCALE_NON_UNIFORM", SCALE_NON_UNIFORM, 3);
         }
         if (BATCH_ID != null) {
             if (BATCH_ID.size() != INSTANCES_LENGTH) {
                 mismatchedLength("BATCH_ID");
             }
-            checkListElements("BATCH_ID", BATCH_ID, 1);
         }
         if (RTC_CENTER != null) {
             if (RTC_CENTER.length != 3) {
@@ -188,76 +177,124 @@ public class I3dmFeatureTable {
         }
     }
 
-    public List<float[]> getPositionList() {
+    public FloatColumn getPositionColumn() {
         return POSITION;
     }
 
+    public void setPositionColumn(FloatColumn value) {
+        POSITION = checkColumn("POSITION", value, 3);
+    }
+
+    /**
+     * @return a list view of the column, or null. Its get returns a copy of the tuple, so a change to the copy is
+     * lost unless it is passed back to set.
+     */
+    public List<float[]> getPositionList() {
+        return POSITION != null ? POSITION.asList() : null;
+    }
+
     public void setPositionList(List<float[]> value) {
-        POSITION = value;
+        POSITION = value != null ? FloatColumn.of(value, 3) : null;
     }
 
+    /**
+     * @return a copy of the tuple of the feature, or null. Pass a changed copy to setPosition to store it.
+     */
     public float[] getPosition(int featureId) {
         return POSITION != null ? POSITION.get(featureId) : null;
     }
 
     public float[] setPosition(int featureId, float[] value) {
-        return POSITION.set(featureId, value);
+        float[] old = POSITION.get(featureId);
+        POSITION.set(featureId, value);
+        return old;
     }
 
     public int addPosition(float[] value) {
         if (POSITION == null) {
-            POSITION = new ArrayList<>();
+            POSITION = new FloatColumn(3);
         }
-        POSITION.add(value);
-        return POSITION.size() - 1;
+        return POSITION.add(value);
     }
 
     public float[] removePosition(int featureId) {
         if (POSITION != null) {
-            return POSITION.remove(featureId);
+            float[] old = POSITION.get(featureId);
+            POSITION.remove(featureId);
+            return old;
         }
         return null;
     }
 
-    public List<int[]> getPositionQuantizedList() {
+    /**
+     * The values are stored as uint16.
+     */
+    public ShortColumn getPositionQuantizedColumn() {
         return POSITION_QUANTIZED;
     }
 
+    public void setPositionQuantizedColumn(ShortColumn value) {
+        POSITION_QUANTIZED = checkColumn("POSITION_QUANTIZED", value, 3);
+    }
+
+    /**
+     * @return a list view of the column, or null. Its get returns a copy of the tuple, so a change to the copy is
+     * lost unless it is passed back to set.
+     */
+    public List<int[]> getPositionQuantizedList() {
+        return POSITION_QUANTIZED != null ? POSITION_QUANTIZED.asUnsignedList() : null;
+    }
+
     public void setPositionQuantizedList(List<int[]> value) {
-        POSITION_QUANTIZED = value;
+        POSITION_QUANTIZED = value != null ? ShortColumn.ofUnsigned(value, 3) : null;
     }
 
+    /**
+     * @return a copy of the tuple of the feature, or null. Pass a changed copy to setPositionQuantized to store it.
+     */
     public int[] getPositionQuantized(int featureId) {
-        return POSITION_QUANTIZED != null ? POSITION_QUANTIZED.get(featureId) : null;
+        return POSITION_QUANTIZED != null ? POSITION_QUANTIZED.asUnsignedList().get(featureId) : null;
     }
 
     public int[] setPositionQuantized(int featureId, int[] value) {
-        return POSITION_QUANTIZED.set(featureId, value);
+        return POSITION_QUANTIZED.asUnsignedList().set(featureId, value);
     }
 
     public int addPositionQuantized(int[] value) {
         if (POSITION_QUANTIZED == null) {
-            POSITION_QUANTIZED = new ArrayList<>();
+            POSITION_QUANTIZED = new ShortColumn(3);
         }
-        POSITION_QUANTIZED.add(value);
+        POSITION_QUANTIZED.asUnsignedList().add(value);
         return POSITION_QUANTIZED.size() - 1;
     }
 
     public int[] removePositionQuantized(int featureId) {
-        if (POSITION_QUANTIZED != null) {
-            return POSITION_QUANTIZED.remove(featureId);
-        }
-        return null;
+        return POSITION_QUANTIZED != null ? POSITION_QUANTIZED.asUnsignedList().remove(featureId) : null;
     }
 
-    public List<float[]> getNormalUpList() {
+    public FloatColumn getNormalUpColumn() {
         return NORMAL_UP;
     }
 
+    public void setNormalUpColumn(FloatColumn value) {
+        NORMAL_UP = checkColumn("NORMAL_UP", value, 3);
+    }
+
+    /**
+     * @return a list view of the column, or null. Its get returns a copy of the tuple, so a change to the copy is
+     * lost unless it is passed back to set.
+     */
+    public List<float[]> getNormalUpList() {
+        return NORMAL_UP != null ? NORMAL_UP.asList() : null;
+    }
+
     public void setNormalUpList(List<float[]> value) {
-        NORMAL_UP = value;
+        NORMAL_UP = value != null ? FloatColumn.of(value, 3) : null;
     }
 
+    /**
+     * @return a copy of the tuple of the feature, or null. Pass a changed copy to setNormalUp to store it.
+     */
     public float[] getNormalUp(int featureId) {
         return NORMAL_UP != null ? NORMAL_UP.get(featureId) : null;
     }
@@ -268,172 +305,279 @@ public class I3dmFeatureTable {
 
     public int addNormalUp(float[] value) {
         if (NORMAL_UP == null) {
-            NORMAL_UP = new ArrayList<>();
+            NORMAL_UP = new FloatColumn(3);
         }
-        NORMAL_UP.add(value);
-        return NORMAL_UP.size() - 1;
+        return NORMAL_UP.add(value);
     }
 
     public float[] removeNormalUp(int featureId) {
-        return NORMAL_UP != null ? NORMAL_UP.remove(featureId) : null;
+        if (NORMAL_UP != null) {
+            float[] old = NORMAL_UP.get(featureId);
+            NORMAL_UP.remove(featureId);
+            return old;
+        }
+        return null;
     }
 
-    public List<float[]> getNormalRightList() {
+    public FloatColumn getNormalRightColumn() {
         return NORMAL_RIGHT;
     }
 
+    public void setNormalRightColumn(FloatColumn value) {
+        NORMAL_RIGHT = checkColumn("NORMAL_RIGHT", value, 3);
+    }
+
+    /**
+     * @return a list view of the column, or null. Its get returns a copy of the tuple, so a change to the copy is
+     * lost unless it is passed back to set.
+     */
+    public List<float[]> getNormalRightList() {
+        return NORMAL_RIGHT != null ? NORMAL_RIGHT.asList() : null;
+    }
+
     public void setNormalRightList(List<float[]> value) {
-        NORMAL_RIGHT = value;
+        NORMAL_RIGHT = value != null ? FloatColumn.of(value, 3) : null;
     }
 
+    /**
+     * @return a copy of the tuple of the feature, or null. Pass a changed copy to setNormalRight to store it.
+     */
     public float[] getNormalRight(int featureId) {
         return NORMAL_RIGHT != null ? NORMAL_RIGHT.get(featureId) : null;
     }
 
     public float[] setNormalRight(int featureId, float[] value) {
-        return NORMAL_RIGHT.set(featureId, value);
+        float[] old = NORMAL_RIGHT.get(featureId);
+        NORMAL_RIGHT.set(featureId, value);
+        return old;
     }
 
     public int addNormalRight(float[] value) {
         if (NORMAL_RIGHT == null) {
-            NORMAL_RIGHT = new ArrayList<>();
+            NORMAL_RIGHT = new FloatColumn(3);
         }
-        NORMAL_RIGHT.add(value);
-        return NORMAL_RIGHT.size() - 1;
+        return NORMAL_RIGHT.add(value);
     }
 
     public float[] removeNormalRight(int featureId) {
-        return NORMAL_RIGHT != null ? NORMAL_RIGHT.remove(featureId) : null;
+        if (NORMAL_RIGHT != null) {
+            float[] old = NORMAL_RIGHT.get(featureId);
+            NORMAL_RIGHT.remove(featureId);
+            return old;
+        }
+        return null;
     }
 
-    public List<int[]> getNormalUpOct32pList() {
+    /**
+     * The values are stored as uint16.
+     */
+    public ShortColumn getNormalUpOct32pColumn() {
         return NORMAL_UP_OCT32P;
     }
 
+    public void setNormalUpOct32pColumn(ShortColumn value) {
+        NORMAL_UP_OCT32P = checkColumn("NORMAL_UP_OCT32P", value, 2);
+    }
+
+    /**
+     * @return a list view of the column, or null. Its get returns a copy of the tuple, so a change to the copy is
+     * lost unless it is passed back to set.
+     */
+    public List<int[]> getNormalUpOct32pList() {
+        return NORMAL_UP_OCT32P != null ? NORMAL_UP_OCT32P.asUnsignedList() : null;
+    }
+
     public void setNormalUpOct32pList(List<int[]> value) {
-        NORMAL_UP_OCT32P = value;
+        NORMAL_UP_OCT32P = value != null ? ShortColumn.ofUnsigned(value, 2) : null;
     }
 
+    /**
+     * @return a copy of the tuple of the feature, or null. Pass a changed copy to setNormalUpOct32p to store it.
+     */
     public int[] getNormalUpOct32p(int featureId) {
-        return NORMAL_UP_OCT32P != null ? NORMAL_UP_OCT32P.get(featureId) : null;
+        return NORMAL_UP_OCT32P != null ? NORMAL_UP_OCT32P.asUnsignedList().get(featureId) : null;
     }
 
     public int[] setNormalUpOct32p(int featureId, int[] value) {
-        return NORMAL_UP_OCT32P.set(featureId, value);
+        return NORMAL_UP_OCT32P.asUnsignedList().set(featureId, value);
     }
 
     public int addNormalUpOct32p(int[] value) {
         if (NORMAL_UP_OCT32P == null) {
-            NORMAL_UP_OCT32P = new ArrayList<>();
+            NORMAL_UP_OCT32P = new ShortColumn(2);
         }
-        NORMAL_UP_OCT32P.add(value);
+        NORMAL_UP_OCT32P.asUnsignedList().add(value);
         return NORMAL_UP_OCT32P.size() - 1;
     }
 
     public int[] removeNormalUpOct32p(int featureId) {
-        return NORMAL_UP_OCT32P != null ? NORMAL_UP_OCT32P.remove(featureId) : null;
+        return NORMAL_UP_OCT32P != null ? NORMAL_UP_OCT32P.asUnsignedList().remove(featureId) : null;
     }
 
-    public List<int[]> getNormalRightOct32pList() {
+    /**
+     * The values are stored as uint16.
+     */
+    public ShortColumn getNormalRightOct32pColumn() {
         return NORMAL_RIGHT_OCT32P;
     }
 
+    public void setNormalRightOct32pColumn(ShortColumn value) {
+        NORMAL_RIGHT_OCT32P = checkColumn("NORMAL_RIGHT_OCT32P", value, 2);
+    }
+
+    /**
+     * @return a list view of the column, or null. Its get returns a copy of the tuple, so a change to the copy is
+     * lost unless it is passed back to set.
+     */
+    public List<int[]> getNormalRightOct32pList() {
+        return NORMAL_RIGHT_OCT32P != null ? NORMAL_RIGHT_OCT32P.asUnsignedList() : null;
+    }
+
     public void setNormalRightOct32pList(List<int[]> value) {
-        NORMAL_RIGHT_OCT32P = value;
+        NORMAL_RIGHT_OCT32P = value != null ? ShortColumn.ofUnsigned(value, 2) : null;
     }
 
+    /**
+     * @return a copy of the tuple of the feature, or null. Pass a changed copy to setNormalRightOct32p to store it.
+     */
     public int[] getNormalRightOct32p(int featureId) {
-        return NORMAL_RIGHT_OCT32P != null ? NORMAL_RIGHT_OCT32P.get(featureId) : null;
+        return NORMAL_RIGHT_OCT32P != null ? NORMAL_RIGHT_OCT32P.asUnsignedList().get(featureId) : null;
     }
 
     public int[] setNormalRightOct32p(int featureId, int[] value) {
-        return NORMAL_RIGHT_OCT32P.set(featureId, value);
+        return NORMAL_RIGHT_OCT32P.asUnsignedList().set(featureId, value);
     }
 
     public int addNormalRightOct32p(int[] value) {
         if (NORMAL_RIGHT_OCT32P == null) {
-            NORMAL_RIGHT_OCT32P = new ArrayList<>();
+            NORMAL_RIGHT_OCT32P = new ShortColumn(2);
         }
-        NORMAL_RIGHT_OCT32P.add(value);
+        NORMAL_RIGHT_OCT32P.asUnsignedList().add(value);
         return NORMAL_RIGHT_OCT32P.size() - 1;
     }
 
     public int[] removeNormalOct32p(int featureId) {
-        return NORMAL_RIGHT_OCT32P != null ? NORMAL_RIGHT_OCT32P.remove(featureId) : null;
+        return NORMAL_RIGHT_OCT32P != null ? NORMAL_RIGHT_OCT32P.asUnsignedList().remove(featureId) : null;
     }
 
-    public List<Float> getScaleList() {
+    public FloatColumn getScaleColumn() {
         return SCALE;
     }
 
+    public void setScaleColumn(FloatColumn value) {
+        SCALE = checkColumn("SCALE", value, 1);
+    }
+
+    public List<Float> getScaleList() {
+        return SCALE != null ? SCALE.asScalarList() : null;
+    }
+
     public void setScaleList(List<Float> value) {
-        SCALE = value;
+        SCALE = value != null ? FloatColumn.ofScalars(value) : null;
     }
 
     public Float getScale(int featureId) {
         if (SCALE == null) {
             return null;
         }
-        return SCALE.get(featureId);
+        return SCALE.getComponent(featureId, 0);
     }
 
     public Float setScale(int featureId, float value) {
-        return SCALE.set(featureId, value);
+        float old = SCALE.getComponent(featureId, 0);
+        SCALE.setComponent(featureId, 0, value);
+        return old;
     }
 
     public int addScale(float value) {
         if (SCALE == null) {
-            SCALE = new ArrayList<>();
+            SCALE = new FloatColumn(1);
         }
-        SCALE.add(value);
-        return SCALE.size() - 1;
+        return SCALE.add(value);
     }
 
     public Float removeScale(int featureId) {
-        return SCALE != null ? SCALE.remove(featureId) : null;
+        if (SCALE != null) {
+            float old = SCALE.getComponent(featureId, 0);
+            SCALE.remove(featureId);
+            return old;
+        }
+        return null;
     }
 
-    public List<float[]> getScaleNonUniformList() {
+    public FloatColumn getScaleNonUniformColumn() {
         return SCALE_NON_UNIFORM;
     }
 
+    public void setScaleNonUniformColumn(FloatColumn value) {
+        SCALE_NON_UNIFORM = checkColumn("SCALE_NON_UNIFORM", value, 3);
+    }
+
+    /**
+     * @return a list view of the column, or null. Its get returns a copy of the tuple, so a change to the copy is
+     * lost unless it is passed back to set.
+     */
+    public List<float[]> getScaleNonUniformList() {
+        return SCALE_NON_UNIFORM != null ? SCALE_NON_UNIFORM.asList() : null;
+    }
+
     public void setScaleNonUniformList(List<float[]> value) {
-        SCALE_NON_UNIFORM = value;
+        SCALE_NON_UNIFORM = value != null ? FloatColumn.of(value, 3) : null;
     }
 
+    /**
+     * @return a copy of the tuple of the feature, or null. Pass a changed copy to setScaleNonUniform to store it.
+     */
     public float[] getScaleNonUniform(int featureId) {
         return SCALE_NON_UNIFORM != null ? SCALE_NON_UNIFORM.get(featureId) : null;
     }
 
     public float[] setScaleNonUniform(int featureId, float[] value) {
-        return SCALE_NON_UNIFORM.set(featureId, value);
+        float[] old = SCALE_NON_UNIFORM.get(featureId);
+        SCALE_NON_UNIFORM.set(featureId, value);
+        return old;
     }
 
     public int addScaleNonUniform(float[] value) {
         if (SCALE_NON_UNIFORM == null) {
-            SCALE_NON_UNIFORM = new ArrayList<>();
+            SCALE_NON_UNIFORM = new FloatColumn(3);
         }
-        SCALE_NON_UNIFORM.add(value);
-        return SCALE_NON_UNIFORM.size() - 1;
+        return SCALE_NON_UNIFORM.add(value);
     }
 
     public float[] removeScaleNonUniform(int featureId) {
-        return SCALE_NON_UNIFORM != null ? SCALE_NON_UNIFORM.remove(featureId) : null;
+        if (SCALE_NON_UNIFORM != null) {
+            float[] old = SCALE_NON_UNIFORM.get(featureId);
+            SCALE_NON_UNIFORM.remove(featureId);
+            return old;
+        }
+        return null;
     }
 
-    public List<Long> getBatchIdList() {
+    /**
+     * The batch ids are stored as unsigned ints.
+     */
+    public BatchIdColumn getBatchIdColumn() {
         return BATCH_ID;
     }
 
+    public void setBatchIdColumn(BatchIdColumn value) {
+        BATCH_ID = checkColumn("BATCH_ID", value, 1);
+    }
+
+    public List<Long> getBatchIdList() {
+        return BATCH_ID != null ? BATCH_ID.asList() : null;
+    }
+
     public void setBatchIdList(List<Long> value) {
-        BATCH_ID = value;
+        BATCH_ID = value != null ? BatchIdColumn.of(value) : null;
     }
 
     public Long getBatchId(int featureId) {
         if (BATCH_ID == null) {
             return null;
         }
-        return BATCH_ID.get(featureId);
+        return BATCH_ID.getUnsigned(featureId);
     }
 
     public Long setBatchId(int featureId, long value) {
@@ -442,14 +586,25 @@ public class I3dmFeatureTable {
 
     public int addBatchId(long value) {
         if (BATCH_ID == null) {
-            BATCH_ID = new ArrayList<>();
+            BATCH_ID = new BatchIdColumn();
         }
-        BATCH_ID.add(value);
-        return BATCH_ID.size() - 1;
+        return BATCH_ID.add(value);
     }
 
     public Long removeBatchId(int featureId) {
-        return BATCH_ID != null ? BATCH_ID.remove(featureId) : null;
+        if (BATCH_ID != null) {
+            long old = BATCH_ID.getUnsigned(featureId);
+            BATCH_ID.remove(featureId);
+            return old;
+        }
+        return null;
+    }
+
+    private static <T extends AbstractColumn> T checkColumn(String property, T column, int components) {
+        if (column != null && column.getComponents() != components) {
+            throw new IllegalArgumentException("The column of " + property + " should have " + components + " components, but " + column.getComponents() + " in fact.");
+        }
+        return column;
     }
 
     public int getInstancesLength() {
@@ -520,39 +675,39 @@ public class I3dmFeatureTable {
 
         float[] floatArrayValue = FeatureUtils.getFloatArrayFeatureValue(jsonHeaderMap, binaryByteBuff, "POSITION", instanceLength * 3);
         if (floatArrayValue != null) {
-            table.setPositionList(CommonUtils.createFloat3List(floatArrayValue, instanceLength));
+            table.setPositionColumn(FloatColumn.wrap(floatArrayValue, 3));
         }
         int[] unsignedShortArrayValue = FeatureUtils.getUnsignedShortArrayFeatureValue(jsonHeaderMap, binaryByteBuff, "POSITION_QUANTIZED", instanceLength * 3);
         if (unsignedShortArrayValue != null) {
-            table.setPositionQuantizedList(CommonUtils.createUnsignedShortVecList(unsignedShortArrayValue, instanceLength, 3));
+            table.setPositionQuantizedColumn(ShortColumn.wrap(CommonUtils.toShortArray(unsignedShortArrayValue), 3));
         }
         floatArrayValue = FeatureUtils.getFloatArrayFeatureValue(jsonHeaderMap, binaryByteBuff, "NORMAL_UP", instanceLength * 3);
         if (floatArrayValue != null) {
-            table.setNormalUpList(CommonUtils.createFloat3List(floatArrayValue, instanceLength));
+            table.setNormalUpColumn(FloatColumn.wrap(floatArrayValue, 3));
         }
         floatArrayValue = FeatureUtils.getFloatArrayFeatureValue(jsonHeaderMap, binaryByteBuff, "NORMAL_RIGHT", instanceLength * 3);
         if (floatArrayValue != null) {
-            table.setNormalRightList(CommonUtils.createFloat3List(floatArrayValue, instanceLength));
+            table.setNormalRightColumn(FloatColumn.wrap(floatArrayValue, 3));
         }
         unsignedShortArrayValue = FeatureUtils.getUnsignedShortArrayFeatureValue(jsonHeaderMap, binaryByteBuff, "NORMAL_UP_OCT32P", instanceLength * 2);
         if (unsignedShortArrayValue != null) {
-            table.setNormalUpOct32pList(CommonUtils.createUnsignedShortVecList(unsignedShortArrayValue, instanceLength, 2));
+            table.setNormalUpOct32pColumn(ShortColumn.wrap(CommonUtils.toShortArray(unsignedShortArrayValue), 2));
         }
         unsignedShortArrayValue = FeatureUtils.getUnsignedShortArrayFeatureValue(jsonHeaderMap, binaryByteBuff, "NORMAL_RIGHT_OCT32P", instanceLength * 2);
         if (unsignedShortArrayValue != null) {
-            table.setNormalRightOct32pList(CommonUtils.createUnsignedShortVecList(unsignedShortArrayValue, instanceLength, 2));
+            table.setNormalRightOct32pColumn(ShortColumn.wrap(CommonUtils.toShortArray(unsignedShortArrayValue), 2));
         }
         floatArrayValue = FeatureUtils.getFloatArrayFeatureValue(jsonHeaderMap, binaryByteBuff, "SCALE", instanceLength);
         if (floatArrayValue != null) {
-            table.setScaleList(CommonUtils.createFloatList(floatArrayValue, instanceLength));
+            table.setScaleColumn(FloatColumn.wrap(floatArrayValue, 1));
         }
         floatArrayValue = FeatureUtils.getFloatArrayFeatureValue(jsonHeaderMap, binaryByteBuff, "SCALE_NON_UNIFORM", instanceLength * 3);
         if (floatArrayValue != null) {
-            table.setScaleNonUniformList(CommonUtils.createFloat3List(floatArrayValue, instanceLength));
+            table.setScaleNonUniformColumn(FloatColumn.wrap(floatArrayValue, 3));
         }
-        long[] unsignedIntArrayValue = FeatureUtils.getBatchId(jsonHeaderMap, binaryByteBuff, instanceLength);
-        if (unsignedIntArrayValue != null) {
-            table.setBatchIdList(CommonUtils.createUnsignedIntList(unsignedIntArrayValue, instanceLength));
+        BatchIdColumn batchIdColumn = FeatureUtils.getBatchIdColumn(jsonHeaderMap, binaryByteBuff, instanceLength);
+        if (batchIdColumn != null) {
+            table.setBatchIdColumn(batchIdColumn);
         }
         return table;
     }
@@ -580,96 +735,81 @@ public class I3dmFeatureTable {
     }
 
     public byte[] createBuffer(I3dmHeader header, JsonParser parser) throws IOException {
+        return createBuffer(header, parser, null).array();
+    }
+
+    /**
+     * @param arena where the buffers come from, or null. The returned buffer should be given back to the arena once written.
+     */
+    public ByteBuffer createBuffer(I3dmHeader header, JsonParser parser, BufferArena arena) throws IOException {
         validate();
         Map<String, Object> data = createSimpleHeader();
-        try (BinaryBodyHelper helper = new BinaryBodyHelper(data)){
-            List<float[]> positionList = getPositionList();
-            if (positionList != null && !positionList.isEmpty()) {
-                helper.writeData("POSITION", positionList, ComponentType.FLOAT, ContainerType.VEC3, true);
+        try (BinaryBodyHelper helper = new BinaryBodyHelper(data, arena)){
+            if (POSITION != null && !POSITION.isEmpty()) {
+                helper.writeColumn("POSITION", POSITION, true);
             }
-            List<int[]> positionQuantizedList = getPositionQuantizedList();
-            if (positionQuantizedList != null && !positionQuantizedList.isEmpty()) {
-                helper.writeData("POSITION_QUANTIZED", positionQuantizedList, ComponentType.UNSIGNED_SHORT, ContainerType.VEC3, true);
+            if (POSITION_QUANTIZED != null && !POSITION_QUANTIZED.isEmpty()) {
+                helper.writeColumn("POSITION_QUANTIZED", POSITION_QUANTIZED, ComponentType.UNSIGNED_SHORT, true);
             }
-            List<float[]> normalUpList = getNormalUpList();
-            if (normalUpList != null && !normalUpList.isEmpty()) {
-                helper.writeData("NORMAL_UP", normalUpList, ComponentType.FLOAT, ContainerType.VEC3, true);
+            if (NORMAL_UP != null && !NORMAL_UP.isEmpty()) {
+                helper.writeColumn("NORMAL_UP", NORMAL_UP, true);
             }
-            List<float[]> normalRightList = getNormalRightList();
-            if (normalRightList != null && !normalRightList.isEmpty()) {
-                helper.writeData("NORMAL_RIGHT", normalRightList, ComponentType.FLOAT, ContainerType.VEC3, true);
+            if (NORMAL_RIGHT != null && !NORMAL_RIGHT.isEmpty()) {
+                helper.writeColumn("NORMAL_RIGHT", NORMAL_RIGHT, true);
             }
-            List<int[]> normalUpOct32pList = getNormalUpOct32pList();
-            if (normalUpOct32pList != null && !normalUpOct32pList.isEmpty()) {
-                helper.writeData("NORMAL_UP_OCT32P", normalUpOct32pList, ComponentType.UNSIGNED_SHORT, ContainerType.VEC2, true);
+            if (NORMAL_UP_OCT32P != null && !NORMAL_UP_OCT32P.isEmpty()) {
+                helper.writeColumn("NORMAL_UP_OCT32P", NORMAL_UP_OCT32P, ComponentType.UNSIGNED_SHORT, true);
             }
-            List<int[]> normalRightOct32pList = getNormalRightOct32pList();
-            if (normalRightOct32pList != null && !normalRightOct32pList.isEmpty()) {
-                helper.writeData("NORMAL_RIGHT_OCT32P", normalRightOct32pList, ComponentType.UNSIGNED_SHORT, ContainerType.VEC2, true);
+            if (NORMAL_RIGHT_OCT32P != null && !NORMAL_RIGHT_OCT32P.isEmpty()) {
+                helper.writeColumn("NORMAL_RIGHT_OCT32P", NORMAL_RIGHT_OCT32P, ComponentType.UNSIGNED_SHORT, true);
             }
-            List<Float> scaleList = getScaleList();
-            if (scaleList != null && !scaleList.isEmpty()) {
-                helper.writeData("SCALE", scaleList, ComponentType.FLOAT, ContainerType.SCALAR, true);
+            if (SCALE != null && !SCALE.isEmpty()) {
+                helper.writeColumn("SCALE", SCALE, true);
             }
-            List<float[]> scaleNonUniformList = getScaleNonUniformList();
-            if (scaleNonUniformList != null && !scaleNonUniformList.isEmpty()) {
-                helper.writeData("SCALE_NON_UNIFORM", scaleNonUniformList, ComponentType.FLOAT, ContainerType.VEC3, true);
+            if (SCALE_NON_UNIFORM != null && !SCALE_NON_UNIFORM.isEmpty()) {
+                helper.writeColumn("SCALE_NON_UNIFORM", SCALE_NON_UNIFORM, true);
             }
-            List<Long> batchIdList = getBatchIdList();
-            if (batchIdList != null && !batchIdList.isEmpty()) {
-                helper.writeBatchId(batchIdList);
+            if (BATCH_ID != null && !BATCH_ID.isEmpty()) {
+                helper.writeBatchId(BATCH_ID);
             }
             helper.finished();
             byte[] jsonBytes = parser.toJsonString(data).getBytes(StandardCharsets.UTF_8);
-            jsonBytes = CommonUtils.createPaddingBytes(jsonBytes, header.getHeaderLength() + jsonBytes.length, 8, (byte) 0x20);
-            header.setFeatureTableJSONByteLength(jsonBytes.length);
-            byte[] binaryBytes = helper.toByteArray();
-            header.setFeatureTableBinaryByteLength(binaryBytes.length);
-            byte[] out = new byte[jsonBytes.length + binaryBytes.length];
-            System.arraycopy(jsonBytes, 0, out, 0, jsonBytes.length);
-            System.arraycopy(binaryBytes, 0, out, jsonBytes.length, binaryBytes.length);
-            return out;
+            int jsonLength = jsonBytes.length + CommonUtils.calcPadding(header.getHeaderLength() + jsonBytes.length, 8);
+            header.setFeatureTableJSONByteLength(jsonLength);
+            header.setFeatureTableBinaryByteLength(helper.getSize());
+            return helper.createTable(jsonBytes, jsonLength);
         }
     }
 
     public int calcSize(I3dmHeader header, JsonParser parser) {
         Map<String, Object> data = createSimpleHeader();
         BinaryBodySizeHelper helper = new BinaryBodySizeHelper(data);
-        List<float[]> positionList = getPositionList();
-        if (positionList != null && !positionList.isEmpty()) {
-            helper.addProperty("POSITION", positionList, ComponentType.FLOAT, ContainerType.VEC3, true);
+        if (POSITION != null && !POSITION.isEmpty()) {
+            helper.addColumn("POSITION", POSITION, ComponentType.FLOAT, true);
         }
-        List<int[]> positionQuantizedList = getPositionQuantizedList();
-        if (positionQuantizedList != null && !positionQuantizedList.isEmpty()) {
-            helper.addProperty("POSITION_QUANTIZED", positionQuantizedList, ComponentType.UNSIGNED_SHORT, ContainerType.VEC3, true);
+        if (POSITION_QUANTIZED != null && !POSITION_QUANTIZED.isEmpty()) {
+            helper.addColumn("POSITION_QUANTIZED", POSITION_QUANTIZED, ComponentType.UNSIGNED_SHORT, true);
         }
-        List<float[]> normalUpList = getNormalUpList();
-        if (normalUpList != null && !normalUpList.isEmpty()) {
-            helper.addProperty("NORMAL_UP", normalUpList, ComponentType.FLOAT, ContainerType.VEC3, true);
+        if (NORMAL_UP != null && !NORMAL_UP.isEmpty()) {
+            helper.addColumn("NORMAL_UP", NORMAL_UP, ComponentType.FLOAT, true);
         }
-        List<float[]> normalRightList = getNormalRightList();
-        if (normalRightList != null && !normalRightList.isEmpty()) {
-            helper.addProperty("NORMAL_RIGHT", normalRightList, ComponentType.FLOAT, ContainerType.VEC3, true);
+        if (NORMAL_RIGHT != null && !NORMAL_RIGHT.isEmpty()) {
+            helper.addColumn("NORMAL_RIGHT", NORMAL_RIGHT, ComponentType.FLOAT, true);
         }
-        List<int[]> normalUpOct32pList = getNormalUpOct32pList();
-        if (normalUpOct32pList != null && !normalUpOct32pList.isEmpty()) {
-            helper.addProperty("NORMAL_UP_OCT32P", normalUpOct32pList, ComponentType.UNSIGNED_SHORT, ContainerType.VEC2, true);
+        if (NORMAL_UP_OCT32P != null && !NORMAL_UP_OCT32P.isEmpty()) {
+            helper.addColumn("NORMAL_UP_OCT32P", NORMAL_UP_OCT32P, ComponentType.UNSIGNED_SHORT, true);
         }
-        List<int[]> normalRightOct32pList = getNormalRightOct32pList();
-        if (normalRightOct32pList != null && !normalRightOct32pList.isEmpty()) {
-            helper.addProperty("NORMAL_RIGHT_OCT32P", normalRightOct32pList, ComponentType.UNSIGNED_SHORT, ContainerType.VEC2, true);
+        if (NORMAL_RIGHT_OCT32P != null && !NORMAL_RIGHT_OCT32P.isEmpty()) {
+            helper.addColumn("NORMAL_RIGHT_OCT32P", NORMAL_RIGHT_OCT32P, ComponentType.UNSIGNED_SHORT, true);
         }
-        List<Float> scaleList = getScaleList();
-        if (scaleList != null && !scaleList.isEmpty()) {
-            helper.addProperty("SCALE", scaleList, ComponentType.FLOAT, ContainerType.SCALAR, true);
+        if (SCALE != null && !SCALE.isEmpty()) {
+            helper.addColumn("SCALE", SCALE, ComponentType.FLOAT, true);
         }
-        List<float[]> scaleNonUniformList = getScaleNonUniformList();
-        if (scaleNonUniformList != null && !scaleNonUniformList.isEmpty()) {
-            helper.addProperty("SCALE_NON_UNIFORM", scaleNonUniformList, ComponentType.FLOAT, ContainerType.VEC3, true);
+        if (SCALE_NON_UNIFORM != null && !SCALE_NON_UNIFORM.isEmpty()) {
+            helper.addColumn("SCALE_NON_UNIFORM", SCALE_NON_UNIFORM, ComponentType.FLOAT, true);
         }
-        List<Long> batchIdList = getBatchIdList();
-        if (batchIdList != null && !batchIdList.isEmpty()) {
-            helper.addBatchId(batchIdList);
+        if (BATCH_ID != null && !BATCH_ID.isEmpty()) {
+            helper.addBatchId(BATCH_ID);
         }
         helper.finished();
         return helper.calcHeaderSize(header.getHeaderLength(), parser) + helper.getSize();
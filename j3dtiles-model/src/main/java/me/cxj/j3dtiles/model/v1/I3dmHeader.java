@@ -6,6 +6,8 @@ import me.cxj.j3dtiles.utils.LittleEndianDataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 
 /**
@@ -83,6 +85,34 @@ public class I3dmHeader extends BatchHeader {
         return header;
     }
 
+    public static I3dmHeader read(ByteBuffer buffer, boolean hasReadMagic, boolean hasReadVersion) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        I3dmHeader header = new I3dmHeader();
+        if (hasReadVersion && !hasReadMagic) {
+            throw new IllegalArgumentException("It is impossible to read version without reading magic.");
+        }
+        if (!hasReadMagic) {
+            byte[] magic = new byte[4];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, header.getMagic())) {
+                throw new IllegalArgumentException("Invalid buffer. Not a valid i3dm buffer. The magic is wrong. Expect i3dm but " + new String(magic) + ".");
+            }
+        }
+        if (!hasReadVersion) {
+            int version = buffer.getInt();
+            if (version != header.getVersion()) {
+                throw new IllegalArgumentException("Invalid buffer. Not a valid i3dm buffer. Mismatch version. Expect 1 but " + version + ".");
+            }
+        }
+        header.setByteLength(buffer.getInt());
+        header.setFeatureTableJSONByteLength(buffer.getInt());
+        header.setFeatureTableBinaryByteLength(buffer.getInt());
+        header.setBatchTableJSONByteLength(buffer.getInt());
+        header.setBatchTableBinaryByteLength(buffer.getInt());
+        header.setGltfFormat(buffer.getInt());
+        return header;
+    }
+
     public void write(OutputStream os) throws IOException {
         LittleEndianDataOutputStream dos = new LittleEndianDataOutputStream(os);
         dos.write(magic);
@@ -94,4 +124,17 @@ public class I3dmHeader extends BatchHeader {
         dos.writeInt(getBatchTableBinaryByteLength());
         dos.writeInt(gltfFormat);
     }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(magic);
+        buffer.putInt(getVersion());
+        buffer.putInt(getByteLength());
+        buffer.putInt(getFeatureTableJSONByteLength());
+        buffer.putInt(getFeatureTableBinaryByteLength());
+        buffer.putInt(getBatchTableJSONByteLength());
+        buffer.putInt(getBatchTableBinaryByteLength());
+        buffer.putInt(gltfFormat);
+    }
 }
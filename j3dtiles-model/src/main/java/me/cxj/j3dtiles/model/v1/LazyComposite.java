@@ -0,0 +1,247 @@
+package me.cxj.j3dtiles.model.v1;
+
+import me.cxj.j3dtiles.utils.JsonParser;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only view of a cmpt file. Only the headers are read when the view is opened, to build the offset table of
+ * the inner tiles. An inner tile is read and materialized when it is accessed by {@link #getTile(int)}, and kept
+ * until the view is closed. {@link #iterator()} materializes the inner tiles one by one without keeping them,
+ * so a cmpt of any size can be processed in constant memory.
+ */
+public class LazyComposite implements Closeable, Iterable<TileModel> {
+
+    private final FileChannel channel;
+    private final boolean ownChannel;
+    private final JsonParser parser;
+    private final CompositeHeader header;
+    private final long[] offsets;
+    private final long[] byteLengths;
+    private final TileModel[] tiles;
+
+    private LazyComposite(FileChannel channel, boolean ownChannel, long position, JsonParser parser) throws IOException {
+        this.channel = channel;
+        this.ownChannel = ownChannel;
+        this.parser = parser;
+        ByteBuffer headerBuffer = read(channel, position, 16);
+        byte[] magic = new byte[4];
+        headerBuffer.duplicate().get(magic);
+        // The other headers are longer than the 16 bytes read, so the magic is checked before the header is read.
+        if (!Arrays.equals(magic, CompositeHeader.magic)) {
+            throw new IllegalArgumentException("Not a cmpt tile at offset " + position + ".");
+        }
+        Header header = Header.read(headerBuffer);
+        this.header = (CompositeHeader) header;
+        long end = position + (header.getByteLength() & 0xFFFFFFFFL);
+        if (end > channel.size()) {
+            throw new IllegalArgumentException("Invalid byteLength: " + (header.getByteLength() & 0xFFFFFFFFL) + ", only " + (channel.size() - position) + " bytes are available.");
+        }
+        int tilesLength = this.header.getTilesLength();
+        if (tilesLength < 0) {
+            throw new IllegalArgumentException("Too many inner tiles: " + (tilesLength & 0xFFFFFFFFL) + ".");
+        }
+        this.offsets = new long[tilesLength];
+        this.byteLengths = new long[tilesLength];
+        this.tiles = new TileModel[tilesLength];
+        long offset = position + header.getHeaderLength();
+        for (int i = 0; i < tilesLength; ++i) {
+            if (end - offset < 12) {
+                throw new IllegalArgumentException("Invalid inner tile " + i + " at offset " + offset + ", too small to be a tile.");
+            }
+            long byteLength = read(channel, offset + 8, 4).getInt() & 0xFFFFFFFFL;
+            if (byteLength < 12 || offset + byteLength > end) {
+                throw new IllegalArgumentException("Invalid byteLength of the inner tile " + i + ": " + byteLength + " at offset " + offset + ".");
+            }
+            offsets[i] = offset;
+            byteLengths[i] = byteLength;
+            offset += byteLength;
+        }
+    }
+
+    /**
+     * Open the cmpt file. The file is kept open until the view is closed.
+     */
+    public static LazyComposite open(Path path, JsonParser parser) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new LazyComposite(channel, true, 0, parser);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open the cmpt starting at the position of the channel. The channel is not closed when the view is closed.
+     */
+    public static LazyComposite open(FileChannel channel, long position, JsonParser parser) throws IOException {
+        return new LazyComposite(channel, false, position, parser);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file at " + (position + buffer.position()) + ".");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= offsets.length) {
+            throw new IndexOutOfBoundsException("Invalid tile index: " + index + ", the cmpt has " + offsets.length + " tiles.");
+        }
+    }
+
+    public CompositeHeader getHeader() {
+        return header;
+    }
+
+    public int getTilesLength() {
+        return offsets.length;
+    }
+
+    /**
+     * @return the offset of the inner tile in the file.
+     */
+    public long getTileOffset(int index) {
+        checkIndex(index);
+        return offsets[index];
+    }
+
+    public long getTileByteLength(int index) {
+        checkIndex(index);
+        return byteLengths[index];
+    }
+
+    /**
+     * Read the header of the inner tile only.
+     */
+    public Header readTileHeader(int index) throws IOException {
+        checkIndex(index);
+        return Header.read(read(channel, offsets[index], (int) Math.min(Header.MAX_HEADER_LENGTH, byteLengths[index])));
+    }
+
+    /**
+     * Read the bytes of the inner tile onto the heap, without decoding them.
+     */
+    public MappedTile readRawTile(int index) throws IOException {
+        checkIndex(index);
+        if (byteLengths[index] > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too big tile: " + byteLengths[index] + " bytes. A tile can not be larger than 2GB.");
+        }
+        return MappedTile.wrap(read(channel, offsets[index], (int) byteLengths[index]));
+    }
+
+    /**
+     * Read and materialize the inner tile, without keeping it in the view.
+     */
+    public TileModel readTile(int index) throws IOException {
+        return readRawTile(index).read(parser);
+    }
+
+    /**
+     * Materialize the inner tile on first access. It is kept by the view afterwards.
+     */
+    public synchronized TileModel getTile(int index) throws IOException {
+        checkIndex(index);
+        if (tiles[index] == null) {
+            tiles[index] = readTile(index);
+        }
+        return tiles[index];
+    }
+
+    /**
+     * Drop the materialized inner tile, if any.
+     */
+    public synchronized void release(int index) {
+        checkIndex(index);
+        tiles[index] = null;
+    }
+
+    /**
+     * A view of an inner cmpt, sharing the file of this view. Nothing but the headers of the inner cmpt is read.
+     */
+    public LazyComposite getComposite(int index) throws IOException {
+        checkIndex(index);
+        return new LazyComposite(channel, false, offsets[index], parser);
+    }
+
+    /**
+     * Materialize all the inner tiles.
+     */
+    public Composite toComposite() throws IOException {
+        List<TileModel> models = new ArrayList<>(offsets.length);
+        for (int i = 0; i < offsets.length; ++i) {
+            models.add(getTile(i));
+        }
+        CompositeHeader copy = new CompositeHeader();
+        copy.setByteLength(header.getByteLength());
+        copy.setTilesLength(header.getTilesLength());
+        return Composite.create(copy, models);
+    }
+
+    /**
+     * Iterate over the inner tiles in order. Each tile is read when {@link Iterator#next()} is called and is not kept
+     * by the view, so it can be collected as soon as the caller drops it. The tiles already kept by
+     * {@link #getTile(int)} are reused. An {@link IOException} is rethrown as an {@link UncheckedIOException}.
+     */
+    @Override
+    public Iterator<TileModel> iterator() {
+        return new Iterator<TileModel>() {
+
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < offsets.length;
+            }
+
+            @Override
+            public TileModel next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int index = next++;
+                TileModel tile;
+                synchronized (LazyComposite.this) {
+                    tile = tiles[index];
+                }
+                if (tile != null) {
+                    return tile;
+                }
+                try {
+                    return readTile(index);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Close the file if the view opened it. The materialized tiles stay valid.
+     */
+    @Override
+    public void close() throws IOException {
+        if (ownChannel) {
+            channel.close();
+        }
+    }
+}
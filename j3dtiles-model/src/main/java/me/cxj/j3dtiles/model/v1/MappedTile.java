@@ -0,0 +1,247 @@
+package me.cxj.j3dtiles.model.v1;
+
+import de.javagl.jgltf.model.GltfModel;
+import de.javagl.jgltf.model.io.Buffers;
+import de.javagl.jgltf.model.io.GltfModelReader;
+import me.cxj.j3dtiles.utils.JsonParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A read-only view of a b3dm, i3dm, pnts or cmpt tile backed by a {@link ByteBuffer}, usually a memory-mapped file.
+ * The header is parsed in place, and the feature table, the batch table and the body are exposed as slices of
+ * the buffer. Nothing is copied to the heap until {@link #read(JsonParser)} or {@link #readGltf()} is called.
+ */
+public class MappedTile {
+
+    private static final int GLB_MAGIC = 0x46546C67;
+
+    private final ByteBuffer buffer;
+    private final Header header;
+    private final ByteBuffer featureTableJSON;
+    private final ByteBuffer featureTableBinary;
+    private final ByteBuffer batchTableJSON;
+    private final ByteBuffer batchTableBinary;
+    private final ByteBuffer body;
+
+    private MappedTile(ByteBuffer buffer, Header header) {
+        this.buffer = buffer;
+        this.header = header;
+        int offset = header.getHeaderLength();
+        if (header instanceof BatchHeader) {
+            BatchHeader batchHeader = (BatchHeader) header;
+            this.featureTableJSON = slice(offset, batchHeader.getFeatureTableJSONByteLength());
+            offset += batchHeader.getFeatureTableJSONByteLength();
+            this.featureTableBinary = slice(offset, batchHeader.getFeatureTableBinaryByteLength());
+            offset += batchHeader.getFeatureTableBinaryByteLength();
+            this.batchTableJSON = slice(offset, batchHeader.getBatchTableJSONByteLength());
+            offset += batchHeader.getBatchTableJSONByteLength();
+            this.batchTableBinary = slice(offset, batchHeader.getBatchTableBinaryByteLength());
+            offset += batchHeader.getBatchTableBinaryByteLength();
+        } else {
+            this.featureTableJSON = null;
+            this.featureTableBinary = null;
+            this.batchTableJSON = null;
+            this.batchTableBinary = null;
+        }
+        this.body = slice(offset, header.getByteLength() - offset);
+    }
+
+    /**
+     * Map the whole file read-only. The mapping stays valid after this method returns.
+     */
+    public static MappedTile map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return map(channel, 0, channel.size());
+        }
+    }
+
+    public static MappedTile map(FileChannel channel, long position, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too big tile: " + size + " bytes. A tile can not be larger than 2GB.");
+        }
+        return wrap(channel.map(FileChannel.MapMode.READ_ONLY, position, size));
+    }
+
+    /**
+     * Wrap the bytes between the position and the limit of the buffer. The buffer is not copied and not modified.
+     */
+    public static MappedTile wrap(ByteBuffer buffer) {
+        ByteBuffer data = buffer.slice().asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        if (data.remaining() < 4) {
+            throw new IllegalArgumentException("Invalid buffer. Too small to be a tile: " + data.remaining() + " bytes.");
+        }
+        int headerLength = Header.getHeaderLength(data);
+        if (data.remaining() < headerLength) {
+            throw new IllegalArgumentException("Invalid buffer. Too small to be a tile: " + data.remaining() + " bytes, the header has " + headerLength + " bytes.");
+        }
+        Header header = Header.read(data);
+        int byteLength = header.getByteLength();
+        if (byteLength < header.getHeaderLength() || byteLength > data.capacity()) {
+            throw new IllegalArgumentException("Invalid byteLength: " + byteLength + ", the buffer has " + data.capacity() + " bytes.");
+        }
+        return new MappedTile(Buffers.createSlice(data, 0, byteLength), header);
+    }
+
+    private ByteBuffer slice(int offset, int length) {
+        if (length < 0 || (long) offset + length > header.getByteLength()) {
+            throw new IllegalArgumentException("Invalid section length: " + length + " at offset " + offset + ", the tile has only " + header.getByteLength() + " bytes.");
+        }
+        return Buffers.createSlice(buffer, offset, length);
+    }
+
+    private static ByteBuffer view(ByteBuffer buffer) {
+        return buffer != null ? buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN) : null;
+    }
+
+    public Header getHeader() {
+        return header;
+    }
+
+    /**
+     * The whole tile, from the magic to byteLength.
+     */
+    public ByteBuffer getBuffer() {
+        return view(buffer);
+    }
+
+    /**
+     * @return the feature table json header, or null for cmpt.
+     */
+    public ByteBuffer getFeatureTableJSON() {
+        return view(featureTableJSON);
+    }
+
+    public String getFeatureTableJSONString() {
+        return featureTableJSON != null ? StandardCharsets.UTF_8.decode(view(featureTableJSON)).toString() : null;
+    }
+
+    /**
+     * @return the feature table binary body, or null for cmpt.
+     */
+    public ByteBuffer getFeatureTableBinary() {
+        return view(featureTableBinary);
+    }
+
+    /**
+     * @return the batch table json header, or null for cmpt.
+     */
+    public ByteBuffer getBatchTableJSON() {
+        return view(batchTableJSON);
+    }
+
+    public String getBatchTableJSONString() {
+        return batchTableJSON != null ? StandardCharsets.UTF_8.decode(view(batchTableJSON)).toString() : null;
+    }
+
+    /**
+     * @return the batch table binary body, or null for cmpt.
+     */
+    public ByteBuffer getBatchTableBinary() {
+        return view(batchTableBinary);
+    }
+
+    /**
+     * The bytes after the batch table: the glb (or the gltf uri) for b3dm and i3dm, nothing for pnts,
+     * and the inner tiles for cmpt.
+     */
+    public ByteBuffer getBody() {
+        return view(body);
+    }
+
+    /**
+     * A stream over the feature table and the batch table, which are laid out contiguously.
+     */
+    InputStream openTableStream() {
+        BatchHeader batchHeader = (BatchHeader) header;
+        int length = batchHeader.getFeatureTableJSONByteLength()
+                + batchHeader.getFeatureTableBinaryByteLength()
+                + batchHeader.getBatchTableJSONByteLength()
+                + batchHeader.getBatchTableBinaryByteLength();
+        return Buffers.createByteBufferInputStream(slice(header.getHeaderLength(), length));
+    }
+
+    public boolean hasEmbeddedGltf() {
+        if (header instanceof B3dmHeader) {
+            return true;
+        } else if (header instanceof I3dmHeader) {
+            return ((I3dmHeader) header).getGltfFormat() == 1;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * The embedded glb without the trailing padding of the tile.
+     */
+    public ByteBuffer getGltfBuffer() {
+        if (!hasEmbeddedGltf()) {
+            throw new IllegalArgumentException("The tile does not embed a binary gltf.");
+        }
+        if (body.capacity() >= 12 && body.getInt(0) == GLB_MAGIC) {
+            int length = body.getInt(8);
+            if (length < 12 || length > body.capacity()) {
+                throw new IllegalArgumentException("Invalid glb length: " + length + ", the tile body has only " + body.capacity() + " bytes.");
+            }
+            return Buffers.createSlice(body, 0, length);
+        }
+        return view(body);
+    }
+
+    /**
+     * Read the embedded glb. The buffers of the returned model are slices of this tile, not copies.
+     */
+    public GltfModel readGltf() throws IOException {
+        return new GltfModelReader().readWithoutReferences(getGltfBuffer());
+    }
+
+    public String getGltfUri() {
+        if (!(header instanceof I3dmHeader) || ((I3dmHeader) header).getGltfFormat() != 0) {
+            throw new IllegalArgumentException("The tile does not refer to an external gltf.");
+        }
+        return StandardCharsets.UTF_8.decode(view(body)).toString().trim();
+    }
+
+    /**
+     * The inner tiles of a cmpt. Only their headers are parsed.
+     */
+    public List<MappedTile> getInnerTiles() {
+        if (!(header instanceof CompositeHeader)) {
+            throw new IllegalArgumentException("The tile is not a cmpt.");
+        }
+        int tilesLength = ((CompositeHeader) header).getTilesLength();
+        List<MappedTile> tiles = new ArrayList<>(tilesLength);
+        int offset = 0;
+        for (int i = 0; i < tilesLength; ++i) {
+            MappedTile tile = wrap(Buffers.createSlice(body, offset, body.capacity() - offset));
+            tiles.add(tile);
+            offset += tile.getHeader().getByteLength();
+        }
+        return Collections.unmodifiableList(tiles);
+    }
+
+    /**
+     * Materialize the tile model. This is where the tables are decoded onto the heap.
+     */
+    public TileModel read(JsonParser parser) throws IOException {
+        if (header instanceof B3dmHeader) {
+            return B3dm.read(this, parser);
+        } else if (header instanceof I3dmHeader) {
+            return I3dm.read(this, parser);
+        } else if (header instanceof PointCloudHeader) {
+            return PointCloud.read(this, parser);
+        } else {
+            return Composite.read(this, parser);
+        }
+    }
+}
@@ -7,14 +7,13 @@ import me.cxj.j3dtiles.utils.*;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
 
-import static me.cxj.j3dtiles.utils.CommonUtils.checkListElements;
 import static me.cxj.j3dtiles.utils.CommonUtils.mismatchedLength;
 
 /**
@@ -28,36 +27,40 @@ public class PntsFeatureTable {
      * float32[3],
      * Required, unless POSITION_QUANTIZED is defined.
      */
-    private List<float[]> POSITION;
+    private FloatColumn POSITION;
     /**
      * A 3-component array of numbers containing x, y, and z in quantized Cartesian coordinates for the position of the point.
      * uint16[3],
      * Required, unless POSITION is defined.
      */
-    private List<int[]> POSITION_QUANTIZED;
+    private ShortColumn POSITION_QUANTIZED;
     /**
      * uint8[4] for RGBA, uint8[3] for RGB, uint16 for RGB565
      */
-    private List<Integer> color;
+    private IntColumn color;
     private ColorFormat colorFormat;
+    /**
+     * Where the colors of a large cloud are encoded, or null to encode them on the calling thread.
+     */
+    private ExecutorService colorExecutor;
     /**
      * A unit vector defining the normal of the point.
      * float32[3],
      * Not Required.
      */
-    private List<float[]> NORMAL;
+    private FloatColumn NORMAL;
     /**
      * An oct-encoded unit vector with 16 bits of precision defining the normal of the point.
      * uint8[2],
      * Not Required.
      */
-    private List<byte[]> NORMAL_OCT16P;
+    private ByteColumn NORMAL_OCT16P;
     /**
      * The batchId of the point that can be used to retrieve metadata from the Batch Table.
      * uint8, uint16 (default), or uint32,
      * Not Required
      */
-    private List<Long> BATCH_ID;
+    private BatchIdColumn BATCH_ID;
 
     //Global semantics
     /**
@@ -98,94 +101,144 @@ public class PntsFeatureTable {
     private Integer BATCH_LENGTH;
 
 
-    public List<float[]> getPositionList() {
+    public FloatColumn getPositionColumn() {
         return POSITION;
     }
 
+    public void setPositionColumn(FloatColumn value) {
+        POSITION = checkColumn("POSITION", value, 3);
+    }
+
+    /**
+     * @return a list view of the column, or null. Its get returns a copy of the tuple, so a change to the copy is
+     * lost unless it is passed back to set.
+     */
+    public List<float[]> getPositionList() {
+        return POSITION != null ? POSITION.asList() : null;
+    }
+
     public void setPositionList(List<float[]> value) {
-        POSITION = value;
+        POSITION = value != null ? FloatColumn.of(value, 3) : null;
     }
 
+    /**
+     * @return a copy of the tuple of the feature, or null. Pass a changed copy to setPosition to store it.
+     */
     public float[] getPosition(int featureId) {
         return POSITION != null ? POSITION.get(featureId) : null;
     }
 
     public float[] setPosition(int featureId, float[] value) {
-        return POSITION.set(featureId, value);
+        float[] old = POSITION.get(featureId);
+        POSITION.set(featureId, value);
+        return old;
     }
 
     public int addPosition(float[] value) {
         if (POSITION == null) {
-            POSITION = new ArrayList<>();
+            POSITION = new FloatColumn(3);
         }
-        POSITION.add(value);
-        return POSITION.size() - 1;
+        return POSITION.add(value);
     }
 
     public float[] removePosition(int featureId) {
         if (POSITION != null) {
-            return POSITION.remove(featureId);
+            float[] old = POSITION.get(featureId);
+            POSITION.remove(featureId);
+            return old;
         }
         return null;
     }
 
-    public List<int[]> getPositionQuantizedList() {
+    public ShortColumn getPositionQuantizedColumn() {
         return POSITION_QUANTIZED;
     }
 
+    public void setPositionQuantizedColumn(ShortColumn value) {
+        POSITION_QUANTIZED = checkColumn("POSITION_QUANTIZED", value, 3);
+    }
+
+    /**
+     * @return a list view of the column, or null. Its get returns a copy of the tuple, so a change to the copy is
+     * lost unless it is passed back to set.
+     */
+    public List<int[]> getPositionQuantizedList() {
+        return POSITION_QUANTIZED != null ? POSITION_QUANTIZED.asUnsignedList() : null;
+    }
+
     public void setPositionQuantizedList(List<int[]> value) {
-        POSITION_QUANTIZED = value;
+        POSITION_QUANTIZED = value != null ? ShortColumn.ofUnsigned(value, 3) : null;
     }
 
+    /**
+     * @return a copy of the tuple of the feature, or null. Pass a changed copy to setPositionQuantized to store it.
+     */
     public int[] getPositionQuantized(int featureId) {
-        return POSITION_QUANTIZED != null ? POSITION_QUANTIZED.get(featureId) : null;
+        return POSITION_QUANTIZED != null ? POSITION_QUANTIZED.asUnsignedList().get(featureId) : null;
     }
 
     public int[] setPositionQuantized(int featureId, int[] value) {
-        return POSITION_QUANTIZED.set(featureId, value);
+        return POSITION_QUANTIZED.asUnsignedList().set(featureId, value);
     }
 
     public int addPositionQuantized(int[] value) {
         if (POSITION_QUANTIZED == null) {
-            POSITION_QUANTIZED = new ArrayList<>();
+            POSITION_QUANTIZED = new ShortColumn(3);
         }
-        POSITION_QUANTIZED.add(value);
+        POSITION_QUANTIZED.asUnsignedList().add(value);
         return POSITION_QUANTIZED.size() - 1;
     }
 
     public int[] removePositionQuantized(int featureId) {
         if (POSITION_QUANTIZED != null) {
-            return POSITION_QUANTIZED.remove(featureId);
+            return POSITION_QUANTIZED.asUnsignedList().remove(featureId);
         }
         return null;
     }
 
-    public List<Integer> getColorList() {
+    /**
+     * The colors are stored as ARGB ints, whatever the color format is.
+     */
+    public IntColumn getColorColumn() {
         return color;
     }
 
+    public void setColorColumn(IntColumn value) {
+        color = checkColumn("color", value, 1);
+    }
+
+    public List<Integer> getColorList() {
+        return color != null ? color.asScalarList() : null;
+    }
+
     public void setColorList(List<Integer> value) {
-        color = value;
+        color = value != null ? IntColumn.ofScalars(value) : null;
     }
 
     public Integer getColor(int featureId) {
-        return color != null ? color.get(featureId) : null;
+        return color != null ? color.getComponent(featureId, 0) : null;
     }
 
     public Integer setColor(int featureId, int color) {
-        return this.color.set(featureId, color);
+        int old = this.color.getComponent(featureId, 0);
+        this.color.setComponent(featureId, 0, color);
+        return old;
     }
 
     public int addColor(int value) {
         if (color == null) {
-            color = new ArrayList<>();
+            color = new IntColumn(1);
         }
-        color.add(value);
-        return color.size() - 1;
+        return color.add(value);
     }
 
     public Integer removeColor(int featureId) {
-        return color != null ? color.remove(featureId) : null;
+        if (color != null) {
+            int old = color.getComponent(featureId, 0);
+            color.remove(featureId);
+            return old;
+        }
+        return null;
     }
 
     public ColorFormat getColorFormat() {
@@ -196,75 +249,136 @@ public class PntsFeatureTable {
         this.colorFormat = colorFormat;
     }
 
-    public List<float[]> getNormalList() {
+    public ExecutorService getColorExecutor() {
+        return colorExecutor;
+    }
+
+    public void setColorExecutor(ExecutorService colorExecutor) {
+        this.colorExecutor = colorExecutor;
+    }
+
+    public FloatColumn getNormalColumn() {
         return NORMAL;
     }
 
+    public void setNormalColumn(FloatColumn value) {
+        NORMAL = checkColumn("NORMAL", value, 3);
+    }
+
+    /**
+     * @return a list view of the column, or null. Its get returns a copy of the tuple, so a change to the copy is
+     * lost unless it is passed back to set.
+     */
+    public List<float[]> getNormalList() {
+        return NORMAL != null ? NORMAL.asList() : null;
+    }
+
     public void setNormalList(List<float[]> value) {
-        NORMAL = value;
+        NORMAL = value != null ? FloatColumn.of(value, 3) : null;
     }
 
+    /**
+     * @return a copy of the tuple of the feature, or null. Pass a changed copy to setNormal to store it.
+     */
     public float[] getNormal(int featureId) {
         return NORMAL != null ? NORMAL.get(featureId) : null;
     }
 
     public float[] setNormal(int featureId, float[] value) {
-        return NORMAL.set(featureId, value);
+        float[] old = NORMAL.get(featureId);
+        NORMAL.set(featureId, value);
+        return old;
     }
 
     public int addNormal(float[] value) {
         if (NORMAL == null) {
-            NORMAL = new ArrayList<>();
+            NORMAL = new FloatColumn(3);
         }
-        NORMAL.add(value);
-        return NORMAL.size() - 1;
+        return NORMAL.add(value);
     }
 
     public float[] removeNormal(int featureId) {
-        return NORMAL != null ? NORMAL.remove(featureId) : null;
+        if (NORMAL != null) {
+            float[] old = NORMAL.get(featureId);
+            NORMAL.remove(featureId);
+            return old;
+        }
+        return null;
     }
 
-    public List<byte[]> getNormalOct16pList() {
+    public ByteColumn getNormalOct16pColumn() {
         return NORMAL_OCT16P;
     }
 
+    public void setNormalOct16pColumn(ByteColumn value) {
+        NORMAL_OCT16P = checkColumn("NORMAL_OCT16P", value, 2);
+    }
+
+    /**
+     * @return a list view of the column, or null. Its get returns a copy of the tuple, so a change to the copy is
+     * lost unless it is passed back to set.
+     */
+    public List<byte[]> getNormalOct16pList() {
+        return NORMAL_OCT16P != null ? NORMAL_OCT16P.asList() : null;
+    }
+
     public void setNormalOct16pList(List<byte[]> value) {
-        NORMAL_OCT16P = value;
+        NORMAL_OCT16P = value != null ? ByteColumn.of(value, 2) : null;
     }
 
+    /**
+     * @return a copy of the tuple of the feature, or null. Pass a changed copy to setNormalOct16p to store it.
+     */
     public byte[] getNormalOct16p(int featureId) {
         return NORMAL_OCT16P != null ? NORMAL_OCT16P.get(featureId) : null;
     }
 
     public byte[] setNormalOct16p(int featureId, byte[] value) {
-        return NORMAL_OCT16P.set(featureId, value);
+        byte[] old = NORMAL_OCT16P.get(featureId);
+        NORMAL_OCT16P.set(featureId, value);
+        return old;
     }
 
     public int addNormalOct16p(byte[] value) {
         if (NORMAL_OCT16P == null) {
-            NORMAL_OCT16P = new ArrayList<>();
+            NORMAL_OCT16P = new ByteColumn(2);
         }
-        NORMAL_OCT16P.add(value);
-        return NORMAL_OCT16P.size() - 1;
+        return NORMAL_OCT16P.add(value);
     }
 
     public byte[] removeNormalOct16p(int featureId) {
-        return NORMAL_OCT16P != null ? NORMAL_OCT16P.remove(featureId) : null;
+        if (NORMAL_OCT16P != null) {
+            byte[] old = NORMAL_OCT16P.get(featureId);
+            NORMAL_OCT16P.remove(featureId);
+            return old;
+        }
+        return null;
     }
 
-    public List<Long> getBatchIdList() {
+    /**
+     * The batch ids are stored as unsigned ints.
+     */
+    public BatchIdColumn getBatchIdColumn() {
         return BATCH_ID;
     }
 
+    public void setBatchIdColumn(BatchIdColumn value) {
+        BATCH_ID = checkColumn("BATCH_ID", value, 1);
+    }
+
+    public List<Long> getBatchIdList() {
+        return BATCH_ID != null ? BATCH_ID.asList() : null;
+    }
+
     public void setBatchIdList(List<Long> value) {
-        BATCH_ID = value;
+        BATCH_ID = value != null ? BatchIdColumn.of(value) : null;
     }
 
     public Long getBatchId(int featureId) {
         if (BATCH_ID == null) {
             return null;
         }
-        return BATCH_ID.get(featureId);
+        return BATCH_ID.getUnsigned(featureId);
     }
 
     public Long setBatchId(int featureId, long value) {
@@ -273,14 +387,25 @@ public class PntsFeatureTable {
 
     public int addBatchId(long value) {
         if (BATCH_ID == null) {
-            BATCH_ID = new ArrayList<>();
+            BATCH_ID = new BatchIdColumn();
         }
-        BATCH_ID.add(value);
-        return BATCH_ID.size() - 1;
+        return BATCH_ID.add(value);
     }
 
     public Long removeBatchId(int featureId) {
-        return BATCH_ID != null ? BATCH_ID.remove(featureId) : null;
+        if (BATCH_ID != null) {
+            long old = BATCH_ID.getUnsigned(featureId);
+            BATCH_ID.remove(featureId);
+            return old;
+        }
+        return null;
+    }
+
+    private static <T extends AbstractColumn> T checkColumn(String property, T column, int components) {
+        if (column != null && column.getComponents() != components) {
+            throw new IllegalArgumentException("The column of " + property + " should have " + components + " components, but " + column.getComponents() + " in fact.");
+        }
+        return column;
     }
 
     public int getPointsLength() {
@@ -340,13 +465,11 @@ public class PntsFeatureTable {
             if (POSITION.size() != POINTS_LENGTH) {
                 mismatchedLength("POSITION");
             }
-            checkListElements("POSITION", POSITION, 3);
         }
         if (POSITION_QUANTIZED != null) {
             if (POSITION_QUANTIZED.size() != POINTS_LENGTH) {
                 mismatchedLength("POSITION_QUANTIZED");
             }
-            checkListElements("POSITION_QUANTIZED", POSITION_QUANTIZED, 3);
             if (QUANTIZED_VOLUME_OFFSET == null) {
                 throw new IllegalArgumentException("QUANTIZED_VOLUME_OFFSET is needed when POSITION_QUANTIZED is defined.");
             }
@@ -376,13 +499,11 @@ public class PntsFeatureTable {
             if (NORMAL.size() != POINTS_LENGTH) {
                 mismatchedLength("NORMAL");
             }
-            checkListElements("NORMAL", NORMAL, 3);
         }
         if (NORMAL_OCT16P != null) {
             if (NORMAL_OCT16P.size() != POINTS_LENGTH) {
                 mismatchedLength("NORMAL_OCT16P");
             }
-            checkListElements("NORMAL_OCT16P", NORMAL_OCT16P, 2);
         }
         if ((BATCH_LENGTH != null && BATCH_ID == null) || (BATCH_LENGTH == null && BATCH_ID != null)) {
             throw new IllegalArgumentException("BATCH_ID and BATCH_LENGTH are depend on each other.");
@@ -391,7 +512,6 @@ public class PntsFeatureTable {
             if (BATCH_ID.size() != POINTS_LENGTH) {
                 mismatchedLength("BATCH_ID");
             }
-            checkListElements("BATCH_ID", BATCH_ID, 1);
         }
         if (RTC_CENTER != null) {
             if (RTC_CENTER.length != 3) {
@@ -426,17 +546,17 @@ public class PntsFeatureTable {
         table.setQuantizedVolumeScale(FeatureUtils.getFloatVec3FeatureValue(jsonHeaderMap, binaryByteBuff, "QUANTIZED_VOLUME_SCALE"));
         byte[] constant_rgba = FeatureUtils.getUnsignedByteArrayFeatureValue(jsonHeaderMap, binaryByteBuff, "CONSTANT_RGBA", 4);
         if (constant_rgba != null) {
-            table.setConstantRgba(constant_rgba[0] << 16 | constant_rgba[1] << 8 | constant_rgba[2] | constant_rgba[3] << 24);
+            table.setConstantRgba((constant_rgba[3] & 0xFF) << 24 | (constant_rgba[0] & 0xFF) << 16 | (constant_rgba[1] & 0xFF) << 8 | constant_rgba[2] & 0xFF);
         }
         table.setBatchLength(FeatureUtils.getIntegerScalarFeatureValue(jsonHeaderMap, binaryByteBuff, "BATCH_LENGTH"));
 
         float[] floatArrayValue = FeatureUtils.getFloatArrayFeatureValue(jsonHeaderMap, binaryByteBuff, "POSITION", pointsLength * 3);
         if (floatArrayValue != null) {
-            table.setPositionList(CommonUtils.createFloat3List(floatArrayValue, pointsLength));
+            table.setPositionColumn(FloatColumn.wrap(floatArrayValue, 3));
         }
         int[] unsignedShortArrayValue = FeatureUtils.getUnsignedShortArrayFeatureValue(jsonHeaderMap, binaryByteBuff, "POSITION_QUANTIZED", pointsLength * 3);
         if (unsignedShortArrayValue != null) {
-            table.setPositionQuantizedList(CommonUtils.createUnsignedShortVecList(unsignedShortArrayValue, pointsLength, 3));
+            table.setPositionQuantizedColumn(ShortColumn.wrap(CommonUtils.toShortArray(unsignedShortArrayValue), 3));
         }
 
         BinaryBodyReference reference = FeatureUtils.getBinaryBodyReference(jsonHeaderMap, "RGBA");
@@ -452,61 +572,50 @@ public class PntsFeatureTable {
         if (reference == null) {
             table.setColorFormat(ColorFormat.NONE);
         }
-        switch (table.getColorFormat()) {
-            case RGBA: {
-                List<Integer> color = new ArrayList<>();
-                for (int i = 0; i < pointsLength; ++i) {
-                    //noinspection ConstantConditions
-                    int r = binaryByteBuff[reference.getByteOffset() + i * 4];
-                    int g = binaryByteBuff[reference.getByteOffset() + i * 4 + 1];
-                    int b = binaryByteBuff[reference.getByteOffset() + i * 4 + 2];
-                    int a = binaryByteBuff[reference.getByteOffset() + i * 4 + 3];
-                    color.add(a << 24 | r << 16 | g << 8 | b);
-                }
-                table.setColorList(color);
-                break;
-            }
-            case RGB: {
-                List<Integer> color = new ArrayList<>();
-                for (int i = 0; i < pointsLength; ++i) {
-                    //noinspection ConstantConditions
-                    int r = binaryByteBuff[reference.getByteOffset() + i * 3];
-                    int g = binaryByteBuff[reference.getByteOffset() + i * 3 + 1];
-                    int b = binaryByteBuff[reference.getByteOffset() + i * 3 + 2];
-                    //noinspection NumericOverflow
-                    color.add(0xFF << 24 | r << 16 | g << 8 | b);
-                }
-                table.setColorList(color);
-                break;
-            }
-            case RGB565: {
-                List<Integer> color = new ArrayList<>();
-                for (int i = 0; i < pointsLength; ++i) {
-                    //noinspection ConstantConditions
-                    int shortValue = binaryByteBuff[reference.getByteOffset() + i * 2 + 1] | binaryByteBuff[reference.getByteOffset() + i * 2] << 8;
-                    int r = shortValue >>> 11 << 3;
-                    int g = ((shortValue >>> 5) & 0b111111) << 2;
-                    int b = (shortValue & 0b11111) << 3;
-                    //noinspection NumericOverflow
-                    color.add(0xFF << 24 | r << 16 | g << 8 | b);
-                }
-                table.setColorList(color);
-                break;
+        if (reference != null) {
+            int offset = reference.getByteOffset();
+            int[] color = new int[pointsLength];
+            switch (table.getColorFormat()) {
+                case RGBA:
+                    for (int i = 0; i < pointsLength; ++i) {
+                        int r = binaryByteBuff[offset + i * 4] & 0xFF;
+                        int g = binaryByteBuff[offset + i * 4 + 1] & 0xFF;
+                        int b = binaryByteBuff[offset + i * 4 + 2] & 0xFF;
+                        int a = binaryByteBuff[offset + i * 4 + 3] & 0xFF;
+                        color[i] = a << 24 | r << 16 | g << 8 | b;
+                    }
+                    break;
+                case RGB:
+                    for (int i = 0; i < pointsLength; ++i) {
+                        int r = binaryByteBuff[offset + i * 3] & 0xFF;
+                        int g = binaryByteBuff[offset + i * 3 + 1] & 0xFF;
+                        int b = binaryByteBuff[offset + i * 3 + 2] & 0xFF;
+                        //noinspection NumericOverflow
+                        color[i] = 0xFF << 24 | r << 16 | g << 8 | b;
+                    }
+                    break;
+                case RGB565:
+                    for (int i = 0; i < pointsLength; ++i) {
+                        int shortValue = (binaryByteBuff[offset + i * 2] & 0xFF) | (binaryByteBuff[offset + i * 2 + 1] & 0xFF) << 8;
+                        color[i] = ColorUtils.fromRGB565(shortValue);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("This is impossible.");
             }
-            case NONE:
-            default:
+            table.setColorColumn(IntColumn.wrap(color, 1));
         }
         floatArrayValue = FeatureUtils.getFloatArrayFeatureValue(jsonHeaderMap, binaryByteBuff, "NORMAL", pointsLength * 3);
         if (floatArrayValue != null) {
-            table.setNormalList(CommonUtils.createFloat3List(floatArrayValue, pointsLength));
+            table.setNormalColumn(FloatColumn.wrap(floatArrayValue, 3));
         }
         byte[] byteArrayValue = FeatureUtils.getUnsignedByteArrayFeatureValue(jsonHeaderMap, binaryByteBuff, "NORMAL_OCT16P", pointsLength * 2);
         if (byteArrayValue != null) {
-            table.setNormalOct16pList(CommonUtils.createUnsignedByteVecList(byteArrayValue, pointsLength, 2));
+            table.setNormalOct16pColumn(ByteColumn.wrap(byteArrayValue, 2));
         }
-        long[] unsignedIntArrayValue = FeatureUtils.getBatchId(jsonHeaderMap, binaryByteBuff, pointsLength);
-        if (unsignedIntArrayValue != null) {
-            table.setBatchIdList(CommonUtils.createUnsignedIntList(unsignedIntArrayValue, pointsLength));
+        BatchIdColumn batchIdColumn = FeatureUtils.getBatchIdColumn(jsonHeaderMap, binaryByteBuff, pointsLength);
+        if (batchIdColumn != null) {
+            table.setBatchIdColumn(batchIdColumn);
         }
         table.validate();
         return table;
@@ -539,113 +648,82 @@ public class PntsFeatureTable {
     }
 
     public byte[] createBuffer(PointCloudHeader header, JsonParser parser) throws IOException {
+        return createBuffer(header, parser, null).array();
+    }
+
+    /**
+     * @param arena where the buffers come from, or null. The returned buffer should be given back to the arena once written.
+     */
+    public ByteBuffer createBuffer(PointCloudHeader header, JsonParser parser, BufferArena arena) throws IOException {
         validate();
         Map<String, Object> data = createSimpleHeader();
-        try (BinaryBodyHelper helper = new BinaryBodyHelper(data)){
-            List<float[]> positionList = getPositionList();
-            if (positionList != null && !positionList.isEmpty()) {
-                helper.writeData("POSITION", positionList, ComponentType.FLOAT, ContainerType.VEC3, true);
+        try (BinaryBodyHelper helper = new BinaryBodyHelper(data, arena)){
+            if (POSITION != null && !POSITION.isEmpty()) {
+                helper.writeColumn("POSITION", POSITION, true);
             }
-            List<int[]> positionQuantizedList = getPositionQuantizedList();
-            if (positionQuantizedList != null && !positionQuantizedList.isEmpty()) {
-                helper.writeData("POSITION_QUANTIZED", positionQuantizedList, ComponentType.UNSIGNED_SHORT, ContainerType.VEC3, true);
+            if (POSITION_QUANTIZED != null && !POSITION_QUANTIZED.isEmpty()) {
+                helper.writeColumn("POSITION_QUANTIZED", POSITION_QUANTIZED, ComponentType.UNSIGNED_SHORT, true);
             }
-            List<Integer> colorList = getColorList();
-            if (colorList != null && !colorList.isEmpty()) {
-                switch (getColorFormat()) {
-                    case RGBA: {
-                        List<byte[]> bytesList = colorList.stream().map(ColorUtils::toRGBA).collect(Collectors.toList());
-                        helper.writeData("RGBA", bytesList, ComponentType.UNSIGNED_BYTE, ContainerType.VEC4, true);
-                        break;
-                    }
-                    case RGB: {
-                        List<byte[]> bytesList = colorList.stream().map(ColorUtils::toRGB).collect(Collectors.toList());
-                        helper.writeData("RGB", bytesList, ComponentType.UNSIGNED_BYTE, ContainerType.VEC3, true);
-                        break;
-                    }
-                    case RGB565: {
-                        List<Short> shortList = colorList.stream().map(ColorUtils::toRGB565).collect(Collectors.toList());
-                        helper.writeData("RGB565", shortList, ComponentType.UNSIGNED_SHORT, ContainerType.SCALAR, true);
-                        break;
-                    }
-                    default:
-                        throw new IllegalArgumentException("This is impossible.");
-                }
+            if (color != null && !color.isEmpty()) {
+                helper.writeColors(colorFormat.name(), color, getColorEncoding(), true, colorExecutor);
             }
-            List<float[]> normalList = getNormalList();
-            if (normalList != null && !normalList.isEmpty()) {
-                helper.writeData("NORMAL", normalList, ComponentType.FLOAT, ContainerType.VEC3, true);
+            if (NORMAL != null && !NORMAL.isEmpty()) {
+                helper.writeColumn("NORMAL", NORMAL, true);
             }
-            List<byte[]> normalOct16pList = getNormalOct16pList();
-            if (normalOct16pList != null && !normalOct16pList.isEmpty()) {
-                helper.writeData("NORMAL_OCT16P", normalOct16pList, ComponentType.UNSIGNED_BYTE, ContainerType.VEC2, true);
+            if (NORMAL_OCT16P != null && !NORMAL_OCT16P.isEmpty()) {
+                helper.writeColumn("NORMAL_OCT16P", NORMAL_OCT16P, ComponentType.UNSIGNED_BYTE, true);
             }
-            List<Long> batchIdList = getBatchIdList();
-            if (batchIdList != null && !batchIdList.isEmpty()) {
-                helper.writeBatchId(batchIdList);
+            if (BATCH_ID != null && !BATCH_ID.isEmpty()) {
+                helper.writeBatchId(BATCH_ID);
             }
             helper.finished();
             byte[] jsonBytes = parser.toJsonString(data).getBytes(StandardCharsets.UTF_8);
-            jsonBytes = CommonUtils.createPaddingBytes(jsonBytes, header.getHeaderLength() + jsonBytes.length, 8, (byte) 0x20);
-            header.setFeatureTableJSONByteLength(jsonBytes.length);
-            byte[] binaryBytes = helper.toByteArray();
-            header.setFeatureTableBinaryByteLength(binaryBytes.length);
-            byte[] out = new byte[jsonBytes.length + binaryBytes.length];
-            System.arraycopy(jsonBytes, 0, out, 0, jsonBytes.length);
-            System.arraycopy(binaryBytes, 0, out, jsonBytes.length, binaryBytes.length);
-            return out;
+            int jsonLength = jsonBytes.length + CommonUtils.calcPadding(header.getHeaderLength() + jsonBytes.length, 8);
+            header.setFeatureTableJSONByteLength(jsonLength);
+            header.setFeatureTableBinaryByteLength(helper.getSize());
+            return helper.createTable(jsonBytes, jsonLength);
         }
     }
 
     public int calcSize(PointCloudHeader header, JsonParser parser) {
         Map<String, Object> data = createSimpleHeader();
         BinaryBodySizeHelper helper = new BinaryBodySizeHelper(data);
-        List<float[]> positionList = getPositionList();
-        if (positionList != null && !positionList.isEmpty()) {
-            helper.addProperty("POSITION", positionList, ComponentType.FLOAT, ContainerType.VEC3, true);
-        }
-        List<int[]> positionQuantizedList = getPositionQuantizedList();
-        if (positionQuantizedList != null && !positionQuantizedList.isEmpty()) {
-            helper.addProperty("POSITION_QUANTIZED", positionQuantizedList, ComponentType.UNSIGNED_SHORT, ContainerType.VEC3, true);
-        }
-        List<Integer> colorList = getColorList();
-        if (colorList != null && !colorList.isEmpty()) {
-            switch (getColorFormat()) {
-                case RGBA: {
-                    List<byte[]> bytesList = colorList.stream().map(ColorUtils::toRGBA).collect(Collectors.toList());
-                    helper.addProperty("RGBA", bytesList, ComponentType.UNSIGNED_BYTE, ContainerType.VEC4, true);
-                    break;
-                }
-                case RGB: {
-                    List<byte[]> bytesList = colorList.stream().map(ColorUtils::toRGB).collect(Collectors.toList());
-                    helper.addProperty("RGB", bytesList, ComponentType.UNSIGNED_BYTE, ContainerType.VEC3, true);
-                    break;
-                }
-                case RGB565: {
-                    List<Short> shortList = colorList.stream().map(ColorUtils::toRGB565).collect(Collectors.toList());
-                    helper.addProperty("RGB565", shortList, ComponentType.UNSIGNED_SHORT, ContainerType.SCALAR, true);
-                    break;
-                }
-                default:
-                    throw new IllegalArgumentException("This is impossible.");
-            }
+        if (POSITION != null && !POSITION.isEmpty()) {
+            helper.addColumn("POSITION", POSITION, ComponentType.FLOAT, true);
         }
-        List<float[]> normalList = getNormalList();
-        if (normalList != null && !normalList.isEmpty()) {
-            helper.addProperty("NORMAL", normalList, ComponentType.FLOAT, ContainerType.VEC3, true);
+        if (POSITION_QUANTIZED != null && !POSITION_QUANTIZED.isEmpty()) {
+            helper.addColumn("POSITION_QUANTIZED", POSITION_QUANTIZED, ComponentType.UNSIGNED_SHORT, true);
         }
-        List<byte[]> normalOct16pList = getNormalOct16pList();
-        if (normalOct16pList != null && !normalOct16pList.isEmpty()) {
-            helper.addProperty("NORMAL_OCT16P", normalOct16pList, ComponentType.UNSIGNED_BYTE, ContainerType.VEC2, true);
+        if (color != null && !color.isEmpty()) {
+            ColorUtils.Encoding encoding = getColorEncoding();
+            helper.addProperty(colorFormat.name(), color.size(), encoding.getComponentType(), encoding.getContainerType(), true);
         }
-        List<Long> batchIdList = getBatchIdList();
-        if (batchIdList != null && !batchIdList.isEmpty()) {
-            helper.addBatchId(batchIdList);
+        if (NORMAL != null && !NORMAL.isEmpty()) {
+            helper.addColumn("NORMAL", NORMAL, ComponentType.FLOAT, true);
+        }
+        if (NORMAL_OCT16P != null && !NORMAL_OCT16P.isEmpty()) {
+            helper.addColumn("NORMAL_OCT16P", NORMAL_OCT16P, ComponentType.UNSIGNED_BYTE, true);
+        }
+        if (BATCH_ID != null && !BATCH_ID.isEmpty()) {
+            helper.addBatchId(BATCH_ID);
         }
         helper.finished();
         return helper.calcHeaderSize(header.getHeaderLength(), parser) + helper.getSize();
     }
 
+    private ColorUtils.Encoding getColorEncoding() {
+        switch (colorFormat) {
+            case RGBA:
+                return ColorUtils.Encoding.RGBA;
+            case RGB:
+                return ColorUtils.Encoding.RGB;
+            case RGB565:
+                return ColorUtils.Encoding.RGB565;
+            default:
+                throw new IllegalArgumentException("This is impossible.");
+        }
+    }
+
     enum ColorFormat {
         RGB, RGBA, RGB565, NONE
     }
@@ -0,0 +1,419 @@
+package me.cxj.j3dtiles.model.v1;
+
+import me.cxj.j3dtiles.utils.ByteColumn;
+import me.cxj.j3dtiles.utils.ColorUtils;
+import me.cxj.j3dtiles.utils.ShortColumn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Converts the point semantics of a pnts feature table to their compact encodings before it is written:
+ * <ul>
+ *     <li>POSITION to POSITION_QUANTIZED, inside the tightest volume of the points.</li>
+ *     <li>NORMAL to NORMAL_OCT16P. Among the 4 nearest oct encodings, the one closest to the normal is chosen.</li>
+ *     <li>RGB colors to RGB565. RGBA colors only when all of them are opaque.</li>
+ * </ul>
+ * The points are processed in chunks, on the executor if any. The errors introduced by the conversion are measured
+ * and returned as a {@link Report}.
+ */
+public class PntsQuantizer {
+
+    private static final int QUANTIZED_MAX = 65535;
+    private static final int OCT_MAX = 255;
+
+    private boolean quantizePositions = true;
+    private boolean encodeNormals = true;
+    private boolean convertColors = true;
+    private int chunkSize = 65536;
+    private ExecutorService executor;
+
+    public boolean isQuantizePositions() {
+        return quantizePositions;
+    }
+
+    public void setQuantizePositions(boolean quantizePositions) {
+        this.quantizePositions = quantizePositions;
+    }
+
+    public boolean isEncodeNormals() {
+        return encodeNormals;
+    }
+
+    public void setEncodeNormals(boolean encodeNormals) {
+        this.encodeNormals = encodeNormals;
+    }
+
+    public boolean isConvertColors() {
+        return convertColors;
+    }
+
+    public void setConvertColors(boolean convertColors) {
+        this.convertColors = convertColors;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize + ".");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @param executor where the chunks are processed, or null to process them on the calling thread.
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * The errors introduced by the conversion, in the units of the original values.
+     */
+    public static class Report {
+
+        private boolean positionsQuantized;
+        private final double[] positionStep = new double[3];
+        private final double[] maxPositionError = new double[3];
+        private boolean normalsEncoded;
+        private double maxNormalError;
+        private boolean colorsConverted;
+        private int maxColorError;
+        private long savedBytes;
+
+        public boolean isPositionsQuantized() {
+            return positionsQuantized;
+        }
+
+        /**
+         * @return the distance between 2 consecutive quantized values along each axis.
+         */
+        public double[] getPositionStep() {
+            return positionStep.clone();
+        }
+
+        /**
+         * @return the largest error the quantization may introduce along each axis, half of the step.
+         */
+        public double[] getPositionErrorBound() {
+            return new double[] {positionStep[0] / 2, positionStep[1] / 2, positionStep[2] / 2};
+        }
+
+        /**
+         * @return the largest error measured along each axis.
+         */
+        public double[] getMaxPositionError() {
+            return maxPositionError.clone();
+        }
+
+        public boolean isNormalsEncoded() {
+            return normalsEncoded;
+        }
+
+        /**
+         * @return the largest angle between a normal and its decoded oct encoding, in radians.
+         */
+        public double getMaxNormalError() {
+            return maxNormalError;
+        }
+
+        public boolean isColorsConverted() {
+            return colorsConverted;
+        }
+
+        /**
+         * @return the largest difference of a color channel after the conversion, between 0 and 255.
+         */
+        public int getMaxColorError() {
+            return maxColorError;
+        }
+
+        /**
+         * @return the bytes saved in the binary body of the feature table, ignoring the padding.
+         */
+        public long getSavedBytes() {
+            return savedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Report{positionsQuantized=" + positionsQuantized + ", positionStep=" + Arrays.toString(positionStep)
+                    + ", maxPositionError=" + Arrays.toString(maxPositionError) + ", normalsEncoded=" + normalsEncoded
+                    + ", maxNormalError=" + maxNormalError + ", colorsConverted=" + colorsConverted
+                    + ", maxColorError=" + maxColorError + ", savedBytes=" + savedBytes + "}";
+        }
+    }
+
+    private interface ChunkTask<T> {
+        T run(int from, int to);
+    }
+
+    private <T> List<T> forEachChunk(int length, ChunkTask<T> task) {
+        List<T> results = new ArrayList<>();
+        if (executor == null || length <= chunkSize) {
+            for (int from = 0; from < length; from += chunkSize) {
+                results.add(task.run(from, Math.min(length, from + chunkSize)));
+            }
+            return results;
+        }
+        List<Future<T>> futures = new ArrayList<>();
+        try {
+            for (int from = 0; from < length; from += chunkSize) {
+                int start = from;
+                int end = Math.min(length, from + chunkSize);
+                futures.add(executor.submit(() -> task.run(start, end)));
+            }
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while quantizing the points.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Convert the semantics of the tile in place.
+     */
+    public Report quantize(PointCloud tile) {
+        return tile.quantize(this);
+    }
+
+    /**
+     * Convert the semantics of the table in place. A semantic already in its compact encoding is left unchanged.
+     */
+    public Report quantize(PntsFeatureTable table) {
+        table.validate();
+        Report report = new Report();
+        int length = table.getPointsLength();
+        if (quantizePositions && table.getPositionColumn() != null && table.getPositionQuantizedColumn() == null) {
+            quantizePositions(table, length, report);
+        }
+        if (encodeNormals && table.getNormalColumn() != null && table.getNormalOct16pColumn() == null) {
+            encodeNormals(table, length, report);
+        }
+        if (convertColors && table.getColorColumn() != null) {
+            convertColors(table, length, report);
+        }
+        return report;
+    }
+
+    private void quantizePositions(PntsFeatureTable table, int length, Report report) {
+        float[] positions = table.getPositionColumn().array();
+        double[] bounds = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (double[] chunk : forEachChunk(length, (from, to) -> bounds(positions, from, to))) {
+            for (int c = 0; c < 3; ++c) {
+                bounds[c] = Math.min(bounds[c], chunk[c]);
+                bounds[c + 3] = Math.max(bounds[c + 3], chunk[c + 3]);
+            }
+        }
+        if (length == 0) {
+            Arrays.fill(bounds, 0);
+        }
+        float[] offset = new float[3];
+        float[] scale = new float[3];
+        for (int c = 0; c < 3; ++c) {
+            if (Double.isInfinite(bounds[c]) || Double.isInfinite(bounds[c + 3])) {
+                throw new IllegalArgumentException("Unable to quantize infinite positions.");
+            }
+            // The volume is stored as float32, so it is widened until it still covers all the points once rounded.
+            offset[c] = (float) bounds[c];
+            if (offset[c] > bounds[c]) {
+                offset[c] = Math.nextDown(offset[c]);
+            }
+            scale[c] = (float) (bounds[c + 3] - offset[c]);
+            if ((double) offset[c] + scale[c] < bounds[c + 3]) {
+                scale[c] = Math.nextUp(scale[c]);
+            }
+            report.positionStep[c] = (double) scale[c] / QUANTIZED_MAX;
+        }
+        short[] quantized = new short[length * 3];
+        for (double[] chunk : forEachChunk(length, (from, to) -> quantize(positions, offset, scale, quantized, from, to))) {
+            for (int c = 0; c < 3; ++c) {
+                report.maxPositionError[c] = Math.max(report.maxPositionError[c], chunk[c]);
+            }
+        }
+        table.setPositionColumn(null);
+        table.setPositionQuantizedColumn(ShortColumn.wrap(quantized, 3));
+        table.setQuantizedVolumeOffset(offset);
+        table.setQuantizedVolumeScale(scale);
+        report.positionsQuantized = true;
+        report.savedBytes += (long) length * 6;
+    }
+
+    private static double[] bounds(float[] positions, int from, int to) {
+        double[] bounds = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int i = from * 3; i < to * 3; i += 3) {
+            for (int c = 0; c < 3; ++c) {
+                float v = positions[i + c];
+                if (Float.isNaN(v)) {
+                    throw new IllegalArgumentException("Invalid position of the point " + i / 3 + ": NaN.");
+                }
+                bounds[c] = Math.min(bounds[c], v);
+                bounds[c + 3] = Math.max(bounds[c + 3], v);
+            }
+        }
+        return bounds;
+    }
+
+    private static double[] quantize(float[] positions, float[] offset, float[] scale, short[] out, int from, int to) {
+        double[] errors = new double[3];
+        for (int i = from * 3; i < to * 3; i += 3) {
+            for (int c = 0; c < 3; ++c) {
+                int q = 0;
+                if (scale[c] != 0) {
+                    q = (int) Math.round((positions[i + c] - (double) offset[c]) / scale[c] * QUANTIZED_MAX);
+                    q = Math.max(0, Math.min(QUANTIZED_MAX, q));
+                }
+                out[i + c] = (short) q;
+                double decoded = (double) q * scale[c] / QUANTIZED_MAX + offset[c];
+                errors[c] = Math.max(errors[c], Math.abs(decoded - positions[i + c]));
+            }
+        }
+        return errors;
+    }
+
+    private void encodeNormals(PntsFeatureTable table, int length, Report report) {
+        float[] normals = table.getNormalColumn().array();
+        byte[] encoded = new byte[length * 2];
+        for (double error : forEachChunk(length, (from, to) -> encode(normals, encoded, from, to))) {
+            report.maxNormalError = Math.max(report.maxNormalError, error);
+        }
+        table.setNormalColumn(null);
+        table.setNormalOct16pColumn(ByteColumn.wrap(encoded, 2));
+        report.normalsEncoded = true;
+        report.savedBytes += (long) length * 10;
+    }
+
+    private static double encode(float[] normals, byte[] out, int from, int to) {
+        double maxError = 0;
+        double[] decoded = new double[3];
+        for (int i = from; i < to; ++i) {
+            double x = normals[i * 3];
+            double y = normals[i * 3 + 1];
+            double z = normals[i * 3 + 2];
+            double norm = Math.sqrt(x * x + y * y + z * z);
+            if (!(norm > 0) || Double.isInfinite(norm)) {
+                // Not a direction, the normal of the decoded value is as good as any other.
+                out[i * 2] = (byte) 128;
+                out[i * 2 + 1] = (byte) 128;
+                continue;
+            }
+            x /= norm;
+            y /= norm;
+            z /= norm;
+            double l1 = Math.abs(x) + Math.abs(y) + Math.abs(z);
+            double u = x / l1;
+            double v = y / l1;
+            if (z < 0) {
+                double ou = u;
+                u = (1 - Math.abs(v)) * signNotZero(ou);
+                v = (1 - Math.abs(ou)) * signNotZero(v);
+            }
+            u = (u * 0.5 + 0.5) * OCT_MAX;
+            v = (v * 0.5 + 0.5) * OCT_MAX;
+            int bestU = 0;
+            int bestV = 0;
+            double bestDot = Double.NEGATIVE_INFINITY;
+            for (int du = 0; du < 2; ++du) {
+                for (int dv = 0; dv < 2; ++dv) {
+                    int eu = Math.max(0, Math.min(OCT_MAX, (int) Math.floor(u) + du));
+                    int ev = Math.max(0, Math.min(OCT_MAX, (int) Math.floor(v) + dv));
+                    octDecode(eu, ev, decoded);
+                    double dot = decoded[0] * x + decoded[1] * y + decoded[2] * z;
+                    if (dot > bestDot) {
+                        bestDot = dot;
+                        bestU = eu;
+                        bestV = ev;
+                    }
+                }
+            }
+            out[i * 2] = (byte) bestU;
+            out[i * 2 + 1] = (byte) bestV;
+            maxError = Math.max(maxError, Math.acos(Math.min(1, bestDot)));
+        }
+        return maxError;
+    }
+
+    private static double signNotZero(double value) {
+        return value < 0 ? -1 : 1;
+    }
+
+    /**
+     * Decode the oct encoding to a unit vector, the same way as the clients do.
+     */
+    static void octDecode(int u, int v, double[] out) {
+        double x = u / (double) OCT_MAX * 2 - 1;
+        double y = v / (double) OCT_MAX * 2 - 1;
+        double z = 1 - Math.abs(x) - Math.abs(y);
+        if (z < 0) {
+            double ox = x;
+            x = (1 - Math.abs(y)) * signNotZero(ox);
+            y = (1 - Math.abs(ox)) * signNotZero(y);
+        }
+        double norm = Math.sqrt(x * x + y * y + z * z);
+        out[0] = x / norm;
+        out[1] = y / norm;
+        out[2] = z / norm;
+    }
+
+    private void convertColors(PntsFeatureTable table, int length, Report report) {
+        PntsFeatureTable.ColorFormat format = table.getColorFormat();
+        if (format != PntsFeatureTable.ColorFormat.RGB && format != PntsFeatureTable.ColorFormat.RGBA) {
+            return;
+        }
+        int[] colors = table.getColorColumn().array();
+        // [the largest channel error, 1 if a color is translucent]
+        int[] result = new int[2];
+        for (int[] chunk : forEachChunk(length, (from, to) -> measureColors(colors, format == PntsFeatureTable.ColorFormat.RGBA, from, to))) {
+            result[0] = Math.max(result[0], chunk[0]);
+            result[1] |= chunk[1];
+        }
+        if (result[1] != 0) {
+            return;
+        }
+        table.setColorFormat(PntsFeatureTable.ColorFormat.RGB565);
+        report.colorsConverted = true;
+        report.maxColorError = result[0];
+        report.savedBytes += (long) length * (format == PntsFeatureTable.ColorFormat.RGBA ? 2 : 1);
+    }
+
+    private static int[] measureColors(int[] colors, boolean checkAlpha, int from, int to) {
+        int maxError = 0;
+        for (int i = from; i < to; ++i) {
+            int color = colors[i];
+            if (checkAlpha && ColorUtils.getAlpha(color) != 0xFF) {
+                return new int[] {maxError, 1};
+            }
+            int decoded = ColorUtils.fromRGB565(ColorUtils.toRGB565(color));
+            maxError = Math.max(maxError, Math.abs(ColorUtils.getRed(color) - ColorUtils.getRed(decoded)));
+            maxError = Math.max(maxError, Math.abs(ColorUtils.getGreen(color) - ColorUtils.getGreen(decoded)));
+            maxError = Math.max(maxError, Math.abs(ColorUtils.getBlue(color) - ColorUtils.getBlue(decoded)));
+        }
+        return new int[] {maxError, 0};
+    }
+}
@@ -1,10 +1,15 @@
 package me.cxj.j3dtiles.model.v1;
 
+import me.cxj.j3dtiles.utils.BufferArena;
+import me.cxj.j3dtiles.utils.IOUtils;
 import me.cxj.j3dtiles.utils.JsonParser;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * Created by vipcxj on 2018/11/9.
@@ -23,20 +28,53 @@ public class PointCloud implements TileModel {
         return instance;
     }
 
+    public static PointCloud read(MappedTile tile, JsonParser parser) throws IOException {
+        if (!(tile.getHeader() instanceof PointCloudHeader)) {
+            throw new IllegalArgumentException("Not a pnts tile.");
+        }
+        PointCloud instance = new PointCloud();
+        instance.header = (PointCloudHeader) tile.getHeader();
+        try (InputStream is = tile.openTableStream()) {
+            instance.featureTable = PntsFeatureTable.read(is, instance.header, parser);
+        }
+        instance.batchTable = BatchTable.read(tile.getBatchTableJSONString(), tile.getBatchTableBinary(), parser, instance.featureTable.getBatchLength() != null ? instance.featureTable.getBatchLength() : instance.featureTable.getPointsLength());
+        return instance;
+    }
+
     @Override
     public void write(OutputStream os, JsonParser parser) throws IOException {
-        byte[] featureTableBuffer = featureTable.createBuffer(header, parser);
-        byte[] batchTableBuffer = batchTable.createBuffer(header, parser, featureTable.getBatchLength() != null ? featureTable.getBatchLength() : featureTable.getPointsLength());
-        header.setByteLength(header.getHeaderLength() + featureTableBuffer.length + batchTableBuffer.length);
-        header.write(os);
-        os.write(featureTableBuffer);
-        os.write(batchTableBuffer);
+        write(Channels.newChannel(os), parser);
+    }
+
+    @Override
+    public void write(WritableByteChannel channel, JsonParser parser) throws IOException {
+        IOUtils.writeFully(channel, createBuffers(parser));
+    }
+
+    @Override
+    public ByteBuffer[] createBuffers(JsonParser parser) throws IOException {
+        return createBuffers(parser, null);
+    }
+
+    @Override
+    public ByteBuffer[] createBuffers(JsonParser parser, BufferArena arena) throws IOException {
+        ByteBuffer featureTableBuffer = featureTable.createBuffer(header, parser, arena);
+        ByteBuffer batchTableBuffer = batchTable.createBuffer(header, parser, featureTable.getBatchLength() != null ? featureTable.getBatchLength() : featureTable.getPointsLength(), arena);
+        header.setByteLength(header.getHeaderLength() + featureTableBuffer.remaining() + batchTableBuffer.remaining());
+        return new ByteBuffer[] { header.toBuffer(), featureTableBuffer, batchTableBuffer };
     }
 
     public long calcSize(JsonParser parser) {
         return header.getHeaderLength() + featureTable.calcSize(header, parser) + batchTable.calcSize(header, parser, featureTable.getBatchLength() != null ? featureTable.getBatchLength() : featureTable.getPointsLength());
     }
 
+    /**
+     * Convert the point semantics to their compact encodings before the tile is written.
+     */
+    public PntsQuantizer.Report quantize(PntsQuantizer quantizer) {
+        return quantizer.quantize(featureTable);
+    }
+
     @Override
     public PointCloudHeader getHeader() {
         return header;
@@ -0,0 +1,102 @@
+package me.cxj.j3dtiles.model.v1;
+
+import me.cxj.j3dtiles.utils.LittleEndianDataInputStream;
+import me.cxj.j3dtiles.utils.LittleEndianDataOutputStream;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A compact binary index of tiles, usually created by {@link TileScanner}.
+ * The format is the magic "tidx", a version, the entry count, then the entries, all little endian.
+ */
+public class TileIndex {
+
+    public static final byte magic[] = { 0x74, 0x69, 0x64, 0x78 };
+    private static final int VERSION = 1;
+
+    private final List<TileIndexEntry> entries;
+
+    public TileIndex(List<TileIndexEntry> entries) {
+        this.entries = entries;
+    }
+
+    public List<TileIndexEntry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public static TileIndex read(InputStream is) throws IOException {
+        LittleEndianDataInputStream dis = new LittleEndianDataInputStream(new BufferedInputStream(is));
+        byte[] magic = new byte[4];
+        dis.readFully(magic);
+        if (!Arrays.equals(magic, TileIndex.magic)) {
+            throw new IllegalArgumentException("Invalid input stream. Not a valid tile index stream. The magic is wrong. Expect tidx but " + new String(magic, StandardCharsets.UTF_8) + ".");
+        }
+        int version = dis.readInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported tile index version: " + version + ".");
+        }
+        int size = dis.readInt();
+        List<TileIndexEntry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            TileIndexEntry entry = new TileIndexEntry();
+            byte[] path = new byte[dis.readInt()];
+            dis.readFully(path);
+            entry.setPath(new String(path, StandardCharsets.UTF_8));
+            entry.setOffset(dis.readLong());
+            byte[] tileMagic = new byte[4];
+            dis.readFully(tileMagic);
+            entry.setMagic(new String(tileMagic, StandardCharsets.US_ASCII));
+            entry.setByteLength(dis.readInt());
+            entry.setFeatureTableJSONByteLength(dis.readInt());
+            entry.setFeatureTableBinaryByteLength(dis.readInt());
+            entry.setBatchTableJSONByteLength(dis.readInt());
+            entry.setBatchTableBinaryByteLength(dis.readInt());
+            entry.setFeaturesLength(dis.readLong());
+            entry.setBatchLength(dis.readLong());
+            if (dis.readBoolean()) {
+                entry.setRtcCenter(new float[] { dis.readFloat(), dis.readFloat(), dis.readFloat() });
+            }
+            entries.add(entry);
+        }
+        return new TileIndex(entries);
+    }
+
+    public void write(OutputStream os) throws IOException {
+        BufferedOutputStream bos = new BufferedOutputStream(os);
+        LittleEndianDataOutputStream dos = new LittleEndianDataOutputStream(bos);
+        dos.write(magic);
+        dos.writeInt(VERSION);
+        dos.writeInt(entries.size());
+        for (TileIndexEntry entry : entries) {
+            byte[] path = entry.getPath().getBytes(StandardCharsets.UTF_8);
+            dos.writeInt(path.length);
+            dos.write(path);
+            dos.writeLong(entry.getOffset());
+            byte[] tileMagic = entry.getMagic().getBytes(StandardCharsets.US_ASCII);
+            if (tileMagic.length != 4) {
+                throw new IllegalArgumentException("Invalid magic: " + entry.getMagic() + ".");
+            }
+            dos.write(tileMagic);
+            dos.writeInt(entry.getByteLength());
+            dos.writeInt(entry.getFeatureTableJSONByteLength());
+            dos.writeInt(entry.getFeatureTableBinaryByteLength());
+            dos.writeInt(entry.getBatchTableJSONByteLength());
+            dos.writeInt(entry.getBatchTableBinaryByteLength());
+            dos.writeLong(entry.getFeaturesLength());
+            dos.writeLong(entry.getBatchLength());
+            float[] rtcCenter = entry.getRtcCenter();
+            dos.writeBoolean(rtcCenter != null);
+            if (rtcCenter != null) {
+                dos.writeFloat(rtcCenter[0]);
+                dos.writeFloat(rtcCenter[1]);
+                dos.writeFloat(rtcCenter[2]);
+            }
+        }
+        bos.flush();
+    }
+}
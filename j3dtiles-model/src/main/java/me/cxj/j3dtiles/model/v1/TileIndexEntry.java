@@ -0,0 +1,119 @@
+package me.cxj.j3dtiles.model.v1;
+
+/**
+ * What {@link TileScanner} learns about a tile from its header and its feature table json.
+ * The inner tiles of a cmpt have their own entries, with the same path and their offset in the file.
+ */
+public class TileIndexEntry {
+
+    private String path;
+    private long offset;
+    private String magic;
+    private int byteLength;
+    private int featureTableJSONByteLength;
+    private int featureTableBinaryByteLength;
+    private int batchTableJSONByteLength;
+    private int batchTableBinaryByteLength;
+    /**
+     * BATCH_LENGTH for b3dm, INSTANCES_LENGTH for i3dm, POINTS_LENGTH for pnts and tilesLength for cmpt.
+     */
+    private long featuresLength;
+    /**
+     * BATCH_LENGTH of a pnts, or -1.
+     */
+    private long batchLength = -1;
+    private float[] rtcCenter;
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    public String getMagic() {
+        return magic;
+    }
+
+    public void setMagic(String magic) {
+        this.magic = magic;
+    }
+
+    public int getByteLength() {
+        return byteLength;
+    }
+
+    public void setByteLength(int byteLength) {
+        this.byteLength = byteLength;
+    }
+
+    public int getFeatureTableJSONByteLength() {
+        return featureTableJSONByteLength;
+    }
+
+    public void setFeatureTableJSONByteLength(int featureTableJSONByteLength) {
+        this.featureTableJSONByteLength = featureTableJSONByteLength;
+    }
+
+    public int getFeatureTableBinaryByteLength() {
+        return featureTableBinaryByteLength;
+    }
+
+    public void setFeatureTableBinaryByteLength(int featureTableBinaryByteLength) {
+        this.featureTableBinaryByteLength = featureTableBinaryByteLength;
+    }
+
+    public int getBatchTableJSONByteLength() {
+        return batchTableJSONByteLength;
+    }
+
+    public void setBatchTableJSONByteLength(int batchTableJSONByteLength) {
+        this.batchTableJSONByteLength = batchTableJSONByteLength;
+    }
+
+    public int getBatchTableBinaryByteLength() {
+        return batchTableBinaryByteLength;
+    }
+
+    public void setBatchTableBinaryByteLength(int batchTableBinaryByteLength) {
+        this.batchTableBinaryByteLength = batchTableBinaryByteLength;
+    }
+
+    public long getFeaturesLength() {
+        return featuresLength;
+    }
+
+    public void setFeaturesLength(long featuresLength) {
+        this.featuresLength = featuresLength;
+    }
+
+    public long getBatchLength() {
+        return batchLength;
+    }
+
+    public void setBatchLength(long batchLength) {
+        this.batchLength = batchLength;
+    }
+
+    public float[] getRtcCenter() {
+        return rtcCenter;
+    }
+
+    public void setRtcCenter(float[] rtcCenter) {
+        this.rtcCenter = rtcCenter;
+    }
+
+    @Override
+    public String toString() {
+        return path + (offset != 0 ? "@" + offset : "") + " " + magic + " " + byteLength + " bytes, " + featuresLength + " features";
+    }
+}
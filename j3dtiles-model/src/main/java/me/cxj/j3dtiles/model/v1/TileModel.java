@@ -1,9 +1,13 @@
 package me.cxj.j3dtiles.model.v1;
 
+import me.cxj.j3dtiles.utils.BufferArena;
+import me.cxj.j3dtiles.utils.IOUtils;
 import me.cxj.j3dtiles.utils.JsonParser;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * Created by vipcxj on 2018/11/14.
@@ -15,4 +19,36 @@ public interface TileModel {
     long calcSize(JsonParser parser);
 
     void write(OutputStream os, JsonParser parser) throws IOException;
+
+    /**
+     * Works out all section lengths first, then writes the header, the tables and the body with gathering writes,
+     * without assembling the whole tile in memory.
+     */
+    void write(WritableByteChannel channel, JsonParser parser) throws IOException;
+
+    /**
+     * Serializes the tile once into the buffers that make up the tile, in writing order, and updates the header lengths.
+     * The glTF binary data is referred to by slices, not copied.
+     */
+    ByteBuffer[] createBuffers(JsonParser parser) throws IOException;
+
+    /**
+     * Same as {@link #createBuffers(JsonParser)}, but the table buffers come from the arena if it is not null.
+     * They should be given back with {@link BufferArena#recycle(ByteBuffer...)} once written.
+     */
+    ByteBuffer[] createBuffers(JsonParser parser, BufferArena arena) throws IOException;
+
+    /**
+     * Write the tile with scratch buffers taken from the arena, and give them back afterwards.
+     */
+    default void write(WritableByteChannel channel, JsonParser parser, BufferArena arena) throws IOException {
+        ByteBuffer[] buffers = createBuffers(parser, arena);
+        try {
+            IOUtils.writeFully(channel, buffers);
+        } finally {
+            if (arena != null) {
+                arena.recycle(buffers);
+            }
+        }
+    }
 }
@@ -0,0 +1,200 @@
+package me.cxj.j3dtiles.model.v1;
+
+import me.cxj.j3dtiles.utils.JsonParser;
+import me.cxj.j3dtiles.utils.TypeUtils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Builds a {@link TileIndex} of a directory tree by reading only the headers and the feature table json of the tiles.
+ * The bodies, the batch tables and the glTF are never read. The files are scanned by a fixed size thread pool.
+ */
+public class TileScanner {
+
+    private static final Set<String> EXTENSIONS = new HashSet<>(Arrays.asList("b3dm", "i3dm", "pnts", "cmpt"));
+
+    private final JsonParser parser;
+    private final int threads;
+
+    public TileScanner(JsonParser parser, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Invalid thread count: " + threads + ".");
+        }
+        this.parser = parser;
+        this.threads = threads;
+    }
+
+    /**
+     * Scan all the b3dm, i3dm, pnts and cmpt files under the root. The paths of the entries are relative to the root,
+     * with '/' as separator, and the entries are sorted by path.
+     */
+    public TileIndex scan(Path root) throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(root)) {
+            files = stream.filter(Files::isRegularFile).filter(TileScanner::isTile).sorted().collect(Collectors.toList());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<TileIndexEntry>>> futures = new ArrayList<>(files.size());
+            for (Path file : files) {
+                String path = root.relativize(file).toString().replace('\\', '/');
+                futures.add(executor.submit(() -> scanFile(file, path)));
+            }
+            List<TileIndexEntry> entries = new ArrayList<>(files.size());
+            for (Future<List<TileIndexEntry>> future : futures) {
+                entries.addAll(future.get());
+            }
+            return new TileIndex(entries);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while scanning " + root + ".");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static boolean isTile(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Scan a single file. A cmpt gives one entry for itself followed by the entries of its inner tiles.
+     */
+    public List<TileIndexEntry> scanFile(Path file, String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<TileIndexEntry> entries = new ArrayList<>();
+            try {
+                scanTile(channel, 0, channel.size(), path, entries);
+            } catch (IllegalArgumentException | BufferUnderflowException e) {
+                throw new IllegalArgumentException("Invalid tile " + path + ": " + e.getMessage(), e);
+            }
+            return entries;
+        }
+    }
+
+    private void scanTile(FileChannel channel, long offset, long available, String path, List<TileIndexEntry> entries) throws IOException {
+        if (available < 12) {
+            throw new IllegalArgumentException("Too small to be a tile: " + available + " bytes at offset " + offset + ".");
+        }
+        Header header = Header.read(read(channel, offset, (int) Math.min(Header.MAX_HEADER_LENGTH, available)));
+        int byteLength = header.getByteLength();
+        if (byteLength < header.getHeaderLength() || byteLength > available) {
+            throw new IllegalArgumentException("Invalid byteLength: " + byteLength + " at offset " + offset + ", only " + available + " bytes are available.");
+        }
+        TileIndexEntry entry = new TileIndexEntry();
+        entry.setPath(path);
+        entry.setOffset(offset);
+        entry.setMagic(new String(header.getMagic(), StandardCharsets.US_ASCII));
+        entry.setByteLength(byteLength);
+        entries.add(entry);
+        if (header instanceof CompositeHeader) {
+            int tilesLength = ((CompositeHeader) header).getTilesLength();
+            entry.setFeaturesLength(tilesLength);
+            long position = offset + header.getHeaderLength();
+            long end = offset + byteLength;
+            for (int i = 0; i < tilesLength; ++i) {
+                int index = entries.size();
+                scanTile(channel, position, end - position, path, entries);
+                position += entries.get(index).getByteLength();
+            }
+            return;
+        }
+        BatchHeader batchHeader = (BatchHeader) header;
+        entry.setFeatureTableJSONByteLength(batchHeader.getFeatureTableJSONByteLength());
+        entry.setFeatureTableBinaryByteLength(batchHeader.getFeatureTableBinaryByteLength());
+        entry.setBatchTableJSONByteLength(batchHeader.getBatchTableJSONByteLength());
+        entry.setBatchTableBinaryByteLength(batchHeader.getBatchTableBinaryByteLength());
+        long jsonOffset = offset + header.getHeaderLength();
+        int jsonLength = batchHeader.getFeatureTableJSONByteLength();
+        if (jsonLength < 0 || header.getHeaderLength() + (long) jsonLength + batchHeader.getFeatureTableBinaryByteLength() > byteLength) {
+            throw new IllegalArgumentException("Invalid feature table length at offset " + offset + ".");
+        }
+        ByteBuffer json = read(channel, jsonOffset, jsonLength);
+        Object jsonObject = parser.parse(StandardCharsets.UTF_8.decode(json).toString());
+        if (!(jsonObject instanceof Map)) {
+            throw new IllegalArgumentException("The json parser must parse the object to a map. And the feature table json header must be an object.");
+        }
+        //noinspection unchecked
+        Map<String, Object> jsonHeader = (Map<String, Object>) jsonObject;
+        long binaryOffset = jsonOffset + jsonLength;
+        if (header instanceof B3dmHeader) {
+            entry.setFeaturesLength(readUnsignedInt(channel, jsonHeader, "BATCH_LENGTH", binaryOffset));
+        } else if (header instanceof I3dmHeader) {
+            entry.setFeaturesLength(readUnsignedInt(channel, jsonHeader, "INSTANCES_LENGTH", binaryOffset));
+        } else {
+            entry.setFeaturesLength(readUnsignedInt(channel, jsonHeader, "POINTS_LENGTH", binaryOffset));
+            entry.setBatchLength(readUnsignedInt(channel, jsonHeader, "BATCH_LENGTH", binaryOffset));
+        }
+        entry.setRtcCenter(readFloat3(channel, jsonHeader, "RTC_CENTER", binaryOffset));
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file at " + (position + buffer.position()) + ".");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static long getByteOffset(Object reference, String property) {
+        Object byteOffset = ((Map) reference).get("byteOffset");
+        if (byteOffset == null) {
+            throw new IllegalArgumentException("Invalid binary body reference of " + property + ", no byteOffset found.");
+        }
+        return TypeUtils.toInteger(byteOffset);
+    }
+
+    private static long readUnsignedInt(FileChannel channel, Map<String, Object> jsonHeader, String property, long binaryOffset) throws IOException {
+        Object value = jsonHeader.get(property);
+        if (value == null) {
+            return -1;
+        }
+        if (value instanceof Map) {
+            return read(channel, binaryOffset + getByteOffset(value, property), 4).getInt() & 0xFFFFFFFFL;
+        }
+        return TypeUtils.toLong(value);
+    }
+
+    private static float[] readFloat3(FileChannel channel, Map<String, Object> jsonHeader, String property, long binaryOffset) throws IOException {
+        Object value = jsonHeader.get(property);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Map) {
+            ByteBuffer buffer = read(channel, binaryOffset + getByteOffset(value, property), 12);
+            return new float[] { buffer.getFloat(), buffer.getFloat(), buffer.getFloat() };
+        }
+        return TypeUtils.toFloatArray(value, 3);
+    }
+}
@@ -0,0 +1,908 @@
+package me.cxj.j3dtiles.model.v1;
+
+import me.cxj.j3dtiles.impl.v1.BoundingVolume;
+import me.cxj.j3dtiles.impl.v1.Tile;
+import me.cxj.j3dtiles.impl.v1.TileContent;
+import me.cxj.j3dtiles.impl.v1.Tileset;
+import me.cxj.j3dtiles.utils.BoundingVolumeUtils;
+
+import java.util.*;
+
+/**
+ * A bounding volume hierarchy over the tiles of a tileset, made of the axis aligned bounds of their volumes in the
+ * coordinates of the tileset, i.e. earth centered earth fixed when the tileset is georeferenced. The box and sphere volumes
+ * are transformed by the transforms of the tile and its ancestors, the region volumes are converted from WGS84.
+ * <p>
+ * The nodes are stored in flat primitive arrays. The tree is built top down by median splits when bulk loaded, and kept
+ * balanced by rotations on insert and remove. The queries test the bounds, so they may return a tile whose volume only
+ * comes close to the query, except the region queries against region volumes, which are exact.
+ * An instance is not thread safe.
+ */
+public class TileSpatialIndex {
+
+    private static final int NULL = -1;
+
+    /**
+     * minX, minY, minZ, maxX, maxY, maxZ of each node.
+     */
+    private double[] bounds;
+    private int[] parent;
+    private int[] child1;
+    private int[] child2;
+    /**
+     * 0 for a leaf.
+     */
+    private int[] height;
+    /**
+     * The item of a leaf.
+     */
+    private int[] nodeItem;
+    private int nodeCount;
+    private int freeNode = NULL;
+    private int root = NULL;
+
+    private final boolean contentVolumes;
+    private Tile[] items;
+    private int[] itemLeaf;
+    /**
+     * The transform from the parent of the tile to the tileset, column major, or null for the identity.
+     */
+    private double[][] itemParentTransform;
+    /**
+     * west, south, east, north, minimum height, maximum height of the items indexed by their region, NaN for the others.
+     */
+    private double[] itemRegion;
+    private int itemCount;
+    private final Deque<Integer> freeItems = new ArrayDeque<>();
+    private final Map<Tile, Integer> itemIds = new IdentityHashMap<>();
+    /**
+     * The volume of the item being added.
+     */
+    private final double[] scratch = new double[BoundingVolumeUtils.BOX_SIZE];
+
+    public TileSpatialIndex() {
+        this(false);
+    }
+
+    /**
+     * @param contentVolumes index the tiles with a content by the volume of their content if any, and skip the others.
+     */
+    public TileSpatialIndex(boolean contentVolumes) {
+        this.contentVolumes = contentVolumes;
+        allocateNodes(16);
+        allocateItems(8);
+    }
+
+    /**
+     * Bulk load all the tiles of the tileset.
+     */
+    public static TileSpatialIndex build(Tileset tileset) {
+        return build(tileset, false);
+    }
+
+    /**
+     * Bulk load the tiles of the tileset.
+     * @param contentVolumes see {@link #TileSpatialIndex(boolean)}.
+     */
+    public static TileSpatialIndex build(Tileset tileset, boolean contentVolumes) {
+        TileSpatialIndex index = new TileSpatialIndex(contentVolumes);
+        if (tileset.getRoot() != null) {
+            index.bulkLoad(Collections.singletonList(tileset.getRoot()), null);
+        }
+        return index;
+    }
+
+    public boolean isContentVolumes() {
+        return contentVolumes;
+    }
+
+    /**
+     * @return the number of indexed tiles.
+     */
+    public int size() {
+        return itemIds.size();
+    }
+
+    public boolean contains(Tile tile) {
+        return itemIds.containsKey(tile);
+    }
+
+    /**
+     * Add the trees of the tiles at once. The current tiles are kept, and the tree is rebuilt from scratch.
+     * @param parentTransform the transform from the parent of the tiles to the tileset, column major, or null for the identity.
+     */
+    public void bulkLoad(Collection<Tile> tiles, double[] parentTransform) {
+        Deque<Tile> stack = new ArrayDeque<>();
+        Deque<double[]> transforms = new ArrayDeque<>();
+        for (Tile tile : tiles) {
+            stack.push(tile);
+            transforms.push(parentTransform != null ? parentTransform : IDENTITY);
+        }
+        while (!stack.isEmpty()) {
+            Tile tile = stack.pop();
+            double[] transform = transforms.pop();
+            addItem(tile, transform != IDENTITY ? transform : null);
+            List<Tile> children = tile.getChildren();
+            if (children != null && !children.isEmpty()) {
+                double[] childTransform = tile.getTransform() != null ? multiply(transform, tile.getTransform()) : transform;
+                for (Tile child : children) {
+                    stack.push(child);
+                    transforms.push(childTransform);
+                }
+            }
+        }
+        rebuild();
+    }
+
+    /**
+     * Add a tile, not its children.
+     * @param parent the parent of the tile, which must be indexed unless the tile is a root.
+     */
+    public void insert(Tile tile, Tile parent) {
+        double[] parentTransform = null;
+        if (parent != null) {
+            Integer parentId = itemIds.get(parent);
+            if (parentId == null) {
+                throw new IllegalArgumentException("The parent is not indexed, the transform of the tile is unknown.");
+            }
+            parentTransform = getTransform(parentId);
+        }
+        insert(tile, parentTransform);
+    }
+
+    /**
+     * Add a tile, not its children.
+     * @param parentTransform the transform from the parent of the tile to the tileset, column major, or null for the identity.
+     */
+    public void insert(Tile tile, double[] parentTransform) {
+        int item = addItem(tile, parentTransform);
+        if (item != NULL) {
+            insertLeaf(itemLeaf[item]);
+        }
+    }
+
+    /**
+     * Remove a tile, not its children.
+     * @return false if the tile is not indexed.
+     */
+    public boolean remove(Tile tile) {
+        Integer item = itemIds.remove(tile);
+        if (item == null) {
+            return false;
+        }
+        int leaf = itemLeaf[item];
+        removeLeaf(leaf);
+        freeNode(leaf);
+        items[item] = null;
+        itemParentTransform[item] = null;
+        itemLeaf[item] = NULL;
+        freeItems.push(item);
+        return true;
+    }
+
+    /**
+     * Update the bounds of a tile after its volume or its transform changed. The descendants have to be updated as
+     * well when the transform changed, with {@link #update(Tile, double[])}.
+     * @return false if the tile is not indexed.
+     */
+    public boolean update(Tile tile) {
+        Integer item = itemIds.get(tile);
+        return item != null && update(tile, itemParentTransform[item]);
+    }
+
+    /**
+     * Update the bounds of a tile, e.g. after the transform of an ancestor changed.
+     * @return false if the tile is not indexed.
+     */
+    public boolean update(Tile tile, double[] parentTransform) {
+        if (!remove(tile)) {
+            return false;
+        }
+        insert(tile, parentTransform);
+        return true;
+    }
+
+    /**
+     * @return the height of the tree, 0 for a single tile, -1 when empty.
+     */
+    int getHeight() {
+        return root == NULL ? -1 : height[root];
+    }
+
+    /**
+     * Check the links, the heights and the bounds of the nodes.
+     * @return the largest difference between the heights of the two children of a node.
+     * @throws IllegalStateException if the tree is broken.
+     */
+    int validate() {
+        if (root == NULL) {
+            check(itemIds.isEmpty(), "The tree is empty but there are tiles.");
+            return 0;
+        }
+        check(parent[root] == NULL, "The root has a parent.");
+        int leaves = 0;
+        int maxImbalance = 0;
+        int[] stack = new int[Math.max(64, 2 * height[root] + 2)];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            if (isLeaf(node)) {
+                int item = nodeItem[node];
+                check(height[node] == 0 && child2[node] == NULL, "Invalid leaf " + node + ".");
+                check(item != NULL && itemLeaf[item] == node && itemIds.get(items[item]) == item, "Invalid item of the leaf " + node + ".");
+                ++leaves;
+                continue;
+            }
+            int c1 = child1[node];
+            int c2 = child2[node];
+            check(c2 != NULL && parent[c1] == node && parent[c2] == node, "Invalid children of the node " + node + ".");
+            check(height[node] == 1 + Math.max(height[c1], height[c2]), "Invalid height of the node " + node + ".");
+            maxImbalance = Math.max(maxImbalance, Math.abs(height[c1] - height[c2]));
+            for (int c = 0; c < 3; ++c) {
+                check(bounds[node * 6 + c] == Math.min(bounds[c1 * 6 + c], bounds[c2 * 6 + c])
+                        && bounds[node * 6 + 3 + c] == Math.max(bounds[c1 * 6 + 3 + c], bounds[c2 * 6 + 3 + c]),
+                        "The bounds of the node " + node + " are not the union of its children.");
+            }
+            if (top + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[top++] = c1;
+            stack[top++] = c2;
+        }
+        check(leaves == itemIds.size(), leaves + " leaves for " + itemIds.size() + " tiles.");
+        return maxImbalance;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    /**
+     * @return the transform from the tile to the tileset, column major, or null for the identity.
+     */
+    public double[] getTransform(Tile tile) {
+        Integer item = itemIds.get(tile);
+        if (item == null) {
+            throw new IllegalArgumentException("The tile is not indexed.");
+        }
+        return getTransform(item);
+    }
+
+    private double[] getTransform(int item) {
+        double[] parentTransform = itemParentTransform[item];
+        float[] transform = items[item].getTransform();
+        if (transform == null) {
+            return parentTransform;
+        }
+        return multiply(parentTransform != null ? parentTransform : IDENTITY, transform);
+    }
+
+    /**
+     * @return the tiles whose bounds intersect the axis aligned box.
+     */
+    public List<Tile> queryBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        List<Tile> result = new ArrayList<>();
+        double[] box = {minX, minY, minZ, maxX, maxY, maxZ};
+        query(node -> overlaps(node, box), result);
+        return result;
+    }
+
+    /**
+     * @return the tiles whose bounds contain the point.
+     */
+    public List<Tile> queryPoint(double x, double y, double z) {
+        return queryBox(x, y, z, x, y, z);
+    }
+
+    /**
+     * @return the tiles whose bounds intersect the sphere.
+     */
+    public List<Tile> querySphere(double x, double y, double z, double radius) {
+        List<Tile> result = new ArrayList<>();
+        double radius2 = radius * radius;
+        query(node -> distanceSquared(node, x, y, z) <= radius2, result);
+        return result;
+    }
+
+    /**
+     * @param west the longitudes and latitudes in radians, as in a region volume. The region may cross the antimeridian.
+     * @return the tiles whose volume intersects the WGS84 region. The region volumes are tested exactly, the others by their bounds.
+     */
+    public List<Tile> queryRegion(double west, double south, double east, double north, double minHeight, double maxHeight) {
+        double[] region = {west, south, east, north, minHeight, maxHeight};
+        double[] box = new double[6];
+        BoundingVolumeUtils.regionToBounds(region, 0, box, 0);
+        List<Tile> result = new ArrayList<>();
+        query(node -> {
+            if (!overlaps(node, box)) {
+                return false;
+            }
+            if (child1[node] == NULL) {
+                int item = nodeItem[node];
+                return Double.isNaN(itemRegion[item * 6]) || BoundingVolumeUtils.regionsIntersect(itemRegion, item * 6, region, 0);
+            }
+            return true;
+        }, result);
+        return result;
+    }
+
+    /**
+     * @param direction need not be normalized, the distances are in its unit.
+     * @param maxDistance the length of the ray, e.g. Double.POSITIVE_INFINITY.
+     * @return the tiles whose bounds the ray hits, sorted by the distance along the ray to their bounds.
+     */
+    public List<Tile> queryRay(double originX, double originY, double originZ, double directionX, double directionY, double directionZ, double maxDistance) {
+        double[] origin = {originX, originY, originZ};
+        double[] inverse = {1 / directionX, 1 / directionY, 1 / directionZ};
+        List<Hit> hits = new ArrayList<>();
+        query(node -> {
+            double distance = rayDistance(node, origin, inverse, maxDistance);
+            if (distance < 0) {
+                return false;
+            }
+            if (child1[node] == NULL) {
+                hits.add(new Hit(items[nodeItem[node]], distance));
+                return false;
+            }
+            return true;
+        }, null);
+        Collections.sort(hits);
+        List<Tile> result = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            result.add(hit.tile);
+        }
+        return result;
+    }
+
+    /**
+     * @param planes the planes of the frustum, 4 numbers a, b, c, d per plane, with a x + b y + c z + d >= 0 inside.
+     * @return the tiles whose bounds are not fully outside one of the planes.
+     */
+    public List<Tile> queryFrustum(double[] planes) {
+        if (planes.length % 4 != 0) {
+            throw new IllegalArgumentException("Invalid planes, there should be 4 numbers per plane.");
+        }
+        List<Tile> result = new ArrayList<>();
+        query(node -> insideFrustum(node, planes), result);
+        return result;
+    }
+
+    private interface NodeTest {
+        /**
+         * @return whether the node is selected, i.e. its item is returned or its children are tested.
+         */
+        boolean test(int node);
+    }
+
+    private static class Hit implements Comparable<Hit> {
+
+        private final Tile tile;
+        private final double distance;
+
+        private Hit(Tile tile, double distance) {
+            this.tile = tile;
+            this.distance = distance;
+        }
+
+        @Override
+        public int compareTo(Hit o) {
+            return Double.compare(distance, o.distance);
+        }
+    }
+
+    private void query(NodeTest test, List<Tile> result) {
+        if (root == NULL) {
+            return;
+        }
+        int[] stack = new int[Math.max(64, 2 * height[root] + 2)];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            if (!test.test(node)) {
+                continue;
+            }
+            if (child1[node] == NULL) {
+                if (result != null) {
+                    result.add(items[nodeItem[node]]);
+                }
+            } else {
+                if (top + 2 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = child1[node];
+                stack[top++] = child2[node];
+            }
+        }
+    }
+
+    private boolean overlaps(int node, double[] box) {
+        int o = node * 6;
+        return bounds[o] <= box[3] && bounds[o + 3] >= box[0]
+                && bounds[o + 1] <= box[4] && bounds[o + 4] >= box[1]
+                && bounds[o + 2] <= box[5] && bounds[o + 5] >= box[2];
+    }
+
+    private double distanceSquared(int node, double x, double y, double z) {
+        int o = node * 6;
+        double dx = Math.max(0, Math.max(bounds[o] - x, x - bounds[o + 3]));
+        double dy = Math.max(0, Math.max(bounds[o + 1] - y, y - bounds[o + 4]));
+        double dz = Math.max(0, Math.max(bounds[o + 2] - z, z - bounds[o + 5]));
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * @return the distance along the ray to the bounds of the node, 0 if the origin is inside, or -1 if it misses them.
+     */
+    private double rayDistance(int node, double[] origin, double[] inverse, double maxDistance) {
+        int o = node * 6;
+        double near = 0;
+        double far = maxDistance;
+        for (int c = 0; c < 3; ++c) {
+            double t1 = (bounds[o + c] - origin[c]) * inverse[c];
+            double t2 = (bounds[o + 3 + c] - origin[c]) * inverse[c];
+            if (Double.isNaN(t1) || Double.isNaN(t2)) {
+                // The ray is parallel to the slab and starts on one of its planes.
+                continue;
+            }
+            near = Math.max(near, Math.min(t1, t2));
+            far = Math.min(far, Math.max(t1, t2));
+            if (near > far) {
+                return -1;
+            }
+        }
+        return near;
+    }
+
+    private boolean insideFrustum(int node, double[] planes) {
+        int o = node * 6;
+        for (int p = 0; p < planes.length; p += 4) {
+            double a = planes[p];
+            double b = planes[p + 1];
+            double c = planes[p + 2];
+            // The corner of the bounds the farthest along the normal.
+            double x = a >= 0 ? bounds[o + 3] : bounds[o];
+            double y = b >= 0 ? bounds[o + 4] : bounds[o + 1];
+            double z = c >= 0 ? bounds[o + 5] : bounds[o + 2];
+            if (a * x + b * y + c * z + planes[p + 3] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Items
+
+    private void allocateItems(int capacity) {
+        items = items == null ? new Tile[capacity] : Arrays.copyOf(items, capacity);
+        itemLeaf = itemLeaf == null ? new int[capacity] : Arrays.copyOf(itemLeaf, capacity);
+        itemParentTransform = itemParentTransform == null ? new double[capacity][] : Arrays.copyOf(itemParentTransform, capacity);
+        itemRegion = itemRegion == null ? new double[capacity * 6] : Arrays.copyOf(itemRegion, capacity * 6);
+    }
+
+    /**
+     * Index the volume of the tile in a new leaf, not yet in the tree.
+     * @return the item, or NULL if the tile is skipped.
+     */
+    private int addItem(Tile tile, double[] parentTransform) {
+        BoundingVolume volume = tile.getBoundingVolume();
+        if (contentVolumes) {
+            TileContent content = tile.getContent();
+            if (content == null) {
+                return NULL;
+            }
+            if (content.getBoundingVolume() != null) {
+                volume = content.getBoundingVolume();
+            }
+        }
+        if (volume == null) {
+            throw new IllegalArgumentException("The tile has no bounding volume.");
+        }
+        if (itemIds.containsKey(tile)) {
+            throw new IllegalArgumentException("The tile is already indexed.");
+        }
+        int item;
+        if (!freeItems.isEmpty()) {
+            item = freeItems.pop();
+        } else {
+            if (itemCount == items.length) {
+                allocateItems(itemCount * 2);
+            }
+            item = itemCount++;
+        }
+        items[item] = tile;
+        itemParentTransform[item] = parentTransform;
+        itemIds.put(tile, item);
+        int leaf = allocateNode();
+        nodeItem[leaf] = item;
+        itemLeaf[item] = leaf;
+        double[] transform = tile.getTransform() != null
+                ? multiply(parentTransform != null ? parentTransform : IDENTITY, tile.getTransform())
+                : parentTransform;
+        Arrays.fill(itemRegion, item * 6, item * 6 + 6, Double.NaN);
+        volumeBounds(volume, transform, bounds, leaf * 6, itemRegion, item * 6);
+        return item;
+    }
+
+    // Nodes
+
+    private void allocateNodes(int capacity) {
+        bounds = bounds == null ? new double[capacity * 6] : Arrays.copyOf(bounds, capacity * 6);
+        parent = parent == null ? new int[capacity] : Arrays.copyOf(parent, capacity);
+        child1 = child1 == null ? new int[capacity] : Arrays.copyOf(child1, capacity);
+        child2 = child2 == null ? new int[capacity] : Arrays.copyOf(child2, capacity);
+        height = height == null ? new int[capacity] : Arrays.copyOf(height, capacity);
+        nodeItem = nodeItem == null ? new int[capacity] : Arrays.copyOf(nodeItem, capacity);
+    }
+
+    private int allocateNode() {
+        int node;
+        if (freeNode != NULL) {
+            node = freeNode;
+            freeNode = parent[node];
+        } else {
+            if (nodeCount == parent.length) {
+                allocateNodes(nodeCount * 2);
+            }
+            node = nodeCount++;
+        }
+        parent[node] = NULL;
+        child1[node] = NULL;
+        child2[node] = NULL;
+        height[node] = 0;
+        nodeItem[node] = NULL;
+        return node;
+    }
+
+    /**
+     * The free nodes are chained by their parent.
+     */
+    private void freeNode(int node) {
+        parent[node] = freeNode;
+        height[node] = -1;
+        freeNode = node;
+    }
+
+    private boolean isLeaf(int node) {
+        return child1[node] == NULL;
+    }
+
+    /**
+     * Rebuild the tree over all the leaves, by median splits along the longest axis of their centers.
+     */
+    private void rebuild() {
+        int[] leaves = new int[itemIds.size()];
+        int count = 0;
+        for (int item : itemIds.values()) {
+            leaves[count++] = itemLeaf[item];
+        }
+        // Only the leaves survive, the internal nodes are all freed.
+        freeNode = NULL;
+        boolean[] used = new boolean[nodeCount];
+        for (int leaf : leaves) {
+            used[leaf] = true;
+            parent[leaf] = NULL;
+        }
+        for (int node = nodeCount - 1; node >= 0; --node) {
+            if (!used[node]) {
+                freeNode(node);
+            }
+        }
+        root = count != 0 ? build(leaves, 0, count, new double[count]) : NULL;
+        if (root != NULL) {
+            parent[root] = NULL;
+        }
+    }
+
+    private int build(int[] leaves, int from, int to, double[] keys) {
+        if (to - from == 1) {
+            return leaves[from];
+        }
+        double[] centers = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int i = from; i < to; ++i) {
+            int o = leaves[i] * 6;
+            for (int c = 0; c < 3; ++c) {
+                double center = bounds[o + c] + bounds[o + 3 + c];
+                centers[c] = Math.min(centers[c], center);
+                centers[c + 3] = Math.max(centers[c + 3], center);
+            }
+        }
+        int axis = 0;
+        for (int c = 1; c < 3; ++c) {
+            if (centers[c + 3] - centers[c] > centers[axis + 3] - centers[axis]) {
+                axis = c;
+            }
+        }
+        for (int i = from; i < to; ++i) {
+            int o = leaves[i] * 6;
+            keys[i] = bounds[o + axis] + bounds[o + 3 + axis];
+        }
+        int middle = (from + to) >>> 1;
+        select(leaves, keys, from, to - 1, middle);
+        int left = build(leaves, from, middle, keys);
+        int right = build(leaves, middle, to, keys);
+        int node = allocateNode();
+        child1[node] = left;
+        child2[node] = right;
+        parent[left] = node;
+        parent[right] = node;
+        height[node] = 1 + Math.max(height[left], height[right]);
+        union(left, right, node);
+        return node;
+    }
+
+    /**
+     * Partially sort the leaves by their keys, so that the leaf at k is in place, with smaller keys before and larger after.
+     */
+    private static void select(int[] leaves, double[] keys, int left, int right, int k) {
+        while (right > left) {
+            int middle = (left + right) >>> 1;
+            double pivot = keys[middle];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    ++i;
+                }
+                while (keys[j] > pivot) {
+                    --j;
+                }
+                if (i <= j) {
+                    swap(leaves, keys, i++, j--);
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static void swap(int[] leaves, double[] keys, int i, int j) {
+        int leaf = leaves[i];
+        leaves[i] = leaves[j];
+        leaves[j] = leaf;
+        double key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+    }
+
+    private void union(int a, int b, int target) {
+        int oa = a * 6;
+        int ob = b * 6;
+        int ot = target * 6;
+        for (int c = 0; c < 3; ++c) {
+            bounds[ot + c] = Math.min(bounds[oa + c], bounds[ob + c]);
+            bounds[ot + 3 + c] = Math.max(bounds[oa + 3 + c], bounds[ob + 3 + c]);
+        }
+    }
+
+    private double area(int node) {
+        int o = node * 6;
+        return area(bounds[o + 3] - bounds[o], bounds[o + 4] - bounds[o + 1], bounds[o + 5] - bounds[o + 2]);
+    }
+
+    private double unionArea(int a, int b) {
+        int oa = a * 6;
+        int ob = b * 6;
+        double dx = Math.max(bounds[oa + 3], bounds[ob + 3]) - Math.min(bounds[oa], bounds[ob]);
+        double dy = Math.max(bounds[oa + 4], bounds[ob + 4]) - Math.min(bounds[oa + 1], bounds[ob + 1]);
+        double dz = Math.max(bounds[oa + 5], bounds[ob + 5]) - Math.min(bounds[oa + 2], bounds[ob + 2]);
+        return area(dx, dy, dz);
+    }
+
+    private static double area(double dx, double dy, double dz) {
+        return 2 * (dx * dy + dy * dz + dz * dx);
+    }
+
+    /**
+     * Insert the leaf next to the sibling which least increases the surface of the tree, then rebalance the ancestors.
+     * The sibling is searched by branch and bound over the whole tree. A greedy descent would pile the leaves under the
+     * large volumes of the ancestor tiles, which cost nothing to enlarge.
+     */
+    private void insertLeaf(int leaf) {
+        if (root == NULL) {
+            root = leaf;
+            parent[leaf] = NULL;
+            return;
+        }
+        double leafArea = area(leaf);
+        int sibling = root;
+        double bestCost = unionArea(root, leaf);
+        int[] stack = new int[64];
+        // The growth of the ancestors of the node if the leaf is inserted below it.
+        double[] inherited = new double[64];
+        int top = 0;
+        stack[top] = root;
+        inherited[top++] = 0;
+        while (top > 0) {
+            int index = stack[--top];
+            double inheritedCost = inherited[top];
+            double directCost = unionArea(index, leaf);
+            double cost = directCost + inheritedCost;
+            if (cost < bestCost) {
+                bestCost = cost;
+                sibling = index;
+            }
+            if (!isLeaf(index)) {
+                double childInheritedCost = inheritedCost + directCost - area(index);
+                if (leafArea + childInheritedCost < bestCost) {
+                    if (top + 2 > stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                        inherited = Arrays.copyOf(inherited, inherited.length * 2);
+                    }
+                    stack[top] = child1[index];
+                    inherited[top++] = childInheritedCost;
+                    stack[top] = child2[index];
+                    inherited[top++] = childInheritedCost;
+                }
+            }
+        }
+        int oldParent = parent[sibling];
+        int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        union(leaf, sibling, newParent);
+        height[newParent] = height[sibling] + 1;
+        if (oldParent != NULL) {
+            if (child1[oldParent] == sibling) {
+                child1[oldParent] = newParent;
+            } else {
+                child2[oldParent] = newParent;
+            }
+        } else {
+            root = newParent;
+        }
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+        refit(parent[leaf]);
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL;
+            return;
+        }
+        int p = parent[leaf];
+        int grandParent = parent[p];
+        int sibling = child1[p] == leaf ? child2[p] : child1[p];
+        if (grandParent != NULL) {
+            if (child1[grandParent] == p) {
+                child1[grandParent] = sibling;
+            } else {
+                child2[grandParent] = sibling;
+            }
+            parent[sibling] = grandParent;
+            freeNode(p);
+            refit(grandParent);
+        } else {
+            root = sibling;
+            parent[sibling] = NULL;
+            freeNode(p);
+        }
+    }
+
+    /**
+     * Rebalance and recompute the bounds and the heights from the node up to the root.
+     */
+    private void refit(int index) {
+        while (index != NULL) {
+            index = balance(index);
+            int c1 = child1[index];
+            int c2 = child2[index];
+            height[index] = 1 + Math.max(height[c1], height[c2]);
+            union(c1, c2, index);
+            index = parent[index];
+        }
+    }
+
+    /**
+     * Rotate the higher child up if the heights of the children differ by more than 1.
+     * @return the node now in place of a.
+     */
+    private int balance(int a) {
+        if (isLeaf(a) || height[a] < 2) {
+            return a;
+        }
+        int b = child1[a];
+        int c = child2[a];
+        int balance = height[c] - height[b];
+        if (balance > 1) {
+            rotateUp(a, c, b, false);
+            return c;
+        }
+        if (balance < -1) {
+            rotateUp(a, b, c, true);
+            return b;
+        }
+        return a;
+    }
+
+    /**
+     * Replace a by its child up, the other child of a stays.
+     * @param upIsFirst whether up is the first child of a.
+     */
+    private void rotateUp(int a, int up, int other, boolean upIsFirst) {
+        int f = child1[up];
+        int g = child2[up];
+        child1[up] = a;
+        parent[up] = parent[a];
+        parent[a] = up;
+        int upParent = parent[up];
+        if (upParent != NULL) {
+            if (child1[upParent] == a) {
+                child1[upParent] = up;
+            } else {
+                child2[upParent] = up;
+            }
+        } else {
+            root = up;
+        }
+        // The higher grandchild stays under up, the other one replaces up under a.
+        int keep = height[f] > height[g] ? f : g;
+        int move = keep == f ? g : f;
+        child2[up] = keep;
+        if (upIsFirst) {
+            child1[a] = move;
+        } else {
+            child2[a] = move;
+        }
+        parent[move] = a;
+        union(other, move, a);
+        union(a, keep, up);
+        height[a] = 1 + Math.max(height[other], height[move]);
+        height[up] = 1 + Math.max(height[a], height[keep]);
+    }
+
+    // Volumes
+
+    private static final double[] IDENTITY = {1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1};
+
+    /**
+     * @return a * b, both column major.
+     */
+    private static double[] multiply(double[] a, float[] b) {
+        double[] result = new double[16];
+        BoundingVolumeUtils.multiply(a, 0, b, result, 0);
+        return result;
+    }
+
+    /**
+     * Write the axis aligned bounds of the volume transformed by the matrix, and the region if the volume is one.
+     */
+    private void volumeBounds(BoundingVolume volume, double[] m, double[] out, int offset, double[] regions, int regionOffset) {
+        if (m == null) {
+            m = IDENTITY;
+        }
+        float[] box = volume.getBox();
+        if (box != null) {
+            BoundingVolumeUtils.copy(box, scratch, 0);
+            BoundingVolumeUtils.transformBox(m, 0, scratch, 0, scratch, 0);
+            BoundingVolumeUtils.boxToBounds(scratch, 0, out, offset);
+            return;
+        }
+        float[] sphere = volume.getSphere();
+        if (sphere != null) {
+            BoundingVolumeUtils.copy(sphere, scratch, 0);
+            BoundingVolumeUtils.transformSphere(m, 0, scratch, 0, scratch, 0);
+            BoundingVolumeUtils.sphereToBounds(scratch, 0, out, offset);
+            return;
+        }
+        float[] region = volume.getRegion();
+        if (region != null) {
+            // The regions are in EPSG:4979, the transforms do not apply to them.
+            BoundingVolumeUtils.copy(region, regions, regionOffset);
+            BoundingVolumeUtils.regionToBounds(regions, regionOffset, out, offset);
+            return;
+        }
+        throw new IllegalArgumentException("Invalid bounding volume, one of box, region or sphere is required.");
+    }
+}
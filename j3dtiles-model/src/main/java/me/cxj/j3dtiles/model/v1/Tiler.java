@@ -0,0 +1,734 @@
+package me.cxj.j3dtiles.model.v1;
+
+import de.javagl.jgltf.impl.v2.*;
+import de.javagl.jgltf.model.GltfConstants;
+import de.javagl.jgltf.model.GltfModel;
+import de.javagl.jgltf.model.io.v2.GltfAssetV2;
+import de.javagl.jgltf.model.v2.GltfModelV2;
+import me.cxj.j3dtiles.impl.v1.BoundingVolume;
+import me.cxj.j3dtiles.impl.v1.Tile;
+import me.cxj.j3dtiles.impl.v1.TileContent;
+import me.cxj.j3dtiles.impl.v1.Tileset;
+import me.cxj.j3dtiles.utils.JacksonJsonParser;
+import me.cxj.j3dtiles.utils.JsonParser;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Cuts a large set of features into a tileset of b3dm tiles.
+ * <p>
+ * The features are partitioned by their centers, with an octree, a quadtree or a k-d tree, until a node holds few
+ * enough features. The leaves get the features at full resolution. The other tiles get the merged content of their
+ * children, simplified by vertex clustering on a grid of the size of the tile divided by the grid resolution. Each
+ * feature is clustered on its own, so the features never merge and keep their batch ids. The geometric error of a tile
+ * is the one of its children plus the diagonal of its grid cells.
+ * <p>
+ * The nodes are processed on a fork join pool, the children before their parent. A tile is written as soon as it is
+ * encoded, so only the simplified contents waiting for their parent stay in memory, besides the features themselves.
+ * The tiles are written in the tiles directory under the output directory, the tileset in tileset.json.
+ */
+public class Tiler {
+
+    public enum Partitioning {
+        /**
+         * 8 children split at the middle of the centers of the features.
+         */
+        OCTREE,
+        /**
+         * 4 children split at the middle of the centers of the features on x and y, for mostly flat datasets.
+         */
+        QUADTREE,
+        /**
+         * 2 children split at the median center on the longest axis.
+         */
+        KD_TREE
+    }
+
+    private static final String TILES_DIRECTORY = "tiles";
+    private static final int MAX_GRID_RESOLUTION = 1 << 20;
+
+    private Partitioning partitioning = Partitioning.OCTREE;
+    private int maxFeaturesPerTile = 256;
+    private int maxTrianglesPerTile = 65536;
+    private int maxDepth = 16;
+    private int gridResolution = 64;
+    private ForkJoinPool pool;
+    private JsonParser parser = JacksonJsonParser.getInstance();
+
+    public Partitioning getPartitioning() {
+        return partitioning;
+    }
+
+    public void setPartitioning(Partitioning partitioning) {
+        if (partitioning == null) {
+            throw new NullPointerException("Invalid value for partitioning: null, may not be null");
+        }
+        this.partitioning = partitioning;
+    }
+
+    public int getMaxFeaturesPerTile() {
+        return maxFeaturesPerTile;
+    }
+
+    /**
+     * A node with more features is split, unless it is at the max depth.
+     */
+    public void setMaxFeaturesPerTile(int maxFeaturesPerTile) {
+        if (maxFeaturesPerTile < 1) {
+            throw new IllegalArgumentException("Invalid max features per tile: " + maxFeaturesPerTile + ".");
+        }
+        this.maxFeaturesPerTile = maxFeaturesPerTile;
+    }
+
+    public int getMaxTrianglesPerTile() {
+        return maxTrianglesPerTile;
+    }
+
+    /**
+     * A node with more triangles is split, unless it is at the max depth or it holds a single feature.
+     */
+    public void setMaxTrianglesPerTile(int maxTrianglesPerTile) {
+        if (maxTrianglesPerTile < 1) {
+            throw new IllegalArgumentException("Invalid max triangles per tile: " + maxTrianglesPerTile + ".");
+        }
+        this.maxTrianglesPerTile = maxTrianglesPerTile;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("Invalid max depth: " + maxDepth + ".");
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    public int getGridResolution() {
+        return gridResolution;
+    }
+
+    /**
+     * The number of grid cells along the longest side of a tile used to simplify its content.
+     */
+    public void setGridResolution(int gridResolution) {
+        if (gridResolution < 1 || gridResolution > MAX_GRID_RESOLUTION) {
+            throw new IllegalArgumentException("Invalid grid resolution: " + gridResolution + ", it should be in [1, " + MAX_GRID_RESOLUTION + "].");
+        }
+        this.gridResolution = gridResolution;
+    }
+
+    /**
+     * @return the pool processing the nodes, null for the common pool.
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public JsonParser getParser() {
+        return parser;
+    }
+
+    public void setParser(JsonParser parser) {
+        if (parser == null) {
+            throw new NullPointerException("Invalid value for parser: null, may not be null");
+        }
+        this.parser = parser;
+    }
+
+    /**
+     * Tile the features of the glTF model, see {@link TilerFeature#fromGltf(GltfModel)}.
+     */
+    public Tileset tile(GltfModel model, Path directory) throws IOException {
+        return tile(TilerFeature.fromGltf(model), directory);
+    }
+
+    /**
+     * The features are collected before they are partitioned.
+     */
+    public Tileset tile(Iterator<? extends TilerFeature> features, Path directory) throws IOException {
+        List<TilerFeature> list = new ArrayList<>();
+        while (features.hasNext()) {
+            list.add(features.next());
+        }
+        return tile(list, directory);
+    }
+
+    /**
+     * Write the tiles and the tileset.json in the directory.
+     * @return the tileset written.
+     */
+    public Tileset tile(List<? extends TilerFeature> features, Path directory) throws IOException {
+        if (features.isEmpty()) {
+            throw new IllegalArgumentException("There is no feature to tile.");
+        }
+        Files.createDirectories(directory.resolve(TILES_DIRECTORY));
+        TilerFeature[] array = features.toArray(new TilerFeature[0]);
+        int[] ids = new int[array.length];
+        for (int i = 0; i < ids.length; ++i) {
+            ids[i] = i;
+        }
+        NodeTask task = new NodeTask(new Context(array, directory), ids, 0, "0", 0);
+        Tile root;
+        try {
+            root = (pool != null ? pool : ForkJoinPool.commonPool()).invoke(task).tile;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        root.setRefine("REPLACE");
+        Tileset tileset = new Tileset();
+        me.cxj.j3dtiles.impl.v1.Asset asset = new me.cxj.j3dtiles.impl.v1.Asset();
+        asset.setVersion("1.0");
+        tileset.setAsset(asset);
+        float[] box = root.getBoundingVolume().getBox();
+        // Nothing is rendered from farther than the size of the tileset.
+        tileset.setGeometricError(Math.max(root.getGeometricError(), 2 * (float) Math.sqrt(box[3] * box[3] + box[7] * box[7] + box[11] * box[11])));
+        tileset.setRoot(root);
+        try (OutputStream os = Files.newOutputStream(directory.resolve("tileset.json"));
+             TilesetWriter writer = new TilesetWriter(os)) {
+            writer.write(tileset);
+        }
+        return tileset;
+    }
+
+    private static final class Context {
+
+        private final TilerFeature[] features;
+        private final Path directory;
+
+        private Context(TilerFeature[] features, Path directory) {
+            this.features = features;
+            this.directory = directory;
+        }
+    }
+
+    /**
+     * Triangles of some features. The vertices of a feature are contiguous.
+     */
+    private static final class Geometry {
+
+        private double[] positions;
+        private int[] indices;
+        /**
+         * The index of the feature of each vertex in the context.
+         */
+        private int[] features;
+        private int vertexCount;
+        private int indexCount;
+
+        private Geometry(int vertexCapacity, int indexCapacity) {
+            positions = new double[vertexCapacity * 3];
+            features = new int[vertexCapacity];
+            indices = new int[indexCapacity];
+        }
+
+        private void append(double[] positions, int[] indices, int[] features, int vertexCount, int indexCount) {
+            ensureCapacity(vertexCount, indexCount);
+            System.arraycopy(positions, 0, this.positions, this.vertexCount * 3, vertexCount * 3);
+            System.arraycopy(features, 0, this.features, this.vertexCount, vertexCount);
+            for (int i = 0; i < indexCount; ++i) {
+                this.indices[this.indexCount + i] = indices[i] + this.vertexCount;
+            }
+            this.vertexCount += vertexCount;
+            this.indexCount += indexCount;
+        }
+
+        private void append(TilerFeature feature, int id) {
+            int[] ids = new int[feature.getVertexCount()];
+            Arrays.fill(ids, id);
+            append(feature.getPositions(), feature.getIndices(), ids, ids.length, feature.getIndices().length);
+        }
+
+        private void append(Geometry mesh) {
+            append(mesh.positions, mesh.indices, mesh.features, mesh.vertexCount, mesh.indexCount);
+        }
+
+        private void ensureCapacity(int vertexCount, int indexCount) {
+            if (this.vertexCount + vertexCount > features.length) {
+                int capacity = Math.max(this.vertexCount + vertexCount, features.length * 2);
+                positions = Arrays.copyOf(positions, capacity * 3);
+                features = Arrays.copyOf(features, capacity);
+            }
+            if (this.indexCount + indexCount > indices.length) {
+                indices = Arrays.copyOf(indices, Math.max(this.indexCount + indexCount, indices.length * 2));
+            }
+        }
+
+        /**
+         * Merge the vertices of each feature falling in the same cell of the grid, at their average position, and drop
+         * the triangles collapsed by the merge. The grid is aligned on the origin, so clustering again on the same grid
+         * changes nothing.
+         */
+        private Geometry cluster(double cellSize) {
+            Geometry out = new Geometry(Math.min(vertexCount, 1024), Math.min(indexCount, 3072));
+            int[] remap = new int[vertexCount];
+            int[] counts = new int[16];
+            Map<Long, Integer> cells = new HashMap<>();
+            int start = 0;
+            while (start < vertexCount) {
+                int feature = features[start];
+                int end = start;
+                long minX = Long.MAX_VALUE, minY = Long.MAX_VALUE, minZ = Long.MAX_VALUE;
+                while (end < vertexCount && features[end] == feature) {
+                    minX = Math.min(minX, cell(positions[end * 3], cellSize));
+                    minY = Math.min(minY, cell(positions[end * 3 + 1], cellSize));
+                    minZ = Math.min(minZ, cell(positions[end * 3 + 2], cellSize));
+                    ++end;
+                }
+                cells.clear();
+                int first = out.vertexCount;
+                for (int i = start; i < end; ++i) {
+                    // A feature is inside the tile, so it spans at most the grid resolution + 1 cells on each axis.
+                    long key = (cell(positions[i * 3], cellSize) - minX) << 42
+                            | (cell(positions[i * 3 + 1], cellSize) - minY) << 21
+                            | (cell(positions[i * 3 + 2], cellSize) - minZ);
+                    Integer vertex = cells.get(key);
+                    if (vertex == null) {
+                        vertex = out.vertexCount;
+                        cells.put(key, vertex);
+                        out.ensureCapacity(1, 0);
+                        out.features[vertex] = feature;
+                        ++out.vertexCount;
+                        if (vertex - first >= counts.length) {
+                            counts = Arrays.copyOf(counts, counts.length * 2);
+                        }
+                        counts[vertex - first] = 0;
+                    }
+                    remap[i] = vertex;
+                    out.positions[vertex * 3] += positions[i * 3];
+                    out.positions[vertex * 3 + 1] += positions[i * 3 + 1];
+                    out.positions[vertex * 3 + 2] += positions[i * 3 + 2];
+                    ++counts[vertex - first];
+                }
+                for (int v = first; v < out.vertexCount; ++v) {
+                    int count = counts[v - first];
+                    out.positions[v * 3] /= count;
+                    out.positions[v * 3 + 1] /= count;
+                    out.positions[v * 3 + 2] /= count;
+                }
+                start = end;
+            }
+            for (int i = 0; i < indexCount; i += 3) {
+                int a = remap[indices[i]];
+                int b = remap[indices[i + 1]];
+                int c = remap[indices[i + 2]];
+                if (a != b && b != c && a != c) {
+                    out.ensureCapacity(0, 3);
+                    out.indices[out.indexCount++] = a;
+                    out.indices[out.indexCount++] = b;
+                    out.indices[out.indexCount++] = c;
+                }
+            }
+            return out;
+        }
+
+        private static long cell(double value, double cellSize) {
+            return (long) Math.floor(value / cellSize);
+        }
+    }
+
+    private static final class NodeResult {
+
+        private final Tile tile;
+        /**
+         * The content of the tile clustered on the grid of the parent.
+         */
+        private final Geometry simplified;
+
+        private NodeResult(Tile tile, Geometry simplified) {
+            this.tile = tile;
+            this.simplified = simplified;
+        }
+    }
+
+    private final class NodeTask extends RecursiveTask<NodeResult> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Context context;
+        private final int[] ids;
+        private final int depth;
+        private final String name;
+        /**
+         * The cell size of the grid of the parent, 0 for the root.
+         */
+        private final double parentCellSize;
+
+        private NodeTask(Context context, int[] ids, int depth, String name, double parentCellSize) {
+            this.context = context;
+            this.ids = ids;
+            this.depth = depth;
+            this.name = name;
+            this.parentCellSize = parentCellSize;
+        }
+
+        @Override
+        protected NodeResult compute() {
+            double[] bounds = bounds(context.features, ids);
+            List<int[]> partitions = isLeaf() ? null : split();
+            Geometry content;
+            float geometricError;
+            List<Tile> children = null;
+            if (partitions == null) {
+                int vertexCount = 0, indexCount = 0;
+                for (int id : ids) {
+                    vertexCount += context.features[id].getVertexCount();
+                    indexCount += context.features[id].getIndices().length;
+                }
+                content = new Geometry(vertexCount, indexCount);
+                for (int id : ids) {
+                    content.append(context.features[id], id);
+                }
+                geometricError = 0;
+            } else {
+                double cellSize = cellSize(bounds);
+                List<NodeTask> tasks = new ArrayList<>(partitions.size());
+                for (int i = 0; i < partitions.size(); ++i) {
+                    tasks.add(new NodeTask(context, partitions.get(i), depth + 1, name + "_" + i, cellSize));
+                }
+                invokeAll(tasks);
+                children = new ArrayList<>(tasks.size());
+                Geometry merged = new Geometry(1024, 3072);
+                float childError = 0;
+                for (NodeTask task : tasks) {
+                    NodeResult result = task.join();
+                    children.add(result.tile);
+                    childError = Math.max(childError, result.tile.getGeometricError());
+                    merged.append(result.simplified);
+                }
+                // The children are already clustered on this grid, it merges the vertices across them.
+                content = merged.cluster(cellSize);
+                geometricError = childError + (float) (cellSize * Math.sqrt(3));
+            }
+            Tile tile = new Tile();
+            tile.setBoundingVolume(toBox(bounds));
+            tile.setGeometricError(geometricError);
+            if (content.indexCount > 0) {
+                String uri = TILES_DIRECTORY + "/" + name + ".b3dm";
+                try (OutputStream os = Files.newOutputStream(context.directory.resolve(uri))) {
+                    createB3dm(context.features, content, bounds).write(os, parser);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                TileContent tileContent = new TileContent();
+                tileContent.setUri(uri);
+                tile.setContent(tileContent);
+            }
+            if (children != null) {
+                // Tile.addChildren copies the list on each call.
+                tile.setChildren(children);
+            }
+            return new NodeResult(tile, parentCellSize > 0 ? content.cluster(parentCellSize) : null);
+        }
+
+        private boolean isLeaf() {
+            if (depth >= maxDepth || ids.length == 1) {
+                return true;
+            }
+            if (ids.length > maxFeaturesPerTile) {
+                return false;
+            }
+            long triangles = 0;
+            for (int id : ids) {
+                triangles += context.features[id].getTriangleCount();
+            }
+            return triangles <= maxTrianglesPerTile;
+        }
+
+        /**
+         * @return the non empty partitions, or null if the centers of the features can not be separated.
+         */
+        private List<int[]> split() {
+            double[] centers = new double[6];
+            Arrays.fill(centers, 0, 3, Double.POSITIVE_INFINITY);
+            Arrays.fill(centers, 3, 6, Double.NEGATIVE_INFINITY);
+            for (int id : ids) {
+                for (int axis = 0; axis < 3; ++axis) {
+                    double center = context.features[id].getCenter(axis);
+                    centers[axis] = Math.min(centers[axis], center);
+                    centers[axis + 3] = Math.max(centers[axis + 3], center);
+                }
+            }
+            if (partitioning == Partitioning.KD_TREE) {
+                return splitMedian(centers);
+            }
+            int axes = partitioning == Partitioning.OCTREE ? 3 : 2;
+            double[] middle = new double[axes];
+            boolean separable = false;
+            for (int axis = 0; axis < axes; ++axis) {
+                middle[axis] = (centers[axis] + centers[axis + 3]) / 2;
+                separable |= centers[axis] < centers[axis + 3];
+            }
+            if (!separable) {
+                return partitioning == Partitioning.QUADTREE ? splitMedian(centers) : null;
+            }
+            int[] cells = new int[ids.length];
+            int[] counts = new int[1 << axes];
+            for (int i = 0; i < ids.length; ++i) {
+                int cell = 0;
+                for (int axis = 0; axis < axes; ++axis) {
+                    if (context.features[ids[i]].getCenter(axis) > middle[axis]) {
+                        cell |= 1 << axis;
+                    }
+                }
+                cells[i] = cell;
+                ++counts[cell];
+            }
+            int[][] partitions = new int[counts.length][];
+            for (int cell = 0; cell < counts.length; ++cell) {
+                partitions[cell] = new int[counts[cell]];
+                counts[cell] = 0;
+            }
+            for (int i = 0; i < ids.length; ++i) {
+                partitions[cells[i]][counts[cells[i]]++] = ids[i];
+            }
+            List<int[]> result = new ArrayList<>(partitions.length);
+            for (int[] partition : partitions) {
+                if (partition.length > 0) {
+                    result.add(partition);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Split in two halves at the median on the longest axis of the centers.
+         */
+        private List<int[]> splitMedian(double[] centers) {
+            int longest = 0;
+            for (int axis = 1; axis < 3; ++axis) {
+                if (centers[axis + 3] - centers[axis] > centers[longest + 3] - centers[longest]) {
+                    longest = axis;
+                }
+            }
+            final int axis = longest;
+            Integer[] sorted = new Integer[ids.length];
+            for (int i = 0; i < ids.length; ++i) {
+                sorted[i] = ids[i];
+            }
+            Arrays.sort(sorted, (a, b) -> Double.compare(context.features[a].getCenter(axis), context.features[b].getCenter(axis)));
+            int half = sorted.length / 2;
+            int[] low = new int[half];
+            int[] high = new int[sorted.length - half];
+            for (int i = 0; i < sorted.length; ++i) {
+                if (i < half) {
+                    low[i] = sorted[i];
+                } else {
+                    high[i - half] = sorted[i];
+                }
+            }
+            return Arrays.asList(low, high);
+        }
+
+        private double cellSize(double[] bounds) {
+            double size = Math.max(bounds[3] - bounds[0], Math.max(bounds[4] - bounds[1], bounds[5] - bounds[2])) / gridResolution;
+            return size > 0 ? size : 1;
+        }
+    }
+
+    private static double[] bounds(TilerFeature[] features, int[] ids) {
+        double[] bounds = new double[6];
+        Arrays.fill(bounds, 0, 3, Double.POSITIVE_INFINITY);
+        Arrays.fill(bounds, 3, 6, Double.NEGATIVE_INFINITY);
+        for (int id : ids) {
+            for (int axis = 0; axis < 3; ++axis) {
+                bounds[axis] = Math.min(bounds[axis], features[id].getMin(axis));
+                bounds[axis + 3] = Math.max(bounds[axis + 3], features[id].getMax(axis));
+            }
+        }
+        return bounds;
+    }
+
+    private static BoundingVolume toBox(double[] bounds) {
+        float[] box = new float[12];
+        for (int axis = 0; axis < 3; ++axis) {
+            box[axis] = (float) ((bounds[axis] + bounds[axis + 3]) / 2);
+            // Rounded up, so the box still contains the features in single precision.
+            box[3 + axis * 4] = Math.nextUp((float) ((bounds[axis + 3] - bounds[axis]) / 2));
+        }
+        BoundingVolume volume = new BoundingVolume();
+        volume.setBox(box);
+        return volume;
+    }
+
+    private static B3dm createB3dm(TilerFeature[] features, Geometry mesh, double[] bounds) {
+        // The batch ids in order of the first vertex of each feature, the vertices of a feature are contiguous.
+        int[] batchIds = new int[mesh.vertexCount];
+        List<TilerFeature> batch = new ArrayList<>();
+        for (int i = 0; i < mesh.vertexCount; ++i) {
+            if (i == 0 || mesh.features[i] != mesh.features[i - 1]) {
+                batch.add(features[mesh.features[i]]);
+            }
+            batchIds[i] = batch.size() - 1;
+        }
+        B3dmFeatureTable featureTable = new B3dmFeatureTable();
+        featureTable.setBatchLength(batch.size());
+        float[] center = new float[3];
+        for (int axis = 0; axis < 3; ++axis) {
+            center[axis] = (float) ((bounds[axis] + bounds[axis + 3]) / 2);
+        }
+        featureTable.setRtcCenter(center);
+        BatchTable batchTable = new BatchTable(batch.size());
+        Set<String> properties = new LinkedHashSet<>();
+        for (TilerFeature feature : batch) {
+            properties.addAll(feature.getProperties().keySet());
+        }
+        for (String property : properties) {
+            List<Object> values = new ArrayList<>(batch.size());
+            for (TilerFeature feature : batch) {
+                values.add(feature.getProperties().get(property));
+            }
+            batchTable.setColumn(property, values);
+        }
+        return new B3dm(featureTable, batchTable, createGltf(mesh, batchIds, center));
+    }
+
+    private static GltfModel createGltf(Geometry mesh, int[] batchIds, float[] center) {
+        int vertexCount = mesh.vertexCount;
+        boolean shortIndices = vertexCount <= 65535;
+        int attributesLength = vertexCount * 4 * 7;
+        int indicesLength = mesh.indexCount * (shortIndices ? 2 : 4);
+        ByteBuffer data = ByteBuffer.allocate(attributesLength + (indicesLength + 3) / 4 * 4).order(ByteOrder.LITTLE_ENDIAN);
+        // Relative to the rtc center, z up to y up.
+        float[] positions = new float[vertexCount * 3];
+        float[] min = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+        float[] max = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+        for (int i = 0; i < vertexCount; ++i) {
+            positions[i * 3] = (float) (mesh.positions[i * 3] - center[0]);
+            positions[i * 3 + 1] = (float) (mesh.positions[i * 3 + 2] - center[2]);
+            positions[i * 3 + 2] = (float) -(mesh.positions[i * 3 + 1] - center[1]);
+            for (int c = 0; c < 3; ++c) {
+                min[c] = Math.min(min[c], positions[i * 3 + c]);
+                max[c] = Math.max(max[c], positions[i * 3 + c]);
+            }
+        }
+        float[] normals = computeNormals(positions, mesh.indices, mesh.indexCount);
+        for (float position : positions) {
+            data.putFloat(position);
+        }
+        for (float normal : normals) {
+            data.putFloat(normal);
+        }
+        for (int i = 0; i < vertexCount; ++i) {
+            data.putFloat(batchIds[i]);
+        }
+        for (int i = 0; i < mesh.indexCount; ++i) {
+            if (shortIndices) {
+                data.putShort((short) mesh.indices[i]);
+            } else {
+                data.putInt(mesh.indices[i]);
+            }
+        }
+        data.position(0);
+
+        GlTF gltf = new GlTF();
+        Asset asset = new Asset();
+        asset.setVersion("2.0");
+        gltf.setAsset(asset);
+        Buffer buffer = new Buffer();
+        buffer.setByteLength(data.capacity());
+        gltf.addBuffers(buffer);
+        gltf.addBufferViews(createBufferView(0, attributesLength, GltfConstants.GL_ARRAY_BUFFER));
+        gltf.addBufferViews(createBufferView(attributesLength, indicesLength, GltfConstants.GL_ELEMENT_ARRAY_BUFFER));
+        Accessor position = createAccessor(0, 0, GltfConstants.GL_FLOAT, vertexCount, "VEC3");
+        position.setMin(new Number[] {min[0], min[1], min[2]});
+        position.setMax(new Number[] {max[0], max[1], max[2]});
+        gltf.addAccessors(position);
+        gltf.addAccessors(createAccessor(0, vertexCount * 12, GltfConstants.GL_FLOAT, vertexCount, "VEC3"));
+        gltf.addAccessors(createAccessor(0, vertexCount * 24, GltfConstants.GL_FLOAT, vertexCount, "SCALAR"));
+        gltf.addAccessors(createAccessor(1, 0, shortIndices ? GltfConstants.GL_UNSIGNED_SHORT : GltfConstants.GL_UNSIGNED_INT, mesh.indexCount, "SCALAR"));
+        MeshPrimitive primitive = new MeshPrimitive();
+        primitive.addAttributes("POSITION", 0);
+        primitive.addAttributes("NORMAL", 1);
+        primitive.addAttributes("_BATCHID", 2);
+        primitive.setIndices(3);
+        primitive.setMaterial(0);
+        primitive.setMode(GltfConstants.GL_TRIANGLES);
+        de.javagl.jgltf.impl.v2.Mesh gltfMesh = new de.javagl.jgltf.impl.v2.Mesh();
+        gltfMesh.addPrimitives(primitive);
+        gltf.addMeshes(gltfMesh);
+        MaterialPbrMetallicRoughness pbr = new MaterialPbrMetallicRoughness();
+        pbr.setBaseColorFactor(new float[] {0.8f, 0.8f, 0.8f, 1f});
+        pbr.setMetallicFactor(0f);
+        pbr.setRoughnessFactor(1f);
+        Material material = new Material();
+        material.setPbrMetallicRoughness(pbr);
+        material.setDoubleSided(true);
+        gltf.addMaterials(material);
+        Node node = new Node();
+        node.setMesh(0);
+        gltf.addNodes(node);
+        Scene scene = new Scene();
+        scene.addNodes(0);
+        gltf.addScenes(scene);
+        gltf.setScene(0);
+        return new GltfModelV2(new GltfAssetV2(gltf, data));
+    }
+
+    private static BufferView createBufferView(int byteOffset, int byteLength, int target) {
+        BufferView bufferView = new BufferView();
+        bufferView.setBuffer(0);
+        bufferView.setByteOffset(byteOffset);
+        bufferView.setByteLength(byteLength);
+        bufferView.setTarget(target);
+        return bufferView;
+    }
+
+    private static Accessor createAccessor(int bufferView, int byteOffset, int componentType, int count, String type) {
+        Accessor accessor = new Accessor();
+        accessor.setBufferView(bufferView);
+        accessor.setByteOffset(byteOffset);
+        accessor.setComponentType(componentType);
+        accessor.setCount(count);
+        accessor.setType(type);
+        return accessor;
+    }
+
+    /**
+     * Area weighted normals of the vertices, the ones without triangle point up.
+     */
+    private static float[] computeNormals(float[] positions, int[] indices, int indexCount) {
+        double[] sums = new double[positions.length];
+        for (int i = 0; i < indexCount; i += 3) {
+            int a = indices[i] * 3, b = indices[i + 1] * 3, c = indices[i + 2] * 3;
+            double ux = positions[b] - positions[a], uy = positions[b + 1] - positions[a + 1], uz = positions[b + 2] - positions[a + 2];
+            double vx = positions[c] - positions[a], vy = positions[c + 1] - positions[a + 1], vz = positions[c + 2] - positions[a + 2];
+            double nx = uy * vz - uz * vy, ny = uz * vx - ux * vz, nz = ux * vy - uy * vx;
+            add(sums, a, nx, ny, nz);
+            add(sums, b, nx, ny, nz);
+            add(sums, c, nx, ny, nz);
+        }
+        float[] normals = new float[positions.length];
+        for (int v = 0; v < normals.length; v += 3) {
+            double length = Math.sqrt(sums[v] * sums[v] + sums[v + 1] * sums[v + 1] + sums[v + 2] * sums[v + 2]);
+            if (length > 0) {
+                normals[v] = (float) (sums[v] / length);
+                normals[v + 1] = (float) (sums[v + 1] / length);
+                normals[v + 2] = (float) (sums[v + 2] / length);
+            } else {
+                normals[v + 1] = 1;
+            }
+        }
+        return normals;
+    }
+
+    private static void add(double[] sums, int offset, double x, double y, double z) {
+        sums[offset] += x;
+        sums[offset + 1] += y;
+        sums[offset + 2] += z;
+    }
+}
@@ -0,0 +1,193 @@
+package me.cxj.j3dtiles.model.v1;
+
+import de.javagl.jgltf.model.*;
+
+import java.util.*;
+
+/**
+ * A feature given to a {@link Tiler}: a triangle mesh in the coordinates of the tileset, z up, and the properties of
+ * the feature written to the batch tables.
+ */
+public class TilerFeature {
+
+    private final double[] positions;
+    private final int[] indices;
+    private final Map<String, Object> properties;
+    /**
+     * minX, minY, minZ, maxX, maxY, maxZ.
+     */
+    private final double[] bounds;
+
+    /**
+     * @param positions x, y, z of each vertex.
+     * @param indices 3 vertices per triangle.
+     * @param properties the values must be json values. May be null.
+     */
+    public TilerFeature(double[] positions, int[] indices, Map<String, Object> properties) {
+        if (positions.length % 3 != 0 || positions.length == 0) {
+            throw new IllegalArgumentException("Invalid positions, there should be 3 numbers per vertex and at least one vertex.");
+        }
+        if (indices.length % 3 != 0) {
+            throw new IllegalArgumentException("Invalid indices, there should be 3 indices per triangle.");
+        }
+        int vertexCount = positions.length / 3;
+        for (int index : indices) {
+            if (index < 0 || index >= vertexCount) {
+                throw new IllegalArgumentException("Invalid index: " + index + ", the vertex count is " + vertexCount + ".");
+            }
+        }
+        this.positions = positions;
+        this.indices = indices;
+        this.properties = properties != null ? properties : Collections.emptyMap();
+        this.bounds = new double[] {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int i = 0; i < positions.length; i += 3) {
+            for (int c = 0; c < 3; ++c) {
+                double v = positions[i + c];
+                if (Double.isNaN(v) || Double.isInfinite(v)) {
+                    throw new IllegalArgumentException("Invalid position of the vertex " + i / 3 + ": " + v + ".");
+                }
+                bounds[c] = Math.min(bounds[c], v);
+                bounds[c + 3] = Math.max(bounds[c + 3], v);
+            }
+        }
+    }
+
+    /**
+     * Make a feature of each triangle primitive of each mesh of the nodes of the default scene, or of all the nodes if
+     * there is no scene. The node transforms are applied, and the y up coordinates of the glTF are converted to z up.
+     * The only property of the features is the name of their node, if any.
+     */
+    public static List<TilerFeature> fromGltf(GltfModel model) {
+        List<NodeModel> roots = new ArrayList<>();
+        if (!model.getSceneModels().isEmpty()) {
+            roots.addAll(model.getSceneModels().get(0).getNodeModels());
+        } else {
+            for (NodeModel node : model.getNodeModels()) {
+                if (node.getParent() == null) {
+                    roots.add(node);
+                }
+            }
+        }
+        List<TilerFeature> features = new ArrayList<>();
+        Deque<NodeModel> stack = new ArrayDeque<>(roots);
+        float[] transform = new float[16];
+        while (!stack.isEmpty()) {
+            NodeModel node = stack.pop();
+            stack.addAll(node.getChildren());
+            if (node.getMeshModels().isEmpty()) {
+                continue;
+            }
+            node.computeGlobalTransform(transform);
+            Map<String, Object> properties = new LinkedHashMap<>();
+            if (node.getName() != null) {
+                properties.put("name", node.getName());
+            }
+            for (MeshModel mesh : node.getMeshModels()) {
+                for (MeshPrimitiveModel primitive : mesh.getMeshPrimitiveModels()) {
+                    TilerFeature feature = fromPrimitive(primitive, transform, properties);
+                    if (feature != null) {
+                        features.add(feature);
+                    }
+                }
+            }
+        }
+        return features;
+    }
+
+    private static TilerFeature fromPrimitive(MeshPrimitiveModel primitive, float[] m, Map<String, Object> properties) {
+        if (primitive.getMode() != GltfConstants.GL_TRIANGLES) {
+            return null;
+        }
+        AccessorModel position = primitive.getAttributes().get("POSITION");
+        if (position == null || position.getCount() == 0) {
+            return null;
+        }
+        AccessorFloatData data = AccessorDatas.createFloat(position);
+        int vertexCount = position.getCount();
+        double[] positions = new double[vertexCount * 3];
+        for (int i = 0; i < vertexCount; ++i) {
+            double x = data.get(i, 0);
+            double y = data.get(i, 1);
+            double z = data.get(i, 2);
+            double tx = m[0] * x + m[4] * y + m[8] * z + m[12];
+            double ty = m[1] * x + m[5] * y + m[9] * z + m[13];
+            double tz = m[2] * x + m[6] * y + m[10] * z + m[14];
+            // y up to z up.
+            positions[i * 3] = tx;
+            positions[i * 3 + 1] = -tz;
+            positions[i * 3 + 2] = ty;
+        }
+        int[] indices;
+        AccessorModel indexAccessor = primitive.getIndices();
+        if (indexAccessor != null) {
+            AccessorData indexData = indexAccessor.getAccessorData();
+            indices = new int[indexAccessor.getCount() / 3 * 3];
+            for (int i = 0; i < indices.length; ++i) {
+                indices[i] = getIndex(indexData, i);
+            }
+        } else {
+            indices = new int[vertexCount / 3 * 3];
+            for (int i = 0; i < indices.length; ++i) {
+                indices[i] = i;
+            }
+        }
+        return new TilerFeature(positions, indices, new LinkedHashMap<>(properties));
+    }
+
+    private static int getIndex(AccessorData data, int index) {
+        if (data instanceof AccessorByteData) {
+            return ((AccessorByteData) data).getInt(index);
+        } else if (data instanceof AccessorShortData) {
+            return ((AccessorShortData) data).getInt(index);
+        } else if (data instanceof AccessorIntData) {
+            return ((AccessorIntData) data).get(index);
+        }
+        throw new IllegalArgumentException("Invalid index accessor of type " + data.getComponentType() + ".");
+    }
+
+    /**
+     * @return the backing array of the positions.
+     */
+    public double[] getPositions() {
+        return positions;
+    }
+
+    /**
+     * @return the backing array of the indices.
+     */
+    public int[] getIndices() {
+        return indices;
+    }
+
+    public Map<String, Object> getProperties() {
+        return properties;
+    }
+
+    public int getVertexCount() {
+        return positions.length / 3;
+    }
+
+    public int getTriangleCount() {
+        return indices.length / 3;
+    }
+
+    /**
+     * @return minX, minY, minZ, maxX, maxY, maxZ.
+     */
+    public double[] getBounds() {
+        return bounds.clone();
+    }
+
+    double getMin(int axis) {
+        return bounds[axis];
+    }
+
+    double getMax(int axis) {
+        return bounds[axis + 3];
+    }
+
+    double getCenter(int axis) {
+        return (bounds[axis] + bounds[axis + 3]) / 2;
+    }
+}
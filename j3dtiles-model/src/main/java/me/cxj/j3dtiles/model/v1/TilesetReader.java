@@ -0,0 +1,362 @@
+package me.cxj.j3dtiles.model.v1;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import me.cxj.j3dtiles.impl.v1.*;
+import me.cxj.j3dtiles.utils.JacksonJsonParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Streams a tileset.json token by token with the Jackson streaming api. The tiles are handed to a {@link TilesetVisitor}
+ * depth first, so only the tiles on the path from the root to the current tile are in memory.
+ * The extensions and the extras are read as trees, the unknown properties are skipped.
+ * An instance is thread safe.
+ */
+public class TilesetReader {
+
+    private final JsonFactory factory;
+
+    public TilesetReader() {
+        this(JacksonJsonParser.getInstance().getFactory());
+    }
+
+    public TilesetReader(JsonFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Read the whole tileset in memory.
+     */
+    public Tileset read(InputStream is) throws IOException {
+        TreeBuilder builder = new TreeBuilder();
+        visit(is, builder);
+        return builder.tileset;
+    }
+
+    public Tileset read(Path path) throws IOException {
+        try (InputStream is = Files.newInputStream(path)) {
+            return read(is);
+        }
+    }
+
+    /**
+     * Stream the tileset to the visitor. The stream is not closed.
+     */
+    public void visit(InputStream is, TilesetVisitor visitor) throws IOException {
+        try (JsonParser parser = factory.createParser(is)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("The tileset json is not an object.");
+            }
+            visitor.visitTileset(readTileset(parser, visitor));
+        }
+    }
+
+    public void visit(Path path, TilesetVisitor visitor) throws IOException {
+        try (InputStream is = Files.newInputStream(path)) {
+            visit(is, visitor);
+        }
+    }
+
+    private static Tileset readTileset(JsonParser parser, TilesetVisitor visitor) throws IOException {
+        Tileset tileset = new Tileset();
+        boolean hasRoot = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (name) {
+                case "asset":
+                    tileset.setAsset(readAsset(parser));
+                    break;
+                case "properties":
+                    tileset.setProperties(readProperties(parser));
+                    break;
+                case "geometricError":
+                    tileset.setGeometricError(readFloat(parser, name));
+                    break;
+                case "root":
+                    if (hasRoot) {
+                        throw new IllegalArgumentException("Duplicate root at " + parser.getCurrentLocation() + ".");
+                    }
+                    hasRoot = true;
+                    readTile(parser, visitor, 0);
+                    break;
+                case "extensionsUsed":
+                    tileset.setExtensionsUsed(readStrings(parser, name));
+                    break;
+                case "extensionsRequired":
+                    tileset.setExtensionsRequired(readStrings(parser, name));
+                    break;
+                default:
+                    readExtensible(parser, name, tileset);
+            }
+        }
+        if (!hasRoot) {
+            throw new IllegalArgumentException("The tileset has no root.");
+        }
+        return tileset;
+    }
+
+    private static void readTile(JsonParser parser, TilesetVisitor visitor, int depth) throws IOException {
+        expect(parser, JsonToken.START_OBJECT, "tile");
+        Tile tile = new Tile();
+        boolean entered = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (name) {
+                case "boundingVolume":
+                    tile.setBoundingVolume(readBoundingVolume(parser));
+                    break;
+                case "viewerRequestVolume":
+                    tile.setViewerRequestVolume(readBoundingVolume(parser));
+                    break;
+                case "geometricError":
+                    tile.setGeometricError(readFloat(parser, name));
+                    break;
+                case "refine":
+                    tile.setRefine(parser.getValueAsString());
+                    break;
+                case "transform":
+                    tile.setTransform(readFloats(parser, name));
+                    break;
+                case "content":
+                    tile.setContent(readContent(parser));
+                    break;
+                case "children":
+                    expect(parser, JsonToken.START_ARRAY, name);
+                    if (entered) {
+                        throw new IllegalArgumentException("Duplicate children at " + parser.getCurrentLocation() + ".");
+                    }
+                    entered = true;
+                    if (visitor.enterTile(tile, depth)) {
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            readTile(parser, visitor, depth + 1);
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                default:
+                    readExtensible(parser, name, tile);
+            }
+        }
+        if (!entered) {
+            visitor.enterTile(tile, depth);
+        }
+        visitor.exitTile(tile, depth);
+    }
+
+    private static TileContent readContent(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_OBJECT, "content");
+        TileContent content = new TileContent();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (name) {
+                case "boundingVolume":
+                    content.setBoundingVolume(readBoundingVolume(parser));
+                    break;
+                // url is the name of the uri before 3D Tiles 1.0.
+                case "uri":
+                case "url":
+                    content.setUri(parser.getValueAsString());
+                    break;
+                default:
+                    readExtensible(parser, name, content);
+            }
+        }
+        return content;
+    }
+
+    private static BoundingVolume readBoundingVolume(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_OBJECT, "boundingVolume");
+        BoundingVolume volume = new BoundingVolume();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (name) {
+                case "box":
+                    volume.setBox(readFloats(parser, name));
+                    break;
+                case "region":
+                    volume.setRegion(readFloats(parser, name));
+                    break;
+                case "sphere":
+                    volume.setSphere(readFloats(parser, name));
+                    break;
+                default:
+                    readExtensible(parser, name, volume);
+            }
+        }
+        return volume;
+    }
+
+    private static Asset readAsset(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_OBJECT, "asset");
+        Asset asset = new Asset();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (name) {
+                case "version":
+                    asset.setVersion(parser.getValueAsString());
+                    break;
+                case "tilesetVersion":
+                    asset.setTilesetVersion(parser.getValueAsString());
+                    break;
+                default:
+                    readExtensible(parser, name, asset);
+            }
+        }
+        return asset;
+    }
+
+    private static Map<String, Schema> readProperties(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_OBJECT, "properties");
+        Map<String, Schema> properties = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String property = parser.getCurrentName();
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT, property);
+            Schema schema = new Schema();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                switch (name) {
+                    case "maximum":
+                        schema.setMaximum(readFloat(parser, name));
+                        break;
+                    case "minimum":
+                        schema.setMinimum(readFloat(parser, name));
+                        break;
+                    default:
+                        readExtensible(parser, name, schema);
+                }
+            }
+            properties.put(property, schema);
+        }
+        return properties;
+    }
+
+    /**
+     * Read the extensions and the extras, and skip any other property.
+     */
+    private static void readExtensible(JsonParser parser, String name, Extensible target) throws IOException {
+        switch (name) {
+            case "extensions":
+                expect(parser, JsonToken.START_OBJECT, name);
+                //noinspection unchecked
+                target.setExtensions((Map<String, Object>) JacksonJsonParser.readValue(parser));
+                break;
+            case "extras":
+                target.setExtras(JacksonJsonParser.readValue(parser));
+                break;
+            default:
+                parser.skipChildren();
+        }
+    }
+
+    private static float readFloat(JsonParser parser, String name) throws IOException {
+        if (!parser.getCurrentToken().isNumeric()) {
+            throw new IllegalArgumentException("Invalid " + name + " at " + parser.getCurrentLocation() + ", it should be a number.");
+        }
+        return parser.getFloatValue();
+    }
+
+    private static float[] readFloats(JsonParser parser, String name) throws IOException {
+        expect(parser, JsonToken.START_ARRAY, name);
+        float[] values = new float[16];
+        int length = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (length == values.length) {
+                values = Arrays.copyOf(values, length * 2);
+            }
+            values[length++] = readFloat(parser, name);
+        }
+        return Arrays.copyOf(values, length);
+    }
+
+    private static List<String> readStrings(JsonParser parser, String name) throws IOException {
+        expect(parser, JsonToken.START_ARRAY, name);
+        List<String> values = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            expect(parser, token, JsonToken.VALUE_STRING, name);
+            values.add(parser.getText());
+        }
+        return values;
+    }
+
+    private static void expect(JsonParser parser, JsonToken expected, String name) {
+        expect(parser, parser.getCurrentToken(), expected, name);
+    }
+
+    private static void expect(JsonParser parser, JsonToken token, JsonToken expected, String name) {
+        if (token != expected) {
+            throw new IllegalArgumentException("Invalid " + name + " at " + parser.getCurrentLocation() + ", expected " + expected + " but got " + token + ".");
+        }
+    }
+
+    /**
+     * Rebuild the tree of tiles.
+     */
+    private static class TreeBuilder implements TilesetVisitor {
+
+        private final Deque<Tile> parents = new ArrayDeque<>();
+        private Tile root;
+        private Tileset tileset;
+
+        @Override
+        public boolean enterTile(Tile tile, int depth) {
+            parents.push(tile);
+            return true;
+        }
+
+        @Override
+        public void exitTile(Tile tile, int depth) {
+            parents.pop();
+            Tile parent = parents.peek();
+            if (parent == null) {
+                root = tile;
+            } else {
+                // Tile.addChildren copies the list on each call.
+                List<Tile> children = parent.getChildren();
+                if (children == null) {
+                    children = new ArrayList<>();
+                    parent.setChildren(children);
+                }
+                children.add(tile);
+            }
+        }
+
+        @Override
+        public void visitTileset(Tileset tileset) {
+            tileset.setRoot(root);
+            this.tileset = tileset;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package me.cxj.j3dtiles.model.v1;
+
+import me.cxj.j3dtiles.impl.v1.Tile;
+import me.cxj.j3dtiles.impl.v1.TileContent;
+import me.cxj.j3dtiles.impl.v1.Tileset;
+import me.cxj.j3dtiles.utils.JacksonJsonParser;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Splits the tree of a tileset into external tilesets, so no tileset.json exceeds a budget of tiles, of bytes or of
+ * depth, and the root one loads in a bounded time whatever the size of the tree.
+ * <p>
+ * Each file is filled breadth first from its root: a tile is expanded with its children while they fit in the budget,
+ * otherwise the tile is turned into a stub whose content is the uri of a new tileset rooted at a copy of the tile.
+ * The root of a file is always expanded, so a tile with more children than the budget still gets them in its file.
+ * The leaves are never moved to an external tileset on their own.
+ * <p>
+ * The external tilesets are written next to the root one, so the relative uris of the contents stay valid. They are
+ * written on the executor if any.
+ */
+public class TilesetSplitter {
+
+    private int maxTilesPerFile = 10000;
+    private long maxBytesPerFile = Long.MAX_VALUE;
+    private int maxDepthPerFile = Integer.MAX_VALUE;
+    private ExecutorService executor;
+    private JacksonJsonParser parser = JacksonJsonParser.getInstance();
+
+    public int getMaxTilesPerFile() {
+        return maxTilesPerFile;
+    }
+
+    public void setMaxTilesPerFile(int maxTilesPerFile) {
+        if (maxTilesPerFile < 1) {
+            throw new IllegalArgumentException("Invalid max tiles per file: " + maxTilesPerFile + ".");
+        }
+        this.maxTilesPerFile = maxTilesPerFile;
+    }
+
+    public long getMaxBytesPerFile() {
+        return maxBytesPerFile;
+    }
+
+    /**
+     * The bytes of a file are estimated by the sum of the json of its tiles written on their own.
+     */
+    public void setMaxBytesPerFile(long maxBytesPerFile) {
+        if (maxBytesPerFile < 1) {
+            throw new IllegalArgumentException("Invalid max bytes per file: " + maxBytesPerFile + ".");
+        }
+        this.maxBytesPerFile = maxBytesPerFile;
+    }
+
+    public int getMaxDepthPerFile() {
+        return maxDepthPerFile;
+    }
+
+    /**
+     * The max depth of a tile in a file, 0 for the root of the file.
+     */
+    public void setMaxDepthPerFile(int maxDepthPerFile) {
+        if (maxDepthPerFile < 1) {
+            throw new IllegalArgumentException("Invalid max depth per file: " + maxDepthPerFile + ".");
+        }
+        this.maxDepthPerFile = maxDepthPerFile;
+    }
+
+    /**
+     * @return the executor writing the files, null to write them on the calling thread.
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public JacksonJsonParser getParser() {
+        return parser;
+    }
+
+    public void setParser(JacksonJsonParser parser) {
+        if (parser == null) {
+            throw new NullPointerException("Invalid value for parser: null, may not be null");
+        }
+        this.parser = parser;
+    }
+
+    /**
+     * Split the tileset and write the files.
+     * @param path the root tileset.json, the external ones are written in the same directory.
+     * @return the tilesets by the name of their file, the root one first.
+     */
+    public Map<String, Tileset> split(Tileset tileset, Path path) throws IOException {
+        Map<String, Tileset> tilesets = split(tileset, path.getFileName().toString());
+        Path directory = path.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        write(tilesets, directory);
+        return tilesets;
+    }
+
+    /**
+     * Split the tileset in memory. The tiles moved to an external tileset are replaced by stubs in place, so the tileset
+     * is modified.
+     * @param name the name of the file of the root tileset, the external ones are named after it, e.g. tileset_1.json
+     *             for tileset.json.
+     * @return the tilesets by the name of their file, the root one first.
+     */
+    public Map<String, Tileset> split(Tileset tileset, String name) {
+        if (tileset.getRoot() == null) {
+            throw new IllegalArgumentException("The tileset has no root.");
+        }
+        String prefix = name.endsWith(".json") ? name.substring(0, name.length() - 5) : name;
+        Map<String, Tileset> tilesets = new LinkedHashMap<>();
+        tilesets.put(name, tileset);
+        Map<Tile, Long> sizes = maxBytesPerFile != Long.MAX_VALUE ? new IdentityHashMap<>() : null;
+        Deque<Tileset> pending = new ArrayDeque<>();
+        pending.add(tileset);
+        Deque<Entry> queue = new ArrayDeque<>();
+        while (!pending.isEmpty()) {
+            Tile root = pending.poll().getRoot();
+            int tiles = 1;
+            long bytes = size(root, sizes);
+            queue.add(new Entry(root, 0, root.getRefine()));
+            while (!queue.isEmpty()) {
+                Entry entry = queue.poll();
+                Tile tile = entry.tile;
+                List<Tile> children = tile.getChildren();
+                if (children == null || children.isEmpty()) {
+                    continue;
+                }
+                long childBytes = 0;
+                if (sizes != null) {
+                    for (Tile child : children) {
+                        childBytes += size(child, sizes);
+                    }
+                }
+                boolean fits = entry.depth < maxDepthPerFile
+                        && tiles + children.size() <= maxTilesPerFile
+                        && bytes + childBytes <= maxBytesPerFile;
+                if (tile == root || fits) {
+                    tiles += children.size();
+                    bytes += childBytes;
+                    for (Tile child : children) {
+                        queue.add(new Entry(child, entry.depth + 1, child.getRefine() != null ? child.getRefine() : entry.refine));
+                    }
+                } else {
+                    String uri = prefix + "_" + tilesets.size() + ".json";
+                    Tileset external = externalize(tileset, tile, entry.refine, uri);
+                    tilesets.put(uri, external);
+                    pending.add(external);
+                }
+            }
+        }
+        return tilesets;
+    }
+
+    /**
+     * Move the content and the children of the tile to a new tileset, and point the content of the tile to it.
+     * The transform stays on the stub, and applies to the root of the external tileset.
+     */
+    private static Tileset externalize(Tileset tileset, Tile tile, String refine, String uri) {
+        Tile root = new Tile();
+        root.setBoundingVolume(tile.getBoundingVolume());
+        root.setViewerRequestVolume(tile.getViewerRequestVolume());
+        root.setGeometricError(tile.getGeometricError());
+        // The root of a tileset can not inherit the refine of its parent.
+        root.setRefine(refine);
+        root.setContent(tile.getContent());
+        root.setChildren(tile.getChildren());
+        root.setExtensions(tile.getExtensions());
+        root.setExtras(tile.getExtras());
+        Tileset external = new Tileset();
+        external.setAsset(tileset.getAsset());
+        if (tileset.getProperties() != null) {
+            external.setProperties(tileset.getProperties());
+        }
+        external.setGeometricError(tile.getGeometricError());
+        if (tileset.getExtensionsUsed() != null) {
+            external.setExtensionsUsed(tileset.getExtensionsUsed());
+        }
+        if (tileset.getExtensionsRequired() != null) {
+            external.setExtensionsRequired(tileset.getExtensionsRequired());
+        }
+        external.setRoot(root);
+        TileContent content = new TileContent();
+        content.setUri(uri);
+        tile.setContent(content);
+        tile.setChildren(null);
+        return external;
+    }
+
+    /**
+     * The json of the tile without its children. It also estimates the stub replacing the tile, whose uri is at most a
+     * bit longer.
+     */
+    private long size(Tile tile, Map<Tile, Long> sizes) {
+        if (sizes == null) {
+            return 0;
+        }
+        Long size = sizes.get(tile);
+        if (size == null) {
+            CountingOutputStream os = new CountingOutputStream();
+            try (TilesetWriter writer = new TilesetWriter(os, parser)) {
+                writer.startTile(tile);
+                writer.endTile(tile);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            size = os.count;
+            sizes.put(tile, size);
+        }
+        return size;
+    }
+
+    /**
+     * Write the tilesets in the directory, on the executor if any.
+     */
+    public void write(Map<String, Tileset> tilesets, Path directory) throws IOException {
+        if (executor == null) {
+            for (Map.Entry<String, Tileset> entry : tilesets.entrySet()) {
+                write(entry.getValue(), directory.resolve(entry.getKey()));
+            }
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (Map.Entry<String, Tileset> entry : tilesets.entrySet()) {
+                Path path = directory.resolve(entry.getKey());
+                Tileset tileset = entry.getValue();
+                futures.add(executor.submit(() -> {
+                    write(tileset, path);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing the tilesets.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private void write(Tileset tileset, Path path) throws IOException {
+        try (OutputStream os = Files.newOutputStream(path);
+             TilesetWriter writer = new TilesetWriter(os, parser)) {
+            writer.write(tileset);
+        }
+    }
+
+    private static class Entry {
+
+        private final Tile tile;
+        private final int depth;
+        /**
+         * The refine of the tile or inherited from its ancestors.
+         */
+        private final String refine;
+
+        private Entry(Tile tile, int depth, String refine) {
+            this.tile = tile;
+            this.depth = depth;
+            this.refine = refine;
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            ++count;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
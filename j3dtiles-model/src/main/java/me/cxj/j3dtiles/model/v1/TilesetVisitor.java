@@ -0,0 +1,33 @@
+package me.cxj.j3dtiles.model.v1;
+
+import me.cxj.j3dtiles.impl.v1.Tile;
+import me.cxj.j3dtiles.impl.v1.Tileset;
+
+/**
+ * Receives the tiles of a tileset.json depth first while it is streamed by a {@link TilesetReader}.
+ * The children of the tiles are never set, a child is visited between the enter and the exit of its parent.
+ */
+public interface TilesetVisitor {
+
+    /**
+     * Called before the children of the tile. The properties written after the children in the json are not set yet,
+     * they are by the time of {@link #exitTile(Tile, int)}.
+     * @param depth 0 for the root.
+     * @return false to skip the children.
+     */
+    default boolean enterTile(Tile tile, int depth) {
+        return true;
+    }
+
+    /**
+     * Called after the children of the tile, with all its properties set.
+     */
+    default void exitTile(Tile tile, int depth) {
+    }
+
+    /**
+     * Called once all the tiles are visited, with all the properties of the tileset except the root.
+     */
+    default void visitTileset(Tileset tileset) {
+    }
+}
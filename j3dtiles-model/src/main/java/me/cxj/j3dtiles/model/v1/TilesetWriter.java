@@ -0,0 +1,373 @@
+package me.cxj.j3dtiles.model.v1;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import me.cxj.j3dtiles.impl.v1.*;
+import me.cxj.j3dtiles.utils.JacksonJsonParser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+/**
+ * Writes a tileset.json token by token with the Jackson streaming api, while the tiles are pushed depth first with
+ * {@link #startTile(Tile)} and {@link #endTile(Tile)}. Only the tiles on the path from the root to the current tile are
+ * kept. The children of the pushed tiles are ignored, the tree is made of the calls.
+ * <p>
+ * The properties of the tileset may be written before the root by {@link #startTileset(Tileset)}, or after it by
+ * {@link #endTileset(Tileset)}. As a {@link TilesetVisitor}, the writer copies the tileset streamed by a {@link TilesetReader}.
+ * The stream is not closed.
+ */
+public class TilesetWriter implements TilesetVisitor, Closeable {
+
+    private static final int BOUNDING_VOLUME = 1;
+    private static final int VIEWER_REQUEST_VOLUME = 1 << 1;
+    private static final int GEOMETRIC_ERROR = 1 << 2;
+    private static final int REFINE = 1 << 3;
+    private static final int TRANSFORM = 1 << 4;
+    private static final int CONTENT = 1 << 5;
+    private static final int EXTENSIONS = 1 << 6;
+    private static final int EXTRAS = 1 << 7;
+    private static final int ASSET = 1 << 8;
+    private static final int PROPERTIES = 1 << 9;
+    private static final int EXTENSIONS_USED = 1 << 10;
+    private static final int EXTENSIONS_REQUIRED = 1 << 11;
+
+    private final JsonGenerator generator;
+    private final JacksonJsonParser parser;
+    private final Deque<OpenTile> openTiles = new ArrayDeque<>();
+    private boolean started;
+    private boolean rootWritten;
+    private boolean finished;
+    /**
+     * The properties of the tileset written by {@link #startTileset(Tileset)}.
+     */
+    private int tilesetWritten;
+
+    public TilesetWriter(OutputStream os) throws IOException {
+        this(os, JacksonJsonParser.getInstance());
+    }
+
+    /**
+     * @param parser writes the extensions and the extras.
+     */
+    public TilesetWriter(OutputStream os, JacksonJsonParser parser) throws IOException {
+        this.parser = parser;
+        this.generator = parser.getFactory().createGenerator(os, JsonEncoding.UTF8);
+        this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    private static class OpenTile {
+
+        private final Tile tile;
+        private final int written;
+        private boolean hasChildren;
+
+        private OpenTile(Tile tile, int written) {
+            this.tile = tile;
+            this.written = written;
+        }
+    }
+
+    private void ensureStarted() throws IOException {
+        if (finished) {
+            throw new IllegalStateException("The tileset is already written.");
+        }
+        if (!started) {
+            generator.writeStartObject();
+            started = true;
+        }
+    }
+
+    /**
+     * Write the properties of the tileset except the root. It is only allowed before the root.
+     */
+    public void startTileset(Tileset tileset) throws IOException {
+        ensureStarted();
+        if (rootWritten || tilesetWritten != 0) {
+            throw new IllegalStateException("The tileset should be started before the root.");
+        }
+        tilesetWritten = writeTileset(tileset, 0);
+    }
+
+    /**
+     * Write the properties of the tileset not written by {@link #startTileset(Tileset)}, except the root, and end the json.
+     */
+    public void endTileset(Tileset tileset) throws IOException {
+        ensureStarted();
+        if (!rootWritten) {
+            throw new IllegalStateException("The tileset has no root.");
+        }
+        if (!openTiles.isEmpty()) {
+            throw new IllegalStateException(openTiles.size() + " tiles are not ended.");
+        }
+        writeTileset(tileset, tilesetWritten);
+        generator.writeEndObject();
+        generator.flush();
+        finished = true;
+    }
+
+    /**
+     * Start a child of the current tile, or the root if there is none. Its properties are written except the children.
+     */
+    public void startTile(Tile tile) throws IOException {
+        ensureStarted();
+        OpenTile parent = openTiles.peek();
+        if (parent == null) {
+            if (rootWritten) {
+                throw new IllegalStateException("The tileset has already a root.");
+            }
+            generator.writeFieldName("root");
+            rootWritten = true;
+        } else if (!parent.hasChildren) {
+            generator.writeArrayFieldStart("children");
+            parent.hasChildren = true;
+        }
+        generator.writeStartObject();
+        openTiles.push(new OpenTile(tile, writeTile(tile, 0)));
+    }
+
+    /**
+     * End the current tile. The properties set since it was started are written after its children.
+     */
+    public void endTile(Tile tile) throws IOException {
+        OpenTile current = openTiles.peek();
+        if (current == null || current.tile != tile) {
+            throw new IllegalStateException("The tile is not the current one.");
+        }
+        openTiles.pop();
+        if (current.hasChildren) {
+            generator.writeEndArray();
+        }
+        writeTile(tile, current.written);
+        generator.writeEndObject();
+    }
+
+    /**
+     * Write the whole tileset in memory.
+     */
+    public void write(Tileset tileset) throws IOException {
+        startTileset(tileset);
+        if (tileset.getRoot() != null) {
+            writeTree(tileset.getRoot());
+        }
+        endTileset(tileset);
+    }
+
+    private void writeTree(Tile tile) throws IOException {
+        startTile(tile);
+        List<Tile> children = tile.getChildren();
+        if (children != null) {
+            for (Tile child : children) {
+                writeTree(child);
+            }
+        }
+        endTile(tile);
+    }
+
+    /**
+     * Write the tileset with the tiles of the iterator, e.g. produced on the fly, instead of its root.
+     * @param tiles the tiles depth first, a parent before its children. Their children are ignored.
+     * @param depth the depth of a tile, 0 for the root. It is at most one more than the depth of the previous tile.
+     */
+    public void write(Tileset tileset, Iterator<? extends Tile> tiles, ToIntFunction<? super Tile> depth) throws IOException {
+        startTileset(tileset);
+        while (tiles.hasNext()) {
+            Tile tile = tiles.next();
+            int d = depth.applyAsInt(tile);
+            if (d < 0 || d > openTiles.size()) {
+                throw new IllegalArgumentException("Invalid depth " + d + " after a tile of depth " + (openTiles.size() - 1) + ".");
+            }
+            while (openTiles.size() > d) {
+                endTile(openTiles.peek().tile);
+            }
+            startTile(tile);
+        }
+        while (!openTiles.isEmpty()) {
+            endTile(openTiles.peek().tile);
+        }
+        endTileset(tileset);
+    }
+
+    @Override
+    public boolean enterTile(Tile tile, int depth) {
+        try {
+            startTile(tile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public void exitTile(Tile tile, int depth) {
+        try {
+            endTile(tile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void visitTileset(Tileset tileset) {
+        try {
+            endTileset(tileset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write the properties of the tileset not in the mask, except the root.
+     * @return the properties written, including the mask.
+     */
+    private int writeTileset(Tileset tileset, int mask) throws IOException {
+        if ((mask & ASSET) == 0 && tileset.getAsset() != null) {
+            generator.writeFieldName("asset");
+            writeAsset(tileset.getAsset());
+            mask |= ASSET;
+        }
+        if ((mask & PROPERTIES) == 0 && tileset.getProperties() != null) {
+            generator.writeObjectFieldStart("properties");
+            for (Map.Entry<String, Schema> entry : tileset.getProperties().entrySet()) {
+                generator.writeObjectFieldStart(entry.getKey());
+                Schema schema = entry.getValue();
+                if (schema.getMaximum() != null) {
+                    generator.writeNumberField("maximum", schema.getMaximum());
+                }
+                if (schema.getMinimum() != null) {
+                    generator.writeNumberField("minimum", schema.getMinimum());
+                }
+                writeExtensible(schema, 0);
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+            mask |= PROPERTIES;
+        }
+        if ((mask & GEOMETRIC_ERROR) == 0 && tileset.getGeometricError() != null) {
+            generator.writeNumberField("geometricError", tileset.getGeometricError());
+            mask |= GEOMETRIC_ERROR;
+        }
+        if ((mask & EXTENSIONS_USED) == 0 && tileset.getExtensionsUsed() != null) {
+            writeStrings("extensionsUsed", tileset.getExtensionsUsed());
+            mask |= EXTENSIONS_USED;
+        }
+        if ((mask & EXTENSIONS_REQUIRED) == 0 && tileset.getExtensionsRequired() != null) {
+            writeStrings("extensionsRequired", tileset.getExtensionsRequired());
+            mask |= EXTENSIONS_REQUIRED;
+        }
+        return writeExtensible(tileset, mask);
+    }
+
+    /**
+     * Write the properties of the tile not in the mask, except the children.
+     * @return the properties written, including the mask.
+     */
+    private int writeTile(Tile tile, int mask) throws IOException {
+        if ((mask & BOUNDING_VOLUME) == 0 && tile.getBoundingVolume() != null) {
+            generator.writeFieldName("boundingVolume");
+            writeBoundingVolume(tile.getBoundingVolume());
+            mask |= BOUNDING_VOLUME;
+        }
+        if ((mask & VIEWER_REQUEST_VOLUME) == 0 && tile.getViewerRequestVolume() != null) {
+            generator.writeFieldName("viewerRequestVolume");
+            writeBoundingVolume(tile.getViewerRequestVolume());
+            mask |= VIEWER_REQUEST_VOLUME;
+        }
+        if ((mask & GEOMETRIC_ERROR) == 0 && tile.getGeometricError() != null) {
+            generator.writeNumberField("geometricError", tile.getGeometricError());
+            mask |= GEOMETRIC_ERROR;
+        }
+        if ((mask & REFINE) == 0 && tile.getRefine() != null) {
+            generator.writeStringField("refine", tile.getRefine());
+            mask |= REFINE;
+        }
+        if ((mask & TRANSFORM) == 0 && tile.getTransform() != null) {
+            writeFloats("transform", tile.getTransform());
+            mask |= TRANSFORM;
+        }
+        if ((mask & CONTENT) == 0 && tile.getContent() != null) {
+            TileContent content = tile.getContent();
+            generator.writeObjectFieldStart("content");
+            if (content.getBoundingVolume() != null) {
+                generator.writeFieldName("boundingVolume");
+                writeBoundingVolume(content.getBoundingVolume());
+            }
+            if (content.getUri() != null) {
+                generator.writeStringField("uri", content.getUri());
+            }
+            writeExtensible(content, 0);
+            generator.writeEndObject();
+            mask |= CONTENT;
+        }
+        return writeExtensible(tile, mask);
+    }
+
+    private void writeAsset(Asset asset) throws IOException {
+        generator.writeStartObject();
+        if (asset.getVersion() != null) {
+            generator.writeStringField("version", asset.getVersion());
+        }
+        if (asset.getTilesetVersion() != null) {
+            generator.writeStringField("tilesetVersion", asset.getTilesetVersion());
+        }
+        writeExtensible(asset, 0);
+        generator.writeEndObject();
+    }
+
+    private void writeBoundingVolume(BoundingVolume volume) throws IOException {
+        generator.writeStartObject();
+        if (volume.getBox() != null) {
+            writeFloats("box", volume.getBox());
+        }
+        if (volume.getRegion() != null) {
+            writeFloats("region", volume.getRegion());
+        }
+        if (volume.getSphere() != null) {
+            writeFloats("sphere", volume.getSphere());
+        }
+        writeExtensible(volume, 0);
+        generator.writeEndObject();
+    }
+
+    private int writeExtensible(Extensible extensible, int mask) throws IOException {
+        if ((mask & EXTENSIONS) == 0 && extensible.getExtensions() != null) {
+            generator.writeFieldName("extensions");
+            parser.writeValue(generator, extensible.getExtensions());
+            mask |= EXTENSIONS;
+        }
+        if ((mask & EXTRAS) == 0 && extensible.getExtras() != null) {
+            generator.writeFieldName("extras");
+            parser.writeValue(generator, extensible.getExtras());
+            mask |= EXTRAS;
+        }
+        return mask;
+    }
+
+    private void writeFloats(String name, float[] values) throws IOException {
+        generator.writeArrayFieldStart(name);
+        for (float value : values) {
+            generator.writeNumber(value);
+        }
+        generator.writeEndArray();
+    }
+
+    private void writeStrings(String name, List<String> values) throws IOException {
+        generator.writeArrayFieldStart(name);
+        for (String value : values) {
+            generator.writeString(value);
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * Flush the json written so far. The stream is not closed.
+     */
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+}
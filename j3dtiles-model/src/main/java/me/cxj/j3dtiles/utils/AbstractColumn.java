@@ -0,0 +1,126 @@
+package me.cxj.j3dtiles.utils;
+
+import java.lang.reflect.Array;
+
+/**
+ * A growable column of fixed size tuples, stored in a flat primitive array.
+ */
+public abstract class AbstractColumn {
+
+    protected final int components;
+    protected int size;
+
+    protected AbstractColumn(int components) {
+        if (components <= 0) {
+            throw new IllegalArgumentException("Invalid component count: " + components + ".");
+        }
+        this.components = components;
+    }
+
+    protected abstract Object getArray();
+
+    protected abstract void setArray(Object array);
+
+    protected abstract void fillZero(int fromIndex, int toIndex);
+
+    protected static int checkWrapped(int arrayLength, int components) {
+        if (arrayLength % components != 0) {
+            throw new IllegalArgumentException("The array length " + arrayLength + " is not a multiple of " + components + ".");
+        }
+        return arrayLength / components;
+    }
+
+    protected void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    protected void checkScalar() {
+        if (components != 1) {
+            throw new IllegalStateException("Not a scalar column, the component count is " + components + ".");
+        }
+    }
+
+    protected void checkRange(int from, int count) {
+        if (from < 0 || count < 0 || from + count > size) {
+            throw new IndexOutOfBoundsException("From: " + from + ", Count: " + count + ", Size: " + size);
+        }
+    }
+
+    protected void checkTuple(int length) {
+        if (length != components) {
+            throw new IllegalArgumentException("Mismatched tuple length. Expect " + components + ", " + length + " in fact.");
+        }
+    }
+
+    public void ensureCapacity(int capacity) {
+        Object array = getArray();
+        int length = Array.getLength(array);
+        if (capacity * components <= length) {
+            return;
+        }
+        int newLength = Math.max(capacity * components, Math.max(length + (length >> 1), 8 * components));
+        Object newArray = Array.newInstance(array.getClass().getComponentType(), newLength);
+        System.arraycopy(array, 0, newArray, 0, size * components);
+        setArray(newArray);
+    }
+
+    /**
+     * Grow or shrink the column. New tuples are zero.
+     */
+    public void resize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Invalid size: " + size + ".");
+        }
+        ensureCapacity(size);
+        if (size > this.size) {
+            fillZero(this.size * components, size * components);
+        }
+        this.size = size;
+    }
+
+    protected void checkComponent(int component) {
+        if (component < 0 || component >= components) {
+            throw new IndexOutOfBoundsException("Component: " + component + ", Components: " + components);
+        }
+    }
+
+    protected int appendTuple() {
+        ensureCapacity(size + 1);
+        return size++;
+    }
+
+    protected void insertTuple(int index) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        ensureCapacity(size + 1);
+        Object array = getArray();
+        System.arraycopy(array, index * components, array, (index + 1) * components, (size - index) * components);
+        ++size;
+    }
+
+    public void remove(int index) {
+        checkIndex(index);
+        Object array = getArray();
+        System.arraycopy(array, (index + 1) * components, array, index * components, (size - index - 1) * components);
+        --size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getComponents() {
+        return components;
+    }
+}
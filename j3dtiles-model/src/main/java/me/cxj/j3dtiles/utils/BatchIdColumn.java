@@ -0,0 +1,299 @@
+package me.cxj.j3dtiles.utils;
+
+import me.cxj.j3dtiles.impl.v1.ComponentType;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A growable column of unsigned 32 bits batch ids backed by a flat int[]. The smallest and the largest id are
+ * tracked while the column is modified, so the narrowest component type is known without scanning the ids.
+ * Only removing or overwriting an extreme id makes the next query rescan the column.
+ */
+public class BatchIdColumn extends AbstractColumn {
+
+    private int[] data;
+    private long min;
+    private long max;
+    /**
+     * Whether min and max have to be recomputed, after an extreme id is removed or overwritten.
+     */
+    private boolean stale;
+
+    public BatchIdColumn() {
+        this(0);
+    }
+
+    public BatchIdColumn(int capacity) {
+        super(1);
+        this.data = new int[capacity];
+        resetRange();
+    }
+
+    /**
+     * Use the array as the backing storage of a full column, without copying.
+     * The array must not be modified afterwards except through the column.
+     */
+    public static BatchIdColumn wrap(int[] data) {
+        BatchIdColumn column = new BatchIdColumn();
+        column.data = data;
+        column.size = data.length;
+        column.stale = true;
+        return column;
+    }
+
+    public static BatchIdColumn of(List<? extends Number> list) {
+        BatchIdColumn column = new BatchIdColumn(list.size());
+        for (Number value : list) {
+            column.add(value.longValue());
+        }
+        return column;
+    }
+
+    /**
+     * Decode length ids of the component type from the little endian buffer, starting from its position.
+     * The position of the buffer is not changed.
+     */
+    public static BatchIdColumn read(ByteBuffer buffer, ComponentType componentType, int length) {
+        ByteBuffer view = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int[] data = new int[length];
+        int position = view.position();
+        switch (componentType) {
+            case UNSIGNED_BYTE:
+                for (int i = 0; i < length; ++i) {
+                    data[i] = view.get(position + i) & 0xFF;
+                }
+                break;
+            case UNSIGNED_SHORT:
+                for (int i = 0; i < length; ++i) {
+                    data[i] = view.getShort(position + 2 * i) & 0xFFFF;
+                }
+                break;
+            case UNSIGNED_INT:
+                view.asIntBuffer().get(data);
+                break;
+            default:
+                throw new IllegalArgumentException("Valid component types of the property 'BATCH_ID' are uint8, uint16 (default), and uint32.");
+        }
+        return wrap(data);
+    }
+
+    private static int checkId(long id) {
+        if (id < 0 || id > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("Invalid batch id: " + id + ", it should be an unsigned 32 bits integer.");
+        }
+        return (int) id;
+    }
+
+    private void resetRange() {
+        min = Long.MAX_VALUE;
+        max = -1;
+        stale = false;
+    }
+
+    private void include(int id) {
+        long value = id & 0xFFFFFFFFL;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    private void exclude(int id) {
+        long value = id & 0xFFFFFFFFL;
+        if (value == min || value == max) {
+            stale = true;
+        }
+    }
+
+    private void updateRange() {
+        if (stale) {
+            resetRange();
+            for (int i = 0; i < size; ++i) {
+                include(data[i]);
+            }
+        }
+    }
+
+    @Override
+    protected Object getArray() {
+        return data;
+    }
+
+    @Override
+    protected void setArray(Object array) {
+        data = (int[]) array;
+    }
+
+    @Override
+    protected void fillZero(int fromIndex, int toIndex) {
+        Arrays.fill(data, fromIndex, toIndex, 0);
+        if (fromIndex < toIndex) {
+            include(0);
+        }
+    }
+
+    public int get(int index) {
+        checkIndex(index);
+        return data[index];
+    }
+
+    public long getUnsigned(int index) {
+        return get(index) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @return the old id.
+     */
+    public long set(int index, long id) {
+        checkIndex(index);
+        int value = checkId(id);
+        int old = data[index];
+        if (old != value) {
+            exclude(old);
+            data[index] = value;
+            include(value);
+        }
+        return old & 0xFFFFFFFFL;
+    }
+
+    public int add(long id) {
+        int value = checkId(id);
+        int index = appendTuple();
+        data[index] = value;
+        include(value);
+        return index;
+    }
+
+    public void insert(int index, long id) {
+        int value = checkId(id);
+        insertTuple(index);
+        data[index] = value;
+        include(value);
+    }
+
+    /**
+     * Append count ids from src, read as unsigned.
+     * @return the index of the first appended id.
+     */
+    public int addAll(int[] src, int srcOffset, int count) {
+        int from = size;
+        ensureCapacity(size + count);
+        System.arraycopy(src, srcOffset, data, from, count);
+        for (int i = from; i < from + count; ++i) {
+            include(data[i]);
+        }
+        size += count;
+        return from;
+    }
+
+    @Override
+    public void remove(int index) {
+        checkIndex(index);
+        exclude(data[index]);
+        super.remove(index);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        resetRange();
+    }
+
+    /**
+     * @return the smallest id, or -1 if the column is empty.
+     */
+    public long getMin() {
+        updateRange();
+        return size != 0 ? min : -1;
+    }
+
+    /**
+     * @return the largest id, or -1 if the column is empty.
+     */
+    public long getMax() {
+        updateRange();
+        return size != 0 ? max : -1;
+    }
+
+    /**
+     * @return the narrowest component type able to hold all the ids.
+     */
+    public ComponentType getComponentType() {
+        long max = getMax();
+        if (max > 0xFFFF) {
+            return ComponentType.UNSIGNED_INT;
+        } else if (max > 0xFF) {
+            return ComponentType.UNSIGNED_SHORT;
+        } else {
+            return ComponentType.UNSIGNED_BYTE;
+        }
+    }
+
+    /**
+     * @return the backing array, only the first size() elements are valid.
+     */
+    public int[] array() {
+        return data;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    /**
+     * @return a read only buffer view of the ids. The values are unsigned.
+     */
+    public IntBuffer asBuffer() {
+        return IntBuffer.wrap(data, 0, size).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a list view of the ids as unsigned values.
+     */
+    public List<Long> asList() {
+        return new IdList();
+    }
+
+    private class IdList extends AbstractList<Long> implements RandomAccess {
+
+        @Override
+        public Long get(int index) {
+            return getUnsigned(index);
+        }
+
+        @Override
+        public Long set(int index, Long element) {
+            return BatchIdColumn.this.set(index, element);
+        }
+
+        @Override
+        public void add(int index, Long element) {
+            insert(index, element);
+        }
+
+        @Override
+        public Long remove(int index) {
+            long old = getUnsigned(index);
+            BatchIdColumn.this.remove(index);
+            return old;
+        }
+
+        @Override
+        public void clear() {
+            BatchIdColumn.this.clear();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -3,36 +3,75 @@ package me.cxj.j3dtiles.utils;
 import me.cxj.j3dtiles.impl.v1.ComponentType;
 import me.cxj.j3dtiles.impl.v1.ContainerType;
 
-import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import static me.cxj.j3dtiles.utils.CommonUtils.addReference;
 import static me.cxj.j3dtiles.utils.CommonUtils.calcPadding;
 
 /**
  * Created by vipcxj on 2018/11/13.
+ *
+ * The binary body is written into a growable little endian buffer. The typed overloads copy whole arrays at once.
  */
 public class BinaryBodyHelper implements Closeable {
 
     private final Map<String, Object> jsonHeader;
-    private final ByteArrayOutputStream bos;
-    private final LittleEndianDataOutputStream dos;
+    /**
+     * The binary body written so far, from 0 to the position.
+     */
+    private ByteBuffer buffer;
     private int size = 0;
+    private final BufferArena arena;
 
     public BinaryBodyHelper() {
-        this.jsonHeader = new HashMap<>();
-        this.bos = new ByteArrayOutputStream();
-        this.dos = new LittleEndianDataOutputStream(this.bos);
+        this(new HashMap<>());
     }
 
     public BinaryBodyHelper(Map<String, Object> jsonHeader) {
+        this(jsonHeader, null);
+    }
+
+    /**
+     * @param arena where the scratch buffer comes from and goes back to on {@link #close()}, or null.
+     */
+    public BinaryBodyHelper(Map<String, Object> jsonHeader, BufferArena arena) {
         this.jsonHeader = jsonHeader;
-        this.bos = new ByteArrayOutputStream();
-        this.dos = new LittleEndianDataOutputStream(this.bos);
+        this.arena = arena;
+        this.buffer = allocate(256);
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        if (arena != null) {
+            return arena.acquire(capacity);
+        }
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void ensureCapacity(long bytes) {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        long required = buffer.position() + bytes;
+        if (required > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too big binary body: " + required + " bytes.");
+        }
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, 2L * buffer.capacity()));
+        ByteBuffer grown = allocate(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        if (arena != null) {
+            arena.release(buffer);
+        }
+        buffer = grown;
     }
 
     public void writeData(String property, List data, ComponentType componentType, ContainerType containerType, boolean feature) throws IOException {
@@ -47,53 +86,54 @@ public class BinaryBodyHelper implements Closeable {
         }
         int writes = 0;
         int unit = containerType.getSize();
+        ensureCapacity((long) data.size() * width * unit);
         if (unit == 1) {
             switch (componentType) {
                 case BYTE:
                     for (Object el : data) {
-                        dos.write(TypeUtils.toByte(el));
+                        buffer.put(TypeUtils.toByte(el));
                         writes += width;
                     }
                     break;
                 case UNSIGNED_BYTE:
                     for (Object el : data) {
-                        dos.write(TypeUtils.toUnsignedByte(el));
+                        buffer.put(TypeUtils.toUnsignedByte(el));
                         writes += width;
                     }
                     break;
                 case SHORT:
                     for (Object el : data) {
-                        dos.writeShort(TypeUtils.toShort(el));
+                        buffer.putShort(TypeUtils.toShort(el));
                         writes += width;
                     }
                     break;
                 case UNSIGNED_SHORT:
                     for (Object el : data) {
-                        dos.writeShort(TypeUtils.toUnsignedShort(el));
+                        buffer.putShort(TypeUtils.toUnsignedShort(el));
                         writes += width;
                     }
                     break;
                 case INT:
                     for (Object el : data) {
-                        dos.writeInt(TypeUtils.toInteger(el));
+                        buffer.putInt(TypeUtils.toInteger(el));
                         writes += width;
                     }
                     break;
                 case UNSIGNED_INT:
                     for (Object el : data) {
-                        dos.writeInt(TypeUtils.toUnsignedInteger(el));
+                        buffer.putInt(TypeUtils.toUnsignedInteger(el));
                         writes += width;
                     }
                     break;
                 case FLOAT:
                     for (Object el : data) {
-                        dos.writeFloat(TypeUtils.toFloat(el));
+                        buffer.putFloat(TypeUtils.toFloat(el));
                         writes += width;
                     }
                     break;
                 case DOUBLE:
                     for (Object el : data) {
-                        dos.writeDouble(TypeUtils.toDouble(el));
+                        buffer.putDouble(TypeUtils.toDouble(el));
                         writes += width;
                     }
                     break;
@@ -105,14 +145,14 @@ public class BinaryBodyHelper implements Closeable {
                 case BYTE:
                     for (Object el : data) {
                         byte[] v = TypeUtils.toByteArray(el, unit);
-                        dos.write(v, 0, unit);
+                        buffer.put(v, 0, unit);
                         writes += width * unit;
                     }
                     break;
                 case UNSIGNED_BYTE:
                     for (Object el : data) {
                         byte[] v = TypeUtils.toUnsignedByteArray(el, unit);
-                        dos.write(v, 0, unit);
+                        buffer.put(v, 0, unit);
                         writes += width * unit;
                     }
                     break;
@@ -120,7 +160,7 @@ public class BinaryBodyHelper implements Closeable {
                     for (Object el : data) {
                         short[] array = TypeUtils.toShortArray(el, unit);
                         for (short v : array) {
-                            dos.writeShort(v);
+                            buffer.putShort(v);
                         }
                         writes += width * unit;
                     }
@@ -129,7 +169,7 @@ public class BinaryBodyHelper implements Closeable {
                     for (Object el : data) {
                         short[] array = TypeUtils.toUnsignedShortArray(el, unit);
                         for (short v : array) {
-                            dos.writeShort(v);
+                            buffer.putShort(v);
                         }
                         writes += width * unit;
                     }
@@ -138,7 +178,7 @@ public class BinaryBodyHelper implements Closeable {
                     for (Object el : data) {
                         int[] array = TypeUtils.toIntegerArray(el, unit);
                         for (int v : array) {
-                            dos.writeInt(v);
+                            buffer.putInt(v);
                         }
                         writes += width * unit;
                     }
@@ -147,7 +187,7 @@ public class BinaryBodyHelper implements Closeable {
                     for (Object el : data) {
                         int[] array = TypeUtils.toUnsignedIntegerArray(el, unit);
                         for (int v : array) {
-                            dos.writeInt(v);
+                            buffer.putInt(v);
                         }
                         writes += width * unit;
                     }
@@ -156,7 +196,7 @@ public class BinaryBodyHelper implements Closeable {
                     for (Object el : data) {
                         float[] array = TypeUtils.toFloatArray(el, unit);
                         for (float v : array) {
-                            dos.writeFloat(v);
+                            buffer.putFloat(v);
                         }
                         writes += width * unit;
                     }
@@ -165,7 +205,7 @@ public class BinaryBodyHelper implements Closeable {
                     for (Object el : data) {
                         double[] array = TypeUtils.toDoubleArray(el, unit);
                         for (double v : array) {
-                            dos.writeDouble(v);
+                            buffer.putDouble(v);
                         }
                         writes += width * unit;
                     }
@@ -177,21 +217,223 @@ public class BinaryBodyHelper implements Closeable {
         size += writes;
     }
 
+    /**
+     * Write already encoded little endian data as is. The remaining bytes of the buffer are written, the buffer itself is not modified.
+     */
+    public void writeRawData(String property, ByteBuffer data, ComponentType componentType, ContainerType containerType, boolean feature, boolean writeHeader) throws IOException {
+        writeRawData(writeHeader ? jsonHeader : null, property, data, componentType, containerType, feature);
+    }
+
+    /**
+     * Same as {@link #writeRawData(String, ByteBuffer, ComponentType, ContainerType, boolean, boolean)}, but the reference is
+     * added to the given json object instead of the header, e.g. to an extension.
+     * @param containerType the type of the reference, or null to leave it out.
+     */
+    public void writeRawData(Map<String, Object> target, String property, ByteBuffer data, ComponentType componentType, ContainerType containerType) throws IOException {
+        writeRawData(target, property, data, componentType, containerType, false);
+    }
+
+    /**
+     * @param target where the reference is added, or null to add none.
+     */
+    private void writeRawData(Map<String, Object> target, String property, ByteBuffer data, ComponentType componentType, ContainerType containerType, boolean feature) throws IOException {
+        padding(componentType.getSize());
+        if (target != null) {
+            addReference(target, property, size, componentType, containerType, feature);
+        }
+        int length = data.remaining();
+        ensureCapacity(length);
+        buffer.put(data.duplicate());
+        size += length;
+    }
+
+    public void writeColumn(String property, FloatColumn column, boolean feature) throws IOException {
+        writeData(property, column.array(), 0, column.size() * column.getComponents(), CommonUtils.getContainerType(column.getComponents()), feature);
+    }
+
+    /**
+     * @param componentType SHORT or UNSIGNED_SHORT.
+     */
+    public void writeColumn(String property, ShortColumn column, ComponentType componentType, boolean feature) throws IOException {
+        writeData(property, column.array(), 0, column.size() * column.getComponents(), componentType, CommonUtils.getContainerType(column.getComponents()), feature);
+    }
+
+    /**
+     * @param componentType BYTE or UNSIGNED_BYTE.
+     */
+    public void writeColumn(String property, ByteColumn column, ComponentType componentType, boolean feature) throws IOException {
+        writeData(property, column.array(), 0, column.size() * column.getComponents(), componentType, CommonUtils.getContainerType(column.getComponents()), feature);
+    }
+
+    /**
+     * @param componentType INT or UNSIGNED_INT.
+     */
+    public void writeColumn(String property, IntColumn column, ComponentType componentType, boolean feature) throws IOException {
+        checkColumnType(componentType, ComponentType.INT, ComponentType.UNSIGNED_INT);
+        writeData(property, column.array(), 0, column.size() * column.getComponents(), componentType, CommonUtils.getContainerType(column.getComponents()), feature);
+    }
+
+    /**
+     * Write the unsigned batch ids with the narrowest component type.
+     */
+    public void writeBatchId(BatchIdColumn batchIds) throws IOException {
+        writeData("BATCH_ID", batchIds.array(), 0, batchIds.size(), batchIds.getComponentType(), ContainerType.SCALAR, true);
+    }
+
+    /**
+     * Encode the ARGB colors of the column straight into the binary body.
+     * @param executor where the chunks of a large column are encoded, or null to encode them on the calling thread.
+     */
+    public void writeColors(String property, IntColumn colors, ColorUtils.Encoding encoding, boolean feature, ExecutorService executor) throws IOException {
+        int length = colors.size();
+        begin(property, encoding.getComponentType(), encoding.getContainerType(), length * encoding.getContainerType().getSize(), feature);
+        ColorUtils.encode(colors.array(), 0, length, encoding, buffer, buffer.position(), executor);
+        advance(length * encoding.getByteSize());
+    }
+
+    public void writeData(String property, float[] data, ContainerType containerType, boolean feature) throws IOException {
+        writeData(property, data, 0, data.length, containerType, feature);
+    }
+
+    /**
+     * Write length floats of the array, starting from offset. The length counts the components, not the elements.
+     */
+    public void writeData(String property, float[] data, int offset, int length, ContainerType containerType, boolean feature) throws IOException {
+        begin(property, ComponentType.FLOAT, containerType, length, feature);
+        buffer.asFloatBuffer().put(data, offset, length);
+        advance(length * 4);
+    }
+
+    /**
+     * Write the remaining floats of the buffer. The buffer itself is not modified.
+     */
+    public void writeData(String property, FloatBuffer data, ContainerType containerType, boolean feature) throws IOException {
+        int length = data.remaining();
+        begin(property, ComponentType.FLOAT, containerType, length, feature);
+        buffer.asFloatBuffer().put(data.duplicate());
+        advance(length * 4);
+    }
+
+    public void writeData(String property, double[] data, int offset, int length, ContainerType containerType, boolean feature) throws IOException {
+        begin(property, ComponentType.DOUBLE, containerType, length, feature);
+        buffer.asDoubleBuffer().put(data, offset, length);
+        advance(length * 8);
+    }
+
+    /**
+     * @param componentType BYTE or UNSIGNED_BYTE.
+     */
+    public void writeData(String property, byte[] data, int offset, int length, ComponentType componentType, ContainerType containerType, boolean feature) throws IOException {
+        checkColumnType(componentType, ComponentType.BYTE, ComponentType.UNSIGNED_BYTE);
+        begin(property, componentType, containerType, length, feature);
+        buffer.put(data, offset, length);
+        size += length;
+    }
+
+    /**
+     * @param componentType SHORT or UNSIGNED_SHORT.
+     */
+    public void writeData(String property, short[] data, int offset, int length, ComponentType componentType, ContainerType containerType, boolean feature) throws IOException {
+        checkColumnType(componentType, ComponentType.SHORT, ComponentType.UNSIGNED_SHORT);
+        begin(property, componentType, containerType, length, feature);
+        buffer.asShortBuffer().put(data, offset, length);
+        advance(length * 2);
+    }
+
+    /**
+     * Write ints as any integer component type. They are truncated to bytes or shorts if the component type is narrower.
+     */
+    public void writeData(String property, int[] data, int offset, int length, ComponentType componentType, ContainerType containerType, boolean feature) throws IOException {
+        begin(property, componentType, containerType, length, feature);
+        switch (componentType) {
+            case BYTE:
+            case UNSIGNED_BYTE:
+                for (int i = offset; i < offset + length; ++i) {
+                    buffer.put((byte) data[i]);
+                }
+                break;
+            case SHORT:
+            case UNSIGNED_SHORT:
+                for (int i = offset; i < offset + length; ++i) {
+                    buffer.putShort((short) data[i]);
+                }
+                break;
+            case INT:
+            case UNSIGNED_INT:
+                buffer.asIntBuffer().put(data, offset, length);
+                buffer.position(buffer.position() + length * 4);
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid component type: " + componentType + ", only the integer types are allowed.");
+        }
+        size += length * componentType.getSize();
+    }
+
+    /**
+     * Write longs as any integer component type, e.g. unsigned ints. They are truncated to the component type.
+     */
+    public void writeData(String property, long[] data, int offset, int length, ComponentType componentType, ContainerType containerType, boolean feature) throws IOException {
+        begin(property, componentType, containerType, length, feature);
+        switch (componentType) {
+            case BYTE:
+            case UNSIGNED_BYTE:
+                for (int i = offset; i < offset + length; ++i) {
+                    buffer.put((byte) data[i]);
+                }
+                break;
+            case SHORT:
+            case UNSIGNED_SHORT:
+                for (int i = offset; i < offset + length; ++i) {
+                    buffer.putShort((short) data[i]);
+                }
+                break;
+            case INT:
+            case UNSIGNED_INT:
+                for (int i = offset; i < offset + length; ++i) {
+                    buffer.putInt((int) data[i]);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid component type: " + componentType + ", only the integer types are allowed.");
+        }
+        size += length * componentType.getSize();
+    }
+
+    /**
+     * Pad to the component type, add the reference and reserve room for length components.
+     */
+    private void begin(String property, ComponentType componentType, ContainerType containerType, int length, boolean feature) throws IOException {
+        if (length % containerType.getSize() != 0) {
+            throw new IllegalArgumentException("Invalid length of " + property + ": " + length + ", it should be a multiple of " + containerType.getSize() + ".");
+        }
+        padding(componentType.getSize());
+        addReference(jsonHeader, property, size, componentType, containerType, feature);
+        ensureCapacity((long) length * componentType.getSize());
+    }
+
+    /**
+     * Move past the bytes just written through a view of the buffer.
+     */
+    private void advance(int bytes) {
+        buffer.position(buffer.position() + bytes);
+        size += bytes;
+    }
+
+    private static void checkColumnType(ComponentType componentType, ComponentType signed, ComponentType unsigned) {
+        if (componentType != signed && componentType != unsigned) {
+            throw new IllegalArgumentException("Invalid component type: " + componentType + ", only " + signed + " and " + unsigned + " are allowed.");
+        }
+    }
+
     public void writeBatchId(List<Long> batchIdList) throws IOException {
-        writeBatchId(batchIdList, true);
+        writeBatchId(BatchIdColumn.of(batchIdList));
     }
 
     public void writeBatchId(List<Long> batchIdList, boolean writeHeader) throws IOException {
-        Long max = batchIdList.stream().max(Long::compareTo).orElse(null);
-        if (max == null) {
-            throw new IllegalArgumentException("There null value in the batch id list.");
-        }
-        if (max > 0xFFFF) {
-            writeData("BATCH_ID", batchIdList, ComponentType.UNSIGNED_INT, ContainerType.SCALAR, true, writeHeader);
-        } else if (max > 0xFF) {
-            writeData("BATCH_ID", batchIdList, ComponentType.UNSIGNED_SHORT, ContainerType.SCALAR, true, writeHeader);
+        if (writeHeader) {
+            writeBatchId(batchIdList);
         } else {
-            writeData("BATCH_ID", batchIdList, ComponentType.UNSIGNED_BYTE, ContainerType.SCALAR, true, writeHeader);
+            writeData("BATCH_ID", batchIdList, BatchIdColumn.of(batchIdList).getComponentType(), ContainerType.SCALAR, true, false);
         }
     }
 
@@ -200,12 +442,39 @@ public class BinaryBodyHelper implements Closeable {
     }
 
     public byte[] toByteArray() {
-        return bos.toByteArray();
+        return Arrays.copyOf(buffer.array(), size);
+    }
+
+    /**
+     * The table made of the json header, padded with spaces to jsonLength bytes, and the binary body.
+     * The buffer comes from the arena if there is one, so it must be given back to the arena once written.
+     */
+    public ByteBuffer createTable(byte[] json, int jsonLength) {
+        ByteBuffer table = allocate(jsonLength + size);
+        table.put(json);
+        for (int i = json.length; i < jsonLength; ++i) {
+            table.put((byte) 0x20);
+        }
+        table.put(buffer.array(), buffer.arrayOffset(), size);
+        table.flip();
+        return table;
+    }
+
+    /**
+     * The binary body written so far, without copying. It is only valid until the next write.
+     */
+    public ByteBuffer toBuffer() {
+        ByteBuffer view = buffer.duplicate();
+        view.flip();
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
     }
 
     private void padding(int paddingUnit) throws IOException {
         int padding = calcPadding(size, paddingUnit);
-        fillPadding(dos, padding);
+        ensureCapacity(padding);
+        for (int i = 0; i < padding; ++i) {
+            buffer.put((byte) 0);
+        }
         size += padding;
     }
 
@@ -213,15 +482,11 @@ public class BinaryBodyHelper implements Closeable {
         padding(8);
     }
 
-    private static void fillPadding(LittleEndianDataOutputStream dos, int padding) throws IOException {
-        for (int i = 0; i < padding; ++i) {
-            dos.write(0);
-        }
-    }
-
     @Override
     public void close() throws IOException {
-        dos.close();
-        bos.close();
+        if (arena != null && buffer != null) {
+            arena.release(buffer);
+        }
+        buffer = null;
     }
 }
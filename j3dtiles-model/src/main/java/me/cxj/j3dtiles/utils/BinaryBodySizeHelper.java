@@ -3,7 +3,6 @@ package me.cxj.j3dtiles.utils;
 import me.cxj.j3dtiles.impl.v1.ComponentType;
 import me.cxj.j3dtiles.impl.v1.ContainerType;
 
-import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 
@@ -22,26 +21,40 @@ public class BinaryBodySizeHelper {
     }
 
     public void addProperty(String property, List data, ComponentType componentType, ContainerType containerType, boolean feature) {
+        addProperty(property, data.size(), componentType, containerType, feature);
+    }
+
+    public void addProperty(String property, int length, ComponentType componentType, ContainerType containerType, boolean feature) {
+        addProperty(jsonHeader, property, length, componentType, containerType, feature);
+    }
+
+    /**
+     * Same as {@link #addProperty(String, int, ComponentType, ContainerType, boolean)}, but the reference is added to the
+     * given json object instead of the header, e.g. to an extension.
+     * @param containerType the type of the reference, or null to leave it out. Null is counted as a scalar.
+     */
+    public void addProperty(Map<String, Object> target, String property, int length, ComponentType componentType, ContainerType containerType) {
+        addProperty(target, property, length, componentType, containerType, false);
+    }
+
+    private void addProperty(Map<String, Object> target, String property, int length, ComponentType componentType, ContainerType containerType, boolean feature) {
         int width = componentType.getSize();
         size += CommonUtils.calcPadding(size, width);
-        addReference(jsonHeader, property, size, componentType, containerType, feature);
-        int writes = 0;
-        int unit = containerType.getSize();
-        size += width * unit * data.size();
+        addReference(target, property, size, componentType, containerType, feature);
+        int unit = containerType != null ? containerType.getSize() : 1;
+        size += width * unit * length;
+    }
+
+    public void addColumn(String property, AbstractColumn column, ComponentType componentType, boolean feature) {
+        addProperty(property, column.size(), componentType, CommonUtils.getContainerType(column.getComponents()), feature);
+    }
+
+    public void addBatchId(BatchIdColumn batchIds) {
+        addColumn("BATCH_ID", batchIds, batchIds.getComponentType(), true);
     }
 
     public void addBatchId(List<Long> batchIdList) {
-        Long max = batchIdList.stream().max(Long::compareTo).orElse(null);
-        if (max == null) {
-            throw new IllegalArgumentException("There null value in the batch id list.");
-        }
-        if (max > 0xFFFF) {
-            addProperty("BATCH_ID", batchIdList, ComponentType.UNSIGNED_INT, ContainerType.SCALAR, true);
-        } else if (max > 0xFF) {
-            addProperty("BATCH_ID", batchIdList, ComponentType.UNSIGNED_SHORT, ContainerType.SCALAR, true);
-        } else {
-            addProperty("BATCH_ID", batchIdList, ComponentType.UNSIGNED_BYTE, ContainerType.SCALAR, true);
-        }
+        addBatchId(BatchIdColumn.of(batchIdList));
     }
 
     public void finished() {
@@ -53,7 +66,7 @@ public class BinaryBodySizeHelper {
     }
 
     public int calcHeaderSize(int offset, JsonParser parser) {
-        int length = parser.toJsonString(jsonHeader).getBytes(StandardCharsets.UTF_8).length;
+        int length = CommonUtils.utf8Length(parser.toJsonString(jsonHeader));
         return length + CommonUtils.calcPadding(offset + length, 8);
     }
 
@@ -0,0 +1,720 @@
+package me.cxj.j3dtiles.utils;
+
+/**
+ * Bounding volume math on flat double arrays, without allocation. Each volume is read from an array at an offset and
+ * written to an array at an offset, so the volumes may be packed in one buffer or kept in scratch arrays.
+ * <ul>
+ *     <li>box: center x, y, z then the 3 half axes, 12 numbers, as the box of a bounding volume.</li>
+ *     <li>sphere: center x, y, z and radius, 4 numbers.</li>
+ *     <li>region: west, south, east, north in radians, min and max height in meters on WGS84, 6 numbers.
+ *     The region crosses the antimeridian when east &lt; west.</li>
+ *     <li>bounds: min x, y, z then max x, y, z of an axis aligned box, 6 numbers.</li>
+ *     <li>matrix: 4x4 column major, 16 numbers, as the transform of a tile.</li>
+ * </ul>
+ * The boxes are assumed to have orthogonal half axes by the distances. Unless said otherwise, the output may be one
+ * of the inputs. The cartesian coordinates of the regions are earth centered earth fixed, and the transforms of the
+ * tiles do not apply to them.
+ */
+public class BoundingVolumeUtils {
+
+    public static final int BOX_SIZE = 12;
+    public static final int SPHERE_SIZE = 4;
+    public static final int REGION_SIZE = 6;
+    public static final int BOUNDS_SIZE = 6;
+    public static final int MATRIX_SIZE = 16;
+
+    public static final double WGS84_A = 6378137.0;
+    public static final double WGS84_E2 = 6.69437999014e-3;
+
+    private static final double TWO_PI = 2 * Math.PI;
+    private static final int BOUNDS = 0;
+    private static final int BOX = 1;
+    private static final int SPHERE = 2;
+
+    /**
+     * Copy the floats of a volume or a transform of a tile as doubles.
+     */
+    public static void copy(float[] source, double[] out, int outOffset) {
+        for (int i = 0; i < source.length; ++i) {
+            out[outOffset + i] = source[i];
+        }
+    }
+
+    public static void identity(double[] out, int outOffset) {
+        for (int i = 0; i < MATRIX_SIZE; ++i) {
+            out[outOffset + i] = i % 5 == 0 ? 1 : 0;
+        }
+    }
+
+    /**
+     * out = a * b. The output may not be one of the inputs.
+     */
+    public static void multiply(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset) {
+        for (int column = 0; column < 4; ++column) {
+            for (int row = 0; row < 4; ++row) {
+                double sum = 0;
+                for (int k = 0; k < 4; ++k) {
+                    sum += a[aOffset + k * 4 + row] * b[bOffset + column * 4 + k];
+                }
+                out[outOffset + column * 4 + row] = sum;
+            }
+        }
+    }
+
+    /**
+     * out = a * b, with b the transform of a tile. The output may not be a.
+     */
+    public static void multiply(double[] a, int aOffset, float[] b, double[] out, int outOffset) {
+        for (int column = 0; column < 4; ++column) {
+            for (int row = 0; row < 4; ++row) {
+                double sum = 0;
+                for (int k = 0; k < 4; ++k) {
+                    sum += a[aOffset + k * 4 + row] * b[column * 4 + k];
+                }
+                out[outOffset + column * 4 + row] = sum;
+            }
+        }
+    }
+
+    // Transforms
+
+    public static void transformPoint(double[] m, int mOffset, double x, double y, double z, double[] out, int outOffset) {
+        out[outOffset] = m[mOffset] * x + m[mOffset + 4] * y + m[mOffset + 8] * z + m[mOffset + 12];
+        out[outOffset + 1] = m[mOffset + 1] * x + m[mOffset + 5] * y + m[mOffset + 9] * z + m[mOffset + 13];
+        out[outOffset + 2] = m[mOffset + 2] * x + m[mOffset + 6] * y + m[mOffset + 10] * z + m[mOffset + 14];
+    }
+
+    /**
+     * The center is transformed as a point and the half axes as vectors, so the box stays exact under an affine transform.
+     */
+    public static void transformBox(double[] m, int mOffset, double[] box, int boxOffset, double[] out, int outOffset) {
+        transformPoint(m, mOffset, box[boxOffset], box[boxOffset + 1], box[boxOffset + 2], out, outOffset);
+        for (int axis = 0; axis < 3; ++axis) {
+            int o = 3 + axis * 3;
+            double x = box[boxOffset + o];
+            double y = box[boxOffset + o + 1];
+            double z = box[boxOffset + o + 2];
+            out[outOffset + o] = m[mOffset] * x + m[mOffset + 4] * y + m[mOffset + 8] * z;
+            out[outOffset + o + 1] = m[mOffset + 1] * x + m[mOffset + 5] * y + m[mOffset + 9] * z;
+            out[outOffset + o + 2] = m[mOffset + 2] * x + m[mOffset + 6] * y + m[mOffset + 10] * z;
+        }
+    }
+
+    /**
+     * The radius is scaled by the largest scale of the transform.
+     */
+    public static void transformSphere(double[] m, int mOffset, double[] sphere, int sphereOffset, double[] out, int outOffset) {
+        double radius = sphere[sphereOffset + 3] * maxScale(m, mOffset);
+        transformPoint(m, mOffset, sphere[sphereOffset], sphere[sphereOffset + 1], sphere[sphereOffset + 2], out, outOffset);
+        out[outOffset + 3] = radius;
+    }
+
+    /**
+     * The bounds of the transformed bounds.
+     */
+    public static void transformBounds(double[] m, int mOffset, double[] bounds, int boundsOffset, double[] out, int outOffset) {
+        double cx = (bounds[boundsOffset] + bounds[boundsOffset + 3]) / 2;
+        double cy = (bounds[boundsOffset + 1] + bounds[boundsOffset + 4]) / 2;
+        double cz = (bounds[boundsOffset + 2] + bounds[boundsOffset + 5]) / 2;
+        double ex = (bounds[boundsOffset + 3] - bounds[boundsOffset]) / 2;
+        double ey = (bounds[boundsOffset + 4] - bounds[boundsOffset + 1]) / 2;
+        double ez = (bounds[boundsOffset + 5] - bounds[boundsOffset + 2]) / 2;
+        for (int r = 0; r < 3; ++r) {
+            double center = m[mOffset + r] * cx + m[mOffset + 4 + r] * cy + m[mOffset + 8 + r] * cz + m[mOffset + 12 + r];
+            double extent = Math.abs(m[mOffset + r]) * ex + Math.abs(m[mOffset + 4 + r]) * ey + Math.abs(m[mOffset + 8 + r]) * ez;
+            out[outOffset + r] = center - extent;
+            out[outOffset + 3 + r] = center + extent;
+        }
+    }
+
+    private static double maxScale(double[] m, int mOffset) {
+        double scale = 0;
+        for (int column = 0; column < 3; ++column) {
+            double x = m[mOffset + column * 4];
+            double y = m[mOffset + column * 4 + 1];
+            double z = m[mOffset + column * 4 + 2];
+            scale = Math.max(scale, x * x + y * y + z * z);
+        }
+        return Math.sqrt(scale);
+    }
+
+    // Conversions
+
+    public static void boxToBounds(double[] box, int boxOffset, double[] out, int outOffset) {
+        double cx = box[boxOffset];
+        double cy = box[boxOffset + 1];
+        double cz = box[boxOffset + 2];
+        double ex = Math.abs(box[boxOffset + 3]) + Math.abs(box[boxOffset + 6]) + Math.abs(box[boxOffset + 9]);
+        double ey = Math.abs(box[boxOffset + 4]) + Math.abs(box[boxOffset + 7]) + Math.abs(box[boxOffset + 10]);
+        double ez = Math.abs(box[boxOffset + 5]) + Math.abs(box[boxOffset + 8]) + Math.abs(box[boxOffset + 11]);
+        setBounds(out, outOffset, cx - ex, cy - ey, cz - ez, cx + ex, cy + ey, cz + ez);
+    }
+
+    public static void sphereToBounds(double[] sphere, int sphereOffset, double[] out, int outOffset) {
+        double r = sphere[sphereOffset + 3];
+        double cx = sphere[sphereOffset];
+        double cy = sphere[sphereOffset + 1];
+        double cz = sphere[sphereOffset + 2];
+        setBounds(out, outOffset, cx - r, cy - r, cz - r, cx + r, cy + r, cz + r);
+    }
+
+    /**
+     * The exact bounds of a region. The extremes are reached at the corners, at the cardinal longitudes inside the
+     * region and at the equator if it crosses it.
+     */
+    public static void regionToBounds(double[] region, int regionOffset, double[] out, int outOffset) {
+        regionToBounds(region, regionOffset, out, outOffset, BOUNDS);
+    }
+
+    /**
+     * Write the bounds of the region as the kind of volume.
+     */
+    private static void regionToBounds(double[] region, int regionOffset, double[] out, int outOffset, int kind) {
+        double west = region[regionOffset];
+        double south = region[regionOffset + 1];
+        double east = region[regionOffset + 2];
+        double north = region[regionOffset + 3];
+        double minHeight = region[regionOffset + 4];
+        double maxHeight = region[regionOffset + 5];
+        if (east < west) {
+            east += TWO_PI;
+        }
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        double maxZ = Double.NEGATIVE_INFINITY;
+        int latitudeCount = south < 0 && north > 0 ? 3 : 2;
+        double firstCardinal = Math.ceil(west / (Math.PI / 2)) * (Math.PI / 2);
+        for (int i = 0; i < latitudeCount; ++i) {
+            double latitude = i == 0 ? south : i == 1 ? north : 0;
+            double sin = Math.sin(latitude);
+            double cos = Math.cos(latitude);
+            double n = WGS84_A / Math.sqrt(1 - WGS84_E2 * sin * sin);
+            for (int h = 0; h < 2; ++h) {
+                double height = h == 0 ? minHeight : maxHeight;
+                double r = (n + height) * cos;
+                double z = (n * (1 - WGS84_E2) + height) * sin;
+                minZ = Math.min(minZ, z);
+                maxZ = Math.max(maxZ, z);
+                // The west and east longitudes, then the cardinal ones between them.
+                double longitude = west;
+                for (int j = 0; j < 7; ++j) {
+                    if (j == 1) {
+                        longitude = east;
+                    } else if (j > 1) {
+                        longitude = firstCardinal + (j - 2) * (Math.PI / 2);
+                        if (longitude >= east) {
+                            break;
+                        }
+                    }
+                    double x = r * Math.cos(longitude);
+                    double y = r * Math.sin(longitude);
+                    minX = Math.min(minX, x);
+                    minY = Math.min(minY, y);
+                    maxX = Math.max(maxX, x);
+                    maxY = Math.max(maxY, y);
+                }
+            }
+        }
+        if (kind == BOX) {
+            setBox(out, outOffset, minX, minY, minZ, maxX, maxY, maxZ);
+        } else if (kind == SPHERE) {
+            double dx = (maxX - minX) / 2;
+            double dy = (maxY - minY) / 2;
+            double dz = (maxZ - minZ) / 2;
+            setSphere(out, outOffset, (minX + maxX) / 2, (minY + maxY) / 2, (minZ + maxZ) / 2, Math.sqrt(dx * dx + dy * dy + dz * dz));
+        } else {
+            setBounds(out, outOffset, minX, minY, minZ, maxX, maxY, maxZ);
+        }
+    }
+
+    public static void boundsToBox(double[] bounds, int boundsOffset, double[] out, int outOffset) {
+        setBox(out, outOffset, bounds[boundsOffset], bounds[boundsOffset + 1], bounds[boundsOffset + 2],
+                bounds[boundsOffset + 3], bounds[boundsOffset + 4], bounds[boundsOffset + 5]);
+    }
+
+    /**
+     * The smallest sphere centered on the box containing it.
+     */
+    public static void boxToSphere(double[] box, int boxOffset, double[] out, int outOffset) {
+        double radius = 0;
+        // The farthest corner from the center, the opposite corners are as far.
+        for (int signs = 0; signs < 4; ++signs) {
+            double su = (signs & 1) == 0 ? 1 : -1;
+            double sv = (signs & 2) == 0 ? 1 : -1;
+            double x = su * box[boxOffset + 3] + sv * box[boxOffset + 6] + box[boxOffset + 9];
+            double y = su * box[boxOffset + 4] + sv * box[boxOffset + 7] + box[boxOffset + 10];
+            double z = su * box[boxOffset + 5] + sv * box[boxOffset + 8] + box[boxOffset + 11];
+            radius = Math.max(radius, x * x + y * y + z * z);
+        }
+        out[outOffset] = box[boxOffset];
+        out[outOffset + 1] = box[boxOffset + 1];
+        out[outOffset + 2] = box[boxOffset + 2];
+        out[outOffset + 3] = Math.sqrt(radius);
+    }
+
+    public static void sphereToBox(double[] sphere, int sphereOffset, double[] out, int outOffset) {
+        double r = sphere[sphereOffset + 3];
+        out[outOffset] = sphere[sphereOffset];
+        out[outOffset + 1] = sphere[sphereOffset + 1];
+        out[outOffset + 2] = sphere[sphereOffset + 2];
+        for (int i = 3; i < BOX_SIZE; ++i) {
+            out[outOffset + i] = 0;
+        }
+        out[outOffset + 3] = r;
+        out[outOffset + 7] = r;
+        out[outOffset + 11] = r;
+    }
+
+    /**
+     * The axis aligned box of the exact bounds of the region, see {@link #regionToBounds(double[], int, double[], int)}.
+     */
+    public static void regionToBox(double[] region, int regionOffset, double[] out, int outOffset) {
+        regionToBounds(region, regionOffset, out, outOffset, BOX);
+    }
+
+    /**
+     * The sphere of the exact bounds of the region.
+     */
+    public static void regionToSphere(double[] region, int regionOffset, double[] out, int outOffset) {
+        regionToBounds(region, regionOffset, out, outOffset, SPHERE);
+    }
+
+    /**
+     * A region containing the sphere. The sphere is bounded by the cone of its angular radius from the center of the
+     * earth, and the geodetic latitudes are widened to the geocentric ones.
+     */
+    public static void sphereToRegion(double[] sphere, int sphereOffset, double[] out, int outOffset) {
+        double x = sphere[sphereOffset];
+        double y = sphere[sphereOffset + 1];
+        double z = sphere[sphereOffset + 2];
+        double radius = sphere[sphereOffset + 3];
+        toGeodetic(x, y, z, out, outOffset);
+        double longitude = out[outOffset];
+        double height = out[outOffset + 2];
+        double distance = Math.sqrt(x * x + y * y + z * z);
+        // The height changes at most as fast as the position.
+        out[outOffset + 4] = height - radius;
+        out[outOffset + 5] = height + radius;
+        if (radius >= distance) {
+            out[outOffset] = -Math.PI;
+            out[outOffset + 1] = -Math.PI / 2;
+            out[outOffset + 2] = Math.PI;
+            out[outOffset + 3] = Math.PI / 2;
+            return;
+        }
+        double angle = Math.asin(radius / distance);
+        double geocentric = Math.asin(z / distance);
+        double south = geocentric - angle;
+        double north = geocentric + angle;
+        out[outOffset + 1] = south <= -Math.PI / 2 ? -Math.PI / 2 : Math.min(south, toGeodeticLatitude(south));
+        out[outOffset + 3] = north >= Math.PI / 2 ? Math.PI / 2 : Math.max(north, toGeodeticLatitude(north));
+        if (south <= -Math.PI / 2 || north >= Math.PI / 2) {
+            out[outOffset] = -Math.PI;
+            out[outOffset + 2] = Math.PI;
+        } else {
+            double halfWidth = Math.asin(Math.min(1, Math.sin(angle) / Math.cos(geocentric)));
+            if (halfWidth >= Math.PI / 2) {
+                out[outOffset] = -Math.PI;
+                out[outOffset + 2] = Math.PI;
+            } else {
+                out[outOffset] = normalizeLongitude(longitude - halfWidth);
+                out[outOffset + 2] = normalizeLongitude(longitude + halfWidth);
+            }
+        }
+    }
+
+    /**
+     * A region containing the box, the one of its bounding sphere.
+     */
+    public static void boxToRegion(double[] box, int boxOffset, double[] out, int outOffset) {
+        boxToSphere(box, boxOffset, out, outOffset);
+        sphereToRegion(out, outOffset, out, outOffset);
+    }
+
+    /**
+     * The geodetic latitude of the point of the ellipsoid at the geocentric latitude.
+     */
+    private static double toGeodeticLatitude(double geocentric) {
+        return Math.atan(Math.tan(geocentric) / (1 - WGS84_E2));
+    }
+
+    private static double normalizeLongitude(double longitude) {
+        if (longitude < -Math.PI) {
+            return longitude + TWO_PI;
+        }
+        if (longitude > Math.PI) {
+            return longitude - TWO_PI;
+        }
+        return longitude;
+    }
+
+    /**
+     * Convert the earth centered earth fixed point to longitude, latitude in radians and height in meters.
+     */
+    public static void toGeodetic(double x, double y, double z, double[] out, int outOffset) {
+        double p = Math.sqrt(x * x + y * y);
+        double latitude = Math.atan2(z, p * (1 - WGS84_E2));
+        double height = 0;
+        for (int i = 0; i < 5; ++i) {
+            double sin = Math.sin(latitude);
+            double n = WGS84_A / Math.sqrt(1 - WGS84_E2 * sin * sin);
+            height = p * Math.cos(latitude) + z * sin - WGS84_A * WGS84_A / n;
+            latitude = Math.atan2(z, p * (1 - WGS84_E2 * n / (n + height)));
+        }
+        out[outOffset] = Math.atan2(y, x);
+        out[outOffset + 1] = latitude;
+        out[outOffset + 2] = height;
+    }
+
+    /**
+     * Convert the longitude and latitude in radians and the height in meters to an earth centered earth fixed point.
+     */
+    public static void toCartesian(double longitude, double latitude, double height, double[] out, int outOffset) {
+        double sin = Math.sin(latitude);
+        double cos = Math.cos(latitude);
+        double n = WGS84_A / Math.sqrt(1 - WGS84_E2 * sin * sin);
+        out[outOffset] = (n + height) * cos * Math.cos(longitude);
+        out[outOffset + 1] = (n + height) * cos * Math.sin(longitude);
+        out[outOffset + 2] = (n * (1 - WGS84_E2) + height) * sin;
+    }
+
+    // Unions
+
+    public static void unionBounds(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset) {
+        for (int i = 0; i < 3; ++i) {
+            double min = Math.min(a[aOffset + i], b[bOffset + i]);
+            double max = Math.max(a[aOffset + 3 + i], b[bOffset + 3 + i]);
+            out[outOffset + i] = min;
+            out[outOffset + 3 + i] = max;
+        }
+    }
+
+    /**
+     * The smallest sphere containing both spheres.
+     */
+    public static void unionSpheres(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset) {
+        double ax = a[aOffset], ay = a[aOffset + 1], az = a[aOffset + 2], ar = a[aOffset + 3];
+        double bx = b[bOffset], by = b[bOffset + 1], bz = b[bOffset + 2], br = b[bOffset + 3];
+        double dx = bx - ax, dy = by - ay, dz = bz - az;
+        double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (distance + br <= ar) {
+            setSphere(out, outOffset, ax, ay, az, ar);
+        } else if (distance + ar <= br) {
+            setSphere(out, outOffset, bx, by, bz, br);
+        } else {
+            double radius = (distance + ar + br) / 2;
+            double t = (radius - ar) / distance;
+            setSphere(out, outOffset, ax + dx * t, ay + dy * t, az + dz * t, radius);
+        }
+    }
+
+    /**
+     * The axis aligned box of the bounds of both boxes.
+     */
+    public static void unionBoxes(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < 2; ++i) {
+            double[] box = i == 0 ? a : b;
+            int o = i == 0 ? aOffset : bOffset;
+            double ex = Math.abs(box[o + 3]) + Math.abs(box[o + 6]) + Math.abs(box[o + 9]);
+            double ey = Math.abs(box[o + 4]) + Math.abs(box[o + 7]) + Math.abs(box[o + 10]);
+            double ez = Math.abs(box[o + 5]) + Math.abs(box[o + 8]) + Math.abs(box[o + 11]);
+            minX = Math.min(minX, box[o] - ex);
+            minY = Math.min(minY, box[o + 1] - ey);
+            minZ = Math.min(minZ, box[o + 2] - ez);
+            maxX = Math.max(maxX, box[o] + ex);
+            maxY = Math.max(maxY, box[o + 1] + ey);
+            maxZ = Math.max(maxZ, box[o + 2] + ez);
+        }
+        setBox(out, outOffset, minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    /**
+     * The smallest region containing both regions, with the shortest longitude range.
+     */
+    public static void unionRegions(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset) {
+        double aWest = a[aOffset];
+        double aWidth = longitudeWidth(aWest, a[aOffset + 2]);
+        double bWest = b[bOffset];
+        double bWidth = longitudeWidth(bWest, b[bOffset + 2]);
+        // From the west of a to the east of b, or from the west of b to the east of a.
+        double fromA = Math.max(aWidth, positiveAngle(bWest - aWest) + bWidth);
+        double fromB = Math.max(bWidth, positiveAngle(aWest - bWest) + aWidth);
+        double west = fromA <= fromB ? aWest : bWest;
+        double width = Math.min(fromA, fromB);
+        double south = Math.min(a[aOffset + 1], b[bOffset + 1]);
+        double north = Math.max(a[aOffset + 3], b[bOffset + 3]);
+        double minHeight = Math.min(a[aOffset + 4], b[bOffset + 4]);
+        double maxHeight = Math.max(a[aOffset + 5], b[bOffset + 5]);
+        if (width >= TWO_PI) {
+            out[outOffset] = -Math.PI;
+            out[outOffset + 2] = Math.PI;
+        } else {
+            out[outOffset] = west;
+            out[outOffset + 2] = normalizeLongitude(west + width);
+        }
+        out[outOffset + 1] = south;
+        out[outOffset + 3] = north;
+        out[outOffset + 4] = minHeight;
+        out[outOffset + 5] = maxHeight;
+    }
+
+    private static double longitudeWidth(double west, double east) {
+        return east >= west ? east - west : east - west + TWO_PI;
+    }
+
+    private static double positiveAngle(double angle) {
+        return angle >= 0 ? angle : angle + TWO_PI;
+    }
+
+    // Intersections
+
+    /**
+     * Write the intersection of the bounds.
+     * @return false if they do not intersect, the output is then empty with a min greater than the max.
+     */
+    public static boolean intersectBounds(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset) {
+        boolean intersects = true;
+        for (int i = 0; i < 3; ++i) {
+            double min = Math.max(a[aOffset + i], b[bOffset + i]);
+            double max = Math.min(a[aOffset + 3 + i], b[bOffset + 3 + i]);
+            out[outOffset + i] = min;
+            out[outOffset + 3 + i] = max;
+            intersects &= min <= max;
+        }
+        return intersects;
+    }
+
+    public static boolean boundsIntersect(double[] a, int aOffset, double[] b, int bOffset) {
+        return a[aOffset] <= b[bOffset + 3] && a[aOffset + 3] >= b[bOffset]
+                && a[aOffset + 1] <= b[bOffset + 4] && a[aOffset + 4] >= b[bOffset + 1]
+                && a[aOffset + 2] <= b[bOffset + 5] && a[aOffset + 5] >= b[bOffset + 2];
+    }
+
+    public static boolean spheresIntersect(double[] a, int aOffset, double[] b, int bOffset) {
+        double dx = a[aOffset] - b[bOffset];
+        double dy = a[aOffset + 1] - b[bOffset + 1];
+        double dz = a[aOffset + 2] - b[bOffset + 2];
+        double r = a[aOffset + 3] + b[bOffset + 3];
+        return dx * dx + dy * dy + dz * dz <= r * r;
+    }
+
+    /**
+     * Separating axis test on the 3 axes of each box and their 9 cross products.
+     */
+    public static boolean boxesIntersect(double[] a, int aOffset, double[] b, int bOffset) {
+        for (int i = 0; i < 3; ++i) {
+            if (separatedOnAxis(a, aOffset, b, bOffset, a, aOffset, i) || separatedOnAxis(a, aOffset, b, bOffset, b, bOffset, i)) {
+                return false;
+            }
+        }
+        for (int i = 0; i < 3; ++i) {
+            int ai = aOffset + 3 + i * 3;
+            for (int j = 0; j < 3; ++j) {
+                int bj = bOffset + 3 + j * 3;
+                double x = a[ai + 1] * b[bj + 2] - a[ai + 2] * b[bj + 1];
+                double y = a[ai + 2] * b[bj] - a[ai] * b[bj + 2];
+                double z = a[ai] * b[bj + 1] - a[ai + 1] * b[bj];
+                if (separated(a, aOffset, b, bOffset, x, y, z)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Separated along the half axis i of the box, or along the normal of its 2 other half axes when this one has a zero
+     * length, so a flat box is tested along its normal.
+     */
+    private static boolean separatedOnAxis(double[] a, int aOffset, double[] b, int bOffset, double[] box, int boxOffset, int i) {
+        int o = boxOffset + 3 + i * 3;
+        double x = box[o], y = box[o + 1], z = box[o + 2];
+        if (x == 0 && y == 0 && z == 0) {
+            int u = boxOffset + 3 + (i + 1) % 3 * 3;
+            int v = boxOffset + 3 + (i + 2) % 3 * 3;
+            x = box[u + 1] * box[v + 2] - box[u + 2] * box[v + 1];
+            y = box[u + 2] * box[v] - box[u] * box[v + 2];
+            z = box[u] * box[v + 1] - box[u + 1] * box[v];
+        }
+        return separated(a, aOffset, b, bOffset, x, y, z);
+    }
+
+    private static boolean separated(double[] a, int aOffset, double[] b, int bOffset, double x, double y, double z) {
+        double distance = Math.abs((b[bOffset] - a[aOffset]) * x + (b[bOffset + 1] - a[aOffset + 1]) * y + (b[bOffset + 2] - a[aOffset + 2]) * z);
+        return distance > projectedExtent(a, aOffset, x, y, z) + projectedExtent(b, bOffset, x, y, z);
+    }
+
+    private static double projectedExtent(double[] box, int boxOffset, double x, double y, double z) {
+        return Math.abs(box[boxOffset + 3] * x + box[boxOffset + 4] * y + box[boxOffset + 5] * z)
+                + Math.abs(box[boxOffset + 6] * x + box[boxOffset + 7] * y + box[boxOffset + 8] * z)
+                + Math.abs(box[boxOffset + 9] * x + box[boxOffset + 10] * y + box[boxOffset + 11] * z);
+    }
+
+    public static boolean boxIntersectsSphere(double[] box, int boxOffset, double[] sphere, int sphereOffset) {
+        return distanceToBox(box, boxOffset, sphere[sphereOffset], sphere[sphereOffset + 1], sphere[sphereOffset + 2]) <= sphere[sphereOffset + 3];
+    }
+
+    /**
+     * Regions intersect when their latitudes, their heights and their longitudes overlap, across the antimeridian too.
+     */
+    public static boolean regionsIntersect(double[] a, int aOffset, double[] b, int bOffset) {
+        if (a[aOffset + 1] > b[bOffset + 3] || a[aOffset + 3] < b[bOffset + 1]
+                || a[aOffset + 4] > b[bOffset + 5] || a[aOffset + 5] < b[bOffset + 4]) {
+            return false;
+        }
+        return longitudesOverlap(a[aOffset], a[aOffset + 2], b[bOffset], b[bOffset + 2]);
+    }
+
+    private static boolean longitudesOverlap(double west1, double east1, double west2, double east2) {
+        if (east1 < west1) {
+            return longitudesOverlap(west1, Math.PI, west2, east2) || longitudesOverlap(-Math.PI, east1, west2, east2);
+        }
+        if (east2 < west2) {
+            return longitudesOverlap(west1, east1, west2, Math.PI) || longitudesOverlap(west1, east1, -Math.PI, east2);
+        }
+        return west1 <= east2 && east1 >= west2;
+    }
+
+    // Distances, 0 inside the volume
+
+    public static double distanceToBounds(double[] bounds, int boundsOffset, double x, double y, double z) {
+        double dx = Math.max(0, Math.max(bounds[boundsOffset] - x, x - bounds[boundsOffset + 3]));
+        double dy = Math.max(0, Math.max(bounds[boundsOffset + 1] - y, y - bounds[boundsOffset + 4]));
+        double dz = Math.max(0, Math.max(bounds[boundsOffset + 2] - z, z - bounds[boundsOffset + 5]));
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    public static double distanceToSphere(double[] sphere, int sphereOffset, double x, double y, double z) {
+        double dx = x - sphere[sphereOffset];
+        double dy = y - sphere[sphereOffset + 1];
+        double dz = z - sphere[sphereOffset + 2];
+        return Math.max(0, Math.sqrt(dx * dx + dy * dy + dz * dz) - sphere[sphereOffset + 3]);
+    }
+
+    /**
+     * A half axis of length 0 bounds the box too: the box is flat along the normal of its 2 other half axes, a segment
+     * along its last half axis, or a point.
+     */
+    public static double distanceToBox(double[] box, int boxOffset, double x, double y, double z) {
+        double dx = x - box[boxOffset];
+        double dy = y - box[boxOffset + 1];
+        double dz = z - box[boxOffset + 2];
+        double squared = 0;
+        for (int axis = 0; axis < 3; ++axis) {
+            int o = boxOffset + 3 + axis * 3;
+            double ux = box[o], uy = box[o + 1], uz = box[o + 2];
+            double length = Math.sqrt(ux * ux + uy * uy + uz * uz);
+            if (length == 0) {
+                return distanceToDegenerateBox(box, boxOffset, dx, dy, dz, axis, squared);
+            }
+            double excess = Math.abs(dx * ux + dy * uy + dz * uz) / length - length;
+            if (excess > 0) {
+                squared += excess * excess;
+            }
+        }
+        return Math.sqrt(squared);
+    }
+
+    /**
+     * The rest of distanceToBox from its first half axis of length 0, kept apart so that distanceToBox stays small
+     * enough to be inlined.
+     */
+    private static double distanceToDegenerateBox(double[] box, int boxOffset, double dx, double dy, double dz, int flat, double squared) {
+        int degenerate = 1;
+        // A half axis of length more than 0, the ones before flat are.
+        int full = flat > 0 ? 0 : -1;
+        for (int axis = flat + 1; axis < 3; ++axis) {
+            int o = boxOffset + 3 + axis * 3;
+            double ux = box[o], uy = box[o + 1], uz = box[o + 2];
+            double length = Math.sqrt(ux * ux + uy * uy + uz * uz);
+            if (length == 0) {
+                ++degenerate;
+                flat = axis;
+                continue;
+            }
+            full = axis;
+            double excess = Math.abs(dx * ux + dy * uy + dz * uz) / length - length;
+            if (excess > 0) {
+                squared += excess * excess;
+            }
+        }
+        if (degenerate == 1) {
+            int u = boxOffset + 3 + (flat + 1) % 3 * 3;
+            int v = boxOffset + 3 + (flat + 2) % 3 * 3;
+            double nx = box[u + 1] * box[v + 2] - box[u + 2] * box[v + 1];
+            double ny = box[u + 2] * box[v] - box[u] * box[v + 2];
+            double nz = box[u] * box[v + 1] - box[u + 1] * box[v];
+            double normal = nx * nx + ny * ny + nz * nz;
+            if (normal > 0) {
+                double distance = dx * nx + dy * ny + dz * nz;
+                squared += distance * distance / normal;
+            }
+        } else if (degenerate == 2) {
+            // The distance to the line of the segment.
+            int u = boxOffset + 3 + full * 3;
+            double ux = box[u], uy = box[u + 1], uz = box[u + 2];
+            double cx = dy * uz - dz * uy;
+            double cy = dz * ux - dx * uz;
+            double cz = dx * uy - dy * ux;
+            squared += (cx * cx + cy * cy + cz * cz) / (ux * ux + uy * uy + uz * uz);
+        } else {
+            squared = dx * dx + dy * dy + dz * dz;
+        }
+        return Math.sqrt(squared);
+    }
+
+    /**
+     * The distance to the exact bounds of the region, a lower bound of the distance to the region itself.
+     * @param scratch receives the bounds of the region, 6 numbers.
+     */
+    public static double distanceToRegion(double[] region, int regionOffset, double x, double y, double z, double[] scratch, int scratchOffset) {
+        regionToBounds(region, regionOffset, scratch, scratchOffset);
+        return distanceToBounds(scratch, scratchOffset, x, y, z);
+    }
+
+    public static boolean regionContains(double[] region, int regionOffset, double longitude, double latitude, double height) {
+        if (latitude < region[regionOffset + 1] || latitude > region[regionOffset + 3]
+                || height < region[regionOffset + 4] || height > region[regionOffset + 5]) {
+            return false;
+        }
+        double west = region[regionOffset];
+        double east = region[regionOffset + 2];
+        return east >= west ? longitude >= west && longitude <= east : longitude >= west || longitude <= east;
+    }
+
+    private static void setBounds(double[] out, int offset, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        out[offset] = minX;
+        out[offset + 1] = minY;
+        out[offset + 2] = minZ;
+        out[offset + 3] = maxX;
+        out[offset + 4] = maxY;
+        out[offset + 5] = maxZ;
+    }
+
+    private static void setBox(double[] out, int offset, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        out[offset] = (minX + maxX) / 2;
+        out[offset + 1] = (minY + maxY) / 2;
+        out[offset + 2] = (minZ + maxZ) / 2;
+        out[offset + 3] = (maxX - minX) / 2;
+        out[offset + 4] = 0;
+        out[offset + 5] = 0;
+        out[offset + 6] = 0;
+        out[offset + 7] = (maxY - minY) / 2;
+        out[offset + 8] = 0;
+        out[offset + 9] = 0;
+        out[offset + 10] = 0;
+        out[offset + 11] = (maxZ - minZ) / 2;
+    }
+
+    private static void setSphere(double[] out, int offset, double x, double y, double z, double radius) {
+        out[offset] = x;
+        out[offset + 1] = y;
+        out[offset + 2] = z;
+        out[offset + 3] = radius;
+    }
+}
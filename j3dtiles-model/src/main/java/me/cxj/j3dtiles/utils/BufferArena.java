@@ -0,0 +1,158 @@
+package me.cxj.j3dtiles.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+
+/**
+ * A pool of heap buffers reused across encoding jobs. The capacities are rounded up to powers of two, and at most
+ * maxPooledPerSize free buffers of each capacity are kept. An arena is thread safe, so it can be shared by the worker
+ * threads, or each worker can have its own to avoid contention.
+ * A buffer is owned by the caller from {@link #acquire(int)} until it is given back by {@link #release(ByteBuffer)},
+ * usually once the tile has been written.
+ */
+public class BufferArena {
+
+    private static final int MIN_CAPACITY = 4096;
+
+    private final int maxPooledPerSize;
+    private final Map<Integer, Deque<byte[]>> free = new HashMap<>();
+    private final Set<byte[]> inUse = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long acquireCount;
+    private long reuseCount;
+    private long allocatedBytes;
+    private long bytesInUse;
+    private long highWaterMark;
+    private long pooledBytes;
+
+    public BufferArena() {
+        this(8);
+    }
+
+    public BufferArena(int maxPooledPerSize) {
+        if (maxPooledPerSize < 0) {
+            throw new IllegalArgumentException("Invalid max pooled buffer count: " + maxPooledPerSize + ".");
+        }
+        this.maxPooledPerSize = maxPooledPerSize;
+    }
+
+    private static int roundCapacity(int capacity) {
+        if (capacity <= MIN_CAPACITY) {
+            return MIN_CAPACITY;
+        }
+        int rounded = Integer.highestOneBit(capacity - 1) << 1;
+        return rounded > 0 ? rounded : capacity;
+    }
+
+    /**
+     * @return a little endian buffer with position 0 and limit capacity. Its content is undefined.
+     */
+    public synchronized ByteBuffer acquire(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity + ".");
+        }
+        int rounded = roundCapacity(capacity);
+        ++acquireCount;
+        Deque<byte[]> arrays = free.get(rounded);
+        byte[] array = arrays != null ? arrays.pollFirst() : null;
+        if (array != null) {
+            ++reuseCount;
+            pooledBytes -= array.length;
+        } else {
+            array = new byte[rounded];
+            allocatedBytes += rounded;
+        }
+        inUse.add(array);
+        bytesInUse += array.length;
+        highWaterMark = Math.max(highWaterMark, bytesInUse);
+        ByteBuffer buffer = ByteBuffer.wrap(array).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.limit(capacity);
+        return buffer;
+    }
+
+    /**
+     * @return true if the buffer was acquired from this arena and is not released yet.
+     */
+    public synchronized boolean owns(ByteBuffer buffer) {
+        return buffer != null && buffer.hasArray() && inUse.contains(buffer.array());
+    }
+
+    /**
+     * Give back a buffer acquired from this arena, or a view of it. It must not be used any more.
+     */
+    public synchronized void release(ByteBuffer buffer) {
+        if (!owns(buffer)) {
+            throw new IllegalArgumentException("The buffer was not acquired from this arena or is already released.");
+        }
+        byte[] array = buffer.array();
+        inUse.remove(array);
+        bytesInUse -= array.length;
+        Deque<byte[]> arrays = free.computeIfAbsent(array.length, k -> new ArrayDeque<>());
+        if (arrays.size() < maxPooledPerSize) {
+            arrays.addFirst(array);
+            pooledBytes += array.length;
+        }
+    }
+
+    /**
+     * Release the buffers acquired from this arena and ignore the others, e.g. the buffers of a tile after it is written.
+     */
+    public synchronized void recycle(ByteBuffer... buffers) {
+        for (ByteBuffer buffer : buffers) {
+            if (owns(buffer)) {
+                release(buffer);
+            }
+        }
+    }
+
+    /**
+     * Drop the free buffers. The buffers in use are not affected.
+     */
+    public synchronized void clear() {
+        free.clear();
+        pooledBytes = 0;
+    }
+
+    public synchronized long getAcquireCount() {
+        return acquireCount;
+    }
+
+    public synchronized long getReuseCount() {
+        return reuseCount;
+    }
+
+    /**
+     * @return the part of the acquisitions served by a pooled buffer, between 0 and 1.
+     */
+    public synchronized double getReuseRate() {
+        return acquireCount != 0 ? (double) reuseCount / acquireCount : 0;
+    }
+
+    /**
+     * @return the bytes allocated by the arena since its creation.
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public synchronized long getBytesInUse() {
+        return bytesInUse;
+    }
+
+    /**
+     * @return the largest number of bytes in use at the same time.
+     */
+    public synchronized long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BufferArena{acquired=" + acquireCount + ", reused=" + reuseCount + ", allocatedBytes=" + allocatedBytes
+                + ", bytesInUse=" + bytesInUse + ", highWaterMark=" + highWaterMark + ", pooledBytes=" + pooledBytes + "}";
+    }
+}
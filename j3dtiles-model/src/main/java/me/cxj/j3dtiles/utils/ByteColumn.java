@@ -0,0 +1,219 @@
+package me.cxj.j3dtiles.utils;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A growable column of byte tuples backed by a flat byte[].
+ */
+public class ByteColumn extends AbstractColumn {
+
+    private byte[] data;
+
+    public ByteColumn(int components) {
+        this(components, 0);
+    }
+
+    public ByteColumn(int components, int capacity) {
+        super(components);
+        this.data = new byte[capacity * components];
+    }
+
+    /**
+     * Use the array as the backing storage of a full column, without copying.
+     */
+    public static ByteColumn wrap(byte[] data, int components) {
+        ByteColumn column = new ByteColumn(components);
+        column.size = checkWrapped(data.length, components);
+        column.data = data;
+        return column;
+    }
+
+    public static ByteColumn of(List<byte[]> list, int components) {
+        ByteColumn column = new ByteColumn(components, list.size());
+        for (byte[] tuple : list) {
+            column.add(tuple);
+        }
+        return column;
+    }
+
+    public static ByteColumn ofScalars(List<? extends Number> list) {
+        ByteColumn column = new ByteColumn(1, list.size());
+        for (Number value : list) {
+            column.data[column.appendTuple()] = value.byteValue();
+        }
+        return column;
+    }
+
+    @Override
+    protected Object getArray() {
+        return data;
+    }
+
+    @Override
+    protected void setArray(Object array) {
+        data = (byte[]) array;
+    }
+
+    @Override
+    protected void fillZero(int fromIndex, int toIndex) {
+        Arrays.fill(data, fromIndex, toIndex, (byte) 0);
+    }
+
+    public byte getComponent(int index, int component) {
+        checkIndex(index);
+        checkComponent(component);
+        return data[index * components + component];
+    }
+
+    public void setComponent(int index, int component, byte value) {
+        checkIndex(index);
+        checkComponent(component);
+        data[index * components + component] = value;
+    }
+
+    public byte[] get(int index) {
+        byte[] tuple = new byte[components];
+        get(index, 1, tuple, 0);
+        return tuple;
+    }
+
+    public void set(int index, byte... tuple) {
+        checkTuple(tuple.length);
+        set(index, 1, tuple, 0);
+    }
+
+    public int add(byte... tuple) {
+        checkTuple(tuple.length);
+        int index = appendTuple();
+        System.arraycopy(tuple, 0, data, index * components, components);
+        return index;
+    }
+
+    public void insert(int index, byte... tuple) {
+        checkTuple(tuple.length);
+        insertTuple(index);
+        System.arraycopy(tuple, 0, data, index * components, components);
+    }
+
+    /**
+     * Copy count tuples starting from the tuple from into dst.
+     */
+    public void get(int from, int count, byte[] dst, int dstOffset) {
+        checkRange(from, count);
+        System.arraycopy(data, from * components, dst, dstOffset, count * components);
+    }
+
+    /**
+     * Overwrite count tuples starting from the tuple from with src.
+     */
+    public void set(int from, int count, byte[] src, int srcOffset) {
+        checkRange(from, count);
+        System.arraycopy(src, srcOffset, data, from * components, count * components);
+    }
+
+    /**
+     * Append count tuples from src.
+     * @return the index of the first appended tuple.
+     */
+    public int addAll(byte[] src, int srcOffset, int count) {
+        int from = size;
+        ensureCapacity(size + count);
+        System.arraycopy(src, srcOffset, data, from * components, count * components);
+        size += count;
+        return from;
+    }
+
+    public byte[] toArray() {
+        return Arrays.copyOf(data, size * components);
+    }
+
+    /**
+     * @return the backing array, only the first size() * getComponents() elements are valid.
+     */
+    public byte[] array() {
+        return data;
+    }
+
+    /**
+     * @return a buffer view of the valid part of the backing array.
+     */
+    public ByteBuffer asBuffer() {
+        return ByteBuffer.wrap(data, 0, size * components).slice();
+    }
+
+    /**
+     * @return a list view of the tuples. The tuples returned by get are copies.
+     */
+    public List<byte[]> asList() {
+        return new TupleList<byte[]>() {
+            @Override
+            public byte[] get(int index) {
+                return ByteColumn.this.get(index);
+            }
+
+            @Override
+            public byte[] set(int index, byte[] element) {
+                byte[] old = ByteColumn.this.get(index);
+                ByteColumn.this.set(index, element);
+                return old;
+            }
+
+            @Override
+            public void add(int index, byte[] element) {
+                insert(index, element);
+            }
+        };
+    }
+
+    /**
+     * @return a list view of a scalar column.
+     */
+    public List<Byte> asScalarList() {
+        checkScalar();
+        return new TupleList<Byte>() {
+            @Override
+            public Byte get(int index) {
+                checkIndex(index);
+                return data[index];
+            }
+
+            @Override
+            public Byte set(int index, Byte element) {
+                checkIndex(index);
+                byte old = data[index];
+                data[index] = element;
+                return old;
+            }
+
+            @Override
+            public void add(int index, Byte element) {
+                insertTuple(index);
+                data[index] = element;
+            }
+        };
+    }
+
+    private abstract class TupleList<E> extends AbstractList<E> implements RandomAccess {
+
+        @Override
+        public E remove(int index) {
+            E old = get(index);
+            ByteColumn.this.remove(index);
+            return old;
+        }
+
+        @Override
+        public void clear() {
+            ByteColumn.this.clear();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -1,5 +1,16 @@
 package me.cxj.j3dtiles.utils;
 
+import me.cxj.j3dtiles.impl.v1.ComponentType;
+import me.cxj.j3dtiles.impl.v1.ContainerType;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 /**
  * Created by vipcxj on 2018/11/12.
  */
@@ -29,10 +40,135 @@ public class ColorUtils {
         return new byte[] {(byte) getRed(color), (byte) getGreen(color), (byte) getBlue(color)};
     }
 
+    /**
+     * Each channel is rounded to the nearest value of {@link #fromRGB565(int)}.
+     */
     public static short toRGB565(int color) {
-        int r = getRed(color);
-        int g = getGreen(color);
-        int b = getBlue(color);
-        return (short) (r >>> 3 << 11 | g >>> 2 << 5 | b >>> 3);
+        int r = (getRed(color) * 31 + 127) / 255;
+        int g = (getGreen(color) * 63 + 127) / 255;
+        int b = (getBlue(color) * 31 + 127) / 255;
+        return (short) (r << 11 | g << 5 | b);
+    }
+
+    /**
+     * @param rgb565 the unsigned 16 bits color.
+     * @return the opaque ARGB color. The low bits of each channel repeat its high bits, so 0 and 255 are exact.
+     */
+    public static int fromRGB565(int rgb565) {
+        int r = rgb565 >>> 11 & 0b11111;
+        int g = rgb565 >>> 5 & 0b111111;
+        int b = rgb565 & 0b11111;
+        //noinspection NumericOverflow
+        return 0xFF << 24 | (r << 3 | r >>> 2) << 16 | (g << 2 | g >>> 4) << 8 | (b << 3 | b >>> 2);
+    }
+
+    /**
+     * The binary encodings of the point colors.
+     */
+    public enum Encoding {
+        RGBA(ComponentType.UNSIGNED_BYTE, ContainerType.VEC4),
+        RGB(ComponentType.UNSIGNED_BYTE, ContainerType.VEC3),
+        RGB565(ComponentType.UNSIGNED_SHORT, ContainerType.SCALAR);
+
+        private final ComponentType componentType;
+        private final ContainerType containerType;
+
+        Encoding(ComponentType componentType, ContainerType containerType) {
+            this.componentType = componentType;
+            this.containerType = containerType;
+        }
+
+        public ComponentType getComponentType() {
+            return componentType;
+        }
+
+        public ContainerType getContainerType() {
+            return containerType;
+        }
+
+        /**
+         * @return the bytes of an encoded color.
+         */
+        public int getByteSize() {
+            return componentType.getSize() * containerType.getSize();
+        }
+    }
+
+    /**
+     * The colors encoded by a task, below it the chunks are not worth handing to the executor.
+     */
+    public static final int CHUNK_SIZE = 65536;
+
+    /**
+     * Encode length ARGB colors of the array, starting from offset, into the little endian buffer at the absolute
+     * index, without allocating anything per color. The position of the buffer is not changed.
+     * @param executor where the chunks of a large array are encoded, or null to encode them on the calling thread.
+     */
+    public static void encode(int[] colors, int offset, int length, Encoding encoding, ByteBuffer out, int index, ExecutorService executor) {
+        if (offset < 0 || length < 0 || offset + length > colors.length) {
+            throw new IndexOutOfBoundsException("Invalid range of the colors: [" + offset + ", " + (offset + length) + "), the array length is " + colors.length + ".");
+        }
+        if (index < 0 || (long) index + (long) length * encoding.getByteSize() > out.limit()) {
+            throw new IndexOutOfBoundsException("Not enough room in the buffer for " + length + " " + encoding + " colors at " + index + ".");
+        }
+        if (out.order() != ByteOrder.LITTLE_ENDIAN) {
+            throw new IllegalArgumentException("The buffer should be little endian.");
+        }
+        if (executor == null || length <= CHUNK_SIZE) {
+            encode(colors, offset, length, encoding, out, index);
+            return;
+        }
+        // The chunks write to disjoint ranges with absolute puts, so they may share the buffer.
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int from = 0; from < length; from += CHUNK_SIZE) {
+                int start = from;
+                int count = Math.min(length - from, CHUNK_SIZE);
+                futures.add(executor.submit(() -> encode(colors, offset + start, count, encoding, out, index + start * encoding.getByteSize())));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while encoding the colors.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static void encode(int[] colors, int offset, int length, Encoding encoding, ByteBuffer out, int index) {
+        switch (encoding) {
+            case RGBA:
+                for (int i = offset; i < offset + length; ++i, index += 4) {
+                    int color = colors[i];
+                    // ARGB rotated left by 8 bits is RGBA, reversed so the little endian int keeps the byte order.
+                    out.putInt(index, Integer.reverseBytes(color << 8 | color >>> 24));
+                }
+                break;
+            case RGB:
+                for (int i = offset; i < offset + length; ++i, index += 3) {
+                    int color = colors[i];
+                    out.put(index, (byte) getRed(color));
+                    out.put(index + 1, (byte) getGreen(color));
+                    out.put(index + 2, (byte) getBlue(color));
+                }
+                break;
+            case RGB565:
+                for (int i = offset; i < offset + length; ++i, index += 2) {
+                    out.putShort(index, toRGB565(colors[i]));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("This is impossible.");
+        }
     }
 }
@@ -4,6 +4,8 @@ import de.javagl.jgltf.model.GltfModel;
 import de.javagl.jgltf.model.GltfUtils;
 import de.javagl.jgltf.model.io.GltfModelWriter;
 import de.javagl.jgltf.model.io.VersionUtils;
+import de.javagl.jgltf.model.io.v2.BinaryGltfChunksV2;
+import de.javagl.jgltf.model.io.v2.MeshoptCompression;
 import de.javagl.jgltf.model.v2.GltfModelV2;
 import me.cxj.j3dtiles.impl.v1.ComponentType;
 import me.cxj.j3dtiles.impl.v1.ContainerType;
@@ -75,6 +77,32 @@ public class CommonUtils {
         return reference;
     }
 
+    public static short[] toShortArray(int[] data) {
+        short[] out = new short[data.length];
+        for (int i = 0; i < data.length; ++i) {
+            out[i] = (short) data[i];
+        }
+        return out;
+    }
+
+    public static int[] toIntArray(long[] data) {
+        int[] out = new int[data.length];
+        for (int i = 0; i < data.length; ++i) {
+            out[i] = (int) data[i];
+        }
+        return out;
+    }
+
+    public static ContainerType getContainerType(int components) {
+        for (ContainerType type : ContainerType.values()) {
+            if (type.getSize() == components) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("No container type has " + components + " components.");
+    }
+
+
     public static void mismatchedLength(String property) {
         throw new IllegalArgumentException("Mismatched length of " + property + " array.");
     }
@@ -250,7 +278,7 @@ public class CommonUtils {
             return bytes;
         }
         int jsonChunkLength = intBuffer.get(3);
-        int jsonChunkEndOffset = 12 + jsonChunkLength;
+        int jsonChunkEndOffset = 20 + jsonChunkLength;
         byte[] out = new byte[gltfLength + padding];
         System.arraycopy(bytes, 0, out, 0, jsonChunkEndOffset);
         Arrays.fill(out, jsonChunkEndOffset, jsonChunkEndOffset + padding, (byte) 0x20);
@@ -262,7 +290,50 @@ public class CommonUtils {
         return out;
     }
 
+    public static BinaryGltfChunksV2 getPadGltfChunks(GltfModel model, int paddingUnit) throws IOException {
+        return getPadGltfChunks(model, paddingUnit, null);
+    }
+
+    /**
+     * @param compression the buffer views to compress with EXT_meshopt_compression, may be null.
+     */
+    public static BinaryGltfChunksV2 getPadGltfChunks(GltfModel model, int paddingUnit, MeshoptCompression compression) throws IOException {
+        if (!(model instanceof GltfModelV2)) {
+            throw new IllegalArgumentException("Only support gltf v2.");
+        }
+        if (paddingUnit % 4 != 0) {
+            throw new IllegalArgumentException("The input padding unit should be the multiple of 4 which now is " + paddingUnit + ".");
+        }
+        return BinaryGltfChunksV2.create((GltfModelV2) model, paddingUnit, compression);
+    }
+
     public static int calcGltfSize(GltfModel model, int paddingUnit) {
-        return getPadGltf(model, paddingUnit).length;
+        return calcGltfSize(model, paddingUnit, null);
+    }
+
+    public static int calcGltfSize(GltfModel model, int paddingUnit, MeshoptCompression compression) {
+        try {
+            return getPadGltfChunks(model, paddingUnit, compression).getByteLength();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static int utf8Length(CharSequence s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                ++length;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                ++i;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
     }
 }
@@ -4,6 +4,7 @@ import me.cxj.j3dtiles.impl.v1.BinaryBodyReference;
 import me.cxj.j3dtiles.impl.v1.ComponentType;
 import me.cxj.j3dtiles.impl.v1.ContainerType;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -20,6 +21,21 @@ public class FeatureUtils {
     private static final String PROP_TYPE = "type";
 
     public static long[] getBatchId(Map<String, Object> jsonHeader, byte[] binaryBuffer, int length) {
+        BatchIdColumn column = getBatchIdColumn(jsonHeader, binaryBuffer, length);
+        if (column == null) {
+            return null;
+        }
+        long[] out = new long[length];
+        for (int i = 0; i < length; ++i) {
+            out[i] = column.getUnsigned(i);
+        }
+        return out;
+    }
+
+    /**
+     * Decode the batch ids into a primitive column, without boxing or widening them.
+     */
+    public static BatchIdColumn getBatchIdColumn(Map<String, Object> jsonHeader, byte[] binaryBuffer, int length) {
         Object objValue = jsonHeader.get("BATCH_ID");
         if (objValue == null) {
             return null;
@@ -32,38 +48,22 @@ public class FeatureUtils {
             }
             int offset = TypeUtils.toInteger(objByteOffset);
             Object objComponentType = mapValue.get(PROP_COMPONENT_TYPE);
-            String componentType;
+            ComponentType componentType;
             if (objComponentType == null) {
-                componentType = "UNSIGNED_SHORT";
+                componentType = ComponentType.UNSIGNED_SHORT;
             } else if ("UNSIGNED_BYTE".equals(objComponentType.toString())) {
-                componentType = "UNSIGNED_BYTE";
+                componentType = ComponentType.UNSIGNED_BYTE;
             } else if ("UNSIGNED_SHORT".equals(objComponentType.toString())) {
-                componentType = "UNSIGNED_SHORT";
+                componentType = ComponentType.UNSIGNED_SHORT;
             } else if ("UNSIGNED_INT".equals(objComponentType.toString())) {
-                componentType = "UNSIGNED_INT";
+                componentType = ComponentType.UNSIGNED_INT;
             } else {
                 throw new IllegalArgumentException("Valid component types of the property 'BATCH_ID' are uint8, uint16 (default), and uint32.");
             }
-            long[] out = new long[length];
-            switch (componentType) {
-                case "UNSIGNED_BYTE":
-                    for (int i = 0; i < length; ++i) {
-                        out[i] = binaryBuffer[offset + i];
-                    }
-                    return out;
-                case "UNSIGNED_SHORT":
-                    for (int i = 0; i < length; ++i) {
-                        out[i] = StreamUtils.bytes2UnsignedShortLE(binaryBuffer, offset + i * 2);
-                    }
-                    return out;
-                case "UNSIGNED_INT":
-                    for (int i = 0; i < length; ++i) {
-                        out[i] = StreamUtils.bytes2UnsignedIntLE(binaryBuffer, offset + i * 4);
-                    }
-                    return out;
-                default:
-                    throw new IllegalArgumentException("This is impossible!");
+            if (offset < 0 || (long) offset + (long) length * componentType.getSize() > binaryBuffer.length) {
+                throw new IllegalArgumentException("The BATCH_ID at byteOffset " + offset + " is out of the binary body.");
             }
+            return BatchIdColumn.read(ByteBuffer.wrap(binaryBuffer, offset, binaryBuffer.length - offset), componentType, length);
         }
         throw new IllegalArgumentException("Invalid BATCH_ID. It must be a BinaryBodyReference.");
     }
@@ -564,6 +564,127 @@ public class FeatureUtils {
         }
     }
 
+    public static long getComponentAsLong(ByteBuffer buffer, ComponentType componentType, int position) {
+        switch (componentType) {
+            case BYTE:
+                return buffer.get(position);
+            case UNSIGNED_BYTE:
+                return buffer.get(position) & 0xFF;
+            case SHORT:
+                return buffer.getShort(position);
+            case UNSIGNED_SHORT:
+                return buffer.getShort(position) & 0xFFFF;
+            case INT:
+                return buffer.getInt(position);
+            case UNSIGNED_INT:
+                return buffer.getInt(position) & 0xFFFFFFFFL;
+            case FLOAT:
+                return (long) buffer.getFloat(position);
+            case DOUBLE:
+                return (long) buffer.getDouble(position);
+            default:
+                throw new IllegalArgumentException("Unsupported componentType: " + componentType + ".");
+        }
+    }
+
+    public static double getComponentAsDouble(ByteBuffer buffer, ComponentType componentType, int position) {
+        switch (componentType) {
+            case FLOAT:
+                return buffer.getFloat(position);
+            case DOUBLE:
+                return buffer.getDouble(position);
+            default:
+                return getComponentAsLong(buffer, componentType, position);
+        }
+    }
+
+    /**
+     * Decode a single batch table value, with the same boxed types as {@link #getBatchTableValues(BinaryBodyReference, byte[], String, int)}.
+     * The buffer must be little endian.
+     */
+    public static Object getBatchTableValue(BinaryBodyReference reference, ByteBuffer buffer, int batchId) {
+        ComponentType componentType = reference.getComponentType();
+        int containerSize = reference.getType().getSize();
+        int width = componentType.getSize();
+        int position = reference.getByteOffset() + batchId * containerSize * width;
+        if (containerSize == 1) {
+            switch (componentType) {
+                case BYTE:
+                    return buffer.get(position);
+                case UNSIGNED_BYTE:
+                    return buffer.get(position) & 0xFF;
+                case SHORT:
+                    return buffer.getShort(position);
+                case UNSIGNED_SHORT:
+                    return buffer.getShort(position) & 0xFFFF;
+                case INT:
+                    return buffer.getInt(position);
+                case UNSIGNED_INT:
+                    return buffer.getInt(position) & 0xFFFFFFFFL;
+                case FLOAT:
+                    return buffer.getFloat(position);
+                case DOUBLE:
+                    return buffer.getDouble(position);
+                default:
+                    throw new IllegalArgumentException("Unsupported componentType: " + componentType + ".");
+            }
+        }
+        switch (componentType) {
+            case BYTE: {
+                byte[] out = new byte[containerSize];
+                for (int i = 0; i < containerSize; ++i) {
+                    out[i] = buffer.get(position + i);
+                }
+                return out;
+            }
+            case UNSIGNED_BYTE:
+            case UNSIGNED_SHORT: {
+                int[] out = new int[containerSize];
+                for (int i = 0; i < containerSize; ++i) {
+                    out[i] = (int) getComponentAsLong(buffer, componentType, position + i * width);
+                }
+                return out;
+            }
+            case SHORT: {
+                short[] out = new short[containerSize];
+                for (int i = 0; i < containerSize; ++i) {
+                    out[i] = buffer.getShort(position + i * 2);
+                }
+                return out;
+            }
+            case INT: {
+                int[] out = new int[containerSize];
+                for (int i = 0; i < containerSize; ++i) {
+                    out[i] = buffer.getInt(position + i * 4);
+                }
+                return out;
+            }
+            case UNSIGNED_INT: {
+                long[] out = new long[containerSize];
+                for (int i = 0; i < containerSize; ++i) {
+                    out[i] = buffer.getInt(position + i * 4) & 0xFFFFFFFFL;
+                }
+                return out;
+            }
+            case FLOAT: {
+                float[] out = new float[containerSize];
+                for (int i = 0; i < containerSize; ++i) {
+                    out[i] = buffer.getFloat(position + i * 4);
+                }
+                return out;
+            }
+            case DOUBLE: {
+                double[] out = new double[containerSize];
+                for (int i = 0; i < containerSize; ++i) {
+                    out[i] = buffer.getDouble(position + i * 8);
+                }
+                return out;
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported componentType: " + componentType + ".");
+        }
+    }
+
     public static BinaryBodyReference toReference(Object value) {
         if (value instanceof BinaryBodyReference) {
             return (BinaryBodyReference) value;
@@ -0,0 +1,219 @@
+package me.cxj.j3dtiles.utils;
+
+import java.nio.FloatBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A growable column of float tuples backed by a flat float[].
+ */
+public class FloatColumn extends AbstractColumn {
+
+    private float[] data;
+
+    public FloatColumn(int components) {
+        this(components, 0);
+    }
+
+    public FloatColumn(int components, int capacity) {
+        super(components);
+        this.data = new float[capacity * components];
+    }
+
+    /**
+     * Use the array as the backing storage of a full column, without copying.
+     */
+    public static FloatColumn wrap(float[] data, int components) {
+        FloatColumn column = new FloatColumn(components);
+        column.size = checkWrapped(data.length, components);
+        column.data = data;
+        return column;
+    }
+
+    public static FloatColumn of(List<float[]> list, int components) {
+        FloatColumn column = new FloatColumn(components, list.size());
+        for (float[] tuple : list) {
+            column.add(tuple);
+        }
+        return column;
+    }
+
+    public static FloatColumn ofScalars(List<? extends Number> list) {
+        FloatColumn column = new FloatColumn(1, list.size());
+        for (Number value : list) {
+            column.data[column.appendTuple()] = value.floatValue();
+        }
+        return column;
+    }
+
+    @Override
+    protected Object getArray() {
+        return data;
+    }
+
+    @Override
+    protected void setArray(Object array) {
+        data = (float[]) array;
+    }
+
+    @Override
+    protected void fillZero(int fromIndex, int toIndex) {
+        Arrays.fill(data, fromIndex, toIndex, (float) 0);
+    }
+
+    public float getComponent(int index, int component) {
+        checkIndex(index);
+        checkComponent(component);
+        return data[index * components + component];
+    }
+
+    public void setComponent(int index, int component, float value) {
+        checkIndex(index);
+        checkComponent(component);
+        data[index * components + component] = value;
+    }
+
+    public float[] get(int index) {
+        float[] tuple = new float[components];
+        get(index, 1, tuple, 0);
+        return tuple;
+    }
+
+    public void set(int index, float... tuple) {
+        checkTuple(tuple.length);
+        set(index, 1, tuple, 0);
+    }
+
+    public int add(float... tuple) {
+        checkTuple(tuple.length);
+        int index = appendTuple();
+        System.arraycopy(tuple, 0, data, index * components, components);
+        return index;
+    }
+
+    public void insert(int index, float... tuple) {
+        checkTuple(tuple.length);
+        insertTuple(index);
+        System.arraycopy(tuple, 0, data, index * components, components);
+    }
+
+    /**
+     * Copy count tuples starting from the tuple from into dst.
+     */
+    public void get(int from, int count, float[] dst, int dstOffset) {
+        checkRange(from, count);
+        System.arraycopy(data, from * components, dst, dstOffset, count * components);
+    }
+
+    /**
+     * Overwrite count tuples starting from the tuple from with src.
+     */
+    public void set(int from, int count, float[] src, int srcOffset) {
+        checkRange(from, count);
+        System.arraycopy(src, srcOffset, data, from * components, count * components);
+    }
+
+    /**
+     * Append count tuples from src.
+     * @return the index of the first appended tuple.
+     */
+    public int addAll(float[] src, int srcOffset, int count) {
+        int from = size;
+        ensureCapacity(size + count);
+        System.arraycopy(src, srcOffset, data, from * components, count * components);
+        size += count;
+        return from;
+    }
+
+    public float[] toArray() {
+        return Arrays.copyOf(data, size * components);
+    }
+
+    /**
+     * @return the backing array, only the first size() * getComponents() elements are valid.
+     */
+    public float[] array() {
+        return data;
+    }
+
+    /**
+     * @return a buffer view of the valid part of the backing array.
+     */
+    public FloatBuffer asBuffer() {
+        return FloatBuffer.wrap(data, 0, size * components).slice();
+    }
+
+    /**
+     * @return a list view of the tuples. The tuples returned by get are copies.
+     */
+    public List<float[]> asList() {
+        return new TupleList<float[]>() {
+            @Override
+            public float[] get(int index) {
+                return FloatColumn.this.get(index);
+            }
+
+            @Override
+            public float[] set(int index, float[] element) {
+                float[] old = FloatColumn.this.get(index);
+                FloatColumn.this.set(index, element);
+                return old;
+            }
+
+            @Override
+            public void add(int index, float[] element) {
+                insert(index, element);
+            }
+        };
+    }
+
+    /**
+     * @return a list view of a scalar column.
+     */
+    public List<Float> asScalarList() {
+        checkScalar();
+        return new TupleList<Float>() {
+            @Override
+            public Float get(int index) {
+                checkIndex(index);
+                return data[index];
+            }
+
+            @Override
+            public Float set(int index, Float element) {
+                checkIndex(index);
+                float old = data[index];
+                data[index] = element;
+                return old;
+            }
+
+            @Override
+            public void add(int index, Float element) {
+                insertTuple(index);
+                data[index] = element;
+            }
+        };
+    }
+
+    private abstract class TupleList<E> extends AbstractList<E> implements RandomAccess {
+
+        @Override
+        public E remove(int index) {
+            E old = get(index);
+            FloatColumn.this.remove(index);
+            return old;
+        }
+
+        @Override
+        public void clear() {
+            FloatColumn.this.clear();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
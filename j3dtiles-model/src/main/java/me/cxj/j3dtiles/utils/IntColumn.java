@@ -0,0 +1,250 @@
+package me.cxj.j3dtiles.utils;
+
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A growable column of int tuples backed by a flat int[].
+ */
+public class IntColumn extends AbstractColumn {
+
+    private int[] data;
+
+    public IntColumn(int components) {
+        this(components, 0);
+    }
+
+    public IntColumn(int components, int capacity) {
+        super(components);
+        this.data = new int[capacity * components];
+    }
+
+    /**
+     * Use the array as the backing storage of a full column, without copying.
+     */
+    public static IntColumn wrap(int[] data, int components) {
+        IntColumn column = new IntColumn(components);
+        column.size = checkWrapped(data.length, components);
+        column.data = data;
+        return column;
+    }
+
+    public static IntColumn of(List<int[]> list, int components) {
+        IntColumn column = new IntColumn(components, list.size());
+        for (int[] tuple : list) {
+            column.add(tuple);
+        }
+        return column;
+    }
+
+    public static IntColumn ofScalars(List<? extends Number> list) {
+        IntColumn column = new IntColumn(1, list.size());
+        for (Number value : list) {
+            column.data[column.appendTuple()] = value.intValue();
+        }
+        return column;
+    }
+
+    @Override
+    protected Object getArray() {
+        return data;
+    }
+
+    @Override
+    protected void setArray(Object array) {
+        data = (int[]) array;
+    }
+
+    @Override
+    protected void fillZero(int fromIndex, int toIndex) {
+        Arrays.fill(data, fromIndex, toIndex, 0);
+    }
+
+    public int getComponent(int index, int component) {
+        checkIndex(index);
+        checkComponent(component);
+        return data[index * components + component];
+    }
+
+    public void setComponent(int index, int component, int value) {
+        checkIndex(index);
+        checkComponent(component);
+        data[index * components + component] = value;
+    }
+
+    public int[] get(int index) {
+        int[] tuple = new int[components];
+        get(index, 1, tuple, 0);
+        return tuple;
+    }
+
+    public void set(int index, int... tuple) {
+        checkTuple(tuple.length);
+        set(index, 1, tuple, 0);
+    }
+
+    public int add(int... tuple) {
+        checkTuple(tuple.length);
+        int index = appendTuple();
+        System.arraycopy(tuple, 0, data, index * components, components);
+        return index;
+    }
+
+    public void insert(int index, int... tuple) {
+        checkTuple(tuple.length);
+        insertTuple(index);
+        System.arraycopy(tuple, 0, data, index * components, components);
+    }
+
+    /**
+     * Copy count tuples starting from the tuple from into dst.
+     */
+    public void get(int from, int count, int[] dst, int dstOffset) {
+        checkRange(from, count);
+        System.arraycopy(data, from * components, dst, dstOffset, count * components);
+    }
+
+    /**
+     * Overwrite count tuples starting from the tuple from with src.
+     */
+    public void set(int from, int count, int[] src, int srcOffset) {
+        checkRange(from, count);
+        System.arraycopy(src, srcOffset, data, from * components, count * components);
+    }
+
+    /**
+     * Append count tuples from src.
+     * @return the index of the first appended tuple.
+     */
+    public int addAll(int[] src, int srcOffset, int count) {
+        int from = size;
+        ensureCapacity(size + count);
+        System.arraycopy(src, srcOffset, data, from * components, count * components);
+        size += count;
+        return from;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(data, size * components);
+    }
+
+    /**
+     * @return the backing array, only the first size() * getComponents() elements are valid.
+     */
+    public int[] array() {
+        return data;
+    }
+
+    /**
+     * @return a buffer view of the valid part of the backing array.
+     */
+    public IntBuffer asBuffer() {
+        return IntBuffer.wrap(data, 0, size * components).slice();
+    }
+
+    /**
+     * @return a list view of the tuples. The tuples returned by get are copies.
+     */
+    public List<int[]> asList() {
+        return new TupleList<int[]>() {
+            @Override
+            public int[] get(int index) {
+                return IntColumn.this.get(index);
+            }
+
+            @Override
+            public int[] set(int index, int[] element) {
+                int[] old = IntColumn.this.get(index);
+                IntColumn.this.set(index, element);
+                return old;
+            }
+
+            @Override
+            public void add(int index, int[] element) {
+                insert(index, element);
+            }
+        };
+    }
+
+    /**
+     * @return a list view of a scalar column.
+     */
+    public List<Integer> asScalarList() {
+        checkScalar();
+        return new TupleList<Integer>() {
+            @Override
+            public Integer get(int index) {
+                checkIndex(index);
+                return data[index];
+            }
+
+            @Override
+            public Integer set(int index, Integer element) {
+                checkIndex(index);
+                int old = data[index];
+                data[index] = element;
+                return old;
+            }
+
+            @Override
+            public void add(int index, Integer element) {
+                insertTuple(index);
+                data[index] = element;
+            }
+        };
+    }
+
+    public long getUnsignedComponent(int index, int component) {
+        return getComponent(index, component) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @return a list view of a scalar column as unsigned values.
+     */
+    public List<Long> asUnsignedScalarList() {
+        checkScalar();
+        return new TupleList<Long>() {
+            @Override
+            public Long get(int index) {
+                checkIndex(index);
+                return data[index] & 0xFFFFFFFFL;
+            }
+
+            @Override
+            public Long set(int index, Long element) {
+                Long old = get(index);
+                data[index] = element.intValue();
+                return old;
+            }
+
+            @Override
+            public void add(int index, Long element) {
+                insertTuple(index);
+                data[index] = element.intValue();
+            }
+        };
+    }
+
+    private abstract class TupleList<E> extends AbstractList<E> implements RandomAccess {
+
+        @Override
+        public E remove(int index) {
+            E old = get(index);
+            IntColumn.this.remove(index);
+            return old;
+        }
+
+        @Override
+        public void clear() {
+            IntColumn.this.clear();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
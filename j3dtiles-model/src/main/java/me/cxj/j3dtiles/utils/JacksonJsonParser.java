@@ -0,0 +1,357 @@
+package me.cxj.j3dtiles.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import me.cxj.j3dtiles.impl.v1.BinaryBodyReference;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * The default {@link JsonParser}, built on the Jackson streaming api. The trees are read token by token into
+ * {@link LinkedHashMap}s, {@link ArrayList}s, Integer, Long or Double numbers, strings and booleans, and the headers
+ * are written token by token, including the primitive arrays (byte arrays as unsigned numbers), the enums and the {@link BinaryBodyReference}s,
+ * without going through the data binding. Only the values of other types are handed to the shared {@link ObjectMapper}.
+ * An instance is thread safe, and {@link #getInstance()} can be shared by all the tiles.
+ */
+public class JacksonJsonParser implements JsonParser {
+
+    private static final JacksonJsonParser INSTANCE = new JacksonJsonParser(new ObjectMapper());
+
+    private final ObjectMapper mapper;
+    private final JsonFactory factory;
+
+    public JacksonJsonParser(ObjectMapper mapper) {
+        this.mapper = mapper;
+        this.factory = mapper.getFactory();
+    }
+
+    public static JacksonJsonParser getInstance() {
+        return INSTANCE;
+    }
+
+    public JsonFactory getFactory() {
+        return factory;
+    }
+
+    @Override
+    public Object parse(String json) {
+        try (com.fasterxml.jackson.core.JsonParser parser = factory.createParser(json)) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                throw new IllegalArgumentException("Empty json.");
+            }
+            Object value = readValue(parser, token);
+            if (parser.nextToken() != null) {
+                throw new IllegalArgumentException("Unexpected content after the json value at " + parser.getCurrentLocation() + ".");
+            }
+            return value;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid json: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Map<String, Object> parseObject(String json) {
+        Object value = parse(json);
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("The json is not an object.");
+        }
+        //noinspection unchecked
+        return (Map<String, Object>) value;
+    }
+
+    @Override
+    public List<Object> parseArray(String json) {
+        Object value = parse(json);
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException("The json is not an array.");
+        }
+        //noinspection unchecked
+        return (List<Object>) value;
+    }
+
+    /**
+     * Same as {@link #parseObject(String)}, but the arrays of strings directly under the root object are dictionary
+     * encoded while they are read, the same way as {@link StringColumn#encodeIfRepeated(List)}, e.g. the columns of a
+     * batch table. The list of the repeated strings is never built.
+     */
+    public Map<String, Object> parseObjectWithStringColumns(String json) {
+        try (com.fasterxml.jackson.core.JsonParser parser = factory.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("The json is not an object.");
+            }
+            Map<String, Object> object = new LinkedHashMap<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                object.put(name, token == JsonToken.START_ARRAY ? readStringColumn(parser) : readValue(parser, token));
+            }
+            if (parser.nextToken() != null) {
+                throw new IllegalArgumentException("Unexpected content after the json value at " + parser.getCurrentLocation() + ".");
+            }
+            return object;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid json: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read the array at the current token into a string column, until a value other than a string or null is met.
+     * The strings are looked up in the dictionary by their characters, so a repeated string is only built once.
+     */
+    private static List<?> readStringColumn(com.fasterxml.jackson.core.JsonParser parser) throws IOException {
+        List<String> dictionary = new ArrayList<>();
+        // Open addressing from the hash of the characters to the code of the string, -1 for an empty slot.
+        int[] slots = new int[16];
+        Arrays.fill(slots, -1);
+        int[] codes = new int[16];
+        int size = 0;
+        List<Object> array = null;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (array == null && (token == JsonToken.VALUE_STRING || token == JsonToken.VALUE_NULL)) {
+                int code = -1;
+                if (token == JsonToken.VALUE_STRING) {
+                    char[] chars = parser.getTextCharacters();
+                    int offset = parser.getTextOffset();
+                    int length = parser.getTextLength();
+                    int hash = 0;
+                    for (int i = offset; i < offset + length; ++i) {
+                        hash = 31 * hash + chars[i];
+                    }
+                    int slot = mix(hash) & (slots.length - 1);
+                    while ((code = slots[slot]) != -1 && !equals(dictionary.get(code), chars, offset, length)) {
+                        slot = (slot + 1) & (slots.length - 1);
+                    }
+                    if (code == -1) {
+                        code = dictionary.size();
+                        dictionary.add(new String(chars, offset, length));
+                        slots[slot] = code;
+                        if (dictionary.size() * 2 > slots.length) {
+                            slots = rehash(dictionary, slots.length * 2);
+                        }
+                    }
+                }
+                if (size == codes.length) {
+                    codes = Arrays.copyOf(codes, size + (size >> 1));
+                }
+                codes[size++] = code;
+            } else {
+                if (array == null) {
+                    array = decode(dictionary, codes, size);
+                }
+                array.add(readValue(parser, token));
+            }
+        }
+        if (array != null) {
+            return array;
+        }
+        return size >= 2 && dictionary.size() <= size / 2 ? StringColumn.wrap(dictionary, codes, size).asList() : decode(dictionary, codes, size);
+    }
+
+    private static List<Object> decode(List<String> dictionary, int[] codes, int size) {
+        List<Object> values = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            values.add(codes[i] != -1 ? dictionary.get(codes[i]) : null);
+        }
+        return values;
+    }
+
+    /**
+     * Spread the hash, the hashes of similar strings like "a1", "a2" are consecutive and would cluster.
+     */
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(String value, char[] chars, int offset, int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; ++i) {
+            if (value.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] rehash(List<String> dictionary, int capacity) {
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, -1);
+        for (int code = 0; code < dictionary.size(); ++code) {
+            // The hash of a string is the one computed from its characters.
+            int slot = mix(dictionary.get(code).hashCode()) & (capacity - 1);
+            while (slots[slot] != -1) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            slots[slot] = code;
+        }
+        return slots;
+    }
+
+    /**
+     * Read the value starting at the current token of the parser, the same way as {@link #parse(String)}, e.g. the extensions
+     * of an object while streaming a larger document. The parser is left on the last token of the value.
+     */
+    public static Object readValue(com.fasterxml.jackson.core.JsonParser parser) throws IOException {
+        return readValue(parser, parser.getCurrentToken());
+    }
+
+    private static Object readValue(com.fasterxml.jackson.core.JsonParser parser, JsonToken token) throws IOException {
+        switch (token) {
+            case START_OBJECT: {
+                Map<String, Object> object = new LinkedHashMap<>();
+                while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    object.put(name, readValue(parser, parser.nextToken()));
+                }
+                return object;
+            }
+            case START_ARRAY: {
+                List<Object> array = new ArrayList<>();
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    array.add(readValue(parser, token));
+                }
+                return array;
+            }
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+                switch (parser.getNumberType()) {
+                    case INT:
+                        return parser.getIntValue();
+                    case LONG:
+                        return parser.getLongValue();
+                    default:
+                        return parser.getBigIntegerValue();
+                }
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDoubleValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return null;
+            default:
+                throw new IllegalArgumentException("Unexpected json token " + token + " at " + parser.getCurrentLocation() + ".");
+        }
+    }
+
+    @Override
+    public String toJsonString(Object obj) {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = factory.createGenerator(writer)) {
+            writeValue(generator, obj);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Write the value the same way as {@link #toJsonString(Object)}, e.g. into a larger document being streamed.
+     */
+    public void writeValue(JsonGenerator generator, Object value) throws IOException {
+        // The leaves of the trees are tested by their exact class first. Testing them against the Map and Iterable
+        // interfaces before was 3 to 5 times slower than the data binding on large string and number columns.
+        Class<?> type = value != null ? value.getClass() : null;
+        if (value == null) {
+            generator.writeNull();
+        } else if (type == String.class) {
+            generator.writeString((String) value);
+        } else if (type == Integer.class) {
+            generator.writeNumber((Integer) value);
+        } else if (type == Double.class) {
+            generator.writeNumber((Double) value);
+        } else if (type == Long.class) {
+            generator.writeNumber((Long) value);
+        } else if (type == Boolean.class) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof Map) {
+            generator.writeStartObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                generator.writeFieldName(String.valueOf(entry.getKey()));
+                writeValue(generator, entry.getValue());
+            }
+            generator.writeEndObject();
+        } else if (value instanceof Iterable) {
+            generator.writeStartArray();
+            for (Object element : (Iterable<?>) value) {
+                writeValue(generator, element);
+            }
+            generator.writeEndArray();
+        } else if (value instanceof CharSequence) {
+            generator.writeString(value.toString());
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            generator.writeNumber(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            generator.writeNumber((Long) value);
+        } else if (value instanceof Float) {
+            generator.writeNumber((Float) value);
+        } else if (value instanceof Double) {
+            generator.writeNumber((Double) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof Enum) {
+            generator.writeString(((Enum<?>) value).name());
+        } else if (value instanceof float[]) {
+            float[] array = (float[]) value;
+            generator.writeStartArray();
+            for (float v : array) {
+                generator.writeNumber(v);
+            }
+            generator.writeEndArray();
+        } else if (value instanceof double[]) {
+            double[] array = (double[]) value;
+            generator.writeArray(array, 0, array.length);
+        } else if (value instanceof int[]) {
+            int[] array = (int[]) value;
+            generator.writeArray(array, 0, array.length);
+        } else if (value instanceof long[]) {
+            long[] array = (long[]) value;
+            generator.writeArray(array, 0, array.length);
+        } else if (value instanceof short[]) {
+            short[] array = (short[]) value;
+            generator.writeStartArray();
+            for (short v : array) {
+                generator.writeNumber(v);
+            }
+            generator.writeEndArray();
+        } else if (value instanceof byte[]) {
+            // The byte arrays of the headers are unsigned, e.g. CONSTANT_RGBA.
+            byte[] array = (byte[]) value;
+            generator.writeStartArray();
+            for (byte v : array) {
+                generator.writeNumber(v & 0xFF);
+            }
+            generator.writeEndArray();
+        } else if (value instanceof Object[]) {
+            generator.writeStartArray();
+            for (Object element : (Object[]) value) {
+                writeValue(generator, element);
+            }
+            generator.writeEndArray();
+        } else if (value instanceof BinaryBodyReference) {
+            BinaryBodyReference reference = (BinaryBodyReference) value;
+            generator.writeStartObject();
+            generator.writeNumberField("byteOffset", reference.getByteOffset());
+            if (reference.getComponentType() != null) {
+                generator.writeStringField("componentType", reference.getComponentType().name());
+            }
+            if (reference.getType() != null) {
+                generator.writeStringField("type", reference.getType().name());
+            }
+            generator.writeEndObject();
+        } else {
+            mapper.writeValue(generator, value);
+        }
+    }
+}
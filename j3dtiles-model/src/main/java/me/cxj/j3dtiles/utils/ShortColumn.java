@@ -0,0 +1,271 @@
+package me.cxj.j3dtiles.utils;
+
+import java.nio.ShortBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A growable column of short tuples backed by a flat short[].
+ */
+public class ShortColumn extends AbstractColumn {
+
+    private short[] data;
+
+    public ShortColumn(int components) {
+        this(components, 0);
+    }
+
+    public ShortColumn(int components, int capacity) {
+        super(components);
+        this.data = new short[capacity * components];
+    }
+
+    /**
+     * Use the array as the backing storage of a full column, without copying.
+     */
+    public static ShortColumn wrap(short[] data, int components) {
+        ShortColumn column = new ShortColumn(components);
+        column.size = checkWrapped(data.length, components);
+        column.data = data;
+        return column;
+    }
+
+    public static ShortColumn of(List<short[]> list, int components) {
+        ShortColumn column = new ShortColumn(components, list.size());
+        for (short[] tuple : list) {
+            column.add(tuple);
+        }
+        return column;
+    }
+
+    public static ShortColumn ofScalars(List<? extends Number> list) {
+        ShortColumn column = new ShortColumn(1, list.size());
+        for (Number value : list) {
+            column.data[column.appendTuple()] = value.shortValue();
+        }
+        return column;
+    }
+
+    @Override
+    protected Object getArray() {
+        return data;
+    }
+
+    @Override
+    protected void setArray(Object array) {
+        data = (short[]) array;
+    }
+
+    @Override
+    protected void fillZero(int fromIndex, int toIndex) {
+        Arrays.fill(data, fromIndex, toIndex, (short) 0);
+    }
+
+    public short getComponent(int index, int component) {
+        checkIndex(index);
+        checkComponent(component);
+        return data[index * components + component];
+    }
+
+    public void setComponent(int index, int component, short value) {
+        checkIndex(index);
+        checkComponent(component);
+        data[index * components + component] = value;
+    }
+
+    public short[] get(int index) {
+        short[] tuple = new short[components];
+        get(index, 1, tuple, 0);
+        return tuple;
+    }
+
+    public void set(int index, short... tuple) {
+        checkTuple(tuple.length);
+        set(index, 1, tuple, 0);
+    }
+
+    public int add(short... tuple) {
+        checkTuple(tuple.length);
+        int index = appendTuple();
+        System.arraycopy(tuple, 0, data, index * components, components);
+        return index;
+    }
+
+    public void insert(int index, short... tuple) {
+        checkTuple(tuple.length);
+        insertTuple(index);
+        System.arraycopy(tuple, 0, data, index * components, components);
+    }
+
+    /**
+     * Copy count tuples starting from the tuple from into dst.
+     */
+    public void get(int from, int count, short[] dst, int dstOffset) {
+        checkRange(from, count);
+        System.arraycopy(data, from * components, dst, dstOffset, count * components);
+    }
+
+    /**
+     * Overwrite count tuples starting from the tuple from with src.
+     */
+    public void set(int from, int count, short[] src, int srcOffset) {
+        checkRange(from, count);
+        System.arraycopy(src, srcOffset, data, from * components, count * components);
+    }
+
+    /**
+     * Append count tuples from src.
+     * @return the index of the first appended tuple.
+     */
+    public int addAll(short[] src, int srcOffset, int count) {
+        int from = size;
+        ensureCapacity(size + count);
+        System.arraycopy(src, srcOffset, data, from * components, count * components);
+        size += count;
+        return from;
+    }
+
+    public short[] toArray() {
+        return Arrays.copyOf(data, size * components);
+    }
+
+    /**
+     * @return the backing array, only the first size() * getComponents() elements are valid.
+     */
+    public short[] array() {
+        return data;
+    }
+
+    /**
+     * @return a buffer view of the valid part of the backing array.
+     */
+    public ShortBuffer asBuffer() {
+        return ShortBuffer.wrap(data, 0, size * components).slice();
+    }
+
+    /**
+     * @return a list view of the tuples. The tuples returned by get are copies.
+     */
+    public List<short[]> asList() {
+        return new TupleList<short[]>() {
+            @Override
+            public short[] get(int index) {
+                return ShortColumn.this.get(index);
+            }
+
+            @Override
+            public short[] set(int index, short[] element) {
+                short[] old = ShortColumn.this.get(index);
+                ShortColumn.this.set(index, element);
+                return old;
+            }
+
+            @Override
+            public void add(int index, short[] element) {
+                insert(index, element);
+            }
+        };
+    }
+
+    /**
+     * @return a list view of a scalar column.
+     */
+    public List<Short> asScalarList() {
+        checkScalar();
+        return new TupleList<Short>() {
+            @Override
+            public Short get(int index) {
+                checkIndex(index);
+                return data[index];
+            }
+
+            @Override
+            public Short set(int index, Short element) {
+                checkIndex(index);
+                short old = data[index];
+                data[index] = element;
+                return old;
+            }
+
+            @Override
+            public void add(int index, Short element) {
+                insertTuple(index);
+                data[index] = element;
+            }
+        };
+    }
+
+    public int getUnsignedComponent(int index, int component) {
+        return getComponent(index, component) & 0xFFFF;
+    }
+
+    public static ShortColumn ofUnsigned(List<int[]> list, int components) {
+        ShortColumn column = new ShortColumn(components, list.size());
+        for (int[] tuple : list) {
+            column.checkTuple(tuple.length);
+            int index = column.appendTuple();
+            for (int i = 0; i < components; ++i) {
+                column.data[index * components + i] = (short) tuple[i];
+            }
+        }
+        return column;
+    }
+
+    /**
+     * @return a list view of the tuples as unsigned values. The tuples returned by get are copies.
+     */
+    public List<int[]> asUnsignedList() {
+        return new TupleList<int[]>() {
+            @Override
+            public int[] get(int index) {
+                checkIndex(index);
+                int[] tuple = new int[components];
+                for (int i = 0; i < components; ++i) {
+                    tuple[i] = data[index * components + i] & 0xFFFF;
+                }
+                return tuple;
+            }
+
+            @Override
+            public int[] set(int index, int[] element) {
+                int[] old = get(index);
+                checkTuple(element.length);
+                for (int i = 0; i < components; ++i) {
+                    data[index * components + i] = (short) element[i];
+                }
+                return old;
+            }
+
+            @Override
+            public void add(int index, int[] element) {
+                checkTuple(element.length);
+                insertTuple(index);
+                for (int i = 0; i < components; ++i) {
+                    data[index * components + i] = (short) element[i];
+                }
+            }
+        };
+    }
+
+    private abstract class TupleList<E> extends AbstractList<E> implements RandomAccess {
+
+        @Override
+        public E remove(int index) {
+            E old = get(index);
+            ShortColumn.this.remove(index);
+            return old;
+        }
+
+        @Override
+        public void clear() {
+            ShortColumn.this.clear();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -1,13 +1,20 @@
 package me.cxj.j3dtiles.utils;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
 /**
  * Created by vipcxj on 2018/10/30.
+ *
+ * The array codecs work on whole columns through little endian {@link ByteBuffer} views instead of shifting byte by byte.
  */
 public class StreamUtils {
 
     public static short bytes2ShortLE(byte b1, byte b2) {
-        short mask = 0xff;
-        return (short) ((b1 & mask) | (b2 & mask << 8));
+        int mask = 0xff;
+        return (short) ((b1 & mask) | (b2 & mask) << 8);
     }
 
     public static short bytes2ShortLE(byte[] bytes, int offset) {
@@ -16,15 +23,13 @@ public class StreamUtils {
 
     public static short[] bytes2ShortArrayLE(byte[] bytes, int offset, int targetLength) {
         short[] out = new short[targetLength];
-        for (int i = 0; i < targetLength; ++i) {
-            out[i] = bytes2ShortLE(bytes, offset + i * 2);
-        }
+        wrapLE(bytes, offset, targetLength * 2).asShortBuffer().get(out);
         return out;
     }
 
     public static int bytes2UnsignedShortLE(byte b1, byte b2) {
-        short mask = 0xff;
-        return (b1 & mask) | (b2 & mask << 8);
+        int mask = 0xff;
+        return (b1 & mask) | (b2 & mask) << 8;
     }
 
     public static int bytes2UnsignedShortLE(byte[] bytes, int offset) {
@@ -33,40 +38,56 @@ public class StreamUtils {
 
     public static int[] bytes2UnsignedShortArrayLE(byte[] bytes, int offset, int targetLength) {
         int[] out = new int[targetLength];
+        ShortBuffer buffer = wrapLE(bytes, offset, targetLength * 2).asShortBuffer();
         for (int i = 0; i < targetLength; ++i) {
-            out[i] = bytes2UnsignedShortLE(bytes, offset + i * 2);
+            out[i] = buffer.get(i) & 0xFFFF;
         }
         return out;
     }
 
     public static int bytes2IntLE(byte b1, byte b2, byte b3, byte b4) {
         int mask = 0xff;
-        return (b1 & mask) | (b2 & mask << 8) | (b3 & mask << 16) | (b4 & mask << 24);
+        return (b1 & mask) | (b2 & mask) << 8 | (b3 & mask) << 16 | (b4 & mask) << 24;
     }
 
     public static int bytes2IntLE(byte[] bytes, int offset) {
         return bytes2IntLE(bytes[offset], bytes[offset + 1], bytes[offset + 2], bytes[offset + 3]);
     }
 
+    public static int[] bytes2IntArrayLE(byte[] bytes, int offset, int targetLength) {
+        int[] out = new int[targetLength];
+        wrapLE(bytes, offset, targetLength * 4).asIntBuffer().get(out);
+        return out;
+    }
+
     public static long bytes2UnsignedIntLE(byte b1, byte b2, byte b3, byte b4) {
         long mask = 0xff;
-        return (b1 & mask) | (b2 & mask << 8) | (b3 & mask << 16) | (b4 & mask << 24);
+        return (b1 & mask) | (b2 & mask) << 8 | (b3 & mask) << 16 | (b4 & mask) << 24;
     }
 
     public static long bytes2UnsignedIntLE(byte[] bytes, int offset) {
-        return bytes2IntLE(bytes[offset], bytes[offset + 1], bytes[offset + 2], bytes[offset + 3]);
+        return bytes2UnsignedIntLE(bytes[offset], bytes[offset + 1], bytes[offset + 2], bytes[offset + 3]);
+    }
+
+    public static long[] bytes2UnsignedIntArrayLE(byte[] bytes, int offset, int targetLength) {
+        long[] out = new long[targetLength];
+        IntBuffer buffer = wrapLE(bytes, offset, targetLength * 4).asIntBuffer();
+        for (int i = 0; i < targetLength; ++i) {
+            out[i] = buffer.get(i) & 0xFFFFFFFFL;
+        }
+        return out;
     }
 
     public static long bytes2LongLE(byte b1, byte b2, byte b3, byte b4, byte b5, byte b6, byte b7, byte b8) {
         long mask = 0xff;
         return (b1 & mask)
-                | (b2 & mask << 8)
-                | (b3 & mask << 16)
-                | (b4 & mask << 24)
-                | (b5 & mask << 32)
-                | (b6 & mask << 40)
-                | (b7 & mask << 48)
-                | (b8 & mask << 56);
+                | (b2 & mask) << 8
+                | (b3 & mask) << 16
+                | (b4 & mask) << 24
+                | (b5 & mask) << 32
+                | (b6 & mask) << 40
+                | (b7 & mask) << 48
+                | (b8 & mask) << 56;
     }
 
     public static long bytes2LongLE(byte[] bytes, int offset) {
@@ -83,9 +104,7 @@ public class StreamUtils {
 
     public static float[] bytes2FloatArrayLE(byte[] bytes, int offset, int targetLength) {
         float[] out = new float[targetLength];
-        for (int i = 0; i < targetLength; ++i) {
-            out[i] = bytes2FloatLE(bytes, offset + i * 4);
-        }
+        wrapLE(bytes, offset, targetLength * 4).asFloatBuffer().get(out);
         return out;
     }
 
@@ -97,6 +116,12 @@ public class StreamUtils {
         return Double.longBitsToDouble(bytes2LongLE(bytes, offset));
     }
 
+    public static double[] bytes2DoubleArrayLE(byte[] bytes, int offset, int targetLength) {
+        double[] out = new double[targetLength];
+        wrapLE(bytes, offset, targetLength * 8).asDoubleBuffer().get(out);
+        return out;
+    }
+
     public static void byteArrayCopyToByteArrayLE(byte[] target, int offset, byte[] data) {
         int srcLen = data.length;
         if (offset + srcLen > target.length) {
@@ -121,10 +146,7 @@ public class StreamUtils {
         if (offset + tarLen > target.length) {
             throw new IllegalArgumentException("Target buffer is too small.");
         }
-        for (int i = 0; i < srcLen; ++i) {
-            target[offset + 2 * i] = (byte) (0xFF & data[i]);
-            target[offset + 2 * i + 1] = (byte) (0xFF & (data[i] >> 8));
-        }
+        wrapLE(target, offset, tarLen).asShortBuffer().put(data);
     }
 
     public static void unsignedShortArrayCopyToByteArrayLE(byte[] target, int offset, int[] data) {
@@ -133,39 +155,30 @@ public class StreamUtils {
         if (offset + tarLen > target.length) {
             throw new IllegalArgumentException("Target buffer is too small.");
         }
+        ShortBuffer buffer = wrapLE(target, offset, tarLen).asShortBuffer();
         for (int i = 0; i < srcLen; ++i) {
-            target[offset + 2 * i] = (byte) (0xFF & data[i]);
-            target[offset + 2 * i + 1] = (byte) (0xFF & (data[i] >> 8));
+            buffer.put(i, (short) data[i]);
         }
     }
 
-    @SuppressWarnings("Duplicates")
     public static void intArrayCopyToByteArrayLE(byte[] target, int offset, int[] data) {
         int srcLen = data.length;
         int tarLen = srcLen * 4;
         if (offset + tarLen > target.length) {
             throw new IllegalArgumentException("Target buffer is too small.");
         }
-        for (int i = 0; i < srcLen; ++i) {
-            target[offset + 4 * i] = (byte) (0xFF & data[i]);
-            target[offset + 4 * i + 1] = (byte) (0xFF & (data[i] >> 8));
-            target[offset + 4 * i + 2] = (byte) (0xFF & (data[i] >> 16));
-            target[offset + 4 * i + 3] = (byte) (0xFF & (data[i] >> 24));
-        }
+        wrapLE(target, offset, tarLen).asIntBuffer().put(data);
     }
 
-    @SuppressWarnings("Duplicates")
     public static void unsignedIntArrayCopyToByteArrayLE(byte[] target, int offset, long[] data) {
         int srcLen = data.length;
         int tarLen = srcLen * 4;
         if (offset + tarLen > target.length) {
             throw new IllegalArgumentException("Target buffer is too small.");
         }
+        IntBuffer buffer = wrapLE(target, offset, tarLen).asIntBuffer();
         for (int i = 0; i < srcLen; ++i) {
-            target[offset + 4 * i] = (byte) (0xFF & data[i]);
-            target[offset + 4 * i + 1] = (byte) (0xFF & (data[i] >> 8));
-            target[offset + 4 * i + 2] = (byte) (0xFF & (data[i] >> 16));
-            target[offset + 4 * i + 3] = (byte) (0xFF & (data[i] >> 24));
+            buffer.put(i, (int) data[i]);
         }
     }
 
@@ -175,13 +188,7 @@ public class StreamUtils {
         if (offset + tarLen > target.length) {
             throw new IllegalArgumentException("Target buffer is too small.");
         }
-        for (int i = 0; i < srcLen; ++i) {
-            int intValue = Float.floatToIntBits(data[i]);
-            target[offset + 4 * i] = (byte) (0xFF & intValue);
-            target[offset + 4 * i + 1] = (byte) (0xFF & (intValue >> 8));
-            target[offset + 4 * i + 2] = (byte) (0xFF & (intValue >> 16));
-            target[offset + 4 * i + 3] = (byte) (0xFF & (intValue >> 24));
-        }
+        wrapLE(target, offset, tarLen).asFloatBuffer().put(data);
     }
 
     public static void doubleArrayCopyToByteArrayLE(byte[] target, int offset, double[] data) {
@@ -190,16 +197,53 @@ public class StreamUtils {
         if (offset + tarLen > target.length) {
             throw new IllegalArgumentException("Target buffer is too small.");
         }
-        for (int i = 0; i < srcLen; ++i) {
-            long longValue = Double.doubleToLongBits(data[i]);
-            target[offset + 8 * i] = (byte) (0xFF & longValue);
-            target[offset + 8 * i + 1] = (byte) (0xFF & (longValue >> 8));
-            target[offset + 8 * i + 2] = (byte) (0xFF & (longValue >> 16));
-            target[offset + 8 * i + 3] = (byte) (0xFF & (longValue >> 24));
-            target[offset + 8 * i + 3] = (byte) (0xFF & (longValue >> 32));
-            target[offset + 8 * i + 3] = (byte) (0xFF & (longValue >> 40));
-            target[offset + 8 * i + 3] = (byte) (0xFF & (longValue >> 48));
-            target[offset + 8 * i + 3] = (byte) (0xFF & (longValue >> 56));
-        }
+        wrapLE(target, offset, tarLen).asDoubleBuffer().put(data);
+    }
+
+    private static ByteBuffer wrapLE(byte[] bytes, int offset, int length) {
+        return ByteBuffer.wrap(bytes, offset, length).slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * A little endian view of length bytes at the position of the buffer. The buffer may be direct or not,
+     * in any byte order, and its position is not changed.
+     */
+    private static ByteBuffer viewLE(ByteBuffer buffer, int position, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(position + length);
+        view.position(position);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public static void buffer2ShortArrayLE(ByteBuffer buffer, int position, short[] out, int offset, int length) {
+        viewLE(buffer, position, length * 2).asShortBuffer().get(out, offset, length);
+    }
+
+    public static void buffer2IntArrayLE(ByteBuffer buffer, int position, int[] out, int offset, int length) {
+        viewLE(buffer, position, length * 4).asIntBuffer().get(out, offset, length);
+    }
+
+    public static void buffer2FloatArrayLE(ByteBuffer buffer, int position, float[] out, int offset, int length) {
+        viewLE(buffer, position, length * 4).asFloatBuffer().get(out, offset, length);
+    }
+
+    public static void buffer2DoubleArrayLE(ByteBuffer buffer, int position, double[] out, int offset, int length) {
+        viewLE(buffer, position, length * 8).asDoubleBuffer().get(out, offset, length);
+    }
+
+    public static void shortArrayCopyToBufferLE(ByteBuffer target, int position, short[] data, int offset, int length) {
+        viewLE(target, position, length * 2).asShortBuffer().put(data, offset, length);
+    }
+
+    public static void intArrayCopyToBufferLE(ByteBuffer target, int position, int[] data, int offset, int length) {
+        viewLE(target, position, length * 4).asIntBuffer().put(data, offset, length);
+    }
+
+    public static void floatArrayCopyToBufferLE(ByteBuffer target, int position, float[] data, int offset, int length) {
+        viewLE(target, position, length * 4).asFloatBuffer().put(data, offset, length);
+    }
+
+    public static void doubleArrayCopyToBufferLE(ByteBuffer target, int position, double[] data, int offset, int length) {
+        viewLE(target, position, length * 8).asDoubleBuffer().put(data, offset, length);
     }
 }
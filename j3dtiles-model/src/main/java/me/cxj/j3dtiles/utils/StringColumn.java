@@ -0,0 +1,213 @@
+package me.cxj.j3dtiles.utils;
+
+import java.util.*;
+
+/**
+ * A growable column of strings, stored as a dictionary of the distinct strings and an int code per row.
+ * A null string has the code -1. The dictionary only grows, a string no more used keeps its code.
+ */
+public class StringColumn extends AbstractColumn {
+
+    private int[] codes;
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> dictionaryIndex = new HashMap<>();
+
+    public StringColumn() {
+        this(0);
+    }
+
+    public StringColumn(int capacity) {
+        super(1);
+        this.codes = new int[capacity];
+    }
+
+    /**
+     * @param values strings or nulls.
+     */
+    public static StringColumn of(List<?> values) {
+        StringColumn column = new StringColumn(values.size());
+        for (Object value : values) {
+            if (value != null && !(value instanceof String)) {
+                throw new IllegalArgumentException("Not a string: " + value + ".");
+            }
+            column.add((String) value);
+        }
+        return column;
+    }
+
+    /**
+     * @param dictionary the distinct strings.
+     * @param codes the codes of the rows, only the first size ones are used.
+     */
+    static StringColumn wrap(List<String> dictionary, int[] codes, int size) {
+        StringColumn column = new StringColumn(0);
+        column.codes = codes;
+        column.size = size;
+        for (String value : dictionary) {
+            column.dictionaryIndex.put(value, column.dictionary.size());
+            column.dictionary.add(value);
+        }
+        return column;
+    }
+
+    /**
+     * Dictionary encode the values if they are strings or nulls, and at most half of them are distinct.
+     * @return a list view of the encoded column, or the values themselves. The values are returned as they are if they
+     * are already a view of a column.
+     */
+    public static List<?> encodeIfRepeated(List<?> values) {
+        if (values.size() < 2 || values instanceof StringList) {
+            return values;
+        }
+        StringColumn column = new StringColumn(values.size());
+        int maxDistinct = values.size() / 2;
+        for (Object value : values) {
+            if ((value != null && !(value instanceof String)) || column.getDictionarySize() > maxDistinct) {
+                return values;
+            }
+            column.add((String) value);
+        }
+        return column.getDictionarySize() <= maxDistinct ? column.asList() : values;
+    }
+
+    /**
+     * @return the column of a list view returned by {@link #asList()}, or null if the list is not such a view.
+     */
+    public static StringColumn fromList(List<?> list) {
+        return list instanceof StringList ? ((StringList) list).getColumn() : null;
+    }
+
+    @Override
+    protected Object getArray() {
+        return codes;
+    }
+
+    @Override
+    protected void setArray(Object array) {
+        codes = (int[]) array;
+    }
+
+    @Override
+    protected void fillZero(int fromIndex, int toIndex) {
+        Arrays.fill(codes, fromIndex, toIndex, -1);
+    }
+
+    /**
+     * @return the code of the string, added to the dictionary if needed. -1 for null.
+     */
+    public int encode(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer code = dictionaryIndex.get(value);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.add(value);
+            dictionaryIndex.put(value, code);
+        }
+        return code;
+    }
+
+    /**
+     * @return the string of the code, null for -1.
+     */
+    public String decode(int code) {
+        if (code == -1) {
+            return null;
+        }
+        if (code < 0 || code >= dictionary.size()) {
+            throw new IndexOutOfBoundsException("Invalid code: " + code + ", the dictionary size is " + dictionary.size() + ".");
+        }
+        return dictionary.get(code);
+    }
+
+    public String get(int index) {
+        return decode(getCode(index));
+    }
+
+    public int getCode(int index) {
+        checkIndex(index);
+        return codes[index];
+    }
+
+    public String set(int index, String value) {
+        checkIndex(index);
+        String old = decode(codes[index]);
+        codes[index] = encode(value);
+        return old;
+    }
+
+    public int add(String value) {
+        int code = encode(value);
+        int index = appendTuple();
+        codes[index] = code;
+        return index;
+    }
+
+    public void insert(int index, String value) {
+        int code = encode(value);
+        insertTuple(index);
+        codes[index] = code;
+    }
+
+    public List<String> getDictionary() {
+        return Collections.unmodifiableList(dictionary);
+    }
+
+    public int getDictionarySize() {
+        return dictionary.size();
+    }
+
+    /**
+     * @return the backing array of the codes, only the first size() elements are valid.
+     */
+    public int[] array() {
+        return codes;
+    }
+
+    /**
+     * @return a list view of the strings, decoded on access.
+     */
+    public List<String> asList() {
+        return new StringList();
+    }
+
+    private class StringList extends AbstractList<String> implements RandomAccess {
+
+        private StringColumn getColumn() {
+            return StringColumn.this;
+        }
+
+        @Override
+        public String get(int index) {
+            return StringColumn.this.get(index);
+        }
+
+        @Override
+        public String set(int index, String element) {
+            return StringColumn.this.set(index, element);
+        }
+
+        @Override
+        public void add(int index, String element) {
+            insert(index, element);
+        }
+
+        @Override
+        public String remove(int index) {
+            String old = StringColumn.this.get(index);
+            StringColumn.this.remove(index);
+            return old;
+        }
+
+        @Override
+        public void clear() {
+            StringColumn.this.clear();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package de.javagl.jgltf.model.io.v2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.javagl.jgltf.model.io.v2.MeshoptCodec.Filter;
+import de.javagl.jgltf.model.io.v2.MeshoptCodec.Mode;
+
+public class MeshoptCodecTest
+{
+    /**
+     * Counts around the 16 byte groups and the 256 element blocks
+     */
+    private static final int COUNTS[] =
+        { 0, 1, 15, 16, 17, 255, 256, 257, 513, 1000 };
+
+    /**
+     * Returns random attributes, in runs of 100 elements that alternate
+     * between small steps and noise, so that both small and full width 
+     * deltas are encoded
+     *
+     * @param random The random
+     * @param count The number of elements
+     * @param byteStride The size of one element
+     * @return The data
+     */
+    private static byte[] createAttributes(
+        Random random, int count, int byteStride)
+    {
+        ByteBuffer data = ByteBuffer.allocate(count * byteStride);
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        int components = byteStride / 4;
+        float previous[] = new float[components];
+        for (int i = 0; i < count; i++)
+        {
+            boolean smooth = (i / 100) % 2 == 0;
+            for (int c = 0; c < components; c++)
+            {
+                if (smooth)
+                {
+                    previous[c] += random.nextFloat() * 0.01f;
+                    data.putFloat(previous[c]);
+                }
+                else
+                {
+                    data.putInt(random.nextInt());
+                }
+            }
+        }
+        return data.array();
+    }
+
+    /**
+     * Returns the triangles of a grid, with the given offset added to
+     * each index
+     *
+     * @param width The number of vertices of a row
+     * @param height The number of rows
+     * @param offset The offset
+     * @return The indices
+     */
+    private static int[] createGrid(int width, int height, int offset)
+    {
+        int indices[] = new int[(width - 1) * (height - 1) * 6];
+        int n = 0;
+        for (int y = 0; y < height - 1; y++)
+        {
+            for (int x = 0; x < width - 1; x++)
+            {
+                int v = offset + y * width + x;
+                indices[n++] = v;
+                indices[n++] = v + 1;
+                indices[n++] = v + width;
+                indices[n++] = v + 1;
+                indices[n++] = v + width + 1;
+                indices[n++] = v + width;
+            }
+        }
+        return indices;
+    }
+
+    private static ByteBuffer toBuffer(int indices[], int indexSize)
+    {
+        ByteBuffer data = ByteBuffer.allocate(indices.length * indexSize);
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        for (int index : indices)
+        {
+            if (indexSize == 2)
+            {
+                data.putShort((short)index);
+            }
+            else
+            {
+                data.putInt(index);
+            }
+        }
+        data.flip();
+        return data;
+    }
+
+    private static int[] toIndices(byte data[], int indexSize)
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int indices[] = new int[data.length / indexSize];
+        for (int i = 0; i < indices.length; i++)
+        {
+            indices[i] = indexSize == 2 ?
+                buffer.getShort() & 0xFFFF : buffer.getInt();
+        }
+        return indices;
+    }
+
+    private static byte[] roundTrip(
+        byte data[], int count, int byteStride, Mode mode)
+    {
+        byte encoded[] = MeshoptCodec.encode(
+            ByteBuffer.wrap(data), count, byteStride, mode);
+        return MeshoptCodec.decode(
+            ByteBuffer.wrap(encoded), count, byteStride, mode, Filter.NONE);
+    }
+
+    /**
+     * Make sure that the decoded triangles are the given ones, in the
+     * same order, where each triangle may be rotated
+     *
+     * @param expected The expected indices
+     * @param actual The actual indices
+     */
+    private static void assertTrianglesEqual(int expected[], int actual[])
+    {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i += 3)
+        {
+            int a = expected[i];
+            int b = expected[i + 1];
+            int c = expected[i + 2];
+            int x = actual[i];
+            int y = actual[i + 1];
+            int z = actual[i + 2];
+            boolean rotated =
+                (x == a && y == b && z == c) ||
+                (x == b && y == c && z == a) ||
+                (x == c && y == a && z == b);
+            assertTrue("Triangle " + i / 3 + ": expected " + a + " " + b
+                + " " + c + ", but was " + x + " " + y + " " + z, rotated);
+        }
+    }
+
+    @Test
+    public void testAttributesRoundTrip()
+    {
+        Random random = new Random(0);
+        for (int byteStride : new int[] { 4, 8, 12, 16 })
+        {
+            for (int count : COUNTS)
+            {
+                byte data[] = createAttributes(random, count, byteStride);
+                byte decoded[] =
+                    roundTrip(data, count, byteStride, Mode.ATTRIBUTES);
+                assertArrayEquals(
+                    "stride " + byteStride + ", count " + count,
+                    data, decoded);
+            }
+        }
+    }
+
+    @Test
+    public void testSmoothAttributesAreSmaller()
+    {
+        int count = 1000;
+        ByteBuffer data = ByteBuffer.allocate(count * 12);
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < count; i++)
+        {
+            data.putFloat(i % 32).putFloat(i / 32).putFloat(0);
+        }
+        data.flip();
+        byte encoded[] =
+            MeshoptCodec.encode(data, count, 12, Mode.ATTRIBUTES);
+        assertTrue(encoded.length < data.remaining() / 2);
+    }
+
+    @Test
+    public void testTrianglesRoundTrip()
+    {
+        Random random = new Random(1);
+        for (int indexSize : new int[] { 2, 4 })
+        {
+            int offset = indexSize == 2 ? 0 : 100000;
+            int grid[] = createGrid(37, 29, offset);
+            // Triangles that share no edges or vertices with the previous
+            // ones, and degenerate ones
+            int scattered[] = new int[300];
+            for (int i = 0; i < scattered.length; i++)
+            {
+                scattered[i] = offset + random.nextInt(60000);
+            }
+            scattered[0] = scattered[1];
+            int single[] = { offset + 2, offset + 1, offset };
+            for (int indices[] : Arrays.asList(grid, scattered, single))
+            {
+                byte decoded[] = roundTrip(toBuffer(indices, indexSize).array(),
+                    indices.length, indexSize, Mode.TRIANGLES);
+                assertTrianglesEqual(indices, toIndices(decoded, indexSize));
+            }
+        }
+    }
+
+    @Test
+    public void testTrianglesAreSmaller()
+    {
+        int indices[] = createGrid(100, 100, 0);
+        byte encoded[] = MeshoptCodec.encode(
+            toBuffer(indices, 4), indices.length, 4, Mode.TRIANGLES);
+        assertTrue(encoded.length < indices.length);
+    }
+
+    @Test
+    public void testIndicesRoundTrip()
+    {
+        Random random = new Random(2);
+        for (int indexSize : new int[] { 2, 4 })
+        {
+            // The deltas of the sequence have to be smaller than 2^30
+            int bound = indexSize == 2 ? 1 << 16 : 1 << 30;
+            for (int count : COUNTS)
+            {
+                int indices[] = new int[count];
+                for (int i = 0; i < count; i++)
+                {
+                    // Runs of close indices with jumps in both directions
+                    indices[i] = i % 50 == 0 || i == 0 ?
+                        random.nextInt(bound) :
+                        Math.max(0, Math.min(bound - 1,
+                            indices[i - 1] + random.nextInt(7) - 3));
+                }
+                if (count > 2)
+                {
+                    indices[1] = bound - 1;
+                    indices[2] = 0;
+                }
+                byte decoded[] = roundTrip(toBuffer(indices, indexSize).array(),
+                    count, indexSize, Mode.INDICES);
+                assertArrayEquals(
+                    "index size " + indexSize + ", count " + count,
+                    indices, toIndices(decoded, indexSize));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIndexDeltaTooLarge()
+    {
+        int indices[] = { 0, Integer.MAX_VALUE };
+        MeshoptCodec.encode(toBuffer(indices, 4), 2, 4, Mode.INDICES);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidAttributeStride()
+    {
+        MeshoptCodec.encode(ByteBuffer.allocate(12), 2, 6, Mode.ATTRIBUTES);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTriangleCount()
+    {
+        MeshoptCodec.encode(ByteBuffer.allocate(8), 4, 2, Mode.TRIANGLES);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidIndexSize()
+    {
+        MeshoptCodec.encode(ByteBuffer.allocate(3), 3, 1, Mode.INDICES);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLength()
+    {
+        MeshoptCodec.encode(ByteBuffer.allocate(16), 3, 4, Mode.ATTRIBUTES);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFilterOnIndices()
+    {
+        int indices[] = { 0, 1, 2 };
+        byte encoded[] = MeshoptCodec.encode(
+            toBuffer(indices, 2), 3, 2, Mode.TRIANGLES);
+        MeshoptCodec.decode(ByteBuffer.wrap(encoded), 3, 2,
+            Mode.TRIANGLES, Filter.OCTAHEDRAL);
+    }
+
+    @Test
+    public void testTruncatedData()
+    {
+        byte data[] = createAttributes(new Random(3), 300, 8);
+        byte encoded[] = MeshoptCodec.encode(
+            ByteBuffer.wrap(data), 300, 8, Mode.ATTRIBUTES);
+        for (int length : new int[] { 0, 10, encoded.length - 1 })
+        {
+            try
+            {
+                MeshoptCodec.decode(ByteBuffer.wrap(encoded, 0, length),
+                    300, 8, Mode.ATTRIBUTES, Filter.NONE);
+                fail("Decoded " + length + " of " + encoded.length + " bytes");
+            }
+            catch (IllegalArgumentException e)
+            {
+                // Expected
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package me.cxj.j3dtiles.model.v1;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static me.cxj.j3dtiles.model.v1.TileTestUtils.*;
+import static org.junit.Assert.*;
+
+public class AsyncTileReaderTest {
+
+    private Path root;
+    private List<byte[]> tiles;
+    private List<Path> files;
+
+    /**
+     * Decode tasks wait here until the test runs them.
+     */
+    private final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("j3dtiles");
+        tiles = createTiles();
+        files = new ArrayList<>();
+        for (int i = 0; i < tiles.size(); ++i) {
+            Path file = root.resolve(i + ".tile");
+            Files.write(file, tiles.get(i));
+            files.add(file);
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> stream = Files.walk(root)) {
+            for (Path path : stream.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timeout.");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            AsyncTileReader reader = new AsyncTileReader(PARSER, executor, 3);
+            List<CompletableFuture<TileModel>> futures = new ArrayList<>();
+            for (Path file : files) {
+                futures.add(reader.read(file));
+            }
+            for (int i = 0; i < files.size(); ++i) {
+                assertArrayEquals(write(read(tiles.get(i))), write(futures.get(i).get()));
+            }
+            waitFor(() -> reader.getRunningCount() == 0);
+            assertEquals(0, reader.getPendingCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testReadIndexEntries() throws Exception {
+        TileIndex index = new TileScanner(PARSER, 1).scan(root);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            AsyncTileReader reader = new AsyncTileReader(PARSER, executor, 2);
+            for (TileIndexEntry entry : index.getEntries()) {
+                byte[] file = Files.readAllBytes(root.resolve(entry.getPath()));
+                byte[] tile = Arrays.copyOfRange(file, (int) entry.getOffset(), (int) entry.getOffset() + (int) entry.getByteLength());
+                assertArrayEquals(write(read(tile)), write(reader.read(root, entry).get()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBoundedConcurrency() throws Exception {
+        AsyncTileReader reader = new AsyncTileReader(PARSER, tasks::add, 2);
+        List<CompletableFuture<TileModel>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            futures.add(reader.read(files.get(i)));
+        }
+        waitFor(() -> tasks.size() == 2);
+        assertEquals(2, reader.getRunningCount());
+        assertEquals(3, reader.getPendingCount());
+        int done = 0;
+        while (done < 5) {
+            tasks.take().run();
+            ++done;
+            assertTrue(reader.getRunningCount() <= 2);
+            assertEquals(Math.max(0, 3 - done), reader.getPendingCount());
+        }
+        for (int i = 0; i < 5; ++i) {
+            assertArrayEquals(write(read(tiles.get(i))), write(futures.get(i).get()));
+        }
+        assertEquals(0, reader.getRunningCount());
+    }
+
+    @Test
+    public void testCancelPending() throws Exception {
+        AsyncTileReader reader = new AsyncTileReader(PARSER, tasks::add, 1);
+        CompletableFuture<TileModel> first = reader.read(files.get(0));
+        CompletableFuture<TileModel> second = reader.read(files.get(1));
+        CompletableFuture<TileModel> third = reader.read(files.get(2));
+        assertTrue(second.cancel(true));
+        waitFor(() -> tasks.size() == 1);
+        tasks.take().run();
+        assertNotNull(first.get());
+        // The cancelled request is skipped, so the slot goes to the third one.
+        tasks.take().run();
+        assertNotNull(third.get());
+        assertTrue(tasks.isEmpty());
+        assertEquals(0, reader.getRunningCount());
+        assertEquals(0, reader.getPendingCount());
+    }
+
+    @Test
+    public void testCancelRunning() throws Exception {
+        AsyncTileReader reader = new AsyncTileReader(PARSER, tasks::add, 1);
+        CompletableFuture<TileModel> first = reader.read(files.get(0));
+        CompletableFuture<TileModel> second = reader.read(files.get(1));
+        waitFor(() -> tasks.size() == 1);
+        assertTrue(first.cancel(true));
+        // The slot is given back as soon as the request is cancelled.
+        Runnable cancelled = tasks.take();
+        waitFor(() -> tasks.size() == 1);
+        cancelled.run();
+        assertTrue(first.isCancelled());
+        tasks.take().run();
+        assertNotNull(second.get());
+        assertEquals(0, reader.getRunningCount());
+    }
+
+    @Test
+    public void testMissingFile() throws Exception {
+        AsyncTileReader reader = new AsyncTileReader(PARSER, tasks::add, 1);
+        CompletableFuture<TileModel> missing = reader.read(root.resolve("missing.b3dm"));
+        CompletableFuture<TileModel> next = reader.read(files.get(0));
+        try {
+            missing.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof NoSuchFileException);
+        }
+        waitFor(() -> tasks.size() == 1);
+        tasks.take().run();
+        assertNotNull(next.get());
+        assertEquals(0, reader.getRunningCount());
+    }
+
+    @Test
+    public void testInvalidTile() throws Exception {
+        AsyncTileReader reader = new AsyncTileReader(PARSER, Runnable::run, 1);
+        Path file = root.resolve("invalid.b3dm");
+        byte[] tile = tiles.get(0);
+        Files.write(file, Arrays.copyOf(tile, tile.length - 8));
+        try {
+            reader.read(file).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        waitFor(() -> reader.getRunningCount() == 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRange() {
+        new AsyncTileReader(PARSER, Runnable::run, 1).read(files.get(0), 0, 8);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidConcurrency() {
+        new AsyncTileReader(PARSER, Runnable::run, 0);
+    }
+}
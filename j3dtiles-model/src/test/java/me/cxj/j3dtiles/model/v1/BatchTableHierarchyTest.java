@@ -0,0 +1,311 @@
+package me.cxj.j3dtiles.model.v1;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+
+import static me.cxj.j3dtiles.model.v1.TileTestUtils.PARSER;
+import static org.junit.Assert.*;
+
+public class BatchTableHierarchyTest {
+
+    /**
+     * 4 walls in 2 buildings in a zone, with single parents in json arrays. The zone is its own parent.
+     */
+    private static final String ARRAYS_JSON = "{"
+            + "\"classes\":["
+            + "{\"name\":\"Wall\",\"length\":4,\"instances\":{\"color\":[\"white\",\"red\",\"yellow\",\"gray\"],\"windows\":[1,2,3,4]}},"
+            + "{\"name\":\"Building\",\"length\":2,\"instances\":{\"name\":[\"unit29\",\"unit20\"],\"address\":[\"100 Main\",\"102 Main\"]}},"
+            + "{\"name\":\"Zone\",\"length\":1,\"instances\":{\"name\":[\"zone\"],\"type\":[\"residential\"]}}"
+            + "],"
+            + "\"instancesLength\":7,"
+            + "\"classIds\":[0,0,0,0,1,1,2],"
+            + "\"parentIds\":[4,4,5,5,6,6,6]"
+            + "}";
+
+    /**
+     * 2 walls, 2 buildings and an owner, with the indices and the heights of the buildings in the binary body. The wall 0
+     * is in both buildings, and only the building 2 has the owner.
+     */
+    private static final String BINARY_JSON = "{"
+            + "\"classes\":["
+            + "{\"name\":\"Wall\",\"length\":2,\"instances\":{\"color\":[\"white\",\"red\"]}},"
+            + "{\"name\":\"Building\",\"length\":2,\"instances\":{\"height\":{\"byteOffset\":40,\"componentType\":\"FLOAT\",\"type\":\"SCALAR\"},\"name\":[\"a\",\"b\"]}},"
+            + "{\"name\":\"Owner\",\"length\":1,\"instances\":{\"owner\":[\"city\"]}}"
+            + "],"
+            + "\"instancesLength\":5,"
+            + "\"classIds\":{\"byteOffset\":0,\"componentType\":\"UNSIGNED_BYTE\"},"
+            + "\"parentCounts\":{\"byteOffset\":8},"
+            + "\"parentIds\":{\"byteOffset\":20,\"componentType\":\"UNSIGNED_INT\"}"
+            + "}";
+
+    private static ByteBuffer createBinary() {
+        ByteBuffer binary = ByteBuffer.allocate(48).order(ByteOrder.LITTLE_ENDIAN);
+        int[] classIds = {0, 0, 1, 1, 2};
+        int[] parentCounts = {2, 1, 1, 0, 0};
+        int[] parentIds = {2, 3, 3, 4};
+        for (int i = 0; i < classIds.length; ++i) {
+            binary.put(i, (byte) classIds[i]);
+            binary.putShort(8 + i * 2, (short) parentCounts[i]);
+        }
+        for (int i = 0; i < parentIds.length; ++i) {
+            binary.putInt(20 + i * 4, parentIds[i]);
+        }
+        binary.putFloat(40, 10.5f);
+        binary.putFloat(44, 20.5f);
+        return binary;
+    }
+
+    private static BatchTableHierarchy read(String json, ByteBuffer binary) {
+        return BatchTableHierarchy.read(PARSER.parseObject(json), binary);
+    }
+
+    private static BatchTableHierarchy readBinary() {
+        return read(BINARY_JSON, createBinary());
+    }
+
+    @Test
+    public void testArrays() {
+        BatchTableHierarchy hierarchy = read(ARRAYS_JSON, ByteBuffer.allocate(0));
+        assertEquals(7, hierarchy.getInstancesLength());
+        assertEquals(3, hierarchy.getClassesLength());
+        assertEquals("Building", hierarchy.getClassName(1));
+        assertEquals(2, hierarchy.getClassLength(1));
+        assertEquals(1, hierarchy.getClassIndex(5));
+        assertEquals("yellow", hierarchy.getProperty(2, "color"));
+        assertEquals(3, hierarchy.getProperty(2, "windows"));
+        assertEquals("102 Main", hierarchy.getProperty(2, "address"));
+        // The nearest class having the property wins.
+        assertEquals("unit29", hierarchy.getProperty(0, "name"));
+        assertEquals("zone", hierarchy.getProperty(6, "name"));
+        assertEquals("residential", hierarchy.getProperty(3, "type"));
+        assertNull(hierarchy.getProperty(4, "color"));
+        assertNull(hierarchy.getProperty(0, "missing"));
+        assertTrue(hierarchy.hasProperty(1, "type"));
+        assertFalse(hierarchy.hasProperty(5, "windows"));
+        assertEquals(Arrays.asList("color", "windows", "name", "address", "type"), new ArrayList<>(hierarchy.getPropertyNames(0)));
+        assertTrue(hierarchy.isClass(0, "Zone"));
+        assertTrue(hierarchy.isClass(0, "Wall"));
+        assertFalse(hierarchy.isClass(4, "Wall"));
+        assertTrue(hierarchy.isExactClass(4, "Building"));
+        assertEquals("Wall", hierarchy.getExactClassName(3));
+        assertArrayEquals(new int[] {5}, hierarchy.getParentIds(3));
+        assertEquals(0, hierarchy.getParentCount(6));
+        assertTrue(hierarchy.setProperty(1, "address", "104 Main"));
+        assertEquals("104 Main", hierarchy.getProperty(0, "address"));
+        assertFalse(hierarchy.setProperty(1, "missing", 1));
+    }
+
+    @Test
+    public void testBinary() {
+        BatchTableHierarchy hierarchy = readBinary();
+        assertEquals(5, hierarchy.getInstancesLength());
+        assertEquals(2, hierarchy.getClassId(4));
+        assertArrayEquals(new int[] {2, 3}, hierarchy.getParentIds(0));
+        assertArrayEquals(new int[] {3}, hierarchy.getParentIds(1));
+        assertArrayEquals(new int[] {4}, hierarchy.getParentIds(2));
+        assertEquals(0, hierarchy.getParentCount(3));
+        assertEquals(10.5f, ((Number) hierarchy.getProperty(2, "height")).floatValue(), 0);
+        assertEquals(20.5f, ((Number) hierarchy.getProperty(1, "height")).floatValue(), 0);
+        assertEquals("red", hierarchy.getProperty(1, "color"));
+        assertNull(hierarchy.getProperty(1, "owner"));
+    }
+
+    /**
+     * The ancestors are visited depth first from the last parent, so the last parent of the wall 0 wins, and the
+     * owner is still found through its first parent.
+     */
+    @Test
+    public void testMultipleParents() {
+        BatchTableHierarchy hierarchy = readBinary();
+        assertEquals(20.5f, ((Number) hierarchy.getProperty(0, "height")).floatValue(), 0);
+        assertEquals("b", hierarchy.getProperty(0, "name"));
+        assertEquals("city", hierarchy.getProperty(0, "owner"));
+        assertTrue(hierarchy.isClass(0, "Owner"));
+        assertFalse(hierarchy.isClass(1, "Owner"));
+        assertEquals(Arrays.asList("color", "height", "name", "owner"), new ArrayList<>(hierarchy.getPropertyNames(0)));
+        assertTrue(hierarchy.setProperty(0, "name", "c"));
+        assertEquals("a", hierarchy.getProperty(2, "name"));
+        assertEquals("c", hierarchy.getProperty(3, "name"));
+
+        // The other order of the parents.
+        BatchTableHierarchy reversed = new BatchTableHierarchy();
+        int building = reversed.addClass("Building");
+        int wall = reversed.addClass("Wall");
+        reversed.addInstance(building, Collections.singletonMap("name", "a"));
+        reversed.addInstance(building, Collections.singletonMap("name", "b"));
+        int instance = reversed.addInstance(wall, Collections.emptyMap(), 1, 0);
+        assertEquals("a", reversed.getProperty(instance, "name"));
+    }
+
+    /**
+     * An ancestor shared by several parents, and reached again by a cycle, is visited once.
+     */
+    @Test
+    public void testSharedAncestors() {
+        BatchTableHierarchy hierarchy = new BatchTableHierarchy();
+        int node = hierarchy.addClass("Node");
+        int root = hierarchy.addClass("Root");
+        hierarchy.addInstance(root, Collections.singletonMap("depth", 0));
+        // 1 and 2 are each other's parents, and both have the root as a parent.
+        hierarchy.addInstance(node, Collections.emptyMap(), 2, 0);
+        hierarchy.addInstance(node, Collections.emptyMap(), 1, 0);
+        int leaf = hierarchy.addInstance(node, Collections.emptyMap(), 1, 2);
+        assertEquals(0, hierarchy.getProperty(leaf, "depth"));
+        assertNull(hierarchy.getProperty(leaf, "missing"));
+        assertFalse(hierarchy.isClass(1, "Leaf"));
+        // The lookups do not depend on the previous ones.
+        for (int i = 0; i < 1000; ++i) {
+            assertEquals(0, hierarchy.getProperty(i % 4, "depth"));
+        }
+        hierarchy.addInstance(root, Collections.singletonMap("depth", 1), leaf);
+        assertEquals(1, hierarchy.getProperty(4, "depth"));
+        assertEquals(0, hierarchy.getProperty(leaf, "depth"));
+    }
+
+    @Test
+    public void testCycle() {
+        BatchTableHierarchy hierarchy = read("{"
+                + "\"classes\":[{\"name\":\"Node\",\"length\":3,\"instances\":{\"id\":[0,1,2]}},{\"name\":\"Root\",\"length\":1,\"instances\":{\"top\":[true]}}],"
+                + "\"instancesLength\":4,\"classIds\":[0,0,0,1],\"parentIds\":[1,2,0,3]}", ByteBuffer.allocate(0));
+        // The instance itself has the property, so the cycle is not reached.
+        assertEquals(0, hierarchy.getProperty(0, "id"));
+        for (String property : new String[] {"top", "missing"}) {
+            try {
+                hierarchy.getProperty(0, property);
+                fail("Found " + property + " through a cycle.");
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+        }
+        try {
+            hierarchy.isClass(2, "Root");
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        assertEquals(true, hierarchy.getProperty(3, "top"));
+    }
+
+    @Test
+    public void testAddInstanceToBinaryClass() {
+        BatchTableHierarchy hierarchy = readBinary();
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("height", 30.5f);
+        properties.put("floors", 3);
+        int instance = hierarchy.addInstance(1, properties, 4);
+        assertEquals(5, instance);
+        assertEquals(3, hierarchy.getClassLength(1));
+        assertEquals(2, hierarchy.getClassIndex(instance));
+        assertEquals(30.5f, ((Number) hierarchy.getProperty(instance, "height")).floatValue(), 0);
+        assertEquals(3, hierarchy.getProperty(instance, "floors"));
+        assertNull(hierarchy.getProperty(instance, "name"));
+        assertEquals("city", hierarchy.getProperty(instance, "owner"));
+        // The decoded values of the previous instances are kept.
+        assertEquals(10.5f, ((Number) hierarchy.getProperty(2, "height")).floatValue(), 0);
+        assertEquals(20.5f, ((Number) hierarchy.getProperty(0, "height")).floatValue(), 0);
+        assertEquals("b", hierarchy.getProperty(3, "name"));
+        assertNull(hierarchy.getProperty(3, "floors"));
+        assertEquals(new LinkedHashSet<>(Arrays.asList("height", "name", "floors")), hierarchy.getClassPropertyNames(1));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testInvalidInstance() {
+        readBinary().getProperty(5, "height");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidClassId() {
+        read(ARRAYS_JSON.replace("[0,0,0,0,1,1,2]", "[0,0,0,0,1,1,3]"), ByteBuffer.allocate(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMismatchedClassLength() {
+        read(ARRAYS_JSON.replace("[0,0,0,0,1,1,2]", "[0,0,0,1,1,1,2]"), ByteBuffer.allocate(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidParentId() {
+        read(ARRAYS_JSON.replace("[4,4,5,5,6,6,6]", "[4,4,5,5,6,6,7]"), ByteBuffer.allocate(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOutOfBinaryBody() {
+        read(BINARY_JSON, (ByteBuffer) createBinary().limit(44).slice());
+    }
+
+    private static void assertSameHierarchy(BatchTableHierarchy expected, BatchTableHierarchy actual) {
+        assertEquals(expected.getInstancesLength(), actual.getInstancesLength());
+        assertEquals(expected.getClassesLength(), actual.getClassesLength());
+        for (int i = 0; i < expected.getClassesLength(); ++i) {
+            assertEquals(expected.getClassName(i), actual.getClassName(i));
+            assertEquals(expected.getClassLength(i), actual.getClassLength(i));
+            assertEquals(expected.getClassPropertyNames(i), actual.getClassPropertyNames(i));
+        }
+        for (int i = 0; i < expected.getInstancesLength(); ++i) {
+            assertEquals(expected.getClassId(i), actual.getClassId(i));
+            assertArrayEquals(expected.getParentIds(i), actual.getParentIds(i));
+            assertEquals(expected.getPropertyNames(i), actual.getPropertyNames(i));
+            for (String property : expected.getPropertyNames(i)) {
+                Object value = expected.getProperty(i, property);
+                if (value instanceof Float) {
+                    // A decoded binary property is written as a json array, and read back as doubles.
+                    assertEquals((Float) value, ((Number) actual.getProperty(i, property)).floatValue(), 0);
+                } else {
+                    assertEquals(value, actual.getProperty(i, property));
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the hierarchy in a batch table of the batch length, check the size computed beforehand, and read it back.
+     */
+    private static BatchTableHierarchy roundTrip(BatchTableHierarchy hierarchy, int batchLength) throws IOException {
+        BatchTable table = new BatchTable(batchLength);
+        table.setHierarchy(hierarchy);
+        B3dmHeader header = new B3dmHeader();
+        int size = table.calcSize(header, PARSER, batchLength);
+        byte[] bytes = table.createBuffer(header, PARSER, batchLength);
+        assertEquals(size, bytes.length);
+        assertEquals(bytes.length, header.getBatchTableJSONByteLength() + header.getBatchTableBinaryByteLength());
+        String json = new String(bytes, 0, header.getBatchTableJSONByteLength(), "UTF-8");
+        ByteBuffer binary = ByteBuffer.wrap(bytes, header.getBatchTableJSONByteLength(), header.getBatchTableBinaryByteLength());
+        BatchTableHierarchy read = BatchTable.read(json, binary, PARSER, batchLength).getHierarchy();
+        assertSameHierarchy(hierarchy, read);
+        return read;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        BatchTableHierarchy arrays = read(ARRAYS_JSON, ByteBuffer.allocate(0));
+        roundTrip(arrays, 4);
+        BatchTableHierarchy binary = roundTrip(readBinary(), 2);
+        // The binary instance properties are written again, and the parents as read.
+        assertEquals(20.5f, ((Number) binary.getProperty(0, "height")).floatValue(), 0);
+        binary.addInstance(1, Collections.singletonMap("height", 30.5f), 0, 4);
+        roundTrip(binary, 2);
+    }
+
+    /**
+     * More than 255 instances and parents, so the indices are written as shorts.
+     */
+    @Test
+    public void testRoundTripWideIndices() throws IOException {
+        BatchTableHierarchy hierarchy = new BatchTableHierarchy();
+        int wall = hierarchy.addClass("Wall");
+        int building = hierarchy.addClass("Building");
+        Random random = new Random(0);
+        for (int i = 0; i < 300; ++i) {
+            hierarchy.addInstance(wall, Collections.singletonMap("index", i), 300 + random.nextInt(20), 300 + random.nextInt(20));
+        }
+        for (int i = 0; i < 20; ++i) {
+            hierarchy.addInstance(building, Collections.singletonMap("name", "b" + i));
+        }
+        BatchTableHierarchy read = roundTrip(hierarchy, 300);
+        assertEquals("b" + (read.getParentId(7, 1) - 300), read.getProperty(7, "name"));
+    }
+}
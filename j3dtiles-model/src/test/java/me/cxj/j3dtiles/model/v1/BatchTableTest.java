@@ -0,0 +1,171 @@
+package me.cxj.j3dtiles.model.v1;
+
+import me.cxj.j3dtiles.utils.JsonParser;
+import me.cxj.j3dtiles.utils.StringColumn;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static me.cxj.j3dtiles.model.v1.TileTestUtils.PARSER;
+import static org.junit.Assert.*;
+
+public class BatchTableTest {
+
+    private static final int BATCH_LENGTH = 5;
+
+    private static final String JSON = "{"
+            + "\"level\":{\"byteOffset\":0,\"componentType\":\"UNSIGNED_BYTE\",\"type\":\"SCALAR\"},"
+            + "\"delta\":{\"byteOffset\":8,\"componentType\":\"SHORT\",\"type\":\"SCALAR\"},"
+            + "\"center\":{\"byteOffset\":24,\"componentType\":\"FLOAT\",\"type\":\"VEC3\"},"
+            + "\"area\":{\"byteOffset\":88,\"componentType\":\"DOUBLE\",\"type\":\"SCALAR\"},"
+            + "\"name\":[\"a\",\"b\",\"c\",\"d\",\"e\"]"
+            + "}";
+
+    private static ByteBuffer createBinary() {
+        ByteBuffer binary = ByteBuffer.allocate(128).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < BATCH_LENGTH; ++i) {
+            binary.put(i, (byte) (250 + i));
+            binary.putShort(8 + i * 2, (short) (-i * 1000));
+            binary.putFloat(24 + i * 12, i);
+            binary.putFloat(28 + i * 12, i + 0.5f);
+            binary.putFloat(32 + i * 12, -i);
+            binary.putDouble(88 + i * 8, i * 1.25);
+        }
+        return binary;
+    }
+
+    private static BatchTable createTable() {
+        return BatchTable.read(JSON, createBinary(), PARSER, BATCH_LENGTH);
+    }
+
+    @Test
+    public void testTypedGetters() {
+        BatchTable table = createTable();
+        for (int i = 0; i < BATCH_LENGTH; ++i) {
+            assertEquals(250 + i, table.getInt("level", i));
+            assertEquals(-i * 1000, table.getLong("delta", i));
+            assertEquals(i * 1.25, table.getDouble("area", i), 0);
+            assertEquals(250 + i, table.getProperty("level", i));
+            assertEquals(String.valueOf((char) ('a' + i)), table.getProperty("name", i));
+        }
+        assertArrayEquals(new float[] {0, 0.5f, 0, 1, 1.5f, -1, 2, 2.5f, -2, 3, 3.5f, -3, 4, 4.5f, -4}, table.getFloatColumn("center"), 0);
+        assertArrayEquals(new double[] {0, 1.25, 2.5, 3.75, 5}, table.getDoubleColumn("area"), 0);
+    }
+
+    @Test
+    public void testColumnIsDecodedOnce() {
+        BatchTable table = createTable();
+        List<?> column = table.getColumn("level");
+        assertEquals(Arrays.asList(250, 251, 252, 253, 254), column);
+        assertSame(column, table.getColumn("level"));
+    }
+
+    @Test
+    public void testPropertyOrder() {
+        assertEquals(Arrays.asList("level", "delta", "center", "area", "name"), Arrays.asList(createTable().getPropertyNames().toArray()));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testInvalidBatchId() {
+        createTable().getInt("level", BATCH_LENGTH);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotAScalar() {
+        createTable().getDouble("center", 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOutOfBinaryBody() {
+        BatchTable.read(JSON, createBinary(), PARSER, BATCH_LENGTH + 1);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        BatchTable table = createTable();
+        B3dmHeader header = new B3dmHeader();
+        int size = table.calcSize(header, PARSER, BATCH_LENGTH);
+        byte[] bytes = table.createBuffer(header, PARSER, BATCH_LENGTH);
+        assertEquals(bytes.length, size);
+        assertEquals(bytes.length, header.getBatchTableJSONByteLength() + header.getBatchTableBinaryByteLength());
+        String json = new String(bytes, 0, header.getBatchTableJSONByteLength(), "UTF-8");
+        ByteBuffer binary = ByteBuffer.wrap(bytes, header.getBatchTableJSONByteLength(), header.getBatchTableBinaryByteLength());
+        BatchTable copy = BatchTable.read(json, binary, PARSER, BATCH_LENGTH);
+        for (String property : table.getPropertyNames()) {
+            for (int i = 0; i < BATCH_LENGTH; ++i) {
+                Object expected = table.getProperty(property, i);
+                Object actual = copy.getProperty(property, i);
+                if (expected instanceof float[]) {
+                    assertArrayEquals((float[]) expected, (float[]) actual, 0);
+                } else {
+                    assertEquals(expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testStringColumnsEncodedWhileParsing() {
+        int batchLength = 6;
+        String json = "{"
+                + "\"kind\":[\"IfcWall\",\"IfcSlab\",\"IfcWall\",null,\"IfcWall\",\"IfcSlab\"],"
+                + "\"name\":[\"a\",\"b\",\"c\",\"d\",\"e\",\"f\"],"
+                + "\"mixed\":[\"x\",\"x\",\"x\",1,\"x\",\"x\"],"
+                + "\"nulls\":[null,null,null,null,null,null],"
+                + "\"escaped\":[\"\\u00e9t\\u00e9\",\"\\u00e9t\\u00e9\",\"\\\"\",\"\\\"\",\"\u00e9t\u00e9\",\"\\\"\"],"
+                + "\"numbers\":[1,2,3,4,5,6]"
+                + "}";
+        BatchTable table = BatchTable.read(json, ByteBuffer.allocate(0), PARSER, batchLength);
+        assertNotNull(StringColumn.fromList(table.getColumn("kind")));
+        assertEquals(2, StringColumn.fromList(table.getColumn("kind")).getDictionarySize());
+        assertNull(StringColumn.fromList(table.getColumn("name")));
+        assertNull(StringColumn.fromList(table.getColumn("mixed")));
+        assertNotNull(StringColumn.fromList(table.getColumn("nulls")));
+        assertEquals(2, StringColumn.fromList(table.getColumn("escaped")).getDictionarySize());
+        // Same values as with a parser building the lists first.
+        JsonParser other = new JsonParser() {
+
+            @Override
+            public Object parse(String json) {
+                return PARSER.parse(json);
+            }
+
+            @Override
+            public Map<String, Object> parseObject(String json) {
+                return PARSER.parseObject(json);
+            }
+
+            @Override
+            public List<Object> parseArray(String json) {
+                return PARSER.parseArray(json);
+            }
+
+            @Override
+            public String toJsonString(Object obj) {
+                return PARSER.toJsonString(obj);
+            }
+        };
+        BatchTable expected = BatchTable.read(json, ByteBuffer.allocate(0), other, batchLength);
+        assertEquals(Arrays.asList(expected.getPropertyNames().toArray()), Arrays.asList(table.getPropertyNames().toArray()));
+        for (String property : expected.getPropertyNames()) {
+            assertEquals(expected.getColumn(property), table.getColumn(property));
+            assertEquals(StringColumn.fromList(expected.getColumn(property)) != null, StringColumn.fromList(table.getColumn(property)) != null);
+        }
+        assertEquals("\u00e9t\u00e9", table.getProperty("escaped", 4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateBufferMismatchedBatchLength() throws IOException {
+        createTable().createBuffer(new B3dmHeader(), PARSER, BATCH_LENGTH + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCalcSizeMismatchedBatchLength() {
+        createTable().calcSize(new B3dmHeader(), PARSER, BATCH_LENGTH - 1);
+    }
+}
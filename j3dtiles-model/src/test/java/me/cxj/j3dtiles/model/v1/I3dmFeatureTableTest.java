@@ -0,0 +1,58 @@
+package me.cxj.j3dtiles.model.v1;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import static me.cxj.j3dtiles.model.v1.TileTestUtils.*;
+import static org.junit.Assert.*;
+
+public class I3dmFeatureTableTest {
+
+    private static I3dmFeatureTable readFeatureTable(byte[] bytes) throws IOException {
+        MappedTile tile = MappedTile.wrap(ByteBuffer.wrap(bytes));
+        try (InputStream is = tile.openTableStream()) {
+            return I3dmFeatureTable.read(is, (I3dmHeader) tile.getHeader(), PARSER);
+        }
+    }
+
+    private static void assertQuantized(I3dmFeatureTable table, int instancesLength) {
+        assertEquals(instancesLength, table.getInstancesLength());
+        assertNull(table.getPositionColumn());
+        assertNull(table.getNormalUpColumn());
+        assertNull(table.getScaleColumn());
+        assertArrayEquals(new float[] {-10, -20, -30}, table.getQuantizedVolumeOffset(), 0);
+        assertArrayEquals(new float[] {100, 200, 300}, table.getQuantizedVolumeScale(), 0);
+        for (int i = 0; i < instancesLength; ++i) {
+            assertArrayEquals(new int[] {quantizedI3dmValue(i * 3, 0), quantizedI3dmValue(i * 3 + 1, 0), quantizedI3dmValue(i * 3 + 2, 0)},
+                    table.getPositionQuantized(i));
+            assertArrayEquals(new int[] {quantizedI3dmValue(i * 2, 1), quantizedI3dmValue(i * 2 + 1, 1)}, table.getNormalUpOct32p(i));
+            assertArrayEquals(new int[] {quantizedI3dmValue(i * 2, 2), quantizedI3dmValue(i * 2 + 1, 2)}, table.getNormalRightOct32p(i));
+            assertArrayEquals(new float[] {1 + i, 2 + i, 0.5f}, table.getScaleNonUniform(i), 0);
+            assertEquals(instancesLength - 1 - i, (long) table.getBatchId(i));
+        }
+    }
+
+    @Test
+    public void testQuantizedSemantics() throws IOException {
+        byte[] bytes = createQuantizedI3dm(11);
+        assertQuantized(readFeatureTable(bytes), 11);
+        TileModel tile = read(bytes);
+        byte[] written = write(tile);
+        assertEquals(written.length, tile.calcSize(PARSER));
+        assertEquals(written.length, tile.getHeader().getByteLength());
+        assertQuantized(readFeatureTable(written), 11);
+        assertArrayEquals(written, write(read(written)));
+    }
+
+    @Test
+    public void testTuplesAreCopies() throws IOException {
+        I3dmFeatureTable table = readFeatureTable(createQuantizedI3dm(2));
+        table.getPositionQuantized(0)[0] = 1;
+        table.getScaleNonUniformList().get(0)[0] = 5;
+        assertEquals(quantizedI3dmValue(0, 0), table.getPositionQuantized(0)[0]);
+        assertEquals(1, table.getScaleNonUniform(0)[0], 0);
+    }
+}
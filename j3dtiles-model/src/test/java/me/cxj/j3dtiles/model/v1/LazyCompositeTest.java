@@ -0,0 +1,140 @@
+package me.cxj.j3dtiles.model.v1;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static me.cxj.j3dtiles.model.v1.TileTestUtils.*;
+import static org.junit.Assert.*;
+
+public class LazyCompositeTest {
+
+    private List<byte[]> tiles;
+    private byte[] cmpt;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        tiles = createTiles();
+        // The b3dm, the pnts and the nested cmpt.
+        cmpt = createCmpt(tiles.get(0), tiles.get(1), tiles.get(6));
+        file = Files.createTempFile("j3dtiles", ".cmpt");
+        Files.write(file, cmpt);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Test
+    public void testOffsets() throws IOException {
+        try (LazyComposite composite = LazyComposite.open(file, PARSER)) {
+            assertEquals(3, composite.getTilesLength());
+            assertEquals(cmpt.length, composite.getHeader().getByteLength());
+            long offset = 16;
+            for (int i = 0; i < 3; ++i) {
+                byte[] tile = tiles.get(i == 2 ? 6 : i);
+                assertEquals(offset, composite.getTileOffset(i));
+                assertEquals(tile.length, composite.getTileByteLength(i));
+                assertEquals(MappedTile.wrap(ByteBuffer.wrap(tile)).getHeader().getClass(), composite.readTileHeader(i).getClass());
+                assertArrayEquals(tile, concat(composite.readRawTile(i).getBuffer()));
+                offset += tile.length;
+            }
+        }
+    }
+
+    @Test
+    public void testGetTile() throws IOException {
+        try (LazyComposite composite = LazyComposite.open(file, PARSER)) {
+            TileModel tile = composite.getTile(1);
+            assertSame(tile, composite.getTile(1));
+            assertArrayEquals(write(read(tiles.get(1))), write(tile));
+            composite.release(1);
+            TileModel copy = composite.getTile(1);
+            assertNotSame(tile, copy);
+            assertArrayEquals(write(tile), write(copy));
+            assertNotSame(composite.readTile(0), composite.readTile(0));
+        }
+    }
+
+    @Test
+    public void testIterator() throws IOException {
+        try (LazyComposite composite = LazyComposite.open(file, PARSER)) {
+            TileModel kept = composite.getTile(0);
+            List<TileModel> models = new ArrayList<>();
+            for (TileModel tile : composite) {
+                models.add(tile);
+            }
+            assertEquals(3, models.size());
+            assertSame(kept, models.get(0));
+            assertTrue(models.get(1) instanceof PointCloud);
+            assertTrue(models.get(2) instanceof Composite);
+        }
+    }
+
+    @Test
+    public void testNestedComposite() throws IOException {
+        try (LazyComposite composite = LazyComposite.open(file, PARSER)) {
+            LazyComposite nested = composite.getComposite(2);
+            assertEquals(2, nested.getTilesLength());
+            assertEquals(composite.getTileOffset(2) + 16, nested.getTileOffset(0));
+            assertArrayEquals(tiles.get(4), concat(nested.readRawTile(0).getBuffer()));
+            assertEquals(3, nested.getComposite(1).getTilesLength());
+            nested.close();
+            // The nested view does not own the file.
+            assertNotNull(composite.readTileHeader(0));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotAComposite() throws IOException {
+        try (LazyComposite composite = LazyComposite.open(file, PARSER)) {
+            composite.getComposite(0);
+        }
+    }
+
+    @Test
+    public void testToComposite() throws IOException {
+        try (LazyComposite composite = LazyComposite.open(file, PARSER)) {
+            assertArrayEquals(write(read(cmpt)), write(composite.toComposite()));
+        }
+    }
+
+    @Test
+    public void testOpenAtPosition() throws IOException {
+        byte[] prefix = tiles.get(2);
+        Files.write(file, prefix);
+        Files.write(file, cmpt, StandardOpenOption.APPEND);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            LazyComposite composite = LazyComposite.open(channel, prefix.length, PARSER);
+            assertEquals(prefix.length + 16, composite.getTileOffset(0));
+            assertArrayEquals(write(read(cmpt)), write(composite.toComposite()));
+            composite.close();
+            assertTrue(channel.isOpen());
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testInvalidIndex() throws IOException {
+        try (LazyComposite composite = LazyComposite.open(file, PARSER)) {
+            composite.getTile(3);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncated() throws IOException {
+        Files.write(file, Arrays.copyOf(cmpt, cmpt.length - 8));
+        LazyComposite.open(file, PARSER).close();
+    }
+}
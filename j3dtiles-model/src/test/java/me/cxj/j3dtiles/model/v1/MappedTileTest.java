@@ -0,0 +1,150 @@
+package me.cxj.j3dtiles.model.v1;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static me.cxj.j3dtiles.model.v1.TileTestUtils.*;
+import static org.junit.Assert.*;
+
+public class MappedTileTest {
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        return concat(buffer);
+    }
+
+    @Test
+    public void testSections() throws IOException {
+        for (byte[] bytes : createTiles()) {
+            MappedTile tile = MappedTile.wrap(ByteBuffer.wrap(bytes));
+            Header header = tile.getHeader();
+            assertEquals(bytes.length, header.getByteLength());
+            assertArrayEquals(bytes, bytes(tile.getBuffer()));
+            int offset = header.getHeaderLength();
+            if (header instanceof BatchHeader) {
+                BatchHeader batchHeader = (BatchHeader) header;
+                int[] lengths = {
+                        batchHeader.getFeatureTableJSONByteLength(), batchHeader.getFeatureTableBinaryByteLength(),
+                        batchHeader.getBatchTableJSONByteLength(), batchHeader.getBatchTableBinaryByteLength()
+                };
+                ByteBuffer[] sections = {
+                        tile.getFeatureTableJSON(), tile.getFeatureTableBinary(),
+                        tile.getBatchTableJSON(), tile.getBatchTableBinary()
+                };
+                for (int i = 0; i < sections.length; ++i) {
+                    assertArrayEquals(Arrays.copyOfRange(bytes, offset, offset + lengths[i]), bytes(sections[i]));
+                    offset += lengths[i];
+                }
+            } else {
+                assertNull(tile.getFeatureTableJSON());
+                assertNull(tile.getBatchTableBinary());
+            }
+            assertArrayEquals(Arrays.copyOfRange(bytes, offset, bytes.length), bytes(tile.getBody()));
+        }
+    }
+
+    @Test
+    public void testWrapBetweenPositionAndLimit() throws IOException {
+        byte[] tile = createPnts(10, 2, null, 5);
+        ByteBuffer buffer = ByteBuffer.allocate(tile.length + 20);
+        buffer.position(12);
+        buffer.put(tile);
+        buffer.position(12);
+        MappedTile mapped = MappedTile.wrap(buffer);
+        assertEquals(12, buffer.position());
+        assertArrayEquals(tile, bytes(mapped.getBuffer()));
+    }
+
+    @Test
+    public void testInnerTiles() throws IOException {
+        List<byte[]> tiles = createTiles();
+        byte[] cmpt = createCmpt(tiles.get(0), tiles.get(1), tiles.get(5));
+        MappedTile mapped = MappedTile.wrap(ByteBuffer.wrap(cmpt));
+        List<MappedTile> innerTiles = mapped.getInnerTiles();
+        assertEquals(3, innerTiles.size());
+        assertArrayEquals(tiles.get(0), bytes(innerTiles.get(0).getBuffer()));
+        assertArrayEquals(tiles.get(1), bytes(innerTiles.get(1).getBuffer()));
+        assertArrayEquals(tiles.get(5), bytes(innerTiles.get(2).getBuffer()));
+        assertEquals(3, innerTiles.get(2).getInnerTiles().size());
+    }
+
+    @Test
+    public void testReadSameAsStreamRead() throws IOException {
+        for (byte[] bytes : createTiles()) {
+            // The stream readers read the glb up to the end of the stream, so they can not read the tiles inside a cmpt.
+            if (!(MappedTile.wrap(ByteBuffer.wrap(bytes)).getHeader() instanceof CompositeHeader)) {
+                assertArrayEquals(write(readStream(bytes)), write(read(bytes)));
+            }
+        }
+    }
+
+    @Test
+    public void testGltf() throws IOException {
+        List<byte[]> tiles = createTiles();
+        MappedTile b3dm = MappedTile.wrap(ByteBuffer.wrap(tiles.get(0)));
+        assertTrue(b3dm.hasEmbeddedGltf());
+        ByteBuffer glb = b3dm.getGltfBuffer();
+        assertEquals(0x46546C67, glb.getInt(0));
+        assertEquals(glb.remaining(), glb.getInt(8));
+        assertEquals(3, b3dm.readGltf().getAccessorModels().size());
+        MappedTile i3dm = MappedTile.wrap(ByteBuffer.wrap(tiles.get(4)));
+        assertFalse(i3dm.hasEmbeddedGltf());
+        assertEquals("model.gltf", i3dm.getGltfUri());
+    }
+
+    @Test
+    public void testMap() throws IOException {
+        byte[] bytes = createTiles().get(5);
+        Path file = Files.createTempFile("j3dtiles", ".cmpt");
+        try {
+            Files.write(file, bytes);
+            MappedTile tile = MappedTile.map(file);
+            assertTrue(tile.getBuffer().isDirect());
+            assertArrayEquals(write(read(bytes)), write(tile.read(PARSER)));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncated() throws IOException {
+        byte[] bytes = createTiles().get(0);
+        MappedTile.wrap(ByteBuffer.wrap(bytes, 0, bytes.length - 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSectionLength() throws IOException {
+        byte[] bytes = createTiles().get(0);
+        // The binary body of the batch table goes past the end of the tile.
+        ByteBuffer.wrap(bytes).order(java.nio.ByteOrder.LITTLE_ENDIAN).putInt(24, bytes.length);
+        MappedTile.wrap(ByteBuffer.wrap(bytes));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOverflowingSectionLength() throws IOException {
+        byte[] bytes = createTiles().get(0);
+        // offset + length overflows an int.
+        ByteBuffer.wrap(bytes).order(java.nio.ByteOrder.LITTLE_ENDIAN).putInt(24, Integer.MAX_VALUE);
+        MappedTile.wrap(ByteBuffer.wrap(bytes));
+    }
+
+    @Test
+    public void testTruncatedHeader() throws IOException {
+        for (byte[] bytes : createTiles()) {
+            int headerLength = Header.getHeaderLength(ByteBuffer.wrap(bytes));
+            for (int length = 0; length < headerLength; ++length) {
+                try {
+                    MappedTile.wrap(ByteBuffer.wrap(bytes, 0, length));
+                    fail("Wrapped " + length + " bytes of a header of " + headerLength + " bytes.");
+                } catch (IllegalArgumentException e) {
+                    // Expected
+                }
+            }
+        }
+    }
+}
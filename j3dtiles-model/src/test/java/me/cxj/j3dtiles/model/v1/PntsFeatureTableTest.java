@@ -0,0 +1,129 @@
+package me.cxj.j3dtiles.model.v1;
+
+import me.cxj.j3dtiles.utils.ColorUtils;
+import me.cxj.j3dtiles.utils.FloatColumn;
+import me.cxj.j3dtiles.utils.IntColumn;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static me.cxj.j3dtiles.model.v1.TileTestUtils.*;
+import static org.junit.Assert.*;
+
+public class PntsFeatureTableTest {
+
+    private static PntsFeatureTable readFeatureTable(MappedTile tile) throws IOException {
+        try (InputStream is = tile.openTableStream()) {
+            return PntsFeatureTable.read(is, (PointCloudHeader) tile.getHeader(), PARSER);
+        }
+    }
+
+    @Test
+    public void testColumns() throws IOException {
+        int pointsLength = 33;
+        MappedTile tile = MappedTile.wrap(ByteBuffer.wrap(createPnts(pointsLength, 5, null, 7)));
+        PntsFeatureTable table = readFeatureTable(tile);
+        ByteBuffer binary = tile.getFeatureTableBinary().order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(pointsLength, table.getPointsLength());
+        assertEquals(PntsFeatureTable.ColorFormat.RGBA, table.getColorFormat());
+        assertEquals(Integer.valueOf(5), table.getBatchLength());
+        for (int i = 0; i < pointsLength; ++i) {
+            float[] position = table.getPosition(i);
+            for (int c = 0; c < 3; ++c) {
+                assertEquals(binary.getFloat((i * 3 + c) * 4), position[c], 0);
+            }
+            int offset = pointsLength * 12 + i * 4;
+            int r = binary.get(offset) & 0xFF, g = binary.get(offset + 1) & 0xFF, b = binary.get(offset + 2) & 0xFF, a = binary.get(offset + 3) & 0xFF;
+            assertEquals(a << 24 | r << 16 | g << 8 | b, (int) table.getColor(i));
+            assertEquals(Long.valueOf(i % 5), table.getBatchId(i));
+        }
+    }
+
+    @Test
+    public void testConstantRgba() throws IOException {
+        MappedTile tile = MappedTile.wrap(ByteBuffer.wrap(createPnts(4, 1, new int[] {128, 192, 224, 255}, 8)));
+        assertEquals(0xFF80C0E0, (int) readFeatureTable(tile).getConstantRgba());
+    }
+
+    @Test
+    public void testConstantRgbaInCmptRewrite() throws IOException {
+        byte[] cmpt = createCmpt(createPnts(4, 1, new int[] {128, 192, 224, 255}, 9));
+        byte[] written = write(read(cmpt));
+        MappedTile pnts = MappedTile.wrap(ByteBuffer.wrap(written)).getInnerTiles().get(0);
+        assertTrue(pnts.getFeatureTableJSONString().contains("\"CONSTANT_RGBA\":[128,192,224,255]"));
+        assertEquals(0xFF80C0E0, (int) readFeatureTable(pnts).getConstantRgba());
+        assertArrayEquals(written, write(read(written)));
+    }
+
+    @Test
+    public void testTuplesAreCopies() {
+        PntsFeatureTable table = new PntsFeatureTable();
+        table.addPosition(new float[] {1, 2, 3});
+        table.getPosition(0)[0] = 10;
+        table.getPositionList().get(0)[1] = 20;
+        assertArrayEquals(new float[] {1, 2, 3}, table.getPosition(0), 0);
+        float[] position = table.getPosition(0);
+        position[0] = 10;
+        table.setPosition(0, position);
+        table.getPositionList().set(0, new float[] {10, 20, 3});
+        assertArrayEquals(new float[] {10, 20, 3}, table.getPositionList().get(0), 0);
+    }
+
+    /**
+     * The colors of more than 2 chunks written with and without an executor are the same, and are read back.
+     */
+    @Test
+    public void testColorExecutor() throws IOException {
+        int pointsLength = ColorUtils.CHUNK_SIZE * 2 + 12345;
+        Random random = new Random(2);
+        int[] colors = new int[pointsLength];
+        float[] positions = new float[pointsLength * 3];
+        for (int i = 0; i < pointsLength; ++i) {
+            colors[i] = random.nextInt();
+            positions[i * 3] = i;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (PntsFeatureTable.ColorFormat colorFormat : new PntsFeatureTable.ColorFormat[] {
+                    PntsFeatureTable.ColorFormat.RGBA, PntsFeatureTable.ColorFormat.RGB, PntsFeatureTable.ColorFormat.RGB565}) {
+                PntsFeatureTable table = new PntsFeatureTable();
+                table.setPointsLength(pointsLength);
+                table.setPositionColumn(FloatColumn.wrap(positions, 3));
+                table.setColorColumn(IntColumn.wrap(colors, 1));
+                table.setColorFormat(colorFormat);
+                byte[] serial = table.createBuffer(new PointCloudHeader(), PARSER);
+                table.setColorExecutor(executor);
+                PointCloudHeader header = new PointCloudHeader();
+                byte[] parallel = table.createBuffer(header, PARSER);
+                assertArrayEquals(colorFormat.name(), serial, parallel);
+                assertEquals(parallel.length, table.calcSize(new PointCloudHeader(), PARSER));
+                PntsFeatureTable read = PntsFeatureTable.read(new ByteArrayInputStream(parallel), header, PARSER);
+                assertEquals(colorFormat, read.getColorFormat());
+                for (int i = 0; i < pointsLength; ++i) {
+                    int expected;
+                    switch (colorFormat) {
+                        case RGBA:
+                            expected = colors[i];
+                            break;
+                        case RGB:
+                            expected = colors[i] | 0xFF000000;
+                            break;
+                        default:
+                            expected = ColorUtils.fromRGB565(ColorUtils.toRGB565(colors[i]) & 0xFFFF);
+                            break;
+                    }
+                    assertEquals(expected, (int) read.getColor(i));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package me.cxj.j3dtiles.model.v1;
+
+import me.cxj.j3dtiles.utils.ColorUtils;
+import me.cxj.j3dtiles.utils.FloatColumn;
+import me.cxj.j3dtiles.utils.IntColumn;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class PntsQuantizerTest {
+
+    private static final int POINTS_LENGTH = 10000;
+
+    private static PntsFeatureTable createTable(long seed, boolean opaque) {
+        Random random = new Random(seed);
+        float[] positions = new float[POINTS_LENGTH * 3];
+        float[] normals = new float[POINTS_LENGTH * 3];
+        int[] colors = new int[POINTS_LENGTH];
+        for (int i = 0; i < POINTS_LENGTH; ++i) {
+            // Far from the origin, where the float spacing is coarse.
+            positions[i * 3] = 100000 + random.nextFloat() * 37.5f;
+            positions[i * 3 + 1] = -2000 + random.nextFloat() * 1000;
+            positions[i * 3 + 2] = random.nextFloat() * 0.01f;
+            double x = random.nextGaussian();
+            double y = random.nextGaussian();
+            double z = random.nextGaussian();
+            double norm = Math.sqrt(x * x + y * y + z * z);
+            normals[i * 3] = (float) (x / norm);
+            normals[i * 3 + 1] = (float) (y / norm);
+            normals[i * 3 + 2] = (float) (z / norm);
+            // Every channel value is covered.
+            int r = i % 256;
+            colors[i] = (opaque ? 0xFF : random.nextInt(256)) << 24 | r << 16 | random.nextInt(256) << 8 | 255 - r;
+        }
+        PntsFeatureTable table = new PntsFeatureTable();
+        table.setPointsLength(POINTS_LENGTH);
+        table.setPositionColumn(FloatColumn.wrap(positions, 3));
+        table.setNormalColumn(FloatColumn.wrap(normals, 3));
+        table.setColorColumn(IntColumn.wrap(colors, 1));
+        table.setColorFormat(PntsFeatureTable.ColorFormat.RGBA);
+        return table;
+    }
+
+    @Test
+    public void testPositionErrorBound() {
+        PntsFeatureTable table = createTable(1, true);
+        float[] positions = table.getPositionColumn().array().clone();
+        PntsQuantizer.Report report = new PntsQuantizer().quantize(table);
+        assertTrue(report.isPositionsQuantized());
+        assertNull(table.getPositionColumn());
+        short[] quantized = table.getPositionQuantizedColumn().array();
+        float[] offset = table.getQuantizedVolumeOffset();
+        float[] scale = table.getQuantizedVolumeScale();
+        double[] bound = report.getPositionErrorBound();
+        double[] maxError = new double[3];
+        for (int i = 0; i < POINTS_LENGTH; ++i) {
+            for (int c = 0; c < 3; ++c) {
+                float position = positions[i * 3 + c];
+                assertTrue(position >= offset[c] && position <= (double) offset[c] + scale[c]);
+                double decoded = (quantized[i * 3 + c] & 0xFFFF) * (double) scale[c] / 65535 + offset[c];
+                double error = Math.abs(decoded - position);
+                assertTrue(error <= bound[c] * (1 + 1e-9));
+                maxError[c] = Math.max(maxError[c], error);
+            }
+        }
+        assertArrayEquals(maxError, report.getMaxPositionError(), 0);
+        for (int c = 0; c < 3; ++c) {
+            assertEquals(scale[c] / 65535.0, report.getPositionStep()[c], 0);
+        }
+        table.validate();
+    }
+
+    @Test
+    public void testFlatPositions() {
+        PntsFeatureTable table = createTable(2, true);
+        float[] positions = table.getPositionColumn().array();
+        for (int i = 0; i < POINTS_LENGTH; ++i) {
+            positions[i * 3 + 2] = 12.25f;
+        }
+        PntsQuantizer.Report report = new PntsQuantizer().quantize(table);
+        assertEquals(12.25f, table.getQuantizedVolumeOffset()[2], 0);
+        assertEquals(0, table.getQuantizedVolumeScale()[2], 0);
+        assertEquals(0, report.getMaxPositionError()[2], 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNaNPosition() {
+        PntsFeatureTable table = createTable(3, true);
+        table.getPositionColumn().array()[7] = Float.NaN;
+        new PntsQuantizer().quantize(table);
+    }
+
+    @Test
+    public void testNormalErrorBound() {
+        PntsFeatureTable table = createTable(4, true);
+        float[] normals = table.getNormalColumn().array().clone();
+        PntsQuantizer.Report report = new PntsQuantizer().quantize(table);
+        assertTrue(report.isNormalsEncoded());
+        byte[] encoded = table.getNormalOct16pColumn().array();
+        double[] decoded = new double[3];
+        double maxError = 0;
+        for (int i = 0; i < POINTS_LENGTH; ++i) {
+            PntsQuantizer.octDecode(encoded[i * 2] & 0xFF, encoded[i * 2 + 1] & 0xFF, decoded);
+            double dot = decoded[0] * normals[i * 3] + decoded[1] * normals[i * 3 + 1] + decoded[2] * normals[i * 3 + 2];
+            maxError = Math.max(maxError, Math.acos(Math.min(1, dot)));
+        }
+        assertEquals(maxError, report.getMaxNormalError(), 1e-6);
+        // 8 bits per component of the oct encoding, about 1 degree at worst.
+        assertTrue(report.getMaxNormalError() < Math.toRadians(1));
+    }
+
+    @Test
+    public void testColorErrorBound() {
+        PntsFeatureTable table = createTable(5, true);
+        int[] colors = table.getColorColumn().array().clone();
+        PntsQuantizer.Report report = new PntsQuantizer().quantize(table);
+        assertTrue(report.isColorsConverted());
+        assertEquals(PntsFeatureTable.ColorFormat.RGB565, table.getColorFormat());
+        int maxError = 0;
+        for (int color : colors) {
+            int decoded = ColorUtils.fromRGB565(ColorUtils.toRGB565(color) & 0xFFFF);
+            maxError = Math.max(maxError, Math.abs(ColorUtils.getRed(color) - ColorUtils.getRed(decoded)));
+            maxError = Math.max(maxError, Math.abs(ColorUtils.getGreen(color) - ColorUtils.getGreen(decoded)));
+            maxError = Math.max(maxError, Math.abs(ColorUtils.getBlue(color) - ColorUtils.getBlue(decoded)));
+        }
+        assertEquals(maxError, report.getMaxColorError());
+        // Half of the 5 bits step, rounded up.
+        assertTrue(report.getMaxColorError() <= 5);
+        assertEquals((long) POINTS_LENGTH * (6 + 10 + 2), report.getSavedBytes());
+    }
+
+    @Test
+    public void testTranslucentColorsAreKept() {
+        PntsFeatureTable table = createTable(6, false);
+        PntsQuantizer.Report report = new PntsQuantizer().quantize(table);
+        assertFalse(report.isColorsConverted());
+        assertEquals(PntsFeatureTable.ColorFormat.RGBA, table.getColorFormat());
+        assertEquals((long) POINTS_LENGTH * (6 + 10), report.getSavedBytes());
+    }
+
+    @Test
+    public void testDisabledConversions() {
+        PntsFeatureTable table = createTable(7, true);
+        PntsQuantizer quantizer = new PntsQuantizer();
+        quantizer.setQuantizePositions(false);
+        quantizer.setEncodeNormals(false);
+        quantizer.setConvertColors(false);
+        PntsQuantizer.Report report = quantizer.quantize(table);
+        assertFalse(report.isPositionsQuantized() || report.isNormalsEncoded() || report.isColorsConverted());
+        assertNotNull(table.getPositionColumn());
+        assertNotNull(table.getNormalColumn());
+        assertEquals(0, report.getSavedBytes());
+    }
+
+    @Test
+    public void testChunksOnExecutor() {
+        PntsFeatureTable serial = createTable(8, true);
+        PntsFeatureTable parallel = createTable(8, true);
+        PntsQuantizer.Report expected = new PntsQuantizer().quantize(serial);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            PntsQuantizer quantizer = new PntsQuantizer();
+            quantizer.setChunkSize(999);
+            quantizer.setExecutor(executor);
+            PntsQuantizer.Report report = quantizer.quantize(parallel);
+            assertEquals(expected.toString(), report.toString());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertArrayEquals(serial.getPositionQuantizedColumn().array(), parallel.getPositionQuantizedColumn().array());
+        assertArrayEquals(serial.getNormalOct16pColumn().array(), parallel.getNormalOct16pColumn().array());
+        assertArrayEquals(serial.getQuantizedVolumeOffset(), parallel.getQuantizedVolumeOffset(), 0);
+        assertArrayEquals(serial.getQuantizedVolumeScale(), parallel.getQuantizedVolumeScale(), 0);
+    }
+
+    @Test
+    public void testQuantizedTileRoundTrip() throws Exception {
+        PntsFeatureTable table = createTable(9, true);
+        new PntsQuantizer().quantize(table);
+        PointCloudHeader header = new PointCloudHeader();
+        byte[] bytes = table.createBuffer(header, TileTestUtils.PARSER);
+        assertEquals(bytes.length, table.calcSize(new PointCloudHeader(), TileTestUtils.PARSER));
+        PntsFeatureTable copy = PntsFeatureTable.read(new ByteArrayInputStream(bytes), header, TileTestUtils.PARSER);
+        assertArrayEquals(table.getPositionQuantizedColumn().array(), copy.getPositionQuantizedColumn().array());
+        assertArrayEquals(table.getNormalOct16pColumn().array(), copy.getNormalOct16pColumn().array());
+        assertEquals(PntsFeatureTable.ColorFormat.RGB565, copy.getColorFormat());
+        // The colors are kept as they are until the table is written.
+        for (int i = 0; i < POINTS_LENGTH; i += 97) {
+            assertEquals(ColorUtils.fromRGB565(ColorUtils.toRGB565(table.getColor(i)) & 0xFFFF), (int) copy.getColor(i));
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package me.cxj.j3dtiles.model.v1;
+
+import de.javagl.jgltf.model.BufferViewModel;
+import de.javagl.jgltf.model.io.v2.MeshoptCodec;
+import de.javagl.jgltf.model.io.v2.MeshoptCompression;
+import de.javagl.jgltf.model.v2.GltfModelV2;
+import me.cxj.j3dtiles.utils.BufferArena;
+import me.cxj.j3dtiles.utils.CommonUtils;
+import me.cxj.j3dtiles.utils.IOUtils;
+import me.cxj.j3dtiles.utils.JsonParser;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static me.cxj.j3dtiles.model.v1.TileTestUtils.*;
+import static org.junit.Assert.*;
+
+public class TileRoundTripTest {
+
+    /**
+     * The tiles of {@link TileTestUtils#createTiles()} as written by the model.
+     */
+    private static List<byte[]> createWrittenTiles() throws IOException {
+        List<byte[]> tiles = new ArrayList<>();
+        for (byte[] bytes : createTiles()) {
+            tiles.add(write(read(bytes)));
+        }
+        return tiles;
+    }
+
+    @Test
+    public void testRewriteIsStable() throws IOException {
+        for (byte[] bytes : createWrittenTiles()) {
+            assertArrayEquals(bytes, write(read(bytes)));
+        }
+    }
+
+    @Test
+    public void testByteLength() throws IOException {
+        for (byte[] bytes : createWrittenTiles()) {
+            TileModel tile = read(bytes);
+            ByteBuffer[] buffers = tile.createBuffers(PARSER);
+            assertArrayEquals(bytes, concat(buffers));
+            assertEquals(bytes.length, tile.getHeader().getByteLength());
+            assertEquals(bytes.length, MappedTile.wrap(ByteBuffer.wrap(bytes)).getHeader().getByteLength());
+        }
+    }
+
+    @Test
+    public void testCalcSize() throws IOException {
+        for (byte[] bytes : createTiles()) {
+            TileModel tile = read(bytes);
+            long size = tile.calcSize(PARSER);
+            byte[] written = write(tile);
+            assertEquals(written.length, size);
+            assertEquals(written.length, tile.getHeader().getByteLength());
+        }
+    }
+
+    @Test
+    public void testCalcSizeOfNewTiles() throws IOException {
+        for (int batchLength : new int[] {1, 2, 5, 64, 1000}) {
+            B3dm tile = createB3dm(batchLength);
+            long size = tile.calcSize(PARSER);
+            assertEquals(write(tile).length, size);
+            assertEquals(size, tile.getHeader().getByteLength());
+        }
+    }
+
+    @Test
+    public void testChannelWrite() throws IOException {
+        for (byte[] bytes : createWrittenTiles()) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            read(bytes).write(Channels.newChannel(os), PARSER);
+            assertArrayEquals(bytes, os.toByteArray());
+            os.reset();
+            IOUtils.writeFully(Channels.newChannel(os), read(bytes).createBuffers(PARSER));
+            assertArrayEquals(bytes, os.toByteArray());
+        }
+    }
+
+    @Test
+    public void testPartialChannelWrites() throws IOException {
+        for (byte[] bytes : createWrittenTiles()) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            WritableByteChannel channel = Channels.newChannel(os);
+            // A channel writing at most 7 bytes at a time, like a non blocking socket.
+            read(bytes).write(new WritableByteChannel() {
+
+                @Override
+                public int write(ByteBuffer src) throws IOException {
+                    ByteBuffer chunk = src.duplicate();
+                    chunk.limit(chunk.position() + Math.min(7, chunk.remaining()));
+                    int written = channel.write(chunk);
+                    src.position(src.position() + written);
+                    return written;
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return true;
+                }
+
+                @Override
+                public void close() {
+                }
+            }, PARSER);
+            assertArrayEquals(bytes, os.toByteArray());
+        }
+    }
+
+    @Test
+    public void testArenaWrite() throws IOException {
+        BufferArena arena = new BufferArena();
+        // The pooled buffers are dirty, the tiles must not depend on their content.
+        for (int capacity = 4096; capacity <= 1 << 20; capacity <<= 1) {
+            ByteBuffer buffer = arena.acquire(capacity);
+            while (buffer.hasRemaining()) {
+                buffer.put((byte) 0x5A);
+            }
+            arena.release(buffer);
+        }
+        List<byte[]> tiles = createWrittenTiles();
+        for (int pass = 0; pass < 2; ++pass) {
+            for (byte[] bytes : tiles) {
+                ByteBuffer[] buffers = read(bytes).createBuffers(PARSER, arena);
+                assertArrayEquals(bytes, concat(buffers));
+                arena.recycle(buffers);
+                ByteArrayOutputStream os = new ByteArrayOutputStream();
+                read(bytes).write(Channels.newChannel(os), PARSER, arena);
+                assertArrayEquals(bytes, os.toByteArray());
+            }
+        }
+        assertEquals(0, arena.getBytesInUse());
+        assertTrue(arena.getReuseCount() > 0);
+    }
+
+    @Test
+    public void testParallelWrite() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (byte[] bytes : createWrittenTiles()) {
+                TileModel tile = read(bytes);
+                if (tile instanceof Composite) {
+                    assertArrayEquals(bytes, concat(((Composite) tile).createBuffers(PARSER, executor)));
+                    ByteArrayOutputStream os = new ByteArrayOutputStream();
+                    ((Composite) tile).write(Channels.newChannel(os), PARSER, executor);
+                    assertArrayEquals(bytes, os.toByteArray());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testParallelWriteSharedTiles() throws IOException {
+        List<byte[]> tiles = createTiles();
+        CountingTile shared = new CountingTile(createB3dm(64));
+        TileModel pnts = read(tiles.get(1));
+        Composite nested = Composite.create(new CompositeHeader(), new ArrayList<>(Arrays.asList(shared, pnts, read(tiles.get(3)))));
+        // The b3dm is in the top level and in the nested cmpt, which is added twice.
+        Composite composite = Composite.create(new CompositeHeader(), new ArrayList<>(Arrays.asList(shared, nested, pnts, nested, shared)));
+        byte[] expected = write(composite);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 20; ++i) {
+                shared.count.set(0);
+                assertArrayEquals(expected, concat(composite.createBuffers(PARSER, executor)));
+                assertEquals(1, shared.count.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(expected.length, composite.calcSize(PARSER));
+        assertEquals(5, MappedTile.wrap(ByteBuffer.wrap(expected)).getInnerTiles().size());
+    }
+
+    /**
+     * Count the serializations of a tile.
+     */
+    private static class CountingTile implements TileModel {
+
+        private final TileModel tile;
+        private final AtomicInteger count = new AtomicInteger();
+
+        CountingTile(TileModel tile) {
+            this.tile = tile;
+        }
+
+        @Override
+        public Header getHeader() {
+            return tile.getHeader();
+        }
+
+        @Override
+        public long calcSize(JsonParser parser) {
+            return tile.calcSize(parser);
+        }
+
+        @Override
+        public void write(OutputStream os, JsonParser parser) throws IOException {
+            IOUtils.writeFully(Channels.newChannel(os), createBuffers(parser));
+        }
+
+        @Override
+        public void write(WritableByteChannel channel, JsonParser parser) throws IOException {
+            IOUtils.writeFully(channel, createBuffers(parser));
+        }
+
+        @Override
+        public ByteBuffer[] createBuffers(JsonParser parser) throws IOException {
+            return createBuffers(parser, null);
+        }
+
+        @Override
+        public ByteBuffer[] createBuffers(JsonParser parser, BufferArena arena) throws IOException {
+            count.incrementAndGet();
+            return tile.createBuffers(parser, arena);
+        }
+    }
+
+    @Test
+    public void testSectionsAligned() throws IOException {
+        for (byte[] bytes : createWrittenTiles()) {
+            assertAligned(MappedTile.wrap(ByteBuffer.wrap(bytes)));
+        }
+    }
+
+    private static void assertAligned(MappedTile tile) {
+        assertEquals(0, tile.getHeader().getByteLength() % 8);
+        if (tile.getHeader() instanceof CompositeHeader) {
+            for (MappedTile innerTile : tile.getInnerTiles()) {
+                assertAligned(innerTile);
+            }
+        } else {
+            BatchHeader header = (BatchHeader) tile.getHeader();
+            assertEquals(0, (header.getHeaderLength() + header.getFeatureTableJSONByteLength()) % 8);
+            assertEquals(0, header.getFeatureTableBinaryByteLength() % 8);
+            assertEquals(0, header.getBatchTableJSONByteLength() % 8);
+            assertEquals(0, header.getBatchTableBinaryByteLength() % 8);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCompressedGltf() throws IOException {
+        B3dm tile = createB3dm(300);
+        GltfModelV2 gltf = (GltfModelV2) tile.getGltf();
+        MeshoptCompression compression = new MeshoptCompression();
+        compression.selectAll(gltf);
+        List<BufferViewModel> bufferViews = gltf.getBufferViewModels();
+        assertEquals(MeshoptCodec.Mode.ATTRIBUTES, compression.getMode(bufferViews.get(0)));
+        assertEquals(Integer.valueOf(4), compression.getByteStride(bufferViews.get(0)));
+        assertEquals(MeshoptCodec.Mode.TRIANGLES, compression.getMode(bufferViews.get(1)));
+        assertEquals(Integer.valueOf(2), compression.getByteStride(bufferViews.get(1)));
+
+        byte[] glb = concat(CommonUtils.getPadGltfChunks(gltf, 8, compression).getBuffers());
+        ByteBuffer header = ByteBuffer.wrap(glb).order(ByteOrder.LITTLE_ENDIAN);
+        Map<String, Object> json = PARSER.parseObject(new String(glb, 20, header.getInt(12), StandardCharsets.UTF_8).trim());
+        assertEquals(Collections.singletonList(MeshoptCodec.EXTENSION_NAME), json.get("extensionsUsed"));
+        assertEquals(Collections.singletonList(MeshoptCodec.EXTENSION_NAME), json.get("extensionsRequired"));
+        List<Map<String, Object>> buffers = (List<Map<String, Object>>) json.get("buffers");
+        assertEquals(2, buffers.size());
+        Map<String, Object> fallback = buffers.get(1);
+        assertNull(fallback.get("uri"));
+        assertEquals(Collections.singletonMap("fallback", true),
+                ((Map<String, Object>) fallback.get("extensions")).get(MeshoptCodec.EXTENSION_NAME));
+        List<Map<String, Object>> views = (List<Map<String, Object>>) json.get("bufferViews");
+        int fallbackLength = 0;
+        int binaryOffset = 0;
+        int binaryLength = 0;
+        for (int i = 0; i < 2; ++i) {
+            Map<String, Object> view = views.get(i);
+            BufferViewModel original = bufferViews.get(i);
+            assertEquals(1, ((Number) view.get("buffer")).intValue());
+            assertEquals(fallbackLength, ((Number) view.get("byteOffset")).intValue());
+            assertEquals(original.getByteLength(), ((Number) view.get("byteLength")).intValue());
+            fallbackLength += (original.getByteLength() + 3) / 4 * 4;
+            Map<String, Object> extension = (Map<String, Object>) ((Map<String, Object>) view.get("extensions")).get(MeshoptCodec.EXTENSION_NAME);
+            int byteStride = compression.getByteStride(original);
+            assertEquals(0, ((Number) extension.get("buffer")).intValue());
+            assertEquals(binaryOffset, ((Number) extension.get("byteOffset")).intValue());
+            assertEquals(byteStride, ((Number) extension.get("byteStride")).intValue());
+            assertEquals(original.getByteLength() / byteStride, ((Number) extension.get("count")).intValue());
+            assertEquals(compression.getMode(original).name(), extension.get("mode"));
+            int encodedLength = ((Number) extension.get("byteLength")).intValue();
+            assertTrue(encodedLength < original.getByteLength());
+            binaryLength = binaryOffset + encodedLength;
+            binaryOffset += (encodedLength + 3) / 4 * 4;
+        }
+        assertEquals(fallbackLength, ((Number) fallback.get("byteLength")).intValue());
+        assertEquals(binaryLength, ((Number) buffers.get(0).get("byteLength")).intValue());
+
+        // The size is computed from the same cached encoding that is written.
+        int uncompressedLength = write(tile).length;
+        tile.setGltfCompression(compression);
+        byte[] bytes = write(tile);
+        assertEquals(bytes.length, tile.calcSize(PARSER));
+        assertEquals(bytes.length, tile.getHeader().getByteLength());
+        assertTrue(bytes.length < uncompressedLength);
+
+        GltfModelV2 copy = (GltfModelV2) ((B3dm) read(bytes)).getGltf();
+        ByteBuffer attributes = copy.getBufferViewModels().get(0).getBufferViewData();
+        assertEquals(bufferViews.get(0).getBufferViewData(), attributes);
+        ShortBuffer expected = bufferViews.get(1).getBufferViewData().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+        ShortBuffer actual = copy.getBufferViewModels().get(1).getBufferViewData().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+        assertEquals(expected.remaining(), actual.remaining());
+        for (int i = 0; i < expected.remaining(); i += 3) {
+            // The triangles may be rotated, but not flipped.
+            int rotation = 0;
+            while (rotation < 3 && actual.get(i) != expected.get(i + rotation)) {
+                ++rotation;
+            }
+            assertTrue(rotation < 3);
+            for (int j = 0; j < 3; ++j) {
+                assertEquals(expected.get(i + (rotation + j) % 3), actual.get(i + j));
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package me.cxj.j3dtiles.model.v1;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static me.cxj.j3dtiles.model.v1.TileTestUtils.*;
+import static org.junit.Assert.*;
+
+public class TileScannerTest {
+
+    private Path root;
+    private List<byte[]> tiles;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("j3dtiles");
+        tiles = createTiles();
+        Files.createDirectories(root.resolve("a/b"));
+        Files.write(root.resolve("a/b/0.b3dm"), tiles.get(0));
+        Files.write(root.resolve("a/1.pnts"), tiles.get(1));
+        Files.write(root.resolve("a/3.i3dm"), tiles.get(3));
+        Files.write(root.resolve("6.cmpt"), tiles.get(6));
+        Files.write(root.resolve("tileset.json"), "{}".getBytes("UTF-8"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> stream = Files.walk(root)) {
+            for (Path path : stream.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testScan() throws IOException {
+        List<TileIndexEntry> entries = new TileScanner(PARSER, 3).scan(root).getEntries();
+        // 6.cmpt holds a i3dm and a cmpt of a b3dm, a pnts and a i3dm.
+        assertEquals(Arrays.asList("6.cmpt", "6.cmpt", "6.cmpt", "6.cmpt", "6.cmpt", "6.cmpt", "a/1.pnts", "a/3.i3dm", "a/b/0.b3dm"),
+                entries.stream().map(TileIndexEntry::getPath).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("cmpt", "i3dm", "cmpt", "b3dm", "pnts", "i3dm", "pnts", "i3dm", "b3dm"),
+                entries.stream().map(TileIndexEntry::getMagic).collect(Collectors.toList()));
+        for (TileIndexEntry entry : entries) {
+            byte[] file = Files.readAllBytes(root.resolve(entry.getPath()));
+            MappedTile tile = MappedTile.wrap(ByteBuffer.wrap(file, (int) entry.getOffset(), file.length - (int) entry.getOffset()));
+            assertEntry(entry, tile);
+        }
+        TileIndexEntry cmpt = entries.get(0);
+        assertEquals(0, cmpt.getOffset());
+        assertEquals(2, cmpt.getFeaturesLength());
+        assertEquals(16, entries.get(1).getOffset());
+        assertEquals(16 + tiles.get(4).length, entries.get(2).getOffset());
+        assertEquals(7, entries.get(8).getFeaturesLength());
+        assertArrayEquals(new float[] {1, 2, 3}, entries.get(8).getRtcCenter(), 0);
+        assertEquals(33, entries.get(6).getFeaturesLength());
+        assertEquals(5, entries.get(6).getBatchLength());
+        assertEquals(9, entries.get(7).getFeaturesLength());
+        assertEquals(-1, entries.get(7).getBatchLength());
+    }
+
+    private static void assertEntry(TileIndexEntry entry, MappedTile tile) {
+        Header header = tile.getHeader();
+        assertEquals(new String(header.getMagic()), entry.getMagic());
+        assertEquals(header.getByteLength(), entry.getByteLength());
+        if (header instanceof BatchHeader) {
+            BatchHeader batchHeader = (BatchHeader) header;
+            assertEquals(batchHeader.getFeatureTableJSONByteLength(), entry.getFeatureTableJSONByteLength());
+            assertEquals(batchHeader.getFeatureTableBinaryByteLength(), entry.getFeatureTableBinaryByteLength());
+            assertEquals(batchHeader.getBatchTableJSONByteLength(), entry.getBatchTableJSONByteLength());
+            assertEquals(batchHeader.getBatchTableBinaryByteLength(), entry.getBatchTableBinaryByteLength());
+        }
+    }
+
+    @Test
+    public void testIndexRoundTrip() throws IOException {
+        TileIndex index = new TileScanner(PARSER, 2).scan(root);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        index.write(os);
+        List<TileIndexEntry> entries = index.getEntries();
+        List<TileIndexEntry> copies = TileIndex.read(new ByteArrayInputStream(os.toByteArray())).getEntries();
+        assertEquals(entries.size(), copies.size());
+        for (int i = 0; i < entries.size(); ++i) {
+            TileIndexEntry entry = entries.get(i);
+            TileIndexEntry copy = copies.get(i);
+            assertEquals(entry.toString(), copy.toString());
+            assertEquals(entry.getFeatureTableJSONByteLength(), copy.getFeatureTableJSONByteLength());
+            assertEquals(entry.getFeatureTableBinaryByteLength(), copy.getFeatureTableBinaryByteLength());
+            assertEquals(entry.getBatchTableJSONByteLength(), copy.getBatchTableJSONByteLength());
+            assertEquals(entry.getBatchTableBinaryByteLength(), copy.getBatchTableBinaryByteLength());
+            assertEquals(entry.getBatchLength(), copy.getBatchLength());
+            if (entry.getRtcCenter() == null) {
+                assertNull(copy.getRtcCenter());
+            } else {
+                assertArrayEquals(entry.getRtcCenter(), copy.getRtcCenter(), 0);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncatedTile() throws IOException {
+        byte[] tile = tiles.get(0);
+        Files.write(root.resolve("a/truncated.b3dm"), Arrays.copyOf(tile, tile.length - 8));
+        new TileScanner(PARSER, 2).scan(root);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidIndex() throws IOException {
+        TileIndex.read(new ByteArrayInputStream("b3dm".getBytes("UTF-8")));
+    }
+}
@@ -0,0 +1,524 @@
+package me.cxj.j3dtiles.model.v1;
+
+import me.cxj.j3dtiles.impl.v1.BoundingVolume;
+import me.cxj.j3dtiles.impl.v1.Tile;
+import me.cxj.j3dtiles.impl.v1.TileContent;
+import me.cxj.j3dtiles.impl.v1.Tileset;
+import me.cxj.j3dtiles.utils.BoundingVolumeUtils;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TileSpatialIndexTest {
+
+    private static final int TILES_LENGTH = 3000;
+    private static final int QUERIES_LENGTH = 200;
+
+    /**
+     * A tileset of random boxes and spheres, where a tile is added under a random tile, and some tiles have a transform
+     * with a rotation, a scale and a translation.
+     * @param tiles the tiles depth first, a parent before its children.
+     */
+    private static Tileset createTileset(Random random, int tilesLength, List<Tile> tiles) {
+        Tile root = createTile(random);
+        List<Tile> created = new ArrayList<>();
+        created.add(root);
+        for (int i = 1; i < tilesLength; ++i) {
+            Tile tile = createTile(random);
+            created.get(random.nextInt(created.size())).addChildren(tile);
+            created.add(tile);
+        }
+        collect(root, tiles);
+        Tileset tileset = new Tileset();
+        tileset.setRoot(root);
+        return tileset;
+    }
+
+    private static Tile createTile(Random random) {
+        Tile tile = new Tile();
+        BoundingVolume volume = new BoundingVolume();
+        float x = random.nextFloat() * 1000;
+        float y = random.nextFloat() * 1000;
+        float z = random.nextFloat() * 100;
+        if (random.nextInt(3) == 0) {
+            volume.setSphere(new float[] {x, y, z, 1 + random.nextFloat() * 20});
+        } else {
+            float[] box = {x, y, z, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+            for (int i = 3; i < 12; ++i) {
+                box[i] = (random.nextFloat() - 0.5f) * 20;
+            }
+            volume.setBox(box);
+        }
+        tile.setBoundingVolume(volume);
+        tile.setGeometricError(1f);
+        if (random.nextInt(5) == 0) {
+            double angle = random.nextDouble() * Math.PI * 2;
+            float cos = (float) Math.cos(angle);
+            float sin = (float) Math.sin(angle);
+            float scale = 0.5f + random.nextFloat();
+            tile.setTransform(new float[] {
+                    cos * scale, sin * scale, 0, 0,
+                    -sin * scale, cos * scale, 0, 0,
+                    0, 0, scale, 0,
+                    random.nextFloat() * 100 - 50, random.nextFloat() * 100 - 50, random.nextFloat() * 10, 1});
+        }
+        return tile;
+    }
+
+    private static void collect(Tile tile, List<Tile> tiles) {
+        tiles.add(tile);
+        if (tile.getChildren() != null) {
+            for (Tile child : tile.getChildren()) {
+                collect(child, tiles);
+            }
+        }
+    }
+
+    /**
+     * The bounds of the tiles computed tile by tile, with the transforms accumulated from the root.
+     */
+    private static Map<Tile, double[]> computeBounds(Tile root) {
+        Map<Tile, double[]> result = new IdentityHashMap<>();
+        double[] identity = new double[16];
+        BoundingVolumeUtils.identity(identity, 0);
+        computeBounds(root, identity, result);
+        return result;
+    }
+
+    private static void computeBounds(Tile tile, double[] parentTransform, Map<Tile, double[]> result) {
+        double[] transform = parentTransform;
+        if (tile.getTransform() != null) {
+            transform = new double[16];
+            BoundingVolumeUtils.multiply(parentTransform, 0, tile.getTransform(), transform, 0);
+        }
+        BoundingVolume volume = tile.getBoundingVolume();
+        double[] bounds = new double[6];
+        if (volume.getBox() != null) {
+            double[] box = new double[12];
+            BoundingVolumeUtils.copy(volume.getBox(), box, 0);
+            BoundingVolumeUtils.transformBox(transform, 0, box, 0, box, 0);
+            BoundingVolumeUtils.boxToBounds(box, 0, bounds, 0);
+        } else if (volume.getSphere() != null) {
+            double[] sphere = new double[4];
+            BoundingVolumeUtils.copy(volume.getSphere(), sphere, 0);
+            BoundingVolumeUtils.transformSphere(transform, 0, sphere, 0, sphere, 0);
+            BoundingVolumeUtils.sphereToBounds(sphere, 0, bounds, 0);
+        } else {
+            double[] region = new double[6];
+            BoundingVolumeUtils.copy(volume.getRegion(), region, 0);
+            BoundingVolumeUtils.regionToBounds(region, 0, bounds, 0);
+        }
+        result.put(tile, bounds);
+        if (tile.getChildren() != null) {
+            for (Tile child : tile.getChildren()) {
+                computeBounds(child, transform, result);
+            }
+        }
+    }
+
+    private interface BoundsTest {
+        boolean test(double[] bounds);
+    }
+
+    private static Set<Tile> bruteForce(Map<Tile, double[]> bounds, BoundsTest test) {
+        Set<Tile> result = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Map.Entry<Tile, double[]> entry : bounds.entrySet()) {
+            if (test.test(entry.getValue())) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    private static void assertSameTiles(Set<Tile> expected, List<Tile> actual) {
+        Set<Tile> actualSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        actualSet.addAll(actual);
+        assertEquals("Duplicated tiles.", actual.size(), actualSet.size());
+        assertEquals(expected.size(), actualSet.size());
+        assertTrue(expected.equals(actualSet));
+    }
+
+    private static boolean overlaps(double[] bounds, double[] box) {
+        return bounds[0] <= box[3] && bounds[3] >= box[0]
+                && bounds[1] <= box[4] && bounds[4] >= box[1]
+                && bounds[2] <= box[5] && bounds[5] >= box[2];
+    }
+
+    /**
+     * The slab test, with the distance along the ray to the bounds, 0 if the origin is inside, or -1 if they are missed.
+     */
+    private static double rayDistance(double[] bounds, double[] origin, double[] direction, double maxDistance) {
+        double near = 0;
+        double far = maxDistance;
+        for (int c = 0; c < 3; ++c) {
+            double inverse = 1 / direction[c];
+            double t1 = (bounds[c] - origin[c]) * inverse;
+            double t2 = (bounds[c + 3] - origin[c]) * inverse;
+            near = Math.max(near, Math.min(t1, t2));
+            far = Math.min(far, Math.max(t1, t2));
+        }
+        return near <= far ? near : -1;
+    }
+
+    /**
+     * Compare the queries of the index with brute force over the bounds of the tiles.
+     */
+    private static void assertQueries(TileSpatialIndex index, Map<Tile, double[]> bounds, Random random) {
+        assertEquals(bounds.size(), index.size());
+        for (int q = 0; q < QUERIES_LENGTH; ++q) {
+            double x = random.nextDouble() * 1100 - 50;
+            double y = random.nextDouble() * 1100 - 50;
+            double z = random.nextDouble() * 120 - 10;
+            double[] box = {x, y, z, x + random.nextDouble() * 100, y + random.nextDouble() * 100, z + random.nextDouble() * 20};
+            assertSameTiles(bruteForce(bounds, b -> overlaps(b, box)),
+                    index.queryBox(box[0], box[1], box[2], box[3], box[4], box[5]));
+
+            double[] point = {x, y, z, x, y, z};
+            assertSameTiles(bruteForce(bounds, b -> overlaps(b, point)), index.queryPoint(x, y, z));
+
+            double radius = random.nextDouble() * 50;
+            assertSameTiles(bruteForce(bounds, b -> {
+                double dx = Math.max(0, Math.max(b[0] - x, x - b[3]));
+                double dy = Math.max(0, Math.max(b[1] - y, y - b[4]));
+                double dz = Math.max(0, Math.max(b[2] - z, z - b[5]));
+                return dx * dx + dy * dy + dz * dz <= radius * radius;
+            }), index.querySphere(x, y, z, radius));
+
+            double[] origin = {x, y, z};
+            double[] direction = {random.nextGaussian(), random.nextGaussian(), random.nextGaussian()};
+            double maxDistance = q % 2 == 0 ? Double.POSITIVE_INFINITY : random.nextDouble() * 300;
+            List<Tile> hits = index.queryRay(x, y, z, direction[0], direction[1], direction[2], maxDistance);
+            assertSameTiles(bruteForce(bounds, b -> rayDistance(b, origin, direction, maxDistance) >= 0), hits);
+            double previous = 0;
+            for (Tile hit : hits) {
+                double distance = rayDistance(bounds.get(hit), origin, direction, maxDistance);
+                assertTrue(distance >= previous);
+                previous = distance;
+            }
+
+            double[] planes = new double[24];
+            for (int p = 0; p < planes.length; p += 4) {
+                double a = random.nextGaussian();
+                double b = random.nextGaussian();
+                double c = random.nextGaussian();
+                // The planes pass around the point, so the frustum is not empty.
+                planes[p] = a;
+                planes[p + 1] = b;
+                planes[p + 2] = c;
+                planes[p + 3] = -(a * x + b * y + c * z) + random.nextDouble() * 200;
+            }
+            assertSameTiles(bruteForce(bounds, b -> {
+                for (int p = 0; p < planes.length; p += 4) {
+                    double cx = planes[p] >= 0 ? b[3] : b[0];
+                    double cy = planes[p + 1] >= 0 ? b[4] : b[1];
+                    double cz = planes[p + 2] >= 0 ? b[5] : b[2];
+                    if (planes[p] * cx + planes[p + 1] * cy + planes[p + 2] * cz + planes[p + 3] < 0) {
+                        return false;
+                    }
+                }
+                return true;
+            }), index.queryFrustum(planes));
+        }
+    }
+
+    /**
+     * Check the tree, and that its height is logarithmic. The rotations do not keep the heights of the children of a
+     * node within 1 of each other, since a leaf may be inserted next to a large subtree, but they bound the height.
+     */
+    private static void assertBalanced(TileSpatialIndex index) {
+        index.validate();
+        assertTrue("Height " + index.getHeight(), index.getHeight() <= 2 * log2Ceil(index.size()));
+    }
+
+    private static int log2Ceil(int n) {
+        return 32 - Integer.numberOfLeadingZeros(n - 1);
+    }
+
+    @Test
+    public void testBulkLoadQueries() {
+        Random random = new Random(0);
+        List<Tile> tiles = new ArrayList<>();
+        Tileset tileset = createTileset(random, TILES_LENGTH, tiles);
+        TileSpatialIndex index = TileSpatialIndex.build(tileset);
+        // The median splits give a complete tree.
+        assertEquals(log2Ceil(TILES_LENGTH), index.getHeight());
+        assertTrue(index.validate() <= 1);
+        assertQueries(index, computeBounds(tileset.getRoot()), random);
+    }
+
+    @Test
+    public void testInsertQueries() {
+        Random random = new Random(1);
+        List<Tile> tiles = new ArrayList<>();
+        Tileset tileset = createTileset(random, TILES_LENGTH, tiles);
+        Map<Tile, Tile> parents = new IdentityHashMap<>();
+        for (Tile tile : tiles) {
+            if (tile.getChildren() != null) {
+                for (Tile child : tile.getChildren()) {
+                    parents.put(child, tile);
+                }
+            }
+        }
+        TileSpatialIndex index = new TileSpatialIndex();
+        for (int i = 0; i < tiles.size(); ++i) {
+            Tile tile = tiles.get(i);
+            index.insert(tile, parents.get(tile));
+            if (i % 97 == 0) {
+                index.validate();
+            }
+        }
+        assertBalanced(index);
+        Map<Tile, double[]> bounds = computeBounds(tileset.getRoot());
+        assertQueries(index, bounds, random);
+        for (Tile tile : tiles) {
+            double[] expected = tile == tileset.getRoot() ? null : index.getTransform(parents.get(tile));
+            if (tile.getTransform() != null) {
+                double[] transform = new double[16];
+                if (expected == null) {
+                    BoundingVolumeUtils.identity(transform, 0);
+                } else {
+                    System.arraycopy(expected, 0, transform, 0, 16);
+                }
+                expected = new double[16];
+                BoundingVolumeUtils.multiply(transform, 0, tile.getTransform(), expected, 0);
+            }
+            if (expected == null) {
+                assertNull(index.getTransform(tile));
+            } else {
+                assertArrayEquals(expected, index.getTransform(tile), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testRemoveQueries() {
+        Random random = new Random(2);
+        List<Tile> tiles = new ArrayList<>();
+        Tileset tileset = createTileset(random, TILES_LENGTH, tiles);
+        TileSpatialIndex index = TileSpatialIndex.build(tileset);
+        Map<Tile, double[]> bounds = computeBounds(tileset.getRoot());
+        List<Tile> shuffled = new ArrayList<>(tiles);
+        Collections.shuffle(shuffled, random);
+        for (int i = 0; i < shuffled.size() / 2; ++i) {
+            Tile tile = shuffled.get(i);
+            assertTrue(index.remove(tile));
+            assertFalse(index.remove(tile));
+            assertFalse(index.contains(tile));
+            bounds.remove(tile);
+            if (i % 97 == 0) {
+                index.validate();
+            }
+        }
+        assertBalanced(index);
+        assertQueries(index, bounds, random);
+
+        // Insert them back, under the identity: the transforms of their ancestors are ignored.
+        for (int i = 0; i < shuffled.size() / 2; ++i) {
+            Tile tile = shuffled.get(i);
+            index.insert(tile, (double[]) null);
+            double[] tileBounds = computeBounds(tile).get(tile);
+            bounds.put(tile, tileBounds);
+        }
+        assertBalanced(index);
+        assertQueries(index, bounds, random);
+
+        for (Tile tile : tiles) {
+            assertTrue(index.remove(tile));
+        }
+        assertEquals(0, index.size());
+        assertEquals(-1, index.getHeight());
+        index.validate();
+        assertTrue(index.queryBox(-1e9, -1e9, -1e9, 1e9, 1e9, 1e9).isEmpty());
+    }
+
+    /**
+     * Tiles inserted in the order of their positions along a line, which would make a list of an unbalanced tree.
+     */
+    @Test
+    public void testSortedInsertsStayBalanced() {
+        TileSpatialIndex index = new TileSpatialIndex();
+        List<Tile> tiles = new ArrayList<>();
+        int tilesLength = 4096;
+        for (int i = 0; i < tilesLength; ++i) {
+            Tile tile = new Tile();
+            BoundingVolume volume = new BoundingVolume();
+            volume.setSphere(new float[] {i * 10, 0, 0, 1});
+            tile.setBoundingVolume(volume);
+            index.insert(tile, (double[]) null);
+            tiles.add(tile);
+        }
+        assertBalanced(index);
+        // Removing from one end only shrinks one side of the tree.
+        for (int i = 0; i < tilesLength * 3 / 4; ++i) {
+            index.remove(tiles.get(i));
+        }
+        assertBalanced(index);
+        assertEquals(Collections.singletonList(tiles.get(tilesLength - 1)), index.queryPoint((tilesLength - 1) * 10, 0, 0));
+    }
+
+    @Test
+    public void testUpdate() {
+        Random random = new Random(3);
+        List<Tile> tiles = new ArrayList<>();
+        Tileset tileset = createTileset(random, 500, tiles);
+        TileSpatialIndex index = TileSpatialIndex.build(tileset);
+        for (int i = 0; i < 50; ++i) {
+            Tile tile = tiles.get(random.nextInt(tiles.size()));
+            tile.getBoundingVolume().setBox(null);
+            tile.getBoundingVolume().setSphere(new float[] {random.nextFloat() * 1000, random.nextFloat() * 1000, 0, 5});
+            assertTrue(index.update(tile));
+        }
+        // Moving the root moves the whole tree.
+        Tile root = tileset.getRoot();
+        root.setTransform(new float[] {1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 500, 0, 0, 1});
+        Deque<Tile> stack = new ArrayDeque<>();
+        stack.push(root);
+        assertTrue(index.update(root, (double[]) null));
+        while (!stack.isEmpty()) {
+            Tile tile = stack.pop();
+            if (tile.getChildren() != null) {
+                for (Tile child : tile.getChildren()) {
+                    assertTrue(index.update(child, index.getTransform(tile)));
+                    stack.push(child);
+                }
+            }
+        }
+        assertFalse(index.update(new Tile()));
+        index.validate();
+        assertQueries(index, computeBounds(root), random);
+    }
+
+    @Test
+    public void testContentVolumes() {
+        Random random = new Random(4);
+        List<Tile> tiles = new ArrayList<>();
+        Tileset tileset = createTileset(random, 500, tiles);
+        Map<Tile, double[]> bounds = computeBounds(tileset.getRoot());
+        for (Tile tile : tiles) {
+            int kind = random.nextInt(3);
+            if (kind == 0) {
+                // Not indexed.
+                bounds.remove(tile);
+            } else {
+                TileContent content = new TileContent();
+                content.setUri("tile.b3dm");
+                if (kind == 2) {
+                    BoundingVolume volume = new BoundingVolume();
+                    volume.setSphere(new float[] {random.nextFloat() * 1000, random.nextFloat() * 1000, 0, 1});
+                    content.setBoundingVolume(volume);
+                }
+                tile.setContent(content);
+            }
+        }
+        TileSpatialIndex index = TileSpatialIndex.build(tileset, true);
+        assertTrue(index.isContentVolumes());
+        for (Tile tile : tiles) {
+            TileContent content = tile.getContent();
+            if (content != null && content.getBoundingVolume() != null) {
+                // The content volume is under the transform of the tile.
+                double[] transform = index.getTransform(tile);
+                double[] sphere = new double[4];
+                BoundingVolumeUtils.copy(content.getBoundingVolume().getSphere(), sphere, 0);
+                if (transform != null) {
+                    BoundingVolumeUtils.transformSphere(transform, 0, sphere, 0, sphere, 0);
+                }
+                double[] contentBounds = new double[6];
+                BoundingVolumeUtils.sphereToBounds(sphere, 0, contentBounds, 0);
+                bounds.put(tile, contentBounds);
+            }
+        }
+        index.validate();
+        assertQueries(index, bounds, random);
+    }
+
+    @Test
+    public void testRegionQueries() {
+        Random random = new Random(5);
+        Tile root = new Tile();
+        BoundingVolume rootVolume = new BoundingVolume();
+        rootVolume.setRegion(new float[] {(float) -Math.PI, (float) (-Math.PI / 2), (float) Math.PI, (float) (Math.PI / 2), 0, 1000});
+        root.setBoundingVolume(rootVolume);
+        List<float[]> regions = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i) {
+            float west = (float) ((random.nextDouble() * 2 - 1) * Math.PI);
+            float east = west + random.nextFloat() * 0.3f;
+            if (east > Math.PI) {
+                // Across the antimeridian.
+                east -= (float) (2 * Math.PI);
+            }
+            float south = (float) ((random.nextDouble() - 0.5) * 2.8);
+            float[] region = {west, south, east, south + random.nextFloat() * 0.2f, random.nextFloat() * 100, 100 + random.nextFloat() * 100};
+            Tile tile = new Tile();
+            BoundingVolume volume = new BoundingVolume();
+            volume.setRegion(region);
+            tile.setBoundingVolume(volume);
+            root.addChildren(tile);
+            regions.add(region);
+        }
+        // A box near the origin of the earth centered frame is not a region, so it is tested by its bounds.
+        Tile box = new Tile();
+        BoundingVolume boxVolume = new BoundingVolume();
+        boxVolume.setBox(new float[] {(float) BoundingVolumeUtils.WGS84_A, 0, 0, 1000, 0, 0, 0, 1000, 0, 0, 0, 1000});
+        box.setBoundingVolume(boxVolume);
+        root.addChildren(box);
+        Tileset tileset = new Tileset();
+        tileset.setRoot(root);
+        TileSpatialIndex index = TileSpatialIndex.build(tileset);
+        Map<Tile, double[]> bounds = computeBounds(root);
+
+        List<double[]> queries = new ArrayList<>();
+        for (int q = 0; q < QUERIES_LENGTH; ++q) {
+            double west = (random.nextDouble() * 2 - 1) * Math.PI;
+            double east = west + random.nextDouble() * 0.5;
+            if (east > Math.PI) {
+                east -= 2 * Math.PI;
+            }
+            double south = (random.nextDouble() - 0.5) * 2.8;
+            queries.add(new double[] {west, south, east, south + random.nextDouble() * 0.3, random.nextDouble() * 150, 150 + random.nextDouble() * 100});
+        }
+        // The box lies on the equator at the prime meridian.
+        queries.add(new double[] {-0.001, -0.001, 0.001, 0.001, -2000, 2000});
+        boolean boxFound = false;
+        for (double[] query : queries) {
+            double[] queryBounds = new double[6];
+            BoundingVolumeUtils.regionToBounds(query, 0, queryBounds, 0);
+            Set<Tile> expected = bruteForce(bounds, b -> overlaps(b, queryBounds));
+            for (Iterator<Tile> it = expected.iterator(); it.hasNext(); ) {
+                float[] region = it.next().getBoundingVolume().getRegion();
+                if (region != null) {
+                    double[] tileRegion = new double[6];
+                    BoundingVolumeUtils.copy(region, tileRegion, 0);
+                    if (!BoundingVolumeUtils.regionsIntersect(tileRegion, 0, query, 0)) {
+                        it.remove();
+                    }
+                }
+            }
+            List<Tile> actual = index.queryRegion(query[0], query[1], query[2], query[3], query[4], query[5]);
+            assertSameTiles(expected, actual);
+            assertTrue(actual.contains(root));
+            boxFound |= actual.contains(box);
+        }
+        assertTrue(boxFound);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInsertTwice() {
+        TileSpatialIndex index = new TileSpatialIndex();
+        Tile tile = createTile(new Random(6));
+        index.insert(tile, (double[]) null);
+        index.insert(tile, (double[]) null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParentNotIndexed() {
+        Random random = new Random(7);
+        new TileSpatialIndex().insert(createTile(random), createTile(random));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoVolume() {
+        new TileSpatialIndex().insert(new Tile(), (double[]) null);
+    }
+}
@@ -0,0 +1,355 @@
+package me.cxj.j3dtiles.model.v1;
+
+import de.javagl.jgltf.impl.v2.*;
+import de.javagl.jgltf.model.GltfConstants;
+import de.javagl.jgltf.model.GltfModel;
+import de.javagl.jgltf.model.io.v2.GltfAssetV2;
+import de.javagl.jgltf.model.v2.GltfModelV2;
+import me.cxj.j3dtiles.utils.CommonUtils;
+import me.cxj.j3dtiles.utils.JacksonJsonParser;
+import me.cxj.j3dtiles.utils.JsonParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Small tiles of each format for the tests. The pnts, i3dm and cmpt tiles are assembled byte by byte, the way another
+ * writer would produce them, since only the b3dm can be built from scratch with the model.
+ */
+final class TileTestUtils {
+
+    static final JsonParser PARSER = JacksonJsonParser.getInstance();
+
+    private static final String[] KINDS = { "IfcWall", "IfcSlab", "IfcDoor" };
+
+    private TileTestUtils() {
+    }
+
+    /**
+     * A grid of triangles, one feature per triangle, with a _BATCHID attribute.
+     */
+    static GltfModel createGltf(int batchLength) {
+        int vertexCount = batchLength * 3;
+        int attributesLength = vertexCount * 4 * 4;
+        int indicesLength = vertexCount * 2;
+        ByteBuffer data = ByteBuffer.allocate(attributesLength + (indicesLength + 3) / 4 * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < batchLength; ++i) {
+            data.putFloat(i).putFloat(0).putFloat(0);
+            data.putFloat(i + 1).putFloat(0).putFloat(0);
+            data.putFloat(i).putFloat(1).putFloat(0);
+        }
+        for (int i = 0; i < vertexCount; ++i) {
+            data.putFloat(i / 3);
+        }
+        for (int i = 0; i < vertexCount; ++i) {
+            data.putShort((short) i);
+        }
+        data.position(0);
+
+        GlTF gltf = new GlTF();
+        Asset asset = new Asset();
+        asset.setVersion("2.0");
+        gltf.setAsset(asset);
+        Buffer buffer = new Buffer();
+        buffer.setByteLength(data.capacity());
+        gltf.addBuffers(buffer);
+        gltf.addBufferViews(createBufferView(0, attributesLength, GltfConstants.GL_ARRAY_BUFFER));
+        gltf.addBufferViews(createBufferView(attributesLength, indicesLength, GltfConstants.GL_ELEMENT_ARRAY_BUFFER));
+        Accessor position = createAccessor(0, 0, GltfConstants.GL_FLOAT, vertexCount, "VEC3");
+        position.setMin(new Number[] {0f, 0f, 0f});
+        position.setMax(new Number[] {(float) batchLength, 1f, 0f});
+        gltf.addAccessors(position);
+        gltf.addAccessors(createAccessor(0, vertexCount * 12, GltfConstants.GL_FLOAT, vertexCount, "SCALAR"));
+        gltf.addAccessors(createAccessor(1, 0, GltfConstants.GL_UNSIGNED_SHORT, vertexCount, "SCALAR"));
+        MeshPrimitive primitive = new MeshPrimitive();
+        primitive.addAttributes("POSITION", 0);
+        primitive.addAttributes("_BATCHID", 1);
+        primitive.setIndices(2);
+        primitive.setMode(GltfConstants.GL_TRIANGLES);
+        Mesh mesh = new Mesh();
+        mesh.addPrimitives(primitive);
+        gltf.addMeshes(mesh);
+        Node node = new Node();
+        node.setMesh(0);
+        gltf.addNodes(node);
+        Scene scene = new Scene();
+        scene.addNodes(0);
+        gltf.addScenes(scene);
+        gltf.setScene(0);
+        return new GltfModelV2(new GltfAssetV2(gltf, data));
+    }
+
+    private static BufferView createBufferView(int byteOffset, int byteLength, int target) {
+        BufferView bufferView = new BufferView();
+        bufferView.setBuffer(0);
+        bufferView.setByteOffset(byteOffset);
+        bufferView.setByteLength(byteLength);
+        bufferView.setTarget(target);
+        return bufferView;
+    }
+
+    private static Accessor createAccessor(int bufferView, int byteOffset, int componentType, int count, String type) {
+        Accessor accessor = new Accessor();
+        accessor.setBufferView(bufferView);
+        accessor.setByteOffset(byteOffset);
+        accessor.setComponentType(componentType);
+        accessor.setCount(count);
+        accessor.setType(type);
+        return accessor;
+    }
+
+    /**
+     * A b3dm with a repeated string property and a numeric property in the batch table.
+     */
+    static B3dm createB3dm(int batchLength) {
+        B3dmFeatureTable featureTable = new B3dmFeatureTable();
+        featureTable.setBatchLength(batchLength);
+        featureTable.setRtcCenter(new float[] {1, 2, 3});
+        BatchTable batchTable = new BatchTable(batchLength);
+        List<Object> kinds = new ArrayList<>();
+        List<Object> heights = new ArrayList<>();
+        for (int i = 0; i < batchLength; ++i) {
+            kinds.add(KINDS[i % KINDS.length]);
+            heights.add(i * 0.5);
+        }
+        batchTable.setColumn("kind", kinds);
+        batchTable.setColumn("height", heights);
+        return new B3dm(featureTable, batchTable, createGltf(batchLength));
+    }
+
+    /**
+     * A pnts with positions, colors, batch ids and a constant color, and a binary property in the batch table.
+     * @param constantRgba the CONSTANT_RGBA components, or null.
+     */
+    static byte[] createPnts(int pointsLength, int batchLength, int[] constantRgba, long seed) {
+        Random random = new Random(seed);
+        ByteBuffer featureBinary = allocate(pointsLength * (12 + 4 + 2));
+        for (int i = 0; i < pointsLength * 3; ++i) {
+            featureBinary.putFloat(random.nextFloat() * 100);
+        }
+        for (int i = 0; i < pointsLength * 4; ++i) {
+            featureBinary.put((byte) random.nextInt(256));
+        }
+        for (int i = 0; i < pointsLength; ++i) {
+            featureBinary.putShort((short) (i % batchLength));
+        }
+        String featureJson = "{\"POINTS_LENGTH\":" + pointsLength
+                + ",\"POSITION\":{\"byteOffset\":0}"
+                + ",\"RGBA\":{\"byteOffset\":" + pointsLength * 12 + "}"
+                + ",\"BATCH_ID\":{\"byteOffset\":" + pointsLength * 16 + ",\"componentType\":\"UNSIGNED_SHORT\"}"
+                + ",\"BATCH_LENGTH\":" + batchLength
+                + (constantRgba != null ? ",\"CONSTANT_RGBA\":" + Arrays.toString(constantRgba).replace(" ", "") : "")
+                + "}";
+        ByteBuffer batchBinary = allocate(batchLength * 4);
+        for (int i = 0; i < batchLength; ++i) {
+            batchBinary.putFloat(random.nextFloat());
+        }
+        String batchJson = "{\"intensity\":{\"byteOffset\":0,\"componentType\":\"FLOAT\",\"type\":\"SCALAR\"}}";
+        return assemble(PointCloudHeader.magic, 28, -1, featureJson, featureBinary.array(), batchJson, batchBinary.array(), new byte[0]);
+    }
+
+    /**
+     * An i3dm with positions, normals, scales and batch ids, and a repeated string property in the batch table.
+     * @param embedGltf whether to embed a glb, or to refer to an external gltf.
+     */
+    static byte[] createI3dm(int instancesLength, boolean embedGltf, long seed) throws IOException {
+        Random random = new Random(seed);
+        ByteBuffer featureBinary = allocate(instancesLength * (12 + 12 + 12 + 4 + 1));
+        for (int i = 0; i < instancesLength * 3; ++i) {
+            featureBinary.putFloat(random.nextFloat() * 100);
+        }
+        for (int i = 0; i < instancesLength; ++i) {
+            featureBinary.putFloat(0).putFloat(0).putFloat(1);
+        }
+        for (int i = 0; i < instancesLength; ++i) {
+            featureBinary.putFloat(1).putFloat(0).putFloat(0);
+        }
+        for (int i = 0; i < instancesLength; ++i) {
+            featureBinary.putFloat(1 + random.nextFloat());
+        }
+        for (int i = 0; i < instancesLength; ++i) {
+            featureBinary.put((byte) i);
+        }
+        String featureJson = "{\"INSTANCES_LENGTH\":" + instancesLength
+                + ",\"POSITION\":{\"byteOffset\":0}"
+                + ",\"NORMAL_UP\":{\"byteOffset\":" + instancesLength * 12 + "}"
+                + ",\"NORMAL_RIGHT\":{\"byteOffset\":" + instancesLength * 24 + "}"
+                + ",\"SCALE\":{\"byteOffset\":" + instancesLength * 36 + "}"
+                + ",\"BATCH_ID\":{\"byteOffset\":" + instancesLength * 40 + ",\"componentType\":\"UNSIGNED_BYTE\"}"
+                + "}";
+        StringBuilder batchJson = new StringBuilder("{\"kind\":[");
+        for (int i = 0; i < instancesLength; ++i) {
+            batchJson.append(i > 0 ? "," : "").append('"').append(KINDS[i % KINDS.length]).append('"');
+        }
+        batchJson.append("]}");
+        byte[] body;
+        if (embedGltf) {
+            // The chunks are padded, so the glb ends on a 8 bytes boundary like the spec requires.
+            body = concat(CommonUtils.getPadGltfChunks(createGltf(1), 8, null).getBuffers());
+        } else {
+            body = "model.gltf".getBytes(StandardCharsets.UTF_8);
+        }
+        return assemble(I3dmHeader.magic, 32, embedGltf ? 1 : 0, featureJson, featureBinary.array(), batchJson.toString(), new byte[0], body);
+    }
+
+    /**
+     * An i3dm with the semantics that the first one has not: quantized positions, oct-encoded normals, non uniform
+     * scales and uint16 batch ids, which are the instances in reverse order. The other values are functions of the
+     * index of the instance, see {@link #quantizedI3dmValue(int, int)}.
+     */
+    static byte[] createQuantizedI3dm(int instancesLength) {
+        ByteBuffer featureBinary = allocate(instancesLength * (12 + 6 + 4 + 4 + 2));
+        for (int i = 0; i < instancesLength; ++i) {
+            featureBinary.putFloat(1 + i).putFloat(2 + i).putFloat(0.5f);
+        }
+        for (int i = 0; i < instancesLength * 3; ++i) {
+            featureBinary.putShort((short) quantizedI3dmValue(i, 0));
+        }
+        for (int i = 0; i < instancesLength * 2; ++i) {
+            featureBinary.putShort((short) quantizedI3dmValue(i, 1));
+        }
+        for (int i = 0; i < instancesLength * 2; ++i) {
+            featureBinary.putShort((short) quantizedI3dmValue(i, 2));
+        }
+        for (int i = 0; i < instancesLength; ++i) {
+            featureBinary.putShort((short) (instancesLength - 1 - i));
+        }
+        String featureJson = "{\"INSTANCES_LENGTH\":" + instancesLength
+                + ",\"QUANTIZED_VOLUME_OFFSET\":[-10,-20,-30],\"QUANTIZED_VOLUME_SCALE\":[100,200,300]"
+                + ",\"SCALE_NON_UNIFORM\":{\"byteOffset\":0}"
+                + ",\"POSITION_QUANTIZED\":{\"byteOffset\":" + instancesLength * 12 + "}"
+                + ",\"NORMAL_UP_OCT32P\":{\"byteOffset\":" + instancesLength * 18 + "}"
+                + ",\"NORMAL_RIGHT_OCT32P\":{\"byteOffset\":" + instancesLength * 22 + "}"
+                + ",\"BATCH_ID\":{\"byteOffset\":" + instancesLength * 26 + ",\"componentType\":\"UNSIGNED_SHORT\"}"
+                + "}";
+        StringBuilder batchJson = new StringBuilder("{\"kind\":[");
+        for (int i = 0; i < instancesLength; ++i) {
+            batchJson.append(i > 0 ? "," : "").append('"').append(KINDS[i % KINDS.length]).append('"');
+        }
+        batchJson.append("]}");
+        return assemble(I3dmHeader.magic, 32, 0, featureJson, featureBinary.array(), batchJson.toString(), new byte[0], "model.gltf".getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The uint16 component at the index of POSITION_QUANTIZED, NORMAL_UP_OCT32P or NORMAL_RIGHT_OCT32P, by semantic
+     * from 0 to 2, with values above 0x7FFF.
+     */
+    static int quantizedI3dmValue(int index, int semantic) {
+        return (index * 7919 + semantic * 20011) & 0xFFFF;
+    }
+
+    static byte[] createCmpt(byte[]... tiles) {
+        int byteLength = 16;
+        for (byte[] tile : tiles) {
+            byteLength += tile.length;
+        }
+        ByteBuffer buffer = allocate(byteLength);
+        buffer.put(CompositeHeader.magic).putInt(1).putInt(byteLength).putInt(tiles.length);
+        for (byte[] tile : tiles) {
+            buffer.put(tile);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Lay out a b3dm, i3dm or pnts tile. The json headers are padded with spaces so the binary bodies start on 8 bytes
+     * boundaries, the binary bodies and the body with zeros to a multiple of 8 bytes.
+     * @param gltfFormat the gltfFormat of an i3dm, -1 for the other formats.
+     */
+    static byte[] assemble(byte[] magic, int headerLength, int gltfFormat, String featureJson, byte[] featureBinary, String batchJson, byte[] batchBinary, byte[] body) {
+        byte[] featureJsonBytes = padJson(featureJson, headerLength);
+        byte[] featureBinaryBytes = Arrays.copyOf(featureBinary, pad(featureBinary.length));
+        byte[] batchJsonBytes = batchJson != null ? padJson(batchJson, 0) : new byte[0];
+        byte[] batchBinaryBytes = Arrays.copyOf(batchBinary, pad(batchBinary.length));
+        byte[] bodyBytes = Arrays.copyOf(body, pad(body.length));
+        int byteLength = headerLength + featureJsonBytes.length + featureBinaryBytes.length + batchJsonBytes.length + batchBinaryBytes.length + bodyBytes.length;
+        ByteBuffer buffer = allocate(byteLength);
+        buffer.put(magic).putInt(1).putInt(byteLength)
+                .putInt(featureJsonBytes.length).putInt(featureBinaryBytes.length)
+                .putInt(batchJsonBytes.length).putInt(batchBinaryBytes.length);
+        if (gltfFormat >= 0) {
+            buffer.putInt(gltfFormat);
+        }
+        buffer.put(featureJsonBytes).put(featureBinaryBytes).put(batchJsonBytes).put(batchBinaryBytes).put(bodyBytes);
+        return buffer.array();
+    }
+
+    private static byte[] padJson(String json, int offset) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        byte[] padded = Arrays.copyOf(bytes, pad(offset + bytes.length) - offset);
+        Arrays.fill(padded, bytes.length, padded.length, (byte) 0x20);
+        return padded;
+    }
+
+    private static int pad(int length) {
+        return (length + 7) / 8 * 8;
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    static TileModel read(byte[] bytes) throws IOException {
+        return MappedTile.wrap(ByteBuffer.wrap(bytes)).read(PARSER);
+    }
+
+    /**
+     * Read a b3dm, i3dm or pnts tile with the stream readers instead of {@link MappedTile}.
+     */
+    static TileModel readStream(byte[] bytes) throws IOException {
+        Header header = Header.read(ByteBuffer.wrap(bytes));
+        InputStream is = new ByteArrayInputStream(bytes);
+        if (header instanceof B3dmHeader) {
+            return B3dm.read(is, PARSER, false, false);
+        } else if (header instanceof I3dmHeader) {
+            return I3dm.read(is, PARSER, false, false);
+        } else {
+            return PointCloud.read(is, PARSER, false, false);
+        }
+    }
+
+    static byte[] write(TileModel tile) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        tile.write(os, PARSER);
+        return os.toByteArray();
+    }
+
+    /**
+     * The bytes of the buffers from their positions to their limits, without moving them.
+     */
+    static byte[] concat(ByteBuffer... buffers) {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        for (ByteBuffer buffer : buffers) {
+            ByteBuffer view = buffer.duplicate();
+            byte[] bytes = new byte[view.remaining()];
+            view.get(bytes);
+            os.write(bytes, 0, bytes.length);
+        }
+        return os.toByteArray();
+    }
+
+    /**
+     * All the tiles of the tests, as written by another writer.
+     */
+    static List<byte[]> createTiles() throws IOException {
+        List<byte[]> tiles = new ArrayList<>();
+        tiles.add(write(createB3dm(7)));
+        tiles.add(createPnts(33, 5, new int[] {128, 192, 224, 255}, 1));
+        tiles.add(createPnts(1, 1, null, 2));
+        tiles.add(createI3dm(9, true, 3));
+        tiles.add(createI3dm(4, false, 4));
+        tiles.add(createCmpt(tiles.get(0), tiles.get(1), tiles.get(3)));
+        tiles.add(createCmpt(tiles.get(4), tiles.get(tiles.size() - 1)));
+        tiles.add(createQuantizedI3dm(11));
+        return tiles;
+    }
+}
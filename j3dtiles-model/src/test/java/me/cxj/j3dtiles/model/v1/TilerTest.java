@@ -0,0 +1,333 @@
+package me.cxj.j3dtiles.model.v1;
+
+import de.javagl.jgltf.model.AccessorModel;
+import de.javagl.jgltf.model.GltfModel;
+import me.cxj.j3dtiles.impl.v1.Tile;
+import me.cxj.j3dtiles.impl.v1.Tileset;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static me.cxj.j3dtiles.model.v1.TileTestUtils.*;
+import static org.junit.Assert.*;
+
+public class TilerTest {
+
+    private static final int[] CUBE_INDICES = {
+            0, 2, 1, 0, 3, 2, 4, 5, 6, 4, 6, 7,
+            0, 1, 5, 0, 5, 4, 1, 2, 6, 1, 6, 5,
+            2, 3, 7, 2, 7, 6, 3, 0, 4, 3, 4, 7};
+
+    private Path root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("j3dtiles");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> stream = Files.walk(root)) {
+            for (Path path : stream.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static TilerFeature createCube(double x, double y, double z, double size, String name) {
+        double[] positions = new double[24];
+        for (int v = 0; v < 8; ++v) {
+            positions[v * 3] = x + ((v + 1) & 2) / 2 * size;
+            positions[v * 3 + 1] = y + (v & 2) / 2 * size;
+            positions[v * 3 + 2] = z + v / 4 * size;
+        }
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("name", name);
+        properties.put("height", z);
+        return new TilerFeature(positions, CUBE_INDICES, properties);
+    }
+
+    /**
+     * Cubes on a grid, at random heights.
+     */
+    private static List<TilerFeature> createFeatures(int side, long seed) {
+        Random random = new Random(seed);
+        List<TilerFeature> features = new ArrayList<>();
+        for (int i = 0; i < side; ++i) {
+            for (int j = 0; j < side; ++j) {
+                features.add(createCube(i * 2, j * 2, random.nextInt(20), 0.5 + random.nextDouble(), "f" + features.size()));
+            }
+        }
+        return features;
+    }
+
+    private static B3dm readContent(Path directory, Tile tile) throws IOException {
+        return (B3dm) read(Files.readAllBytes(directory.resolve(tile.getContent().getUri())));
+    }
+
+    private static int triangleCount(B3dm b3dm) {
+        // The indices are the last accessor.
+        List<AccessorModel> accessors = b3dm.getGltf().getAccessorModels();
+        return accessors.get(accessors.size() - 1).getCount() / 3;
+    }
+
+    /**
+     * @return minX, minY, minZ, maxX, maxY, maxZ of the box of the tile, which is axis aligned.
+     */
+    private static double[] bounds(Tile tile) {
+        float[] box = tile.getBoundingVolume().getBox();
+        assertEquals(0, box[4], 0);
+        assertEquals(0, box[5], 0);
+        assertEquals(0, box[6], 0);
+        assertEquals(0, box[8], 0);
+        assertEquals(0, box[9], 0);
+        assertEquals(0, box[10], 0);
+        return new double[] {box[0] - box[3], box[1] - box[7], box[2] - box[11], box[0] + box[3], box[1] + box[7], box[2] + box[11]};
+    }
+
+    private static void assertContains(double[] outer, double[] inner) {
+        for (int c = 0; c < 3; ++c) {
+            assertTrue(outer[c] <= inner[c] + 1e-4);
+            assertTrue(outer[c + 3] >= inner[c + 3] - 1e-4);
+        }
+    }
+
+    /**
+     * Check the tile and its descendants.
+     * @return the names of the features of the leaves under the tile.
+     */
+    private static List<String> checkTile(Path directory, Tile tile, int depth, Tiler tiler, Map<String, TilerFeature> features) throws IOException {
+        double[] bounds = bounds(tile);
+        List<String> names = new ArrayList<>();
+        B3dm content = tile.getContent() != null ? readContent(directory, tile) : null;
+        if (content != null) {
+            float[] box = tile.getBoundingVolume().getBox();
+            assertArrayEquals(new float[] {box[0], box[1], box[2]}, content.getFeatureTable().getRtcCenter(), 0);
+            assertEquals(content.getFeatureTable().getBatchLength(), content.getBatchTable().getBatchLength());
+        }
+        List<Tile> children = tile.getChildren();
+        if (children == null || children.isEmpty()) {
+            assertNotNull(content);
+            assertEquals(0, tile.getGeometricError(), 0);
+            for (Object name : content.getBatchTable().getColumn("name")) {
+                names.add((String) name);
+                assertContains(bounds, features.get(name).getBounds());
+            }
+            int triangles = 0;
+            for (String name : names) {
+                triangles += features.get(name).getTriangleCount();
+            }
+            // The leaves keep the features at full resolution.
+            assertEquals(triangles, triangleCount(content));
+            if (depth < tiler.getMaxDepth() && names.size() > tiler.getMaxFeaturesPerTile()) {
+                // Only an octree stops on features it can not separate.
+                assertEquals(Tiler.Partitioning.OCTREE, tiler.getPartitioning());
+                double[] first = features.get(names.get(0)).getBounds();
+                for (String name : names) {
+                    double[] other = features.get(name).getBounds();
+                    for (int c = 0; c < 3; ++c) {
+                        assertEquals(first[c] + first[c + 3], other[c] + other[c + 3], 1e-9);
+                    }
+                }
+            }
+            return names;
+        }
+        assertTrue(depth < tiler.getMaxDepth());
+        float childError = 0;
+        int childTriangles = 0;
+        for (Tile child : children) {
+            assertContains(bounds, bounds(child));
+            childError = Math.max(childError, child.getGeometricError());
+            if (child.getContent() != null) {
+                childTriangles += triangleCount(readContent(directory, child));
+            }
+            names.addAll(checkTile(directory, child, depth + 1, tiler, features));
+        }
+        assertTrue(tile.getGeometricError() > childError);
+        if (content != null) {
+            // The features of a parent are the ones of its children left after the simplification, in fewer triangles.
+            assertTrue(names.containsAll(content.getBatchTable().getColumn("name")));
+            assertTrue(triangleCount(content) <= childTriangles);
+        }
+        return names;
+    }
+
+    private void checkTileset(Path directory, Tiler tiler, List<TilerFeature> features, Tileset tileset) throws IOException {
+        Tileset read = new TilesetReader().read(directory.resolve("tileset.json"));
+        assertEquals(toJson(tileset), toJson(read));
+        assertEquals("REPLACE", read.getRoot().getRefine());
+        assertTrue(read.getGeometricError() >= read.getRoot().getGeometricError());
+        Map<String, TilerFeature> byName = new HashMap<>();
+        for (TilerFeature feature : features) {
+            byName.put((String) feature.getProperties().get("name"), feature);
+        }
+        List<String> names = checkTile(directory, read.getRoot(), 0, tiler, byName);
+        // Each feature is in exactly one leaf.
+        assertEquals(features.size(), names.size());
+        assertEquals(byName.keySet(), new HashSet<>(names));
+    }
+
+    private static String toJson(Tileset tileset) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (TilesetWriter writer = new TilesetWriter(os)) {
+            writer.write(tileset);
+        }
+        return os.toString("UTF-8");
+    }
+
+    @Test
+    public void testPartitionings() throws IOException {
+        List<TilerFeature> features = createFeatures(20, 0);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for (Tiler.Partitioning partitioning : Tiler.Partitioning.values()) {
+                Tiler tiler = new Tiler();
+                tiler.setPartitioning(partitioning);
+                tiler.setMaxFeaturesPerTile(16);
+                tiler.setPool(pool);
+                Path directory = root.resolve(partitioning.name());
+                Tileset tileset = tiler.tile(features, directory);
+                assertNotNull(tileset.getRoot().getChildren());
+                checkTileset(directory, tiler, features, tileset);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMaxTriangles() throws IOException {
+        List<TilerFeature> features = createFeatures(10, 1);
+        Tiler tiler = new Tiler();
+        tiler.setPartitioning(Tiler.Partitioning.KD_TREE);
+        // 12 triangles per cube, so at most 4 cubes per leaf.
+        tiler.setMaxTrianglesPerTile(48);
+        Tileset tileset = tiler.tile(features, root);
+        checkTileset(root, tiler, features, tileset);
+        Deque<Tile> stack = new ArrayDeque<>();
+        stack.push(tileset.getRoot());
+        while (!stack.isEmpty()) {
+            Tile tile = stack.pop();
+            if (tile.getChildren() == null) {
+                assertTrue(triangleCount(readContent(root, tile)) <= 48);
+            } else {
+                tile.getChildren().forEach(stack::push);
+            }
+        }
+    }
+
+    @Test
+    public void testSameOutputOnAnyPool() throws IOException {
+        List<TilerFeature> features = createFeatures(12, 2);
+        List<Path> directories = new ArrayList<>();
+        for (int parallelism : new int[] {1, 4}) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                Tiler tiler = new Tiler();
+                tiler.setMaxFeaturesPerTile(8);
+                tiler.setPool(pool);
+                Path directory = root.resolve("pool" + parallelism);
+                tiler.tile(features.iterator(), directory);
+                directories.add(directory);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        List<Path> files = listFiles(directories.get(0));
+        assertEquals(files, listFiles(directories.get(1)));
+        assertTrue(files.size() > 2);
+        for (Path file : files) {
+            assertArrayEquals(file.toString(),
+                    Files.readAllBytes(directories.get(0).resolve(file)), Files.readAllBytes(directories.get(1).resolve(file)));
+        }
+    }
+
+    private static List<Path> listFiles(Path directory) throws IOException {
+        try (Stream<Path> stream = Files.walk(directory)) {
+            return stream.filter(Files::isRegularFile).map(directory::relativize).sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void testMaxDepth() throws IOException {
+        List<TilerFeature> features = createFeatures(5, 3);
+        Tiler tiler = new Tiler();
+        tiler.setMaxFeaturesPerTile(1);
+        tiler.setMaxDepth(0);
+        Tileset tileset = tiler.tile(features, root);
+        assertNull(tileset.getRoot().getChildren());
+        assertEquals(features.size(), readContent(root, tileset.getRoot()).getFeatureTable().getBatchLength());
+        checkTileset(root, tiler, features, tileset);
+    }
+
+    /**
+     * Features with the same center can not be split by an octree, a k-d tree splits them anyway.
+     */
+    @Test
+    public void testSameCenters() throws IOException {
+        List<TilerFeature> features = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) {
+            features.add(createCube(-i, -i, -i, 2 * i + 1, "f" + i));
+        }
+        Tiler tiler = new Tiler();
+        tiler.setMaxFeaturesPerTile(2);
+        Tileset tileset = tiler.tile(features, root.resolve("octree"));
+        assertNull(tileset.getRoot().getChildren());
+        checkTileset(root.resolve("octree"), tiler, features, tileset);
+
+        tiler.setPartitioning(Tiler.Partitioning.KD_TREE);
+        tileset = tiler.tile(features, root.resolve("kd"));
+        assertNotNull(tileset.getRoot().getChildren());
+        checkTileset(root.resolve("kd"), tiler, features, tileset);
+    }
+
+    @Test
+    public void testGltf() throws IOException {
+        GltfModel gltf = createGltf(5);
+        List<TilerFeature> features = TilerFeature.fromGltf(gltf);
+        assertEquals(1, features.size());
+        TilerFeature feature = features.get(0);
+        assertEquals(15, feature.getVertexCount());
+        assertEquals(5, feature.getTriangleCount());
+        // y up to z up.
+        assertArrayEquals(new double[] {0, 0, 0, 5, 0, 1}, feature.getBounds(), 0);
+        Tileset tileset = new Tiler().tile(gltf, root);
+        B3dm content = readContent(root, tileset.getRoot());
+        assertEquals(1, content.getFeatureTable().getBatchLength());
+        assertEquals(5, triangleCount(content));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoFeature() throws IOException {
+        new Tiler().tile(Collections.<TilerFeature>emptyList(), root);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxFeatures() {
+        new Tiler().setMaxFeaturesPerTile(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidGridResolution() {
+        new Tiler().setGridResolution(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidIndex() {
+        new TilerFeature(new double[] {0, 0, 0, 1, 0, 0, 0, 1, 0}, new int[] {0, 1, 3}, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPosition() {
+        new TilerFeature(new double[] {0, 0, 0, 1, 0, 0, 0, Double.NaN, 0}, new int[] {0, 1, 2}, null);
+    }
+}
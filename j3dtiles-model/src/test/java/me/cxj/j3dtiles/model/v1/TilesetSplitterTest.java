@@ -0,0 +1,296 @@
+package me.cxj.j3dtiles.model.v1;
+
+import me.cxj.j3dtiles.impl.v1.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class TilesetSplitterTest {
+
+    private static final float[] TRANSFORM = {1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 10, 20, 30, 1};
+
+    private Path root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("j3dtiles");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> stream = Files.walk(root)) {
+            for (Path path : stream.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * A random tree where each tile has up to 8 children, some with a transform and some with an ADD refine inherited
+     * by their descendants.
+     */
+    private static Tileset createTileset(int tilesLength, long seed) {
+        Random random = new Random(seed);
+        Tileset tileset = new Tileset();
+        Asset asset = new Asset();
+        asset.setVersion("1.0");
+        tileset.setAsset(asset);
+        tileset.setGeometricError(1000f);
+        Tile root = createTile(random, 0, 0);
+        root.setRefine("REPLACE");
+        tileset.setRoot(root);
+        List<Tile> tiles = new ArrayList<>();
+        List<Integer> depths = new ArrayList<>();
+        tiles.add(root);
+        depths.add(0);
+        while (tiles.size() < tilesLength) {
+            // Biased towards the last tiles, so the tree is deep.
+            int index = tiles.size() - 1 - Math.min(tiles.size() - 1, (int) Math.abs(random.nextGaussian() * tiles.size() / 4));
+            Tile parent = tiles.get(index);
+            if (parent.getChildren() != null && parent.getChildren().size() == 8) {
+                continue;
+            }
+            int depth = depths.get(index) + 1;
+            Tile child = createTile(random, depth, tiles.size());
+            if (random.nextInt(10) == 0) {
+                child.setRefine("ADD");
+            }
+            if (random.nextInt(10) == 0) {
+                child.setTransform(TRANSFORM.clone());
+            }
+            parent.addChildren(child);
+            tiles.add(child);
+            depths.add(depth);
+        }
+        return tileset;
+    }
+
+    private static Tile createTile(Random random, int depth, int index) {
+        BoundingVolume boundingVolume = new BoundingVolume();
+        boundingVolume.setSphere(new float[] {random.nextFloat(), random.nextFloat(), random.nextFloat(), 1000f / (depth + 1)});
+        Tile tile = new Tile();
+        tile.setBoundingVolume(boundingVolume);
+        tile.setGeometricError(100f / (depth + 1));
+        if (random.nextInt(4) != 0) {
+            TileContent content = new TileContent();
+            content.setUri("tiles/" + depth + "/" + index + ".b3dm");
+            tile.setContent(content);
+        }
+        return tile;
+    }
+
+    private static String toJson(Tileset tileset) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (TilesetWriter writer = new TilesetWriter(os)) {
+            writer.write(tileset);
+        }
+        return os.toString("UTF-8");
+    }
+
+    private static int count(Tile tile) {
+        int count = 1;
+        if (tile.getChildren() != null) {
+            for (Tile child : tile.getChildren()) {
+                count += count(child);
+            }
+        }
+        return count;
+    }
+
+    private static int height(Tile tile) {
+        int height = 0;
+        if (tile.getChildren() != null) {
+            for (Tile child : tile.getChildren()) {
+                height = Math.max(height, height(child) + 1);
+            }
+        }
+        return height;
+    }
+
+    /**
+     * Replace the stubs by the content and the children of the roots of their external tilesets, and check the roots.
+     * @param refine the refine of the tile or inherited from its ancestors.
+     */
+    private static void merge(Tile tile, String refine, Map<String, Tileset> tilesets, Set<String> merged) {
+        if (tile.getRefine() != null) {
+            refine = tile.getRefine();
+        }
+        TileContent content = tile.getContent();
+        if (content != null && tilesets.containsKey(content.getUri())) {
+            assertTrue(merged.add(content.getUri()));
+            assertNull(tile.getChildren());
+            Tileset external = tilesets.get(content.getUri());
+            Tile externalRoot = external.getRoot();
+            assertEquals(tile.getGeometricError(), external.getGeometricError());
+            assertEquals(tile.getGeometricError(), externalRoot.getGeometricError());
+            assertArrayEquals(tile.getBoundingVolume().getSphere(), externalRoot.getBoundingVolume().getSphere(), 0);
+            assertEquals(refine, externalRoot.getRefine());
+            // The transform applies once, on the stub.
+            assertNull(externalRoot.getTransform());
+            tile.setContent(externalRoot.getContent());
+            tile.setChildren(externalRoot.getChildren());
+        }
+        if (tile.getChildren() != null) {
+            for (Tile child : tile.getChildren()) {
+                merge(child, refine, tilesets, merged);
+            }
+        }
+    }
+
+    /**
+     * The merged tilesets are the original one.
+     */
+    private static void assertMerged(Tileset expected, Map<String, Tileset> tilesets) throws IOException {
+        Tileset merged = tilesets.values().iterator().next();
+        Set<String> uris = new HashSet<>();
+        merge(merged.getRoot(), null, tilesets, uris);
+        assertEquals(tilesets.size() - 1, uris.size());
+        assertEquals(toJson(expected), toJson(merged));
+    }
+
+    @Test
+    public void testMaxTiles() throws IOException {
+        Tileset tileset = createTileset(3000, 0);
+        TilesetSplitter splitter = new TilesetSplitter();
+        splitter.setMaxTilesPerFile(100);
+        Map<String, Tileset> tilesets = splitter.split(tileset, "tileset.json");
+        assertTrue(tilesets.size() > 30);
+        assertEquals("tileset.json", tilesets.keySet().iterator().next());
+        for (Map.Entry<String, Tileset> entry : tilesets.entrySet()) {
+            Tile tile = entry.getValue().getRoot();
+            assertTrue(entry.getKey(), count(tile) <= 100);
+            if (!entry.getKey().equals("tileset.json")) {
+                assertTrue(entry.getKey().matches("tileset_\\d+\\.json"));
+                // The external tilesets hold subtrees, not single leaves.
+                assertNotNull(tile.getChildren());
+            }
+        }
+        assertMerged(createTileset(3000, 0), tilesets);
+    }
+
+    @Test
+    public void testMaxDepth() throws IOException {
+        Tileset tileset = createTileset(2000, 1);
+        assertTrue(height(tileset.getRoot()) > 6);
+        TilesetSplitter splitter = new TilesetSplitter();
+        splitter.setMaxDepthPerFile(3);
+        Map<String, Tileset> tilesets = splitter.split(tileset, "root");
+        assertTrue(tilesets.size() > 1);
+        for (Map.Entry<String, Tileset> entry : tilesets.entrySet()) {
+            assertTrue(entry.getKey(), height(entry.getValue().getRoot()) <= 3);
+            assertTrue(entry.getKey().equals("root") || entry.getKey().matches("root_\\d+\\.json"));
+        }
+        assertMerged(createTileset(2000, 1), tilesets);
+    }
+
+    @Test
+    public void testMaxBytes() throws IOException {
+        Tileset tileset = createTileset(2000, 2);
+        long length = toJson(tileset).length();
+        TilesetSplitter splitter = new TilesetSplitter();
+        splitter.setMaxBytesPerFile(16 * 1024);
+        Map<String, Tileset> tilesets = splitter.split(tileset, root.resolve("tileset.json"));
+        assertTrue(tilesets.size() >= length / (16 * 1024));
+        for (String name : tilesets.keySet()) {
+            long size = Files.size(root.resolve(name));
+            // Besides the tiles, a file has the asset and the stubs may have longer uris than the contents they replace.
+            assertTrue(name + ": " + size, size <= 16 * 1024 + 1024);
+        }
+        Map<String, Tileset> read = new LinkedHashMap<>();
+        for (String name : tilesets.keySet()) {
+            read.put(name, new TilesetReader().read(root.resolve(name)));
+            assertEquals(toJson(tilesets.get(name)), toJson(read.get(name)));
+        }
+        assertMerged(createTileset(2000, 2), read);
+    }
+
+    @Test
+    public void testExecutor() throws IOException {
+        TilesetSplitter splitter = new TilesetSplitter();
+        splitter.setMaxTilesPerFile(50);
+        Map<String, Tileset> tilesets = splitter.split(createTileset(1000, 3), root.resolve("serial").resolve("tileset.json"));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            splitter.setExecutor(executor);
+            assertEquals(tilesets.keySet(), splitter.split(createTileset(1000, 3), root.resolve("parallel").resolve("tileset.json")).keySet());
+        } finally {
+            executor.shutdownNow();
+        }
+        for (String name : tilesets.keySet()) {
+            assertArrayEquals(name, Files.readAllBytes(root.resolve("serial").resolve(name)),
+                    Files.readAllBytes(root.resolve("parallel").resolve(name)));
+        }
+    }
+
+    @Test
+    public void testWithinBudget() {
+        Tileset tileset = createTileset(100, 4);
+        Map<String, Tileset> tilesets = new TilesetSplitter().split(tileset, "tileset.json");
+        assertEquals(1, tilesets.size());
+        assertSame(tileset, tilesets.get("tileset.json"));
+        assertEquals(100, count(tileset.getRoot()));
+    }
+
+    /**
+     * The root of a file is expanded even if its children exceed the budget.
+     */
+    @Test
+    public void testManyChildren() throws IOException {
+        Random random = new Random(5);
+        Tileset tileset = createTileset(1, 5);
+        for (int i = 0; i < 20; ++i) {
+            Tile child = createTile(random, 1, i);
+            for (int j = 0; j < 3; ++j) {
+                child.addChildren(createTile(random, 2, j));
+            }
+            tileset.getRoot().addChildren(child);
+        }
+        String expected = toJson(tileset);
+        TilesetSplitter splitter = new TilesetSplitter();
+        splitter.setMaxTilesPerFile(5);
+        Map<String, Tileset> tilesets = splitter.split(tileset, "tileset.json");
+        assertEquals(21, tilesets.size());
+        assertEquals(21, count(tileset.getRoot()));
+        for (Tileset external : tilesets.values()) {
+            if (external != tileset) {
+                assertEquals(4, count(external.getRoot()));
+                assertEquals("REPLACE", external.getRoot().getRefine());
+            }
+        }
+        Set<String> uris = new HashSet<>();
+        merge(tileset.getRoot(), null, tilesets, uris);
+        assertEquals(expected, toJson(tileset));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoRoot() {
+        new TilesetSplitter().split(new Tileset(), "tileset.json");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxTiles() {
+        new TilesetSplitter().setMaxTilesPerFile(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxBytes() {
+        new TilesetSplitter().setMaxBytesPerFile(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxDepth() {
+        new TilesetSplitter().setMaxDepthPerFile(0);
+    }
+}
@@ -0,0 +1,154 @@
+package me.cxj.j3dtiles.utils;
+
+import me.cxj.j3dtiles.impl.v1.ComponentType;
+import me.cxj.j3dtiles.model.v1.PntsFeatureTable;
+import me.cxj.j3dtiles.model.v1.PointCloudHeader;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BatchIdColumnTest {
+
+    private static final JacksonJsonParser PARSER = JacksonJsonParser.getInstance();
+
+    /**
+     * Write the ids as the BATCH_ID of a point cloud feature table, read it back, and check the component type written
+     * in the json header. UNSIGNED_SHORT is the default, and is left out.
+     */
+    private static BatchIdColumn roundTrip(long[] ids, ComponentType expectedType) throws IOException {
+        PntsFeatureTable table = new PntsFeatureTable();
+        table.setPointsLength(ids.length);
+        table.setBatchLength(ids.length);
+        for (int i = 0; i < ids.length; ++i) {
+            table.addPosition(new float[] {i, 0, 0});
+            table.addBatchId(ids[i]);
+        }
+        PointCloudHeader header = new PointCloudHeader();
+        byte[] bytes = table.createBuffer(header, PARSER);
+        assertEquals(bytes.length, table.calcSize(new PointCloudHeader(), PARSER));
+        String json = new String(bytes, 0, header.getFeatureTableJSONByteLength(), StandardCharsets.UTF_8);
+        Map<?, ?> batchId = (Map<?, ?>) PARSER.parseObject(json.trim()).get("BATCH_ID");
+        assertEquals(expectedType != ComponentType.UNSIGNED_SHORT ? expectedType.name() : null, batchId.get("componentType"));
+        BatchIdColumn read = PntsFeatureTable.read(new ByteArrayInputStream(bytes), header, PARSER).getBatchIdColumn();
+        assertEquals(ids.length, read.size());
+        for (int i = 0; i < ids.length; ++i) {
+            assertEquals(ids[i], read.getUnsigned(i));
+        }
+        return read;
+    }
+
+    @Test
+    public void testComponentTypes() throws IOException {
+        assertEquals(255, roundTrip(new long[] {3, 255, 0}, ComponentType.UNSIGNED_BYTE).getMax());
+        assertEquals(256, roundTrip(new long[] {3, 256, 0}, ComponentType.UNSIGNED_SHORT).getMax());
+        assertEquals(65535, roundTrip(new long[] {65535, 1}, ComponentType.UNSIGNED_SHORT).getMax());
+        assertEquals(65536, roundTrip(new long[] {65536, 1}, ComponentType.UNSIGNED_INT).getMax());
+        BatchIdColumn column = roundTrip(new long[] {0xFFFFFFFFL, 0x80000000L, 7}, ComponentType.UNSIGNED_INT);
+        assertEquals(0xFFFFFFFFL, column.getMax());
+        assertEquals(7, column.getMin());
+        assertEquals(Arrays.asList(0xFFFFFFFFL, 0x80000000L, 7L), column.asList());
+    }
+
+    @Test
+    public void testRemoveExtremes() {
+        BatchIdColumn column = BatchIdColumn.of(Arrays.asList(5, 0xFFFFFFFFL, 300, 2));
+        assertEquals(0xFFFFFFFFL, column.getMax());
+        assertEquals(ComponentType.UNSIGNED_INT, column.getComponentType());
+        column.remove(1);
+        assertEquals(300, column.getMax());
+        assertEquals(ComponentType.UNSIGNED_SHORT, column.getComponentType());
+        assertEquals(5, column.set(0, 0xFFFFFFFFL));
+        assertEquals(0xFFFFFFFFL, column.getMax());
+        assertEquals(0xFFFFFFFFL, column.set(0, 5));
+        assertEquals(300, column.getMax());
+        column.set(1, 9);
+        assertEquals(9, column.getMax());
+        assertEquals(ComponentType.UNSIGNED_BYTE, column.getComponentType());
+        assertEquals(2, column.getMin());
+        column.remove(2);
+        assertEquals(5, column.getMin());
+        // A new extreme while the range is stale.
+        column.remove(1);
+        column.add(70000);
+        assertEquals(70000, column.getMax());
+        assertEquals(5, column.getMin());
+        column.remove(0);
+        column.remove(0);
+        assertEquals(-1, column.getMax());
+        assertEquals(-1, column.getMin());
+        column.add(1);
+        assertEquals(1, column.getMax());
+    }
+
+    @Test
+    public void testSetUnchanged() {
+        BatchIdColumn column = BatchIdColumn.of(Arrays.asList(1, 256));
+        column.set(1, 256);
+        assertEquals(256, column.getMax());
+        assertEquals(1, column.getMin());
+    }
+
+    @Test
+    public void testWrapUnsignedInt() {
+        BatchIdColumn column = BatchIdColumn.wrap(new int[] {0, -1, Integer.MIN_VALUE, 65536});
+        assertEquals(0xFFFFFFFFL, column.getMax());
+        assertEquals(0, column.getMin());
+        assertEquals(0x80000000L, column.getUnsigned(2));
+        assertEquals(ComponentType.UNSIGNED_INT, column.getComponentType());
+        column.set(1, 3);
+        assertEquals(0x80000000L, column.getMax());
+    }
+
+    @Test
+    public void testReadUnsignedInt() {
+        long[] ids = {0xFFFFFFFFL, 0, 0x80000000L, 65536, 1};
+        ByteBuffer buffer = ByteBuffer.allocate(3 + ids.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(3);
+        for (long id : ids) {
+            buffer.putInt((int) id);
+        }
+        // A big endian buffer at an unaligned position is still read as little endian, and its position is kept.
+        buffer.order(ByteOrder.BIG_ENDIAN).position(3);
+        BatchIdColumn column = BatchIdColumn.read(buffer, ComponentType.UNSIGNED_INT, ids.length);
+        assertEquals(3, buffer.position());
+        for (int i = 0; i < ids.length; ++i) {
+            assertEquals(ids[i], column.getUnsigned(i));
+        }
+        assertEquals(0xFFFFFFFFL, column.getMax());
+        assertEquals(0, column.getMin());
+    }
+
+    @Test
+    public void testReadNarrow() {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] {(byte) 0xFF, 0x01, 0x00, (byte) 0x80});
+        assertEquals(Arrays.asList(255L, 1L, 0L, 128L), BatchIdColumn.read(buffer, ComponentType.UNSIGNED_BYTE, 4).asList());
+        assertEquals(Arrays.asList(0x1FFL, 0x8000L), BatchIdColumn.read(buffer, ComponentType.UNSIGNED_SHORT, 2).asList());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadInvalidType() {
+        BatchIdColumn.read(ByteBuffer.allocate(4), ComponentType.FLOAT, 1);
+    }
+
+    @Test
+    public void testInvalidIds() {
+        BatchIdColumn column = new BatchIdColumn();
+        for (long id : new long[] {-1, 0x100000000L}) {
+            try {
+                column.add(id);
+                fail("Added " + id);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+        assertEquals(0, column.size());
+    }
+}
@@ -0,0 +1,514 @@
+package me.cxj.j3dtiles.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static me.cxj.j3dtiles.utils.BoundingVolumeUtils.*;
+import static org.junit.Assert.*;
+
+public class BoundingVolumeUtilsTest {
+
+    /**
+     * A rotation as 3 orthonormal columns, from a random unit quaternion.
+     */
+    private static double[] createRotation(Random random) {
+        double w = random.nextGaussian(), x = random.nextGaussian(), y = random.nextGaussian(), z = random.nextGaussian();
+        double norm = Math.sqrt(w * w + x * x + y * y + z * z);
+        w /= norm;
+        x /= norm;
+        y /= norm;
+        z /= norm;
+        return new double[] {
+                1 - 2 * (y * y + z * z), 2 * (x * y + w * z), 2 * (x * z - w * y),
+                2 * (x * y - w * z), 1 - 2 * (x * x + z * z), 2 * (y * z + w * x),
+                2 * (x * z + w * y), 2 * (y * z - w * x), 1 - 2 * (x * x + y * y)};
+    }
+
+    private static double[] createBox(double[] center, double[] rotation, double[] halfLengths) {
+        double[] box = new double[BOX_SIZE];
+        System.arraycopy(center, 0, box, 0, 3);
+        for (int i = 0; i < 9; ++i) {
+            box[3 + i] = rotation[i] * halfLengths[i / 3];
+        }
+        return box;
+    }
+
+    /**
+     * The distance in the frame of the box, where it is axis aligned.
+     */
+    private static double expectedDistance(double[] center, double[] rotation, double[] halfLengths, double x, double y, double z) {
+        double squared = 0;
+        for (int axis = 0; axis < 3; ++axis) {
+            double local = (x - center[0]) * rotation[axis * 3] + (y - center[1]) * rotation[axis * 3 + 1] + (z - center[2]) * rotation[axis * 3 + 2];
+            double excess = Math.max(0, Math.abs(local) - halfLengths[axis]);
+            squared += excess * excess;
+        }
+        return Math.sqrt(squared);
+    }
+
+    @Test
+    public void testFlatBox() {
+        double[] box = {0, 0, 0, 10, 0, 0, 0, 10, 0, 0, 0, 0};
+        assertEquals(100, distanceToBox(box, 0, 0, 0, 100), 0);
+        assertEquals(100, distanceToBox(box, 0, 5, -5, -100), 0);
+        assertEquals(0, distanceToBox(box, 0, 3, 4, 0), 0);
+        assertEquals(5, distanceToBox(box, 0, 13, 0, 4), 1e-12);
+        assertFalse(boxIntersectsSphere(box, 0, new double[] {0, 0, 100, 1}, 0));
+        assertTrue(boxIntersectsSphere(box, 0, new double[] {0, 0, 100, 100}, 0));
+
+        // The zero half axis may be any of the 3.
+        double[] tilted = {1, 2, 3, 0, 0, 0, 0, 3, 4, 0, -4, 3};
+        assertEquals(10, distanceToBox(tilted, 0, 11, 2, 3), 1e-12);
+        assertEquals(0, distanceToBox(tilted, 0, 1, 2 + 3, 3 + 4), 1e-12);
+    }
+
+    @Test
+    public void testSegmentAndPoint() {
+        double[] segment = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 5};
+        assertEquals(5, distanceToBox(segment, 0, 3, 4, 2), 1e-12);
+        assertEquals(Math.sqrt(25 + 4), distanceToBox(segment, 0, 3, 4, -7), 1e-12);
+        assertEquals(0, distanceToBox(segment, 0, 0, 0, -5), 0);
+        double[] point = {1, 1, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+        assertEquals(Math.sqrt(3), distanceToBox(point, 0, 2, 2, 2), 1e-12);
+        assertEquals(0, distanceToBox(point, 0, 1, 1, 1), 0);
+    }
+
+    /**
+     * Rotated boxes with some half axes of length 0, at an offset in a packed array.
+     */
+    @Test
+    public void testDistanceToRotatedBoxes() {
+        Random random = new Random(0);
+        double[] packed = new double[BOX_SIZE + 5];
+        for (int n = 0; n < 10000; ++n) {
+            double[] center = {random.nextGaussian() * 100, random.nextGaussian() * 100, random.nextGaussian() * 100};
+            double[] rotation = createRotation(random);
+            double[] halfLengths = new double[3];
+            for (int axis = 0; axis < 3; ++axis) {
+                halfLengths[axis] = random.nextInt(3) == 0 ? 0 : random.nextDouble() * 50;
+            }
+            System.arraycopy(createBox(center, rotation, halfLengths), 0, packed, 5, BOX_SIZE);
+            double x = center[0] + random.nextGaussian() * 60;
+            double y = center[1] + random.nextGaussian() * 60;
+            double z = center[2] + random.nextGaussian() * 60;
+            double expected = expectedDistance(center, rotation, halfLengths, x, y, z);
+            assertEquals(expected, distanceToBox(packed, 5, x, y, z), 1e-9);
+            double[] sphere = {x, y, z, expected * 0.99};
+            assertEquals(expected == 0, boxIntersectsSphere(packed, 5, sphere, 0));
+            sphere[3] = expected * 1.01;
+            assertTrue(boxIntersectsSphere(packed, 5, sphere, 0));
+        }
+    }
+
+    @Test
+    public void testFlatBoxesIntersect() {
+        double[] flat = {0, 0, 0, 100, 0, 0, 0, 100, 0, 0, 0, 0};
+        // A rotated cube, separated from the flat box only along its normal, which is none of the cross products of
+        // the half axes.
+        double[] rotation = createRotation(new Random(1));
+        double[] above = createBox(new double[] {0, 0, 3}, rotation, new double[] {1, 1, 1});
+        assertFalse(boxesIntersect(flat, 0, above, 0));
+        assertFalse(boxesIntersect(above, 0, flat, 0));
+        double[] across = createBox(new double[] {0, 0, 0.5}, rotation, new double[] {1, 1, 1});
+        assertTrue(boxesIntersect(flat, 0, across, 0));
+        assertTrue(boxesIntersect(across, 0, flat, 0));
+
+        double[] parallel = {0, 0, 1, 10, 0, 0, 0, 10, 0, 0, 0, 0};
+        assertFalse(boxesIntersect(flat, 0, parallel, 0));
+        assertTrue(boxesIntersect(flat, 0, flat, 0));
+        double[] crossing = {0, 0, 0, 10, 0, 0, 0, 0, 0, 0, 0, 10};
+        assertTrue(boxesIntersect(flat, 0, crossing, 0));
+    }
+
+    @Test
+    public void testDistances() {
+        double[] bounds = {0, 0, 0, 1, 2, 3};
+        assertEquals(0, distanceToBounds(bounds, 0, 0.5, 1, 1.5), 0);
+        assertEquals(5, distanceToBounds(bounds, 0, 4, 6, 3), 1e-12);
+        double[] sphere = {1, 1, 1, 2};
+        assertEquals(0, distanceToSphere(sphere, 0, 2, 2, 2), 0);
+        assertEquals(3, distanceToSphere(sphere, 0, 1, 1, 6), 1e-12);
+        double[] box = new double[BOX_SIZE];
+        boundsToBox(bounds, 0, box, 0);
+        assertEquals(5, distanceToBox(box, 0, 4, 6, 3), 1e-12);
+        assertEquals(distanceToBounds(bounds, 0, -3, -4, 5), distanceToBox(box, 0, -3, -4, 5), 1e-12);
+    }
+
+    /**
+     * West, south, east, north, minimum and maximum heights, across the antimeridian, the equator and the poles.
+     */
+    private static final double[][] REGIONS = {
+            {3.0, -0.5, -3.0, 0.5, -100, 1000},
+            {-0.2, -0.3, 0.3, 0.4, 0, 500},
+            {3.0, 0.2, -3.0, 0.6, 0, 10},
+            {-3.0, -1.2, 3.0, -0.1, -50, 50},
+            {-Math.PI, -Math.PI / 2, Math.PI, Math.PI / 2, 0, 0},
+            {1.0, 1.5, 1.2, Math.PI / 2, 0, 1e5},
+            {0.1, 0.1, 0.1001, 0.1001, 10, 10},
+    };
+
+    private static final double TOLERANCE = 1e-6;
+
+    private static double[] randomRegion(Random random) {
+        double west = (random.nextDouble() * 2 - 1) * Math.PI;
+        double east = west + random.nextDouble() * 1.5 * Math.PI;
+        if (east > Math.PI) {
+            east -= 2 * Math.PI;
+        }
+        double a = (random.nextDouble() * 2 - 1) * Math.PI / 2;
+        double b = (random.nextDouble() * 2 - 1) * Math.PI / 2;
+        double minHeight = random.nextDouble() * 2000 - 1000;
+        return new double[] {west, Math.min(a, b), east, Math.max(a, b), minHeight, minHeight + random.nextDouble() * 1e5};
+    }
+
+    /**
+     * The point of the region at the fractions of its longitudes, latitudes and heights.
+     */
+    private static double[] regionPoint(double[] region, double u, double v, double w) {
+        double width = region[2] >= region[0] ? region[2] - region[0] : region[2] - region[0] + 2 * Math.PI;
+        double longitude = region[0] + u * width;
+        if (longitude > Math.PI) {
+            longitude -= 2 * Math.PI;
+        }
+        return new double[] {longitude, region[1] + v * (region[3] - region[1]), region[4] + w * (region[5] - region[4])};
+    }
+
+    /**
+     * The corners of the region first, then random points.
+     */
+    private static double[] sampleRegion(double[] region, Random random, int n) {
+        if (n < 8) {
+            return regionPoint(region, n & 1, (n >> 1) & 1, (n >> 2) & 1);
+        }
+        return regionPoint(region, random.nextDouble(), random.nextDouble(), random.nextDouble());
+    }
+
+    /**
+     * A point inside the sphere, the ends of its axes first.
+     */
+    private static double[] sampleSphere(double[] sphere, Random random, int n) {
+        double x, y, z, scale;
+        if (n < 6) {
+            x = n / 2 == 0 ? 1 : 0;
+            y = n / 2 == 1 ? 1 : 0;
+            z = n / 2 == 2 ? 1 : 0;
+            scale = n % 2 == 0 ? 1 : -1;
+        } else {
+            x = random.nextGaussian();
+            y = random.nextGaussian();
+            z = random.nextGaussian();
+            scale = Math.cbrt(random.nextDouble()) / Math.sqrt(x * x + y * y + z * z);
+        }
+        double r = sphere[3] * scale;
+        return new double[] {sphere[0] + x * r, sphere[1] + y * r, sphere[2] + z * r};
+    }
+
+    private static void assertRegionContains(double[] region, double[] point) {
+        double[] expanded = region.clone();
+        expanded[0] -= 1e-9;
+        expanded[1] -= 1e-9;
+        expanded[2] += 1e-9;
+        expanded[3] += 1e-9;
+        expanded[4] -= TOLERANCE;
+        expanded[5] += TOLERANCE;
+        assertTrue(Arrays.toString(point) + " outside of " + Arrays.toString(region), regionContains(expanded, 0, point[0], point[1], point[2]));
+    }
+
+    @Test
+    public void testRegionConversions() {
+        Random random = new Random(2);
+        double[] bounds = new double[BOUNDS_SIZE];
+        double[] box = new double[BOX_SIZE];
+        double[] sphere = new double[SPHERE_SIZE];
+        double[] point = new double[3];
+        for (int r = 0; r < REGIONS.length + 100; ++r) {
+            double[] region = r < REGIONS.length ? REGIONS[r] : randomRegion(random);
+            regionToBounds(region, 0, bounds, 0);
+            regionToBox(region, 0, box, 0);
+            regionToSphere(region, 0, sphere, 0);
+            for (int n = 0; n < 1000; ++n) {
+                double[] geodetic = sampleRegion(region, random, n);
+                toCartesian(geodetic[0], geodetic[1], geodetic[2], point, 0);
+                String message = Arrays.toString(region) + " " + Arrays.toString(geodetic);
+                assertEquals(message, 0, distanceToBounds(bounds, 0, point[0], point[1], point[2]), TOLERANCE);
+                assertEquals(message, 0, distanceToBox(box, 0, point[0], point[1], point[2]), TOLERANCE);
+                assertEquals(message, 0, distanceToSphere(sphere, 0, point[0], point[1], point[2]), TOLERANCE);
+            }
+        }
+    }
+
+    /**
+     * The bounds reach the cardinal longitudes and the equator inside the region, not only its corners.
+     */
+    @Test
+    public void testRegionBoundsExtremes() {
+        double[] bounds = new double[BOUNDS_SIZE];
+        regionToBounds(REGIONS[0], 0, bounds, 0);
+        assertEquals(-(WGS84_A + 1000), bounds[0], TOLERANCE);
+        regionToBounds(REGIONS[1], 0, bounds, 0);
+        assertEquals(WGS84_A + 500, bounds[3], TOLERANCE);
+        regionToBounds(REGIONS[4], 0, bounds, 0);
+        double polar = WGS84_A * Math.sqrt(1 - WGS84_E2);
+        assertArrayEquals(new double[] {-WGS84_A, -WGS84_A, -polar, WGS84_A, WGS84_A, polar}, bounds, TOLERANCE);
+    }
+
+    @Test
+    public void testSphereToRegion() {
+        Random random = new Random(3);
+        double polar = WGS84_A * Math.sqrt(1 - WGS84_E2);
+        double[][] spheres = {
+                {-WGS84_A, 0, 0, 1e5},
+                {0, 0, polar, 1e4},
+                {0, 0, -polar - 100, 1e3},
+                {WGS84_A / 2, 0, 0, WGS84_A},
+        };
+        double[] region = new double[REGION_SIZE];
+        double[] geodetic = new double[3];
+        for (int s = 0; s < spheres.length + 1000; ++s) {
+            double[] sphere;
+            if (s < spheres.length) {
+                sphere = spheres[s];
+            } else {
+                sphere = new double[SPHERE_SIZE];
+                toCartesian((random.nextDouble() * 2 - 1) * Math.PI, (random.nextDouble() * 2 - 1) * Math.PI / 2,
+                        random.nextDouble() * 1e5 - 1000, sphere, 0);
+                sphere[3] = Math.pow(10, random.nextDouble() * 6);
+            }
+            sphereToRegion(sphere, 0, region, 0);
+            for (int n = 0; n < 200; ++n) {
+                double[] point = sampleSphere(sphere, random, n);
+                toGeodetic(point[0], point[1], point[2], geodetic, 0);
+                assertRegionContains(region, geodetic);
+            }
+        }
+        sphereToRegion(spheres[0], 0, region, 0);
+        assertTrue(region[2] < region[0]);
+        sphereToRegion(spheres[1], 0, region, 0);
+        assertEquals(-Math.PI, region[0], 0);
+        assertEquals(Math.PI, region[2], 0);
+        assertEquals(Math.PI / 2, region[3], 0);
+    }
+
+    @Test
+    public void testUnionRegions() {
+        Random random = new Random(4);
+        double[] union = new double[REGION_SIZE];
+        for (int r = 0; r < 1000; ++r) {
+            double[] a = r < REGIONS.length ? REGIONS[r] : randomRegion(random);
+            double[] b = randomRegion(random);
+            unionRegions(a, 0, b, 0, union, 0);
+            for (int n = 0; n < 100; ++n) {
+                assertRegionContains(union, sampleRegion(a, random, n));
+                assertRegionContains(union, sampleRegion(b, random, n));
+            }
+        }
+    }
+
+    /**
+     * The union goes the shorter way around, across the antimeridian when it is shorter.
+     */
+    @Test
+    public void testUnionRegionsWidth() {
+        double[] union = new double[REGION_SIZE];
+        double[] east = {3.0, 0, 3.1, 0.1, 0, 10};
+        double[] west = {-3.1, -0.1, -3.0, 0, -5, 5};
+        unionRegions(east, 0, west, 0, union, 0);
+        assertArrayEquals(new double[] {3.0, -0.1, -3.0, 0.1, -5, 10}, union, 1e-12);
+        unionRegions(west, 0, east, 0, union, 0);
+        assertArrayEquals(new double[] {3.0, -0.1, -3.0, 0.1, -5, 10}, union, 1e-12);
+
+        double[] prime = {0, 0, 0.1, 0.1, 0, 0};
+        unionRegions(prime, 0, new double[] {2.0, 0, 2.1, 0.1, 0, 0}, 0, union, 0);
+        assertEquals(0, union[0], 0);
+        assertEquals(2.1, union[2], 1e-12);
+        unionRegions(prime, 0, new double[] {-2.5, 0, -2.4, 0.1, 0, 0}, 0, union, 0);
+        assertEquals(-2.5, union[0], 0);
+        assertEquals(0.1, union[2], 1e-12);
+
+        // Contained longitudes.
+        unionRegions(new double[] {-1, 0, 1, 0, 0, 0}, 0, new double[] {-0.5, 0, 0.5, 0, 0, 0}, 0, union, 0);
+        assertEquals(-1, union[0], 0);
+        assertEquals(1, union[2], 0);
+
+        // Together around the whole earth, either way.
+        unionRegions(new double[] {-3, 0, 3, 0, 0, 0}, 0, new double[] {2, 0, -2, 0, 0, 0}, 0, union, 0);
+        assertEquals(-Math.PI, union[0], 0);
+        assertEquals(Math.PI, union[2], 0);
+    }
+
+    @Test
+    public void testUnionSpheres() {
+        Random random = new Random(5);
+        double[] union = new double[SPHERE_SIZE];
+        for (int s = 0; s < 1000; ++s) {
+            double[] a = {random.nextGaussian() * 100, random.nextGaussian() * 100, random.nextGaussian() * 100, random.nextDouble() * 100};
+            double[] b = {random.nextGaussian() * 100, random.nextGaussian() * 100, random.nextGaussian() * 100, random.nextDouble() * 100};
+            unionSpheres(a, 0, b, 0, union, 0);
+            for (int n = 0; n < 100; ++n) {
+                double[] point = sampleSphere(a, random, n);
+                assertEquals(0, distanceToSphere(union, 0, point[0], point[1], point[2]), 1e-9);
+                point = sampleSphere(b, random, n);
+                assertEquals(0, distanceToSphere(union, 0, point[0], point[1], point[2]), 1e-9);
+            }
+            double dx = a[0] - b[0], dy = a[1] - b[1], dz = a[2] - b[2];
+            double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            double expected = Math.max(Math.max(a[3], b[3]), (distance + a[3] + b[3]) / 2);
+            assertEquals(expected, union[3], 1e-9);
+        }
+        double[] inner = {1, 2, 3, 4};
+        double[] outer = {0, 2, 3, 10};
+        unionSpheres(inner, 0, outer, 0, union, 0);
+        assertArrayEquals(outer, union, 0);
+        unionSpheres(outer, 0, inner, 0, union, 0);
+        assertArrayEquals(outer, union, 0);
+    }
+
+    /**
+     * A rotation, a scale along its axes and a translation, as the transforms of tiles are.
+     */
+    private static double[] createTransform(Random random) {
+        double[] rotation = createRotation(random);
+        double[] m = new double[MATRIX_SIZE];
+        for (int column = 0; column < 3; ++column) {
+            double scale = 0.1 + random.nextDouble() * 10;
+            for (int row = 0; row < 3; ++row) {
+                m[column * 4 + row] = rotation[column * 3 + row] * scale;
+            }
+            m[12 + column] = random.nextGaussian() * 1000;
+        }
+        m[15] = 1;
+        return m;
+    }
+
+    /**
+     * The coordinates of the point along the half axes of the box, all in [-1, 1] inside it. A scale which is not uniform
+     * skews the half axes, where distanceToBox expects them orthogonal.
+     */
+    private static double[] boxCoordinates(double[] box, double[] point) {
+        double[] u = {box[3], box[4], box[5]};
+        double[] v = {box[6], box[7], box[8]};
+        double[] w = {box[9], box[10], box[11]};
+        double[] d = {point[0] - box[0], point[1] - box[1], point[2] - box[2]};
+        double determinant = determinant(u, v, w);
+        return new double[] {determinant(d, v, w) / determinant, determinant(u, d, w) / determinant, determinant(u, v, d) / determinant};
+    }
+
+    private static double determinant(double[] a, double[] b, double[] c) {
+        return a[0] * (b[1] * c[2] - b[2] * c[1]) - b[0] * (a[1] * c[2] - a[2] * c[1]) + c[0] * (a[1] * b[2] - a[2] * b[1]);
+    }
+
+    @Test
+    public void testTransformBox() {
+        Random random = new Random(6);
+        double[] transformed = new double[BOX_SIZE];
+        double[] point = new double[3];
+        for (int t = 0; t < 1000; ++t) {
+            double[] m = createTransform(random);
+            double[] center = {random.nextGaussian() * 100, random.nextGaussian() * 100, random.nextGaussian() * 100};
+            double[] box = createBox(center, createRotation(random), new double[] {1 + random.nextDouble() * 50, 1 + random.nextDouble() * 50, 1 + random.nextDouble() * 50});
+            transformBox(m, 0, box, 0, transformed, 0);
+            for (int n = 0; n < 100; ++n) {
+                double[] fractions = new double[3];
+                for (int axis = 0; axis < 3; ++axis) {
+                    fractions[axis] = n < 8 ? ((n >> axis) & 1) * 2 - 1 : random.nextDouble() * 2 - 1;
+                }
+                double x = box[0], y = box[1], z = box[2];
+                for (int axis = 0; axis < 3; ++axis) {
+                    x += box[3 + axis * 3] * fractions[axis];
+                    y += box[4 + axis * 3] * fractions[axis];
+                    z += box[5 + axis * 3] * fractions[axis];
+                }
+                transformPoint(m, 0, x, y, z, point, 0);
+                assertArrayEquals(fractions, boxCoordinates(transformed, point), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testTransformSphere() {
+        Random random = new Random(7);
+        double[] transformed = new double[SPHERE_SIZE];
+        double[] point = new double[3];
+        for (int t = 0; t < 1000; ++t) {
+            double[] m = createTransform(random);
+            double[] sphere = {random.nextGaussian() * 100, random.nextGaussian() * 100, random.nextGaussian() * 100, random.nextDouble() * 50};
+            transformSphere(m, 0, sphere, 0, transformed, 0);
+            for (int n = 0; n < 100; ++n) {
+                double[] p = sampleSphere(sphere, random, n);
+                transformPoint(m, 0, p[0], p[1], p[2], point, 0);
+                assertEquals(0, distanceToSphere(transformed, 0, point[0], point[1], point[2]), TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    public void testTransformBounds() {
+        Random random = new Random(8);
+        double[] transformed = new double[BOUNDS_SIZE];
+        double[] point = new double[3];
+        for (int t = 0; t < 1000; ++t) {
+            double[] m = createTransform(random);
+            double[] bounds = new double[BOUNDS_SIZE];
+            for (int i = 0; i < 3; ++i) {
+                double a = random.nextGaussian() * 100;
+                double b = random.nextGaussian() * 100;
+                bounds[i] = Math.min(a, b);
+                bounds[3 + i] = Math.max(a, b);
+            }
+            transformBounds(m, 0, bounds, 0, transformed, 0);
+            // The transformed corners reach the bounds, which contain the rest.
+            double[] reached = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                    Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+            for (int n = 0; n < 100; ++n) {
+                double[] p = new double[3];
+                for (int i = 0; i < 3; ++i) {
+                    double fraction = n < 8 ? (n >> i) & 1 : random.nextDouble();
+                    p[i] = bounds[i] + fraction * (bounds[3 + i] - bounds[i]);
+                }
+                transformPoint(m, 0, p[0], p[1], p[2], point, 0);
+                assertEquals(0, distanceToBounds(transformed, 0, point[0], point[1], point[2]), TOLERANCE);
+                for (int i = 0; i < 3; ++i) {
+                    reached[i] = Math.min(reached[i], point[i]);
+                    reached[3 + i] = Math.max(reached[3 + i], point[i]);
+                }
+            }
+            assertArrayEquals(reached, transformed, TOLERANCE);
+        }
+    }
+
+    @Test
+    public void testGeodeticRoundTrip() {
+        Random random = new Random(9);
+        double[] cartesian = new double[3];
+        double[] geodetic = new double[3];
+        for (int n = 0; n < 100000; ++n) {
+            double longitude = (random.nextDouble() * 2 - 1) * Math.PI;
+            double latitude = (random.nextDouble() * 2 - 1) * Math.PI / 2;
+            double height = random.nextDouble() * 1e6 - 1000;
+            toCartesian(longitude, latitude, height, cartesian, 0);
+            toGeodetic(cartesian[0], cartesian[1], cartesian[2], geodetic, 0);
+            assertEquals(longitude, geodetic[0], 1e-12);
+            assertEquals(latitude, geodetic[1], 1e-12);
+            assertEquals(height, geodetic[2], TOLERANCE);
+        }
+    }
+
+    @Test
+    public void testGeodeticPoints() {
+        double[] out = new double[3];
+        toCartesian(0, 0, 0, out, 0);
+        assertArrayEquals(new double[] {WGS84_A, 0, 0}, out, TOLERANCE);
+        toCartesian(Math.PI / 2, 0, 100, out, 0);
+        assertArrayEquals(new double[] {0, WGS84_A + 100, 0}, out, TOLERANCE);
+        double polar = WGS84_A * Math.sqrt(1 - WGS84_E2);
+        toCartesian(0, -Math.PI / 2, 10, out, 0);
+        assertArrayEquals(new double[] {0, 0, -polar - 10}, out, TOLERANCE);
+        toGeodetic(0, 0, polar + 10, out, 0);
+        assertEquals(Math.PI / 2, out[1], 1e-12);
+        assertEquals(10, out[2], TOLERANCE);
+        toGeodetic(-WGS84_A - 5, 0, 0, out, 0);
+        assertArrayEquals(new double[] {Math.PI, 0, 5}, out, TOLERANCE);
+    }
+}
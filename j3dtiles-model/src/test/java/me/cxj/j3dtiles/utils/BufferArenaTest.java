@@ -0,0 +1,127 @@
+package me.cxj.j3dtiles.utils;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class BufferArenaTest {
+
+    @Test
+    public void testAcquire() {
+        BufferArena arena = new BufferArena();
+        ByteBuffer buffer = arena.acquire(5000);
+        assertEquals(0, buffer.position());
+        assertEquals(5000, buffer.limit());
+        assertEquals(8192, buffer.capacity());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, buffer.order());
+        assertEquals(4096, arena.acquire(0).capacity());
+        assertEquals(4096, arena.acquire(4096).capacity());
+        assertEquals(8192, arena.acquire(4097).capacity());
+        assertEquals(8192 + 4096 + 4096 + 8192, arena.getBytesInUse());
+        assertEquals(arena.getBytesInUse(), arena.getAllocatedBytes());
+    }
+
+    @Test
+    public void testReuse() {
+        BufferArena arena = new BufferArena();
+        ByteBuffer first = arena.acquire(10000);
+        byte[] array = first.array();
+        arena.release(first);
+        assertEquals(16384, arena.getPooledBytes());
+        ByteBuffer second = arena.acquire(9000);
+        assertSame(array, second.array());
+        assertEquals(9000, second.limit());
+        assertEquals(0, arena.getPooledBytes());
+        // Another size class is not served by the pooled buffer.
+        arena.release(second);
+        assertNotSame(array, arena.acquire(20000).array());
+        assertEquals(3, arena.getAcquireCount());
+        assertEquals(1, arena.getReuseCount());
+        assertEquals(1.0 / 3, arena.getReuseRate(), 1e-12);
+        assertEquals(16384 + 32768, arena.getAllocatedBytes());
+    }
+
+    @Test
+    public void testOwns() {
+        BufferArena arena = new BufferArena();
+        ByteBuffer buffer = arena.acquire(100);
+        assertTrue(arena.owns(buffer));
+        assertTrue(arena.owns(buffer.duplicate()));
+        assertFalse(arena.owns(ByteBuffer.allocate(100)));
+        assertFalse(arena.owns(ByteBuffer.allocateDirect(100)));
+        assertFalse(arena.owns(null));
+        assertFalse(new BufferArena().owns(buffer));
+        // A view can be released in place of the buffer.
+        arena.release(buffer.duplicate());
+        assertFalse(arena.owns(buffer));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDoubleRelease() {
+        BufferArena arena = new BufferArena();
+        ByteBuffer buffer = arena.acquire(100);
+        arena.release(buffer);
+        arena.release(buffer);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReleaseForeignBuffer() {
+        new BufferArena().release(ByteBuffer.allocate(100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeCapacity() {
+        new BufferArena().acquire(-1);
+    }
+
+    @Test
+    public void testRecycle() {
+        BufferArena arena = new BufferArena();
+        ByteBuffer first = arena.acquire(100);
+        ByteBuffer second = arena.acquire(100);
+        arena.recycle(first, ByteBuffer.allocate(10), second.duplicate());
+        assertEquals(0, arena.getBytesInUse());
+        assertEquals(8192, arena.getPooledBytes());
+    }
+
+    @Test
+    public void testMaxPooledPerSize() {
+        BufferArena arena = new BufferArena(2);
+        ByteBuffer[] buffers = new ByteBuffer[3];
+        for (int i = 0; i < buffers.length; ++i) {
+            buffers[i] = arena.acquire(100);
+        }
+        arena.recycle(buffers);
+        assertEquals(2 * 4096, arena.getPooledBytes());
+        BufferArena none = new BufferArena(0);
+        none.release(none.acquire(100));
+        assertEquals(0, none.getPooledBytes());
+    }
+
+    @Test
+    public void testHighWaterMark() {
+        BufferArena arena = new BufferArena();
+        ByteBuffer first = arena.acquire(100);
+        ByteBuffer second = arena.acquire(5000);
+        arena.release(first);
+        arena.release(second);
+        arena.acquire(100);
+        assertEquals(4096 + 8192, arena.getHighWaterMark());
+        assertEquals(4096, arena.getBytesInUse());
+    }
+
+    @Test
+    public void testClear() {
+        BufferArena arena = new BufferArena();
+        ByteBuffer inUse = arena.acquire(100);
+        arena.release(arena.acquire(100));
+        arena.clear();
+        assertEquals(0, arena.getPooledBytes());
+        assertTrue(arena.owns(inUse));
+        arena.acquire(100);
+        assertEquals(0, arena.getReuseCount());
+    }
+}
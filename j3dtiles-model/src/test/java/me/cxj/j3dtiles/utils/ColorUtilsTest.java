@@ -0,0 +1,127 @@
+package me.cxj.j3dtiles.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class ColorUtilsTest {
+
+    /**
+     * Enough colors for 3 chunks, the last one partial.
+     */
+    private static final int LENGTH = ColorUtils.CHUNK_SIZE * 2 + 12345;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static int[] createColors(int length, long seed) {
+        Random random = new Random(seed);
+        int[] colors = new int[length];
+        for (int i = 0; i < length; ++i) {
+            colors[i] = random.nextInt();
+        }
+        return colors;
+    }
+
+    /**
+     * The colors encoded one by one with the single color conversions.
+     */
+    private static byte[] expected(int[] colors, int offset, int length, ColorUtils.Encoding encoding) {
+        ByteBuffer out = ByteBuffer.allocate(length * encoding.getByteSize()).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = offset; i < offset + length; ++i) {
+            switch (encoding) {
+                case RGBA:
+                    out.put(ColorUtils.toRGBA(colors[i]));
+                    break;
+                case RGB:
+                    out.put(ColorUtils.toRGB(colors[i]));
+                    break;
+                default:
+                    out.putShort(ColorUtils.toRGB565(colors[i]));
+                    break;
+            }
+        }
+        return out.array();
+    }
+
+    private static byte[] encode(int[] colors, int offset, int length, ColorUtils.Encoding encoding, int index, ExecutorService executor) {
+        ByteBuffer out = ByteBuffer.allocate(index + length * encoding.getByteSize() + 3).order(ByteOrder.LITTLE_ENDIAN);
+        out.position(1);
+        ColorUtils.encode(colors, offset, length, encoding, out, index, executor);
+        assertEquals(1, out.position());
+        // Nothing is written around the range.
+        for (int i = 0; i < index; ++i) {
+            assertEquals(0, out.get(i));
+        }
+        for (int i = out.capacity() - 3; i < out.capacity(); ++i) {
+            assertEquals(0, out.get(i));
+        }
+        byte[] bytes = new byte[length * encoding.getByteSize()];
+        ByteBuffer range = out.duplicate();
+        range.position(index);
+        range.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testEncodeParallel() {
+        int[] colors = createColors(LENGTH + 7, 0);
+        for (ColorUtils.Encoding encoding : ColorUtils.Encoding.values()) {
+            byte[] expected = expected(colors, 7, LENGTH, encoding);
+            assertArrayEquals(encoding.name(), expected, encode(colors, 7, LENGTH, encoding, 5, null));
+            assertArrayEquals(encoding.name(), expected, encode(colors, 7, LENGTH, encoding, 5, executor));
+            // A single chunk is encoded on the calling thread.
+            assertArrayEquals(encoding.name(), expected(colors, 7, ColorUtils.CHUNK_SIZE, encoding), encode(colors, 7, ColorUtils.CHUNK_SIZE, encoding, 5, executor));
+        }
+    }
+
+    @Test
+    public void testEncodeDirect() {
+        int[] colors = createColors(LENGTH, 1);
+        for (ColorUtils.Encoding encoding : ColorUtils.Encoding.values()) {
+            ByteBuffer out = ByteBuffer.allocateDirect(LENGTH * encoding.getByteSize()).order(ByteOrder.LITTLE_ENDIAN);
+            ColorUtils.encode(colors, 0, LENGTH, encoding, out, 0, executor);
+            byte[] bytes = new byte[out.capacity()];
+            out.get(bytes);
+            assertArrayEquals(encoding.name(), expected(colors, 0, LENGTH, encoding), bytes);
+        }
+    }
+
+    @Test
+    public void testRGB565() {
+        for (int color : new int[] {0xFF000000, 0xFFFFFFFF, 0xFFFF0000, 0xFF00FF00, 0xFF0000FF}) {
+            assertEquals(color, ColorUtils.fromRGB565(ColorUtils.toRGB565(color) & 0xFFFF));
+        }
+        for (int rgb565 = 0; rgb565 < 0x10000; ++rgb565) {
+            assertEquals(rgb565, ColorUtils.toRGB565(ColorUtils.fromRGB565(rgb565)) & 0xFFFF);
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testNotEnoughRoom() {
+        ByteBuffer out = ByteBuffer.allocate(LENGTH * 3 - 1).order(ByteOrder.LITTLE_ENDIAN);
+        ColorUtils.encode(new int[LENGTH], 0, LENGTH, ColorUtils.Encoding.RGB, out, 0, executor);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBigEndian() {
+        ColorUtils.encode(new int[1], 0, 1, ColorUtils.Encoding.RGBA, ByteBuffer.allocate(4), 0, null);
+    }
+}
@@ -0,0 +1,114 @@
+package me.cxj.j3dtiles.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import me.cxj.j3dtiles.impl.v1.BinaryBodyReference;
+import me.cxj.j3dtiles.impl.v1.ComponentType;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * The streaming parser against the data binding of an {@link ObjectMapper} to untyped maps, which it replaced.
+ */
+public class JacksonJsonParserTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JacksonJsonParser PARSER = JacksonJsonParser.getInstance();
+
+    private static final String[] DOCUMENTS = {
+            "{}",
+            "[]",
+            "{\"a\":{\"b\":{\"c\":[1,[2,[3,{}]],{\"d\":null}]}},\"e\":[]}",
+            "[0.5,-1.25,3.4028234663852886E38,1.0E-45,1.0E-300,-0.0,1e3,2E-2]",
+            "{\"name\":\"\u00e9t\u00e9 \u5efa\u7b51 \ud83c\udfe0\",\"escaped\":\"\\\"\\\\\\/\\b\\f\\n\\r\\t\\u0001\\u00e9\\ud83c\\udfe0\"}",
+            "[2147483647,2147483648,-2147483648,-2147483649,9223372036854775807,9223372036854775808,-9223372036854775809,123456789012345678901234567890]",
+            "{\"batchId\":[0,1,2],\"flags\":[true,false,null],\"kind\":[\"a\",\"b\",\"a\",\"a\"],\"mixed\":[\"a\",1,\"a\"]}",
+            "  \"top level string\"  ",
+            "42",
+    };
+
+    @Test
+    public void testParse() throws IOException {
+        for (String json : DOCUMENTS) {
+            Object expected = MAPPER.readValue(json, Object.class);
+            Object actual = PARSER.parse(json);
+            assertEquals(json, expected, actual);
+            assertEquals(json, MAPPER.writeValueAsString(expected), PARSER.toJsonString(actual));
+        }
+    }
+
+    @Test
+    public void testNumberTypes() {
+        List<Object> numbers = PARSER.parseArray(DOCUMENTS[5]);
+        assertEquals(Integer.class, numbers.get(0).getClass());
+        assertEquals(Long.class, numbers.get(1).getClass());
+        assertEquals(Long.class, numbers.get(3).getClass());
+        assertEquals(BigInteger.class, numbers.get(5).getClass());
+        assertEquals(new BigInteger("123456789012345678901234567890"), numbers.get(7));
+        assertEquals(Double.class, PARSER.parseArray(DOCUMENTS[3]).get(0).getClass());
+    }
+
+    @Test
+    public void testParseStringColumns() {
+        String json = DOCUMENTS[6];
+        assertEquals(PARSER.parseObject(json), PARSER.parseObjectWithStringColumns(json));
+    }
+
+    @Test
+    public void testToJsonString() throws IOException {
+        Map<String, Object> object = new LinkedHashMap<>();
+        object.put("floats", new float[] {0.1f, -2.5f, Float.MAX_VALUE, Float.MIN_VALUE, 1e-7f});
+        object.put("doubles", new double[] {0.1, -2.5, Double.MAX_VALUE, Double.MIN_VALUE});
+        object.put("ints", new int[] {0, -1, Integer.MAX_VALUE, Integer.MIN_VALUE});
+        object.put("longs", new long[] {Long.MAX_VALUE, Long.MIN_VALUE});
+        object.put("shorts", new short[] {Short.MAX_VALUE, Short.MIN_VALUE});
+        object.put("big", new BigInteger("123456789012345678901234567890"));
+        object.put("float", 0.1f);
+        object.put("short", (short) -3);
+        object.put("text", new StringBuilder("\u00e9t\u00e9 \"\\\n\u0001\ud83c\udfe0"));
+        object.put("list", Arrays.asList(1, 2L, 3.5, "\u5efa", null, true, Collections.singletonMap(1, false)));
+        object.put("objects", new Object[] {"a", 1, null});
+        object.put("enum", ComponentType.UNSIGNED_SHORT);
+        assertEquals(MAPPER.writeValueAsString(object), PARSER.toJsonString(object));
+        assertEquals(MAPPER.readValue(MAPPER.writeValueAsString(object), Object.class), PARSER.parse(PARSER.toJsonString(object)));
+    }
+
+    /**
+     * The byte arrays are unsigned numbers, where the data binding writes them as base64.
+     */
+    @Test
+    public void testByteArrayAndReference() {
+        assertEquals("[0,127,128,255]", PARSER.toJsonString(new byte[] {0, 127, (byte) 128, (byte) 255}));
+        BinaryBodyReference reference = new BinaryBodyReference();
+        reference.setByteOffset(16);
+        reference.setComponentType(ComponentType.FLOAT);
+        assertEquals("{\"byteOffset\":16,\"componentType\":\"FLOAT\"}", PARSER.toJsonString(reference));
+    }
+
+    @Test
+    public void testInvalid() {
+        String[] invalids = {"", "{", "[1,]", "{\"a\":1}}", "[1] 2", "{\"a\" 1}", "nul"};
+        for (String json : invalids) {
+            try {
+                PARSER.parse(json);
+                fail("Parsed " + json);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotAnObject() {
+        PARSER.parseObject("[1]");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotAnArray() {
+        PARSER.parseArray("{}");
+    }
+}
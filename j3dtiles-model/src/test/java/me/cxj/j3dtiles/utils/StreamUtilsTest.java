@@ -0,0 +1,252 @@
+package me.cxj.j3dtiles.utils;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * The bulk codecs against the byte by byte loops they replaced, at unaligned offsets and with lengths which are not a
+ * multiple of any vector width.
+ */
+public class StreamUtilsTest {
+
+    private static final int[] LENGTHS = {0, 1, 2, 3, 7, 13, 64, 1001};
+    private static final int[] OFFSETS = {0, 1, 3, 5};
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static void putLE(byte[] target, int offset, long value, int width) {
+        for (int i = 0; i < width; ++i) {
+            target[offset + i] = (byte) (value >>> (i * 8));
+        }
+    }
+
+    @Test
+    public void testDecodeArrays() {
+        Random random = new Random(0);
+        for (int offset : OFFSETS) {
+            for (int length : LENGTHS) {
+                byte[] bytes = randomBytes(random, offset + length * 8 + 3);
+                short[] shorts = StreamUtils.bytes2ShortArrayLE(bytes, offset, length);
+                int[] unsignedShorts = StreamUtils.bytes2UnsignedShortArrayLE(bytes, offset, length);
+                int[] ints = StreamUtils.bytes2IntArrayLE(bytes, offset, length);
+                long[] unsignedInts = StreamUtils.bytes2UnsignedIntArrayLE(bytes, offset, length);
+                float[] floats = StreamUtils.bytes2FloatArrayLE(bytes, offset, length);
+                double[] doubles = StreamUtils.bytes2DoubleArrayLE(bytes, offset, length);
+                assertEquals(length, shorts.length);
+                assertEquals(length, doubles.length);
+                for (int i = 0; i < length; ++i) {
+                    assertEquals(StreamUtils.bytes2ShortLE(bytes, offset + i * 2), shorts[i]);
+                    assertEquals(StreamUtils.bytes2UnsignedShortLE(bytes, offset + i * 2), unsignedShorts[i]);
+                    assertEquals(StreamUtils.bytes2IntLE(bytes, offset + i * 4), ints[i]);
+                    assertEquals(StreamUtils.bytes2UnsignedIntLE(bytes, offset + i * 4), unsignedInts[i]);
+                    // Compared by bits, so the NaNs of the random bytes are kept as they are.
+                    assertEquals(Float.floatToRawIntBits(StreamUtils.bytes2FloatLE(bytes, offset + i * 4)), Float.floatToRawIntBits(floats[i]));
+                    assertEquals(Double.doubleToRawLongBits(StreamUtils.bytes2DoubleLE(bytes, offset + i * 8)), Double.doubleToRawLongBits(doubles[i]));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEncodeArrays() {
+        Random random = new Random(1);
+        for (int offset : OFFSETS) {
+            for (int length : LENGTHS) {
+                int targetLength = offset + length * 8 + 3;
+                byte[] data = randomBytes(random, length);
+                int[] unsignedBytes = new int[length];
+                short[] shorts = new short[length];
+                int[] unsignedShorts = new int[length];
+                int[] ints = new int[length];
+                long[] unsignedInts = new long[length];
+                float[] floats = new float[length];
+                double[] doubles = new double[length];
+                for (int i = 0; i < length; ++i) {
+                    unsignedBytes[i] = random.nextInt(256);
+                    shorts[i] = (short) random.nextInt();
+                    unsignedShorts[i] = random.nextInt(65536);
+                    ints[i] = random.nextInt();
+                    unsignedInts[i] = random.nextInt() & 0xFFFFFFFFL;
+                    floats[i] = Float.intBitsToFloat(random.nextInt());
+                    doubles[i] = Double.longBitsToDouble(random.nextLong());
+                }
+
+                // The bytes around the written range are left as they are.
+                byte[] background = randomBytes(random, targetLength);
+                byte[] expected = background.clone();
+                byte[] actual = background.clone();
+                System.arraycopy(data, 0, expected, offset, length);
+                StreamUtils.byteArrayCopyToByteArrayLE(actual, offset, data);
+                assertArrayEquals(expected, actual);
+
+                expected = background.clone();
+                actual = background.clone();
+                for (int i = 0; i < length; ++i) {
+                    putLE(expected, offset + i, unsignedBytes[i], 1);
+                }
+                StreamUtils.unsignedByteArrayCopyToByteArrayLE(actual, offset, unsignedBytes);
+                assertArrayEquals(expected, actual);
+
+                expected = background.clone();
+                actual = background.clone();
+                for (int i = 0; i < length; ++i) {
+                    putLE(expected, offset + i * 2, shorts[i], 2);
+                }
+                StreamUtils.shortArrayCopyToByteArrayLE(actual, offset, shorts);
+                assertArrayEquals(expected, actual);
+
+                expected = background.clone();
+                actual = background.clone();
+                for (int i = 0; i < length; ++i) {
+                    putLE(expected, offset + i * 2, unsignedShorts[i], 2);
+                }
+                StreamUtils.unsignedShortArrayCopyToByteArrayLE(actual, offset, unsignedShorts);
+                assertArrayEquals(expected, actual);
+
+                expected = background.clone();
+                actual = background.clone();
+                for (int i = 0; i < length; ++i) {
+                    putLE(expected, offset + i * 4, ints[i], 4);
+                }
+                StreamUtils.intArrayCopyToByteArrayLE(actual, offset, ints);
+                assertArrayEquals(expected, actual);
+
+                expected = background.clone();
+                actual = background.clone();
+                for (int i = 0; i < length; ++i) {
+                    putLE(expected, offset + i * 4, unsignedInts[i], 4);
+                }
+                StreamUtils.unsignedIntArrayCopyToByteArrayLE(actual, offset, unsignedInts);
+                assertArrayEquals(expected, actual);
+
+                expected = background.clone();
+                actual = background.clone();
+                for (int i = 0; i < length; ++i) {
+                    putLE(expected, offset + i * 4, Float.floatToRawIntBits(floats[i]), 4);
+                }
+                StreamUtils.floatArrayCopyToByteArrayLE(actual, offset, floats);
+                assertArrayEquals(expected, actual);
+
+                expected = background.clone();
+                actual = background.clone();
+                for (int i = 0; i < length; ++i) {
+                    putLE(expected, offset + i * 8, Double.doubleToRawLongBits(doubles[i]), 8);
+                }
+                StreamUtils.doubleArrayCopyToByteArrayLE(actual, offset, doubles);
+                assertArrayEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEncodeTooSmall() {
+        StreamUtils.intArrayCopyToByteArrayLE(new byte[11], 1, new int[3]);
+    }
+
+    /**
+     * Heap and direct buffers in both byte orders, with a position which is not the one of the codec.
+     */
+    private static ByteBuffer[] createBuffers(byte[] bytes) {
+        ByteBuffer[] buffers = new ByteBuffer[4];
+        for (int i = 0; i < buffers.length; ++i) {
+            ByteBuffer buffer = i < 2 ? ByteBuffer.allocate(bytes.length) : ByteBuffer.allocateDirect(bytes.length);
+            buffer.put(bytes);
+            buffer.position(1);
+            buffer.order(i % 2 == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+            buffers[i] = buffer;
+        }
+        return buffers;
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.capacity()];
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.clear();
+        duplicate.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testDecodeBuffers() {
+        Random random = new Random(2);
+        for (int position : OFFSETS) {
+            for (int length : LENGTHS) {
+                byte[] bytes = randomBytes(random, position + length * 8 + 3);
+                for (ByteBuffer buffer : createBuffers(bytes)) {
+                    ByteOrder order = buffer.order();
+                    short[] shorts = new short[length + 2];
+                    int[] ints = new int[length + 2];
+                    float[] floats = new float[length + 2];
+                    double[] doubles = new double[length + 2];
+                    StreamUtils.buffer2ShortArrayLE(buffer, position, shorts, 2, length);
+                    StreamUtils.buffer2IntArrayLE(buffer, position, ints, 2, length);
+                    StreamUtils.buffer2FloatArrayLE(buffer, position, floats, 2, length);
+                    StreamUtils.buffer2DoubleArrayLE(buffer, position, doubles, 2, length);
+                    assertEquals(1, buffer.position());
+                    assertEquals(order, buffer.order());
+                    assertEquals(0, shorts[0] | shorts[1] | ints[0] | ints[1]);
+                    for (int i = 0; i < length; ++i) {
+                        assertEquals(StreamUtils.bytes2ShortLE(bytes, position + i * 2), shorts[i + 2]);
+                        assertEquals(StreamUtils.bytes2IntLE(bytes, position + i * 4), ints[i + 2]);
+                        assertEquals(StreamUtils.bytes2IntLE(bytes, position + i * 4), Float.floatToRawIntBits(floats[i + 2]));
+                        assertEquals(StreamUtils.bytes2LongLE(bytes, position + i * 8), Double.doubleToRawLongBits(doubles[i + 2]));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEncodeBuffers() {
+        Random random = new Random(3);
+        for (int position : OFFSETS) {
+            for (int length : LENGTHS) {
+                short[] shorts = new short[length + 2];
+                int[] ints = new int[length + 2];
+                float[] floats = new float[length + 2];
+                double[] doubles = new double[length + 2];
+                for (int i = 0; i < length + 2; ++i) {
+                    shorts[i] = (short) random.nextInt();
+                    ints[i] = random.nextInt();
+                    floats[i] = Float.intBitsToFloat(random.nextInt());
+                    doubles[i] = Double.longBitsToDouble(random.nextLong());
+                }
+                byte[] background = randomBytes(random, position + length * 8 + 3);
+                byte[] expectedShorts = background.clone();
+                byte[] expectedInts = background.clone();
+                byte[] expectedFloats = background.clone();
+                byte[] expectedDoubles = background.clone();
+                for (int i = 0; i < length; ++i) {
+                    putLE(expectedShorts, position + i * 2, shorts[i + 2], 2);
+                    putLE(expectedInts, position + i * 4, ints[i + 2], 4);
+                    putLE(expectedFloats, position + i * 4, Float.floatToRawIntBits(floats[i + 2]), 4);
+                    putLE(expectedDoubles, position + i * 8, Double.doubleToRawLongBits(doubles[i + 2]), 8);
+                }
+                for (int i = 0; i < 4; ++i) {
+                    ByteBuffer buffer = createBuffers(background)[i];
+                    StreamUtils.shortArrayCopyToBufferLE(buffer, position, shorts, 2, length);
+                    assertArrayEquals(expectedShorts, toBytes(buffer));
+                    buffer = createBuffers(background)[i];
+                    StreamUtils.intArrayCopyToBufferLE(buffer, position, ints, 2, length);
+                    assertArrayEquals(expectedInts, toBytes(buffer));
+                    buffer = createBuffers(background)[i];
+                    StreamUtils.floatArrayCopyToBufferLE(buffer, position, floats, 2, length);
+                    assertArrayEquals(expectedFloats, toBytes(buffer));
+                    buffer = createBuffers(background)[i];
+                    StreamUtils.doubleArrayCopyToBufferLE(buffer, position, doubles, 2, length);
+                    assertArrayEquals(expectedDoubles, toBytes(buffer));
+                    assertEquals(1, buffer.position());
+                }
+            }
+        }
+    }
+}